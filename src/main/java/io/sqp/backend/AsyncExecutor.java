@@ -43,4 +43,20 @@ public interface AsyncExecutor {
             return null;
         }, successHandler);
     }
+
+    /**
+     * Calls the callable asynchronously like {@link #callAsync(FallibleCallable, ResultHandler)}, but doesn't
+     * wait for other calls to finish. This allows to interrupt an operation that is still running.
+     * @param callable The callable to call
+     * @param resultHandler The handler for the result
+     * @param <T> The result type
+     */
+    <T> void callConcurrently(FallibleCallable<T> callable, ResultHandler<T> resultHandler);
+
+    default void runConcurrently(FallibleRunnable runnable, SuccessHandler successHandler) {
+        callConcurrently(() -> {
+            runnable.run();
+            return null;
+        }, successHandler);
+    }
 }
@@ -38,7 +38,8 @@ public interface BackendConnection {
 
     void simpleQuery(String sql, String cursorId, boolean scrollable, int maxFetch, ResultHandler<QueryResult> resultHandler);
     void prepare(String sql, String statementId, SuccessHandler successHandler);
-    void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable, ResultHandler<QueryResult> resultHandler);
+    void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable, int fetchSize,
+                 ResultHandler<QueryResult> resultHandler);
     void fetch(String cursorId, int position, int numRows, boolean forward, ResultHandler<QueryResult> resultHandler);
     void release(Collection<String> statementIds, Collection<String> cursorIds, SuccessHandler successHandler);
 
@@ -48,4 +49,18 @@ public interface BackendConnection {
 
     void getInformation(InformationSubject subject, String detail, ResultHandler<InformationRequestResult> resultHandler);
     void getLob(String id, long offset, long length, ResultHandler<LobStream> resultHandler);
+
+    /**
+     * Sets the time the database may take for the following query executions, before it cancels them itself.
+     * @param millis The timeout in milliseconds, or 0 for no timeout
+     */
+    void setQueryTimeout(int millis);
+
+    /**
+     * Asks the database to cancel the operation that is currently running on this connection. This might be
+     * called while another operation is still running, which then fails. The success handler is called as soon
+     * as the database received the cancel request.
+     * @param successHandler The handler to call when the request is sent
+     */
+    void cancel(SuccessHandler successHandler);
 }
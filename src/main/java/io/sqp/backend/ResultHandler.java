@@ -29,10 +29,21 @@ import java.util.function.Consumer;
 public class ResultHandler<T> {
     ErrorHandler _errorHandler;
     Consumer<T> _resultConsumer;
+    Consumer<Runnable> _readinessWaiter;
 
     public ResultHandler(ErrorHandler errorHandler, Consumer<T> resultConsumer) {
+        this(errorHandler, resultConsumer, Runnable::run);
+    }
+
+    /**
+     * @param errorHandler Handles errors
+     * @param resultConsumer Handles results
+     * @param readinessWaiter Gets a continuation which it should call as soon as more results can be handled
+     */
+    public ResultHandler(ErrorHandler errorHandler, Consumer<T> resultConsumer, Consumer<Runnable> readinessWaiter) {
         _errorHandler = errorHandler;
         _resultConsumer = resultConsumer;
+        _readinessWaiter = readinessWaiter;
     }
 
     public void fail(SqpException e) {
@@ -42,4 +53,12 @@ public class ResultHandler<T> {
     public void handle(T result) {
         _resultConsumer.accept(result);
     }
+
+    /**
+     * Can be used by producers of many results to wait until the consumer is ready to handle more of them.
+     * @param continuation Called when more results can be handled. Might be called immediately.
+     */
+    public void whenReady(Runnable continuation) {
+        _readinessWaiter.accept(continuation);
+    }
 }
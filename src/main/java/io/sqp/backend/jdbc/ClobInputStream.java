@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.sqp.backend.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the characters of a CLOB and provides them UTF-8 encoded, as they are sent to the client.
+ * The characters are encoded chunk by chunk while reading, so the CLOB is never materialized.
+ * @author Stefan Burnicki
+ */
+public class ClobInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 4096;
+    private Reader _reader;
+    private char[] _chars;
+    private int _numChars;
+    private byte[] _buffer;
+    private int _bufferPosition;
+    private long _position;
+    private boolean _eof;
+
+    public ClobInputStream(Reader reader) {
+        _reader = reader;
+        _chars = new char[CHUNK_SIZE];
+        _buffer = new byte[0];
+    }
+
+    /**
+     * @return The number of bytes read so far
+     */
+    public long getPosition() {
+        return _position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBuffer()) {
+            return -1;
+        }
+        _position++;
+        return _buffer[_bufferPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        int num = Math.min(len, _buffer.length - _bufferPosition);
+        System.arraycopy(_buffer, _bufferPosition, b, off, num);
+        _bufferPosition += num;
+        _position += num;
+        return num;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fillBuffer()) {
+            int num = (int) Math.min(n - skipped, _buffer.length - _bufferPosition);
+            _bufferPosition += num;
+            skipped += num;
+        }
+        _position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+
+    private boolean fillBuffer() throws IOException {
+        while (_bufferPosition >= _buffer.length) {
+            if (_eof) {
+                return false;
+            }
+            int num = _reader.read(_chars, _numChars, _chars.length - _numChars);
+            if (num < 0) {
+                _eof = true;
+                num = 0;
+            }
+            _numChars += num;
+            // don't split surrogate pairs, unless there is nothing left to read
+            int encodable = _numChars;
+            if (!_eof && encodable > 0 && Character.isHighSurrogate(_chars[encodable - 1])) {
+                encodable--;
+            }
+            _buffer = new String(_chars, 0, encodable).getBytes(StandardCharsets.UTF_8);
+            _bufferPosition = 0;
+            System.arraycopy(_chars, encodable, _chars, 0, _numChars - encodable);
+            _numChars -= encodable;
+        }
+        return true;
+    }
+}
@@ -36,9 +36,11 @@ public class JdbcBackend implements Backend {
     private String _username;
     private String _password;
     private Logger _logger;
+    private AsyncExecutor _asyncExecutor;
 
     @Override
     public void init(Configuration configuration, AsyncExecutor asyncExecutor) throws ConfigurationException {
+        _asyncExecutor = asyncExecutor;
         loadConfig(configuration);
         loadJdbcDriver();
         _logger = Logger.getGlobal();
@@ -46,7 +48,7 @@ public class JdbcBackend implements Backend {
 
     @Override
     public BackendConnection createConnection() {
-        return new JdbcConnection(_logger, _jdbcUrl, _username, _password);
+        return new JdbcConnection(_logger, _asyncExecutor, _jdbcUrl, _username, _password);
     }
 
 
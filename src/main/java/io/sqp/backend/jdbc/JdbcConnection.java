@@ -41,23 +41,34 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * A connection to a database using JDBC. Executing queries and fetching rows is blocking, so it's done with the
+ * async executor. This way, a running query can be canceled from the calling thread.
  * @author Stefan Burnicki
  */
 public class JdbcConnection implements BackendConnection {
+    private static final int STREAMING_CHUNK_SIZE = 256;
     private String _jdbcUrl;
     private String _username;
     private String _password;
 
     private Logger _logger;
+    private AsyncExecutor _asyncExecutor;
 
     private java.sql.Connection _jdbcConnection;
 
     private Map<String, SmartResultSet> _openResultSets;
     private Map<String, SmartStatement> _openStatements;
+    private StatementPool _statementPool;
+    private LobManager _lobManager;
+    private int _queryTimeout;
+    private volatile Statement _runningStatement;
+    private volatile SmartStatement _runningSmartStatement;
 
-    public JdbcConnection(Logger logger, String jdbcUrl, String username, String password) {
+    public JdbcConnection(Logger logger, AsyncExecutor asyncExecutor, String jdbcUrl, String username, String password) {
+        _asyncExecutor = asyncExecutor;
         _openResultSets = new HashMap<>();
         _openStatements = new HashMap<>();
+        _lobManager = new LobManager();
         _jdbcUrl = jdbcUrl;
         _username = username;
         _password = password;
@@ -136,6 +147,7 @@ public class JdbcConnection implements BackendConnection {
         try {
             _jdbcConnection = DriverManager.getConnection(url, _username, _password);
             _jdbcConnection.setAutoCommit(true); // our default
+            _statementPool = new StatementPool(_jdbcConnection);
         } catch (SQLException e) {
             String errorMsg = "Could not connect to the database: " + e.getMessage();
             successHandler.fail(new DatabaseConnectionException(errorMsg));
@@ -147,22 +159,30 @@ public class JdbcConnection implements BackendConnection {
 
     @Override
     public void simpleQuery(String sql, String cursorId, boolean scrollable, int maxFetch, ResultHandler<QueryResult> resultHandler) {
-        try {
-            Statement stmt = _jdbcConnection.createStatement();
-            if (!stmt.execute(sql)) {
-                resultHandler.handle(new UpdateQueryResult(stmt.getUpdateCount()));
-                return;
+        _asyncExecutor.callAsync(() -> {
+            try {
+                Statement stmt = _jdbcConnection.createStatement();
+                if (maxFetch > 0) {
+                    stmt.setFetchSize(maxFetch);
+                }
+                stmt.setQueryTimeout(getQueryTimeoutSeconds());
+                if (!executeCancelable(stmt, sql)) {
+                    return new UpdateQueryResult(stmt.getUpdateCount());
+                }
+                // otherwise it's a cursor
+                SmartResultSet smartResultSet = new SmartResultSet(stmt.getResultSet(), scrollable, null, _lobManager);
+                return processResultSet(smartResultSet, cursorId, scrollable);
+            } catch (SQLException e) {
+                String errorMsg = "Execution of the query failed: " + e.getMessage();
+                throw new SqpException(ErrorType.ExecutionFailed, errorMsg, ErrorAction.Recover);
             }
-            // otherwise it's a cursor
-            SmartResultSet smartResultSet = new SmartResultSet(stmt.getResultSet(), scrollable, null);
-            processResultSet(smartResultSet, cursorId, scrollable, resultHandler);
-            fetchData(smartResultSet, maxFetch, true, resultHandler);
-        } catch (SQLException e) {
-            String errorMsg = "Execution of the query failed: " + e.getMessage();
-            resultHandler.fail(new SqpException(ErrorType.ExecutionFailed, errorMsg, ErrorAction.Recover));
-        } catch (SqpException e) {
-            resultHandler.fail(e);
-        }
+        }, new ResultHandler<QueryResult>(resultHandler::fail, result -> {
+            resultHandler.handle(result);
+            SmartResultSet resultSet = _openResultSets.get(cursorId);
+            if (result instanceof CursorDescriptionResult && resultSet != null) {
+                streamRows(resultSet, maxFetch, true, resultHandler);
+            }
+        }));
     }
 
     @Override
@@ -173,7 +193,7 @@ public class JdbcConnection implements BackendConnection {
             if (statement != null) {
                 statement.close();
             }
-            statement = new SmartStatement(sql, _jdbcConnection);
+            statement = new SmartStatement(sql, _statementPool, _lobManager);
             _openStatements.put(stmtId, statement);
             successHandler.succeed();
         } catch (SQLException e) {
@@ -183,28 +203,32 @@ public class JdbcConnection implements BackendConnection {
 
     @Override
     public void execute(String stmtId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable,
-                        ResultHandler<QueryResult> resultHandler) {
+                        int fetchSize, ResultHandler<QueryResult> resultHandler) {
         SmartStatement currentStatement = _openStatements.get(stmtId);
         if (currentStatement == null) {
             resultHandler.fail(new SqpException(ErrorType.StatementNotFound,
                     "Statement with id '" + stmtId + "' was not found", ErrorAction.Recover));
             return;
         }
-        try {
-            currentStatement.bindParameterBatch(parameters);
-            if (currentStatement.isUpdate()) {
-                resultHandler.handle(new UpdateQueryResult(currentStatement.executeUpdate()));
-            } else {
+        _asyncExecutor.callAsync(() -> {
+            try {
+                currentStatement.bindParameterBatch(parameters);
+                currentStatement.setQueryTimeout(getQueryTimeoutSeconds());
+                currentStatement.setFetchSize(Math.max(fetchSize, 0));
+                _runningSmartStatement = currentStatement;
+                if (currentStatement.isUpdate()) {
+                    return new UpdateQueryResult(currentStatement.executeUpdate());
+                }
                 SmartResultSet resultSet = currentStatement.executeQuery(scrollable);
-                processResultSet(resultSet, cursorId, scrollable, resultHandler);
+                return processResultSet(resultSet, cursorId, scrollable);
+            } catch (SQLException e) {
+                // TODO: differentiate why the execution failed (if possible)
+                String errorMsg = "Execution of the query failed: " + e.getMessage();
+                throw new SqpException(ErrorType.ExecutionFailed, errorMsg, ErrorAction.Recover);
+            } finally {
+                _runningSmartStatement = null;
             }
-        } catch (SQLException e) {
-            // TODO: differentiate why the execution failed (if possible)
-            String errorMsg = "Execution of the query failed: " + e.getMessage();
-            resultHandler.fail(new SqpException(ErrorType.ExecutionFailed, errorMsg, ErrorAction.Recover));
-        } catch (SqpException e) {
-            resultHandler.fail(e);
-        }
+        }, resultHandler);
     }
 
     @Override
@@ -272,54 +296,47 @@ public class JdbcConnection implements BackendConnection {
             return;
         }
 
-        fetchData(resultSet, numRows, forward, resultHandler);
+        streamRows(resultSet, numRows, forward, resultHandler);
+    }
+
+    /**
+     * Reads the rows chunk by chunk in a worker thread and passes each chunk to the result handler as soon
+     * as it's read. The next chunk is only read when the result handler is ready for more results.
+     * @param numRows The number of rows to read, or a negative number to read all rows
+     */
+    private void streamRows(SmartResultSet resultSet, int numRows, boolean forward, ResultHandler<QueryResult> resultHandler) {
+        int chunkSize = numRows < 0 ? STREAMING_CHUNK_SIZE : Math.min(numRows, STREAMING_CHUNK_SIZE);
+        _asyncExecutor.callAsync(() -> readRows(resultSet, numRows, chunkSize, forward),
+                new ResultHandler<>(resultHandler::fail, rows -> {
+                    rows.forEach(row -> resultHandler.handle(new RowDataResult(row)));
+                    // NOTE: if the chunk is full, we cannot guarantee that there is more data. But calling
+                    // rawResults.isLast() won't work without scrollable cursors
+                    boolean dataLeft = rows.size() >= chunkSize;
+                    int rowsLeft = numRows < 0 ? numRows : numRows - rows.size();
+                    if (!dataLeft || rowsLeft == 0) {
+                        resultHandler.handle(new EndQueryResult(dataLeft));
+                        return;
+                    }
+                    resultHandler.whenReady(() -> streamRows(resultSet, rowsLeft, forward, resultHandler));
+                }));
     }
 
-    private void fetchData(SmartResultSet resultSet, int numRows, boolean forward, ResultHandler<QueryResult> resultHandler) {
-        int numSent = 0;
-        // now actual results
-        List<ColumnMetadata> columnMetadata = resultSet.getColumnMetadata();
-        int numCols = columnMetadata.size();
-        boolean dataLeft = false;
-        ResultSet rawResults = resultSet.getRawResultSet();
+    private List<List<SqpValue>> readRows(SmartResultSet resultSet, int numRows, int chunkSize, boolean forward)
+            throws SqpException {
+        List<List<SqpValue>> rows = new ArrayList<>(chunkSize);
         try {
-            while (true) {
-                // first check for an artificial maximum
-                if (numRows >= 0 && numSent >= numRows) {
-                    // NOTE: if numSent == numRows, we cannot guarantee that there is more
-                    // data. But calling rawResults.isLast() won't work without scrollable cursors
-                    dataLeft = true;
-                    break;
-                }
-                // otherwise check if there is actual data left
-                if (forward) {
-                    dataLeft = rawResults.next();
-                } else {
-                    dataLeft = rawResults.previous();
-                }
-                if (!dataLeft) {
-                    break;
-                }
-                ArrayList<SqpValue> rowdata = new ArrayList<>(numCols);
-                for (int i = 1; i <= numCols; i++) { // JDBC columns have a 1-based index
-                    rowdata.add(ResultExtractor.extractResult(columnMetadata.get(i - 1).getType(), rawResults, i));
-                }
-                resultHandler.handle(new RowDataResult(rowdata));
-                numSent++;
+            resultSet.setFetchSize(numRows);
+            while (rows.size() < chunkSize && resultSet.next(forward)) {
+                rows.add(resultSet.readRow());
             }
         } catch (SQLException e) {
             String errorMsg = "Fetching data from cursor failed: " + e.getMessage();
-            resultHandler.fail(new SqpException(ErrorType.FetchFailed, errorMsg, ErrorAction.Recover));
-            return;
-        } catch (SqpException e) {
-            resultHandler.fail(e);
-            return;
+            throw new SqpException(ErrorType.FetchFailed, errorMsg, ErrorAction.Recover);
         }
-        resultHandler.handle(new EndQueryResult(dataLeft));
+        return rows;
     }
 
-
-    private void processResultSet(SmartResultSet resultSet, String cursorId, boolean scrollable, ResultHandler<QueryResult> resultHandler)
+    private CursorDescriptionResult processResultSet(SmartResultSet resultSet, String cursorId, boolean scrollable)
             throws SQLException, SqpException {
         // TODO: handle type conversion exceptions more carefully
         SmartResultSet existing = _openResultSets.remove(cursorId);
@@ -328,15 +345,56 @@ public class JdbcConnection implements BackendConnection {
             existing.close();
         }
         _openResultSets.put(cursorId, resultSet);
-        CursorDescriptionResult cursorResult = new CursorDescriptionResult(cursorId, scrollable,
-                resultSet.getColumnMetadata());
-        resultHandler.handle(cursorResult);
+        return new CursorDescriptionResult(cursorId, scrollable, resultSet.getColumnMetadata());
+    }
+
+
+    @Override
+    public void setQueryTimeout(int millis) {
+        _queryTimeout = millis;
+    }
+
+    @Override
+    public void cancel(SuccessHandler successHandler) {
+        // the execution blocks a worker of the async executor, so cancel it from another one
+        _asyncExecutor.runConcurrently(() -> {
+            try {
+                Statement statement = _runningStatement;
+                if (statement != null) {
+                    statement.cancel();
+                }
+                SmartStatement smartStatement = _runningSmartStatement;
+                if (smartStatement != null) {
+                    smartStatement.cancel();
+                }
+            } catch (SQLException e) {
+                throw new SqpException(ErrorType.ExecutionFailed, "Failed to cancel the query: " + e.getMessage(),
+                        ErrorAction.Recover, e);
+            }
+        }, successHandler);
     }
 
+    private boolean executeCancelable(Statement statement, String sql) throws SQLException {
+        _runningStatement = statement;
+        try {
+            return statement.execute(sql);
+        } finally {
+            _runningStatement = null;
+        }
+    }
+
+    private int getQueryTimeoutSeconds() {
+        // JDBC only supports timeouts in seconds, so round up
+        return (_queryTimeout + 999) / 1000;
+    }
 
     @Override
     public void getLob(String id, long offset, long length, ResultHandler<LobStream> resultHandler) {
-        throw new UnsupportedOperationException("Lob support is not yet implemented");
+        try {
+            resultHandler.handle(_lobManager.getLob(id, offset, length));
+        } catch (SqpException e) {
+            resultHandler.fail(e);
+        }
     }
 
     @Override
@@ -350,6 +408,9 @@ public class JdbcConnection implements BackendConnection {
                 _logger.log(Level.INFO, "Closing open statement '" + entry.getKey() + "'");
                 entry.getValue().close();
             }
+            if (_statementPool != null) {
+                _statementPool.close();
+            }
             if (_jdbcConnection != null) {
                 _jdbcConnection.close();
             }
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.sqp.backend.jdbc;
+
+import io.sqp.backend.LobStream;
+import io.sqp.backend.exceptions.LobReadFailedException;
+import io.sqp.core.DataFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Keeps the LOBs of fetched rows until their result set is closed and serves ranges of them as streams.
+ * CLOBs are sent UTF-8 encoded, so their offsets refer to the encoded bytes. Their size is unknown in advance.
+ * @author Stefan Burnicki
+ */
+public class LobManager {
+    private static final String CLOB_ID_PREFIX = "CLOB";
+    private static final String BLOB_ID_PREFIX = "BLOB";
+    private long _lobCounter;
+    private Map<String, RegisteredLob> _lobs;
+    private Map<SmartResultSet, List<String>> _resultSetLobMapping;
+
+    public LobManager() {
+        _lobCounter = 0;
+        _lobs = new HashMap<>();
+        _resultSetLobMapping = new HashMap<>();
+    }
+
+    public String registerBlob(Blob blob, SmartResultSet owner) {
+        return register(new RegisteredLob(blob, null), owner, BLOB_ID_PREFIX);
+    }
+
+    public String registerClob(Clob clob, SmartResultSet owner) {
+        return register(new RegisteredLob(null, clob), owner, CLOB_ID_PREFIX);
+    }
+
+    /**
+     * Gets a range of a LOB as a stream. The data is only read from the database when the stream is read.
+     * @param id The LOB id
+     * @param offset The 0-based offset in bytes. Negative values are treated as 0.
+     * @param length The maximum number of bytes. Negative values mean until the end of the LOB.
+     * @return The stream of the range
+     * @throws LobReadFailedException If the LOB doesn't exist or couldn't be accessed
+     */
+    public LobStream getLob(String id, long offset, long length) throws LobReadFailedException {
+        RegisteredLob lob = _lobs.get(id);
+        if (lob == null) {
+            throw new LobReadFailedException("LOB with ID '" + id + "' does not exist.");
+        }
+        long normalizedOffset = offset < 0 ? 0 : offset;
+        try {
+            if (lob.Blob != null) {
+                return new LobStream(getBlobRange(lob.Blob, normalizedOffset, length), DataFormat.Binary);
+            }
+            return new LobStream(getClobRange(lob, normalizedOffset, length), DataFormat.Text);
+        } catch (SQLException | IOException e) {
+            throw new LobReadFailedException("Failed to read from the LOB: " + e.getMessage(), e);
+        }
+    }
+
+    public void closeAll(SmartResultSet owner) throws SQLException {
+        List<String> mapping = _resultSetLobMapping.remove(owner);
+        if (mapping == null) {
+            return;
+        }
+        SQLException error = null;
+        for (String id : mapping) {
+            try {
+                free(_lobs.remove(id));
+            } catch (SQLException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private String register(RegisteredLob lob, SmartResultSet owner, String prefix) {
+        _lobCounter++;
+        String id = prefix + _lobCounter;
+        _lobs.put(id, lob);
+        List<String> mapping = _resultSetLobMapping.get(owner);
+        if (mapping == null) {
+            mapping = new LinkedList<>();
+            _resultSetLobMapping.put(owner, mapping);
+        }
+        mapping.add(id);
+        return id;
+    }
+
+    private InputStream getBlobRange(Blob blob, long offset, long length) throws SQLException {
+        long dataLeft = blob.length() - offset;
+        if (dataLeft <= 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        // Blob positions are 1-based
+        return blob.getBinaryStream(offset + 1, length < 0 ? dataLeft : Math.min(length, dataLeft));
+    }
+
+    private InputStream getClobRange(RegisteredLob lob, long offset, long length) throws SQLException, IOException {
+        // the encoded position is only known while reading, so continue with the last stream if possible
+        if (lob.ClobStream == null || lob.ClobStream.getPosition() > offset) {
+            if (lob.ClobStream != null) {
+                lob.ClobStream.close();
+            }
+            lob.ClobStream = new ClobInputStream(lob.Clob.getCharacterStream());
+        }
+        lob.ClobStream.skip(offset - lob.ClobStream.getPosition());
+        return new RangeInputStream(lob.ClobStream, length);
+    }
+
+    private void free(RegisteredLob lob) throws SQLException {
+        if (lob == null) {
+            return;
+        }
+        try {
+            if (lob.ClobStream != null) {
+                lob.ClobStream.close();
+            }
+        } catch (IOException e) {
+            // the CLOB gets freed anyway
+        }
+        if (lob.Blob != null) {
+            lob.Blob.free();
+        } else {
+            lob.Clob.free();
+        }
+    }
+
+    private class RegisteredLob {
+        public final Blob Blob;
+        public final Clob Clob;
+        public ClobInputStream ClobStream;
+
+        public RegisteredLob(Blob blob, Clob clob) {
+            Blob = blob;
+            Clob = clob;
+        }
+    }
+
+    /**
+     * Limits the number of bytes read from the underlying stream, which stays open for the next range.
+     */
+    private class RangeInputStream extends FilterInputStream {
+        private long _bytesLeft;
+
+        public RangeInputStream(InputStream in, long length) {
+            super(in);
+            _bytesLeft = length < 0 ? Long.MAX_VALUE : length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (_bytesLeft <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                _bytesLeft--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_bytesLeft <= 0) {
+                return -1;
+            }
+            int num = super.read(b, off, (int) Math.min(len, _bytesLeft));
+            if (num > 0) {
+                _bytesLeft -= num;
+            }
+            return num;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, _bytesLeft));
+            _bytesLeft -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), _bytesLeft);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // keep the underlying stream open
+        }
+    }
+}
@@ -24,9 +24,14 @@ import io.sqp.core.types.*;
 import io.sqp.core.exceptions.NotImplementedException;
 import io.sqp.core.exceptions.SqpException;
 
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -36,59 +41,113 @@ import java.time.LocalTime;
  * @author Stefan Burnicki
  */
 public class ResultExtractor {
-    static public SqpValue extractResult(TypeDescription type, ResultSet result, int column)
-            throws SQLException, SqpException {
+    /**
+     * Reads the value of a single column of the current row.
+     */
+    @FunctionalInterface
+    public interface ColumnReader {
+        SqpValue read(ResultSet result, int column) throws SQLException, SqpException;
+    }
+
+    /**
+     * Creates a reader for a column of the given type. The reader can be reused for every row, so the type
+     * only needs to be checked once per column.
+     * LOBs are registered at the lobManager for the given owner.
+     */
+    static public ColumnReader createColumnReader(TypeDescription type, LobManager lobManager, SmartResultSet owner) {
         switch (type.getTypeCode()) {
             case Boolean:
-                return new SqpBoolean(result.getBoolean(column));
+                return (result, column) -> new SqpBoolean(result.getBoolean(column));
             case TinyInt:
-                return new SqpTinyInt(result.getByte(column));
+                return (result, column) -> new SqpTinyInt(result.getByte(column));
             case SmallInt:
-                return new SqpSmallInt(result.getShort(column));
+                return (result, column) -> new SqpSmallInt(result.getShort(column));
             case Integer:
-                return new SqpInteger(result.getInt(column));
+                return (result, column) -> new SqpInteger(result.getInt(column));
             case BigInt:
-                return new SqpBigInt(result.getLong(column));
+                return (result, column) -> new SqpBigInt(result.getLong(column));
             case Real:
-                return new SqpReal(result.getFloat(column));
+                return (result, column) -> new SqpReal(result.getFloat(column));
             case Double:
-                return new SqpDouble(result.getDouble(column));
+                return (result, column) -> new SqpDouble(result.getDouble(column));
             case Decimal:
-                return new SqpDecimal(result.getBigDecimal(column));
+                return (result, column) -> new SqpDecimal(result.getBigDecimal(column));
             case Char:
-                return new SqpChar(result.getString(column));
+                return (result, column) -> new SqpChar(result.getString(column));
             case VarChar:
-                return new SqpVarChar(result.getString(column));
+                return (result, column) -> new SqpVarChar(result.getString(column));
             case Binary:
-                return new SqpBinary(result.getBytes(column));
+                return (result, column) -> new SqpBinary(result.getBytes(column));
             case VarBinary:
-                return new SqpVarBinary(result.getBytes(column));
+                return (result, column) -> new SqpVarBinary(result.getBytes(column));
             case Time:
-                LocalTime time = result.getTime(column).toLocalTime();
-                return new SqpTime(time.getHour(), time.getMinute(), time.getSecond(), time.getNano());
+                return ResultExtractor::extractTime;
             case Date:
-                LocalDate date = result.getDate(column).toLocalDate();
-                return new SqpDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+                return ResultExtractor::extractDate;
             case Timestamp:
-                LocalDateTime datetime = result.getTimestamp(column).toLocalDateTime();
-                return new SqpTimestamp(datetime.getYear(), datetime.getMonthValue(), datetime.getDayOfMonth(),
-                        datetime.getHour(), datetime.getMinute(), datetime.getSecond(), datetime.getNano());
+                return ResultExtractor::extractTimestamp;
             case Interval:
                 // TODO: implement
                 break;
             case Xml:
-                // TODO: use streams?
-                break;
+                return ResultExtractor::extractXml;
             case Blob:
-                // TODO: use streams?
-                break;
+                return (result, column) -> {
+                    Blob blob = result.getBlob(column);
+                    if (blob == null) {
+                        return new SqpNull(SqpTypeCode.Blob);
+                    }
+                    return new SqpBlob(lobManager.registerBlob(blob, owner), blob.length());
+                };
             case Clob:
-                // TODO: use streams?
-                break;
+                return (result, column) -> {
+                    Clob clob = result.getClob(column);
+                    if (clob == null) {
+                        return new SqpNull(SqpTypeCode.Clob);
+                    }
+                    // the size of the UTF-8 encoded data is not known without reading it
+                    return new SqpClob(lobManager.registerClob(clob, owner), -1);
+                };
             case Custom:
                 break;
         }
-        throw new NotImplementedException("Conversion to type '" + type + "' is not yet implemented.");
+        // fail when the first value is read, not before
+        return (result, column) -> {
+            throw new NotImplementedException("Conversion to type '" + type + "' is not yet implemented.");
+        };
+    }
+
+    private static SqpValue extractXml(ResultSet result, int column) throws SQLException {
+        String xml = result.getString(column);
+        return xml == null ? new SqpNull(SqpTypeCode.Xml) : new SqpXml(xml);
+    }
+
+    private static SqpValue extractTime(ResultSet result, int column) throws SQLException {
+        Time sqlTime = result.getTime(column);
+        if (sqlTime == null) {
+            return new SqpNull(SqpTypeCode.Time);
+        }
+        LocalTime time = sqlTime.toLocalTime();
+        return new SqpTime(time.getHour(), time.getMinute(), time.getSecond(), time.getNano());
+    }
+
+    private static SqpValue extractDate(ResultSet result, int column) throws SQLException {
+        Date sqlDate = result.getDate(column);
+        if (sqlDate == null) {
+            return new SqpNull(SqpTypeCode.Date);
+        }
+        LocalDate date = sqlDate.toLocalDate();
+        return new SqpDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    private static SqpValue extractTimestamp(ResultSet result, int column) throws SQLException {
+        Timestamp sqlTimestamp = result.getTimestamp(column);
+        if (sqlTimestamp == null) {
+            return new SqpNull(SqpTypeCode.Timestamp);
+        }
+        LocalDateTime datetime = sqlTimestamp.toLocalDateTime();
+        return new SqpTimestamp(datetime.getYear(), datetime.getMonthValue(), datetime.getDayOfMonth(),
+                datetime.getHour(), datetime.getMinute(), datetime.getSecond(), datetime.getNano());
     }
 
     static public TypeDescription getStandardDataType(ResultSetMetaData metdata, int col) throws NotImplementedException, SQLException {
@@ -22,6 +22,8 @@ package io.sqp.backend.jdbc;
 import io.sqp.core.ColumnMetadata;
 import io.sqp.core.TypeDescription;
 import io.sqp.core.exceptions.NotImplementedException;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpValue;
 
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -34,12 +36,16 @@ import java.util.List;
  */
 public class SmartResultSet {
     private SmartStatement _origin;
+    private LobManager _lobManager;
     private ResultSet _resultSet;
     private ArrayList<ColumnMetadata> _columnMetadata;
+    private ResultExtractor.ColumnReader[] _columnReaders;
     private boolean _scrollable;
 
-    public SmartResultSet(ResultSet resultSet, boolean scrollable, SmartStatement origin) throws SQLException, NotImplementedException {
+    public SmartResultSet(ResultSet resultSet, boolean scrollable, SmartStatement origin, LobManager lobManager)
+            throws SQLException, NotImplementedException {
         _origin = origin;
+        _lobManager = lobManager;
         _resultSet = resultSet;
         _scrollable = scrollable;
         initializeColumnMetadata();
@@ -47,6 +53,7 @@ public class SmartResultSet {
 
     public void close() throws SQLException {
         try {
+            _lobManager.closeAll(this);
             _resultSet.close();
         } finally {
             if (_origin != null) {
@@ -59,10 +66,47 @@ public class SmartResultSet {
         return _columnMetadata;
     }
 
+    /**
+     * Moves the cursor to the next or previous row.
+     * @return false if there is no such row
+     */
+    public boolean next(boolean forward) throws SQLException, SqpException {
+        return forward ? _resultSet.next() : _resultSet.previous();
+    }
+
     public ResultSet getRawResultSet() {
         return _resultSet;
     }
 
+    /**
+     * Reads the current row of the result set.
+     */
+    public List<SqpValue> readRow() throws SQLException, SqpException {
+        ArrayList<SqpValue> row = new ArrayList<>(_columnReaders.length);
+        for (int i = 0; i < _columnReaders.length; i++) {
+            row.add(_columnReaders[i].read(_resultSet, i + 1)); // JDBC columns have a 1-based index
+        }
+        return row;
+    }
+
+    /**
+     * Lets the driver transfer as many rows at once as we are going to read.
+     */
+    public void setFetchSize(int numRows) throws SQLException {
+        if (numRows > 0 && _resultSet.getFetchSize() != numRows) {
+            _resultSet.setFetchSize(numRows);
+        }
+    }
+
+    protected void replaceRawResultSet(ResultSet resultSet) throws SQLException {
+        int fetchSize = _resultSet.getFetchSize();
+        _resultSet.close();
+        _resultSet = resultSet;
+        if (fetchSize > 0) {
+            _resultSet.setFetchSize(fetchSize);
+        }
+    }
+
     public boolean isScrollable() {
         return _scrollable;
     }
@@ -74,9 +118,11 @@ public class SmartResultSet {
         // First get and send column metadata
         // TODO: check precision/scale for numeric/decimal, varchar, varbinary, ...
         _columnMetadata = new ArrayList<>(numCols);
+        _columnReaders = new ResultExtractor.ColumnReader[numCols];
         for (int i = 1; i <= numCols; i++) { // JDBC columns have a 1-based index
             TypeDescription curType = ResultExtractor.getStandardDataType(metadata, i); // use 0-based index
             _columnMetadata.add(new ColumnMetadata(metadata.getColumnName(i), curType, metadata.getColumnTypeName(i)));
+            _columnReaders[i - 1] = ResultExtractor.createColumnReader(curType, _lobManager, this);
         }
     }
 }
@@ -24,6 +24,8 @@ import io.sqp.core.types.SqpValue;
 import io.sqp.core.exceptions.NotImplementedException;
 import io.sqp.core.exceptions.SqpException;
 import io.sqp.core.exceptions.UnsupportedTypeException;
+import io.sqp.core.types.SqpBlob;
+import io.sqp.core.types.SqpClob;
 import io.sqp.core.types.SqpTypeCode;
 
 import java.sql.*;
@@ -37,7 +39,8 @@ public class SmartStatement {
     final private String[] _updateCommands = {"UPDATE", "INSERT", "DELETE"}; // TODO: check/add more
 
     private String _sqlStatement;
-    private Connection _jdbcConnection;
+    private StatementPool _statementPool;
+    private LobManager _lobManager;
     private PreparedStatement _statement;
     private boolean _inUse;
     private boolean _autoClose;
@@ -45,19 +48,25 @@ public class SmartStatement {
     private boolean _isClosed;
     private boolean _isScrollable;
     private boolean _useBatchExecute;
+    private int _queryTimeout;
+    private int _fetchSize;
+    private List<List<SqpValue>> _parameters;
+    private List<List<SqpValue>> _batchSelectParameters;
 
-    public SmartStatement(String sql, Connection jdbcConnection, boolean isScrollable) throws SQLException {
+    public SmartStatement(String sql, StatementPool statementPool, LobManager lobManager, boolean isScrollable)
+            throws SQLException {
         _autoClose = false;
         _inUse = false;
-        _jdbcConnection = jdbcConnection;
+        _statementPool = statementPool;
+        _lobManager = lobManager;
         _sqlStatement = sql;
         _isUpdate = determineIfUpdate();
         _useBatchExecute = false;
         open(isScrollable);
     }
 
-    public SmartStatement(String sql, Connection jdbcConnection) throws SQLException {
-        this(sql, jdbcConnection, false);
+    public SmartStatement(String sql, StatementPool statementPool, LobManager lobManager) throws SQLException {
+        this(sql, statementPool, lobManager, false);
     }
 
     public void close() throws SQLException {
@@ -76,21 +85,44 @@ public class SmartStatement {
         return Arrays.stream(_statement.executeBatch()).filter(i -> i > 0).sum();
     }
 
-    public SmartResultSet executeQuery(boolean scrollable) throws SQLException, NotImplementedException {
+    public SmartResultSet executeQuery(boolean scrollable) throws SQLException, SqpException {
+        if (_batchSelectParameters != null && scrollable) {
+            throw new InvalidOperationException("Batch selects can only be executed with forward-only cursors.");
+        }
         if (_inUse) {
-            // clone this statement, as it can only be used once
-            SmartStatement clone = new SmartStatement(_sqlStatement, _jdbcConnection, scrollable);
+            // use another statement, as it can only be used once. The pool reuses an idle one if possible
+            SmartStatement clone = new SmartStatement(_sqlStatement, _statementPool, _lobManager, scrollable);
             clone._autoClose = true;
+            clone.setQueryTimeout(_queryTimeout);
+            clone.setFetchSize(_fetchSize);
+            if (_parameters != null) {
+                clone.bindParameterBatch(_parameters);
+            }
             return clone.executeQuery(scrollable);
         }
-        // TODO: well this might not be fast, but how should be guessed it correctly?
+        // a scrollable statement also serves forward-only cursors, but not the other way round
         if (!_isScrollable && scrollable) {
-            _statement.close();
+            _statementPool.release(_sqlStatement, false, _statement);
             open(true);
+            if (_parameters != null) {
+                bindParameterBatch(_parameters);
+            }
         }
         ResultSet result = _statement.executeQuery();
         _inUse = true;
-        return new SmartResultSet(result, isScrollable(), this);
+        if (_batchSelectParameters != null) {
+            return new BatchResultSet(result, this, _lobManager, _batchSelectParameters);
+        }
+        return new SmartResultSet(result, isScrollable(), this, _lobManager);
+    }
+
+    /**
+     * Executes the query again with other parameters, used by batch selects for all but the first parameter list.
+     */
+    ResultSet executeBatchQuery(List<SqpValue> parameters) throws SQLException, SqpException {
+        _statement.clearParameters();
+        bindParameterList(parameters);
+        return _statement.executeQuery();
     }
 
     public void releaseResult() throws SQLException {
@@ -104,11 +136,16 @@ public class SmartStatement {
         // make sure it's clea first
         _statement.clearParameters();
         _statement.clearBatch();
-        _useBatchExecute = parameters.size() > 1;
-        if (_useBatchExecute && !isUpdate()) {
-            // TODO: support batch selects?
-            throw new InvalidOperationException("Batch operations are only supported for updates");
+        _parameters = parameters;
+        _batchSelectParameters = null;
+        if (parameters.size() > 1 && !isUpdate()) {
+            // the other parameter lists are bound when the result set reached the end of the previous result
+            _batchSelectParameters = parameters;
+            _useBatchExecute = false;
+            bindParameterList(parameters.get(0));
+            return;
         }
+        _useBatchExecute = parameters.size() > 1;
         for (List<SqpValue> parameterList : parameters) {
             bindParameterList(parameterList);
             if (_useBatchExecute) {
@@ -117,6 +154,24 @@ public class SmartStatement {
         }
     }
 
+    /**
+     * Sets the time the driver waits for the execution before it cancels it.
+     * @param seconds The timeout in seconds, or 0 for no timeout
+     */
+    public void setQueryTimeout(int seconds) throws SQLException {
+        _queryTimeout = seconds;
+        _statement.setQueryTimeout(seconds);
+    }
+
+    public void setFetchSize(int rows) throws SQLException {
+        _fetchSize = rows;
+        _statement.setFetchSize(rows);
+    }
+
+    public void cancel() throws SQLException {
+        _statement.cancel();
+    }
+
     public boolean isUpdate() {
         return _isUpdate;
     }
@@ -127,8 +182,10 @@ public class SmartStatement {
 
     private void open(boolean isScrollable) throws SQLException {
         _isScrollable = isScrollable;
-        int scrollFlag = _isScrollable ? ResultSet.TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
-        _statement = _jdbcConnection.prepareStatement(_sqlStatement, scrollFlag, ResultSet.CONCUR_READ_ONLY);
+        _statement = _statementPool.acquire(_sqlStatement, isScrollable);
+        // pooled statements might still have the timeout of their last use
+        _statement.setQueryTimeout(_queryTimeout);
+        _statement.setFetchSize(_fetchSize);
     }
 
     private void doClose() throws SQLException {
@@ -136,7 +193,7 @@ public class SmartStatement {
             return;
         }
         _isClosed = true;
-        _statement.close();
+        _statementPool.release(_sqlStatement, _isScrollable, _statement);
     }
 
     private void bindParameterList(List<SqpValue> values) throws SQLException, SqpException {
@@ -195,10 +252,20 @@ public class SmartStatement {
             case Timestamp:
                 _statement.setTimestamp(col, Timestamp.valueOf(value.asOffsetDateTime().toLocalDateTime()));
                 break;
-            case Interval:
-            case Xml:
             case Blob:
+                SqpBlob blob = (SqpBlob) value;
+                if (blob.getSize() >= 0) {
+                    _statement.setBinaryStream(col, blob.getInputStream(), blob.getSize());
+                } else {
+                    _statement.setBinaryStream(col, blob.getInputStream());
+                }
+                break;
             case Clob:
+                // the size is in bytes, so it can't be passed as the number of characters
+                _statement.setCharacterStream(col, ((SqpClob) value).getReader());
+                break;
+            case Interval:
+            case Xml:
             case Custom:
                 // TODO: support them
                 throw new UnsupportedTypeException("The type '" + type + "' is currently not supported.");
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.sqp.backend.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Keeps idle prepared statements of a connection, so they can be reused instead of being prepared again.
+ * Statements are pooled by their SQL and scrollability. If there are too many idle statements, the least
+ * recently released one gets closed.
+ * @author Stefan Burnicki
+ */
+public class StatementPool {
+    public static final int DEFAULT_MAX_IDLE = 32;
+    private Connection _jdbcConnection;
+    private int _maxIdle;
+    private Map<StatementKey, Deque<PreparedStatement>> _idleStatements;
+    private LinkedHashMap<PreparedStatement, StatementKey> _releaseOrder;
+
+    public StatementPool(Connection jdbcConnection) {
+        this(jdbcConnection, DEFAULT_MAX_IDLE);
+    }
+
+    public StatementPool(Connection jdbcConnection, int maxIdle) {
+        _jdbcConnection = jdbcConnection;
+        _maxIdle = maxIdle;
+        _idleStatements = new HashMap<>();
+        _releaseOrder = new LinkedHashMap<>();
+    }
+
+    /**
+     * Gets an idle statement from the pool or prepares a new one.
+     */
+    public PreparedStatement acquire(String sql, boolean scrollable) throws SQLException {
+        Deque<PreparedStatement> idle = _idleStatements.get(new StatementKey(sql, scrollable));
+        if (idle != null && !idle.isEmpty()) {
+            PreparedStatement statement = idle.pollLast();
+            _releaseOrder.remove(statement);
+            return statement;
+        }
+        int scrollFlag = scrollable ? ResultSet.TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
+        return _jdbcConnection.prepareStatement(sql, scrollFlag, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    /**
+     * Puts a statement back into the pool. It must not have an open result set anymore.
+     */
+    public void release(String sql, boolean scrollable, PreparedStatement statement) throws SQLException {
+        if (_maxIdle < 1 || statement.isClosed()) {
+            statement.close();
+            return;
+        }
+        statement.clearParameters();
+        statement.clearBatch();
+        StatementKey key = new StatementKey(sql, scrollable);
+        Deque<PreparedStatement> idle = _idleStatements.get(key);
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            _idleStatements.put(key, idle);
+        }
+        idle.addLast(statement);
+        _releaseOrder.put(statement, key);
+        if (_releaseOrder.size() > _maxIdle) {
+            closeLeastRecentlyReleased();
+        }
+    }
+
+    public int getNumIdleStatements() {
+        return _releaseOrder.size();
+    }
+
+    /**
+     * Closes all idle statements.
+     */
+    public void close() throws SQLException {
+        SQLException error = null;
+        for (PreparedStatement statement : _releaseOrder.keySet()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                error = e;
+            }
+        }
+        _releaseOrder.clear();
+        _idleStatements.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void closeLeastRecentlyReleased() throws SQLException {
+        Iterator<Map.Entry<PreparedStatement, StatementKey>> it = _releaseOrder.entrySet().iterator();
+        Map.Entry<PreparedStatement, StatementKey> eldest = it.next();
+        it.remove();
+        Deque<PreparedStatement> idle = _idleStatements.get(eldest.getValue());
+        idle.remove(eldest.getKey());
+        if (idle.isEmpty()) {
+            _idleStatements.remove(eldest.getValue());
+        }
+        eldest.getKey().close();
+    }
+
+    private class StatementKey {
+        public final String Sql;
+        public final boolean Scrollable;
+
+        public StatementKey(String sql, boolean scrollable) {
+            Sql = sql;
+            Scrollable = scrollable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StatementKey)) {
+                return false;
+            }
+            StatementKey other = (StatementKey) o;
+            return Scrollable == other.Scrollable && Sql.equals(other.Sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Sql.hashCode() + (Scrollable ? 1 : 0);
+        }
+    }
+}
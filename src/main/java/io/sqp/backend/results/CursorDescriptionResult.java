@@ -20,13 +20,21 @@
 package io.sqp.backend.results;
 
 import io.sqp.core.ColumnMetadata;
+import io.sqp.core.types.SqpTypeCode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * @author Stefan Burnicki
  */
 public class CursorDescriptionResult implements QueryResult{
+    /**
+     * Name of the column that batch selects put in front of the actual columns. It contains the 0-based index of
+     * the parameter list that produced the row.
+     */
+    public static final String BATCH_INDEX_COLUMN = "batch_index";
+
     private List<ColumnMetadata> _columns;
     private String _cursorId;
     private boolean _scrollable;
@@ -48,4 +56,11 @@ public class CursorDescriptionResult implements QueryResult{
     public String getCursorId() {
         return _cursorId;
     }
+
+    public static List<ColumnMetadata> withBatchIndexColumn(List<ColumnMetadata> columns) {
+        List<ColumnMetadata> batchColumns = new ArrayList<>(columns.size() + 1);
+        batchColumns.add(new ColumnMetadata(BATCH_INDEX_COLUMN, SqpTypeCode.Integer.asDescription(), "INTEGER"));
+        batchColumns.addAll(columns);
+        return batchColumns;
+    }
 }
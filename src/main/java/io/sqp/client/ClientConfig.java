@@ -29,13 +29,93 @@ public interface ClientConfig {
     ClientConfig setCursorMaxFetch(int maxFetch);
     int getCursorMaxFetch();
 
+    /**
+     * Sets the low-water mark for prefetching cursor data. If the number of unread rows of a forward cursor
+     * falls below this threshold, the next block is requested in the background. A value of 0 disables prefetching.
+     * @param numRows The number of unread rows at which to prefetch
+     * @return This config
+     */
+    ClientConfig setCursorPrefetchThreshold(int numRows);
+    int getCursorPrefetchThreshold();
+
     ClientConfig setProtocolFormat(DataFormat dataFormat);
     DataFormat getProtocolFormat();
     // TODO: add timeout
 
+    /**
+     * Sets the maximum number of messages that are queued to be sent. If it's reached, sending a message blocks
+     * until the queued messages were sent.
+     * @param numMessages The maximum number of queued messages
+     * @return This config
+     */
+    ClientConfig setSendQueueSize(int numMessages);
+    int getSendQueueSize();
+
+    /**
+     * Sets the maximum number of connections a {@link SqpDataSource} opens.
+     * @param numConnections The maximum number of pooled connections
+     * @return This config
+     */
+    ClientConfig setPoolMaxSize(int numConnections);
+    int getPoolMaxSize();
+
+    /**
+     * Sets the number of connections a {@link SqpDataSource} opens on creation and keeps open when idle.
+     * @param numConnections The minimum number of pooled connections
+     * @return This config
+     */
+    ClientConfig setPoolMinSize(int numConnections);
+    int getPoolMinSize();
+
+    /**
+     * Sets the time after which idle pooled connections are closed, as long as the minimum pool size is kept.
+     * @param millis The idle timeout in milliseconds
+     * @return This config
+     */
+    ClientConfig setPoolIdleTimeout(long millis);
+    long getPoolIdleTimeout();
+
+    /**
+     * Sets the time after which an idle pooled connection is validated with a round trip before it's lent.
+     * @param millis The validation interval in milliseconds
+     * @return This config
+     */
+    ClientConfig setPoolValidationInterval(long millis);
+    long getPoolValidationInterval();
+
+    /**
+     * Sets the estimated maximum size of the parameters of a single execute message for column batches.
+     * Larger batches are split into multiple executions.
+     * @param bytes The maximum size in bytes
+     * @return This config
+     * @see PreparedStatement#executeBatch(ColumnBatch)
+     */
+    ClientConfig setBatchMessageSize(int bytes);
+    int getBatchMessageSize();
+
     ClientConfig setLobBufferSize(int size);
     int getLobBufferSize();
 
+    /**
+     * Sets the number of LOB ranges that are requested ahead of the one that is currently read from a LOB stream.
+     * Each range has the size of the LOB buffer, so this also limits the memory used for received LOB data.
+     * The read ahead only applies to LOBs of known size.
+     * @param numRanges The number of ranges to request ahead, or 0 to request one range at a time
+     * @return This config
+     */
+    ClientConfig setLobReadAhead(int numRanges);
+    int getLobReadAhead();
+
+    /**
+     * Sets the default timeout for query executions. The timeout is enforced by the database, so an exceeding query
+     * fails with a database error and the connection stays usable.
+     * @param millis The timeout in milliseconds, or 0 for no timeout
+     * @return This config
+     * @see PreparedStatement#setTimeout(int)
+     */
+    ClientConfig setQueryTimeout(int millis);
+    int getQueryTimeout();
+
     static ClientConfig create() {
         return new ClientConfigImpl();
     }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.impl.ColumnBatchImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Parameter values for a batch execution of a prepared statement, organized in typed columns. The values are
+ * encoded directly from the column arrays, without creating an object for each value. The first added column
+ * is bound to the first parameter, the second to the second one, and so on.
+ * Null elements of object arrays are null values. Elements of primitive arrays can be set null explicitly.
+ * @author Stefan Burnicki
+ * @see PreparedStatement#executeBatch(ColumnBatch)
+ */
+public interface ColumnBatch {
+    ColumnBatch addColumn(short[] values);
+    ColumnBatch addColumn(int[] values);
+    ColumnBatch addColumn(long[] values);
+    ColumnBatch addColumn(float[] values);
+    ColumnBatch addColumn(double[] values);
+    ColumnBatch addColumn(boolean[] values);
+    ColumnBatch addColumn(BigDecimal[] values);
+    ColumnBatch addColumn(String[] values);
+    ColumnBatch addColumn(byte[][] values);
+    ColumnBatch addColumn(LocalDate[] values);
+
+    /**
+     * Sets a single value null.
+     * @param column The index of the column, starting with 0
+     * @param row The index of the row, starting with 0
+     * @return This batch
+     */
+    ColumnBatch setNull(int column, int row);
+
+    int getNumRows();
+    int getNumColumns();
+
+    /**
+     * Creates an empty batch. All columns added must have the given number of rows.
+     * @param numRows The number of rows of the batch
+     * @return The new batch
+     */
+    static ColumnBatch create(int numRows) {
+        return new ColumnBatchImpl(numRows);
+    }
+}
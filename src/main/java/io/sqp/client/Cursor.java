@@ -19,26 +19,18 @@
 
 package io.sqp.client;
 
-import io.sqp.core.ColumnMetadata;
 import io.sqp.core.exceptions.SqpException;
-import io.sqp.core.types.SqpValue;
 
 import java.io.Closeable;
-import java.util.List;
 
 /**
  * @author Stefan Burnicki
  */
-public interface Cursor extends QueryResult, Closeable {
+public interface Cursor extends QueryResult, Row, Closeable {
     boolean isClosed();
     // TODO: provide an async variant of close
 
     // TODO: provide an async version of this
     boolean nextRow() throws SqpException;
     boolean previousRow() throws SqpException;
-
-    SqpValue at(int i) throws SqpException;
-    SqpValue at(String name) throws SqpException;
-
-    List<ColumnMetadata> getColumnMetadata();
 }
@@ -53,8 +53,40 @@ public interface PreparedStatement extends Closeable {
         return execute(UpdateResult.class, false);
     }
 
+    /**
+     * Creates a publisher of the selected rows, using the currently bound parameters.
+     * @return A publisher for a single subscriber
+     * @see SqpConnection#publishSelect(String)
+     */
+    Publisher<Row> publishSelect();
+
+    /**
+     * Creates a publisher of the selected rows that are pushed by the server, using the currently bound parameters.
+     * @return A publisher for a single subscriber
+     * @see SqpConnection#streamSelect(String)
+     */
+    Publisher<Row> streamSelect();
+
+    /**
+     * Sets the timeout for following executions of this statement. It defaults to the configured query timeout.
+     * @param millis The timeout in milliseconds, or 0 for no timeout
+     * @return This statement
+     * @see ClientConfig#setQueryTimeout(int)
+     */
+    PreparedStatement setTimeout(int millis);
+
     PreparedStatement addBatch();
 
+    /**
+     * Executes the statement for each row of a column batch. The values are encoded directly from the columns.
+     * If the batch exceeds the configured batch message size, it's split into multiple executions, which are
+     * only atomic within a transaction. No other parameters may be bound.
+     * @param batch The parameter values
+     * @return A future of the total number of affected rows
+     * @see ClientConfig#setBatchMessageSize(int)
+     */
+    CompletableFuture<UpdateResult> executeBatch(ColumnBatch batch);
+
     // TODO: add method to clear a parameter (or the whole batch)
 
     PreparedStatement bind(int param, String value) throws SqpException;
@@ -25,6 +25,7 @@ import io.sqp.core.InformationSubject;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author Stefan Burnicki
@@ -49,8 +50,67 @@ public interface SqpConnection extends Closeable {
     default CompletableFuture<Cursor> executeSelect(String query) { return execute(Cursor.class, false, query); }
     default CompletableFuture<UpdateResult> executeUpdate(String query) { return execute(UpdateResult.class, false, query); }
 
+    /**
+     * Executes a select query whose result the server may take from its result cache or share with identical
+     * queries of other sessions, if it's configured to do so. Outside of transactions, the result might therefore
+     * be slightly outdated. Don't use it for queries calling functions with side effects or volatile results,
+     * like nextval() or random(), as their results would be reused as well.
+     * @param query The select query
+     * @return A future for the cursor of the result
+     */
+    CompletableFuture<Cursor> executeCachedSelect(String query);
+
+    /**
+     * Creates a publisher of the rows selected by the query. The query is sent as soon as the subscriber requests
+     * rows and further rows are fetched as they are requested, without blocking any thread.
+     * @param query The select query
+     * @return A publisher for a single subscriber
+     */
+    Publisher<Row> publishSelect(String query);
+
+    /**
+     * Creates a publisher of the rows selected by the query, which the server pushes continuously instead of
+     * sending them block by block on request. The subscriber's demand is granted to the server as credit, so
+     * pushing pauses if the subscriber doesn't request more rows. This saves a round trip per block, which
+     * suits large results and high-latency connections.
+     * @param query The select query
+     * @return A publisher for a single subscriber
+     * @see #publishSelect(String)
+     */
+    Publisher<Row> streamSelect(String query);
+
     PreparedStatement prepare(String query);
 
+    /**
+     * Creates a statement that is prepared by the server on its first execution. Each execution sends the query
+     * with the bound parameters in a single message, and the server reuses the statement it prepared for the
+     * same query before. This saves the round trip of {@link #prepare(String)} and the first fetch of a cursor.
+     * Closing the statement doesn't release anything on the server.
+     * @param query The query to execute
+     * @return The statement
+     * @see #prepare(String)
+     */
+    PreparedStatement prepareImplicitly(String query);
+
+    /**
+     * Asks the server to cancel the query that is currently executed on this connection. The future of the
+     * canceled query fails with an error of type {@link io.sqp.core.ErrorType#Canceled}, afterwards the connection
+     * can be used as usual. If no query is running, the request is ignored by the server.
+     * @return A future that is completed when the cancel request was sent
+     */
+    CompletableFuture<Void> cancel();
+
+    /**
+     * Sends the operations as a single pipeline, so the server executes them back to back and a whole unit of work
+     * takes a single round trip. The operations are called on this connection as usual and are collected instead
+     * of being sent, so they must not wait for the results of each other. If an operation fails, the server
+     * skips the remaining ones, whose futures fail with an {@link io.sqp.client.exceptions.OperationSkippedException}.
+     * LOBs cannot be sent as part of a pipeline.
+     * @param operations Calls the operations on the passed connection
+     * @return A future that is completed when all operations succeeded, or fails with the first error
+     */
+    CompletableFuture<Void> pipeline(Consumer<SqpConnection> operations);
+
     CompletableFuture<SqpConnection> connect(String host, int port, String path, String database);
 
     CompletableFuture<Void> setAutoCommit(boolean useAutoCommit);
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.impl.SqpDataSourceImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A pool of connections to the same server and database. Closing a connection obtained from the data source
+ * returns it to the pool. Open cursors and statements of returned connections are released and autocommit is
+ * restored. Native types and type mappings registered on a connection remain.
+ * @author Stefan Burnicki
+ */
+public interface SqpDataSource extends Closeable {
+    /**
+     * Borrows a connection. If the maximum number of connections is borrowed, the future completes as soon
+     * as one is returned.
+     * @return A future of a ready connection
+     */
+    CompletableFuture<SqpConnection> getConnection();
+
+    int getNumConnections();
+    int getNumIdleConnections();
+
+    void close() throws IOException;
+
+    static SqpDataSource create(ClientConfig config, String host, int port, String path, String database) {
+        return new SqpDataSourceImpl(config, host, port, path, database);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.impl.SqpMultiplexerImpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single websocket to a server that is shared by many logical connections. Each connection has its own session
+ * on the server and is used just like a connection with its own websocket. Closing a connection only closes its
+ * session, closing the multiplexer closes the websocket and all of its connections.
+ * @author Stefan Burnicki
+ */
+public interface SqpMultiplexer extends Closeable {
+    /**
+     * Opens a new logical connection. The websocket gets connected with the first connection.
+     * @param database The database to connect to
+     * @return A future of the connection, which completes when the connection is ready
+     */
+    CompletableFuture<SqpConnection> openConnection(String database);
+
+    int getNumConnections();
+
+    void close() throws IOException;
+
+    static SqpMultiplexer create(ClientConfig config, String host, int port, String path) {
+        return new SqpMultiplexerImpl(config, host, port, path);
+    }
+}
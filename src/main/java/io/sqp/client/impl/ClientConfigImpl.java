@@ -27,7 +27,16 @@ import io.sqp.client.ClientConfig;
  */
 public class ClientConfigImpl implements ClientConfig {
     private int _maxFetch = -1;
+    private int _prefetchThreshold = 100;
     private int _lobBufferSize = 1024_00;
+    private int _lobReadAhead = 4;
+    private int _queryTimeout = 0;
+    private int _sendQueueSize = 256;
+    private int _batchMessageSize = 1024 * 1024;
+    private int _poolMaxSize = 10;
+    private int _poolMinSize = 0;
+    private long _poolIdleTimeout = 600_000;
+    private long _poolValidationInterval = 30_000;
     private DataFormat _dataFormat = DataFormat.Binary;
 
     @Override
@@ -52,6 +61,83 @@ public class ClientConfigImpl implements ClientConfig {
         return _maxFetch;
     }
 
+    @Override
+    public ClientConfig setCursorPrefetchThreshold(int numRows) {
+        _prefetchThreshold = numRows;
+        return this;
+    }
+
+    @Override
+    public int getCursorPrefetchThreshold() {
+        return _prefetchThreshold;
+    }
+
+    @Override
+    public ClientConfig setSendQueueSize(int numMessages) {
+        _sendQueueSize = numMessages;
+        return this;
+    }
+
+    @Override
+    public int getSendQueueSize() {
+        return _sendQueueSize;
+    }
+
+    @Override
+    public ClientConfig setPoolMaxSize(int numConnections) {
+        _poolMaxSize = numConnections;
+        return this;
+    }
+
+    @Override
+    public int getPoolMaxSize() {
+        return _poolMaxSize;
+    }
+
+    @Override
+    public ClientConfig setPoolMinSize(int numConnections) {
+        _poolMinSize = numConnections;
+        return this;
+    }
+
+    @Override
+    public int getPoolMinSize() {
+        return _poolMinSize;
+    }
+
+    @Override
+    public ClientConfig setPoolIdleTimeout(long millis) {
+        _poolIdleTimeout = millis;
+        return this;
+    }
+
+    @Override
+    public long getPoolIdleTimeout() {
+        return _poolIdleTimeout;
+    }
+
+    @Override
+    public ClientConfig setPoolValidationInterval(long millis) {
+        _poolValidationInterval = millis;
+        return this;
+    }
+
+    @Override
+    public long getPoolValidationInterval() {
+        return _poolValidationInterval;
+    }
+
+    @Override
+    public ClientConfig setBatchMessageSize(int bytes) {
+        _batchMessageSize = bytes;
+        return this;
+    }
+
+    @Override
+    public int getBatchMessageSize() {
+        return _batchMessageSize;
+    }
+
     @Override
     public ClientConfig setLobBufferSize(int size) {
         _lobBufferSize = size;
@@ -62,4 +148,26 @@ public class ClientConfigImpl implements ClientConfig {
     public int getLobBufferSize() {
         return _lobBufferSize;
     }
+
+    @Override
+    public ClientConfig setLobReadAhead(int numRanges) {
+        _lobReadAhead = numRanges;
+        return this;
+    }
+
+    @Override
+    public int getLobReadAhead() {
+        return _lobReadAhead;
+    }
+
+    @Override
+    public ClientConfig setQueryTimeout(int millis) {
+        _queryTimeout = millis;
+        return this;
+    }
+
+    @Override
+    public int getQueryTimeout() {
+        return _queryTimeout;
+    }
 }
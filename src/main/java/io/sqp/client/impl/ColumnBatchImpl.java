@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.sqp.client.ColumnBatch;
+import io.sqp.core.types.SqpTypeCode;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Implements {@link ColumnBatch} as a list of parameter lists, so it can be sent as parameters of an execute message.
+ * It's encoded by the {@link ColumnBatchSerializer}, which writes the values directly from the columns. The parameter
+ * lists are only created if single rows are accessed. A batch might be split into slices that share the columns.
+ * @author Stefan Burnicki
+ */
+@JsonSerialize(using = ColumnBatchSerializer.class)
+public class ColumnBatchImpl extends AbstractList<List<Object>> implements ColumnBatch {
+    private static final int NUMBER_SIZE = 9; // maximum size of a MsgPack number
+    private static final int VALUE_OVERHEAD = 5;
+
+    private final int _numRows;
+    private final List<Column> _columns;
+    private final int _firstRow;
+    private final int _endRow;
+
+    public ColumnBatchImpl(int numRows) {
+        this(numRows, new ArrayList<>(), 0, numRows);
+    }
+
+    private ColumnBatchImpl(int numRows, List<Column> columns, int firstRow, int endRow) {
+        if (numRows < 0) {
+            throw new IllegalArgumentException("The number of rows must not be negative.");
+        }
+        _numRows = numRows;
+        _columns = columns;
+        _firstRow = firstRow;
+        _endRow = endRow;
+    }
+
+    @Override
+    public ColumnBatch addColumn(short[] values) {
+        return addColumn(SqpTypeCode.SmallInt, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(int[] values) {
+        return addColumn(SqpTypeCode.Integer, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(long[] values) {
+        return addColumn(SqpTypeCode.BigInt, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(float[] values) {
+        return addColumn(SqpTypeCode.Real, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(double[] values) {
+        return addColumn(SqpTypeCode.Double, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(boolean[] values) {
+        return addColumn(SqpTypeCode.Boolean, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(BigDecimal[] values) {
+        return addColumn(SqpTypeCode.Decimal, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(String[] values) {
+        return addColumn(SqpTypeCode.VarChar, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(byte[][] values) {
+        return addColumn(SqpTypeCode.Binary, values);
+    }
+
+    @Override
+    public ColumnBatch addColumn(LocalDate[] values) {
+        return addColumn(SqpTypeCode.Date, values);
+    }
+
+    private ColumnBatch addColumn(SqpTypeCode type, Object values) {
+        int length = Array.getLength(values);
+        if (length != _numRows) {
+            throw new IllegalArgumentException("The column has " + length + " rows, but the batch has " + _numRows + ".");
+        }
+        _columns.add(new Column(type, values));
+        return this;
+    }
+
+    @Override
+    public ColumnBatch setNull(int column, int row) {
+        if (column < 0 || column >= _columns.size()) {
+            throw new IndexOutOfBoundsException("The batch has no column " + column + ".");
+        }
+        if (row < 0 || row >= _numRows) {
+            throw new IndexOutOfBoundsException("The batch has no row " + row + ".");
+        }
+        _columns.get(column).Nulls.set(row);
+        return this;
+    }
+
+    @Override
+    public int getNumRows() {
+        return _endRow - _firstRow;
+    }
+
+    @Override
+    public int getNumColumns() {
+        return _columns.size();
+    }
+
+    public List<SqpTypeCode> getTypes() {
+        return _columns.stream().map(c -> c.Type).collect(Collectors.toList());
+    }
+
+    @Override
+    public int size() {
+        return getNumRows();
+    }
+
+    @Override
+    public List<Object> get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("The batch has no row " + index + ".");
+        }
+        int row = _firstRow + index;
+        return _columns.stream().map(c -> c.getJsonFormatValue(row)).collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the batch into slices whose encoded size is estimated not to exceed the given size.
+     * Each slice has at least one row, even if the row exceeds the size.
+     * @param maxBytes The maximum size of a slice in bytes
+     * @return The slices, or a list with only this batch, if it doesn't need to be split
+     */
+    public List<ColumnBatchImpl> split(int maxBytes) {
+        List<ColumnBatchImpl> slices = new ArrayList<>();
+        int sliceStart = _firstRow;
+        long sliceSize = 0;
+        for (int row = _firstRow; row < _endRow; row++) {
+            long rowSize = estimateSize(row);
+            if (sliceSize + rowSize > maxBytes && row > sliceStart) {
+                slices.add(new ColumnBatchImpl(_numRows, _columns, sliceStart, row));
+                sliceStart = row;
+                sliceSize = 0;
+            }
+            sliceSize += rowSize;
+        }
+        if (slices.isEmpty()) {
+            return Collections.singletonList(this);
+        }
+        slices.add(new ColumnBatchImpl(_numRows, _columns, sliceStart, _endRow));
+        return slices;
+    }
+
+    private long estimateSize(int row) {
+        long size = VALUE_OVERHEAD;
+        for (Column column : _columns) {
+            size += column.estimateSize(row);
+        }
+        return size;
+    }
+
+    void write(JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (int row = _firstRow; row < _endRow; row++) {
+            generator.writeStartArray();
+            for (Column column : _columns) {
+                column.write(generator, row);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    private class Column {
+        public final SqpTypeCode Type;
+        public final Object Values;
+        public final BitSet Nulls;
+
+        public Column(SqpTypeCode type, Object values) {
+            Type = type;
+            Values = values;
+            Nulls = new BitSet();
+        }
+
+        public void write(JsonGenerator generator, int row) throws IOException {
+            if (Nulls.get(row)) {
+                generator.writeNull();
+                return;
+            }
+            switch (Type) {
+                case SmallInt:
+                    generator.writeNumber(((short[]) Values)[row]);
+                    return;
+                case Integer:
+                    generator.writeNumber(((int[]) Values)[row]);
+                    return;
+                case BigInt:
+                    generator.writeNumber(((long[]) Values)[row]);
+                    return;
+                case Real:
+                    generator.writeNumber(((float[]) Values)[row]);
+                    return;
+                case Double:
+                    generator.writeNumber(((double[]) Values)[row]);
+                    return;
+                case Boolean:
+                    generator.writeBoolean(((boolean[]) Values)[row]);
+                    return;
+            }
+            Object value = ((Object[]) Values)[row];
+            if (value == null) {
+                generator.writeNull();
+            } else if (Type == SqpTypeCode.Binary) {
+                generator.writeBinary((byte[]) value);
+            } else if (Type == SqpTypeCode.Date) {
+                LocalDate date = (LocalDate) value;
+                generator.writeStartArray();
+                generator.writeNumber(date.getYear());
+                generator.writeNumber(date.getMonthValue());
+                generator.writeNumber(date.getDayOfMonth());
+                generator.writeEndArray();
+            } else {
+                // decimals are sent as strings, just like varchars
+                generator.writeString(value.toString());
+            }
+        }
+
+        public long estimateSize(int row) {
+            if (!Values.getClass().getComponentType().isPrimitive()) {
+                Object value = ((Object[]) Values)[row];
+                if (value == null) {
+                    return 1;
+                } else if (value instanceof byte[]) {
+                    return ((byte[]) value).length * 4 / 3 + VALUE_OVERHEAD; // base64 in JSON
+                } else if (value instanceof LocalDate) {
+                    return 3 * NUMBER_SIZE + 1;
+                }
+                return value.toString().length() + VALUE_OVERHEAD;
+            }
+            return Type == SqpTypeCode.Boolean ? 1 : NUMBER_SIZE;
+        }
+
+        public Object getJsonFormatValue(int row) {
+            if (Nulls.get(row)) {
+                return null;
+            }
+            Object value = Array.get(Values, row);
+            if (value instanceof LocalDate) {
+                LocalDate date = (LocalDate) value;
+                return new int[] {date.getYear(), date.getMonthValue(), date.getDayOfMonth()};
+            } else if (value instanceof BigDecimal) {
+                return value.toString();
+            }
+            return value;
+        }
+    }
+}
@@ -22,13 +22,11 @@ package io.sqp.client.impl;
 import io.sqp.client.Cursor;
 import io.sqp.core.ErrorType;
 import io.sqp.core.types.SqpValue;
-import io.sqp.client.exceptions.ColumnNotFoundException;
 import io.sqp.client.exceptions.CursorBeforeDataException;
 import io.sqp.core.ColumnMetadata;
 import io.sqp.core.ErrorAction;
 import io.sqp.core.exceptions.CursorProblemException;
 import io.sqp.core.exceptions.SqpException;
-import io.sqp.core.types.SqpAbstractLob;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -41,38 +39,32 @@ import java.util.concurrent.ExecutionException;
 public class CursorImpl extends CloseableServerResource implements Cursor {
     private List<ColumnMetadata> _columns;
     private boolean _hasMoreData;
-    private LinkedList<List<Object>> _data;
-    private ListIterator<List<Object>> _iterator;
-    private boolean _iteratorDirty;
-    private List<Object> _currentRow;
-    private int _currentRowNum;
+    private RowBuffer _data;
+    private RowImpl _currentRow;
     private Map<String, Integer> _columnIndexLookup;
     private boolean _scrollable;
     private boolean _insertingBefore;
-    private HashMap<Integer, SqpValue> _currentRowDecoded;
+    private CompletableFuture<CursorImpl> _pendingFetch;
 
     public CursorImpl(SqpConnectionImpl connection, String cursorId, List<ColumnMetadata> columns, boolean scrollable) {
         super(connection, cursorId, "cursor");
         _columns = columns;
-        _data = new LinkedList<>();
-        _currentRowNum = -1;
-        _iteratorDirty = true;
+        _data = RowBuffer.create(scrollable);
         _scrollable = scrollable;
         _hasMoreData = true;
-        _currentRowDecoded = new HashMap<>();
+        _columnIndexLookup = RowImpl.createColumnIndexLookup(columns);
     }
 
-    public void addDataRow(List<Object> row) {
+    // rows are added by the connection's receiving thread, possibly while a prefetch is consumed
+    public synchronized void addDataRow(List<Object> row) {
         if (_insertingBefore) {
-            _data.add(0, row);
-            _currentRowNum++;
+            _data.prepend(row);
         } else {
-            _data.add(row);
+            _data.append(row);
         }
-        _iteratorDirty = true;
     }
 
-    public void setHasMoreData(boolean hasMoreData) {
+    public synchronized void setHasMoreData(boolean hasMoreData) {
         _hasMoreData = hasMoreData;
     }
 
@@ -91,22 +83,15 @@ public class CursorImpl extends CloseableServerResource implements Cursor {
         if (_currentRow == null) {
             throw new CursorBeforeDataException();
         }
-        SqpValue sqpValue = _currentRowDecoded.get(i);
-        if (sqpValue != null) {
-            return sqpValue;
-        }
-        sqpValue = SqpValue.createFromJsonFormat(_columns.get(i).getType().getTypeCode(), _currentRow.get(i));
-        if (sqpValue instanceof SqpAbstractLob) {
-            SqpAbstractLob lob = (SqpAbstractLob) sqpValue;
-            sqpValue = lob.createWithStream(new LobStream(getConnection(), lob.getId(), lob.getSize()));
-        }
-        _currentRowDecoded.put(i, sqpValue);
-        return sqpValue;
+        return _currentRow.at(i);
     }
 
     @Override
     public SqpValue at(String name) throws SqpException {
-        return at(getColumnIndex(name));
+        if (_currentRow == null) {
+            throw new CursorBeforeDataException();
+        }
+        return _currentRow.at(name);
     }
 
     @Override
@@ -114,63 +99,70 @@ public class CursorImpl extends CloseableServerResource implements Cursor {
         return _columns;
     }
 
-    private int getColumnIndex(String name) throws ColumnNotFoundException {
-        if (_columnIndexLookup == null) {
-            _columnIndexLookup = new HashMap<>(_columns.size());
-            for (int i = 0; i < _columns.size(); i++) {
-                _columnIndexLookup.put(_columns.get(i).getName(), i);
-            }
-        }
-
-        Integer idx = _columnIndexLookup.get(name);
-        if (idx != null) {
-            return idx;
-        }
-        throw new ColumnNotFoundException(name);
-    }
-
     private boolean scrollRow(boolean forward, boolean autofetch) throws SqpException {
         validateOpen();
         if (!forward && !_scrollable) {
             throw new CursorProblemException(getId(), CursorProblemException.Problem.NotScrollable);
         }
-        if (_iteratorDirty) {
-            // avoid to set a negative iteration start if cursor is uninitialized, without
-            // data and starts with "previousRow()"
-            if (!forward && _currentRowNum < 0) {
-                _currentRowNum++;
+        boolean prefetch = false;
+        boolean canFetch;
+        CompletableFuture<CursorImpl> fetchFuture = null;
+        // don't call the connection while holding the lock, as its receiving thread needs it to add rows
+        synchronized (this) {
+            if (moveInBuffer(forward)) {
+                prefetch = forward && isBelowPrefetchThreshold();
+                canFetch = false;
+            } else {
+                // TODO: somehow remember with scrollable cursors if there is more data or not
+                // TODO: enable support for fetching more results backwards. But we need to provide a position for this
+                canFetch = autofetch && forward && (_hasMoreData || _scrollable);
+                // a prefetch that already finished delivered its rows before the buffer was exhausted
+                if (canFetch) {
+                    if (_pendingFetch != null && (!_pendingFetch.isDone() || _pendingFetch.isCompletedExceptionally())) {
+                        fetchFuture = _pendingFetch;
+                    }
+                    _pendingFetch = null;
+                }
             }
-            int offset = forward ? 1 : 0;
-            _iterator = _data.listIterator(_currentRowNum + offset);
-            _iteratorDirty = false;
         }
-
-        if (forward && _iterator.hasNext()) {
-            _currentRowDecoded.clear();
-            _currentRow = _iterator.next();
-            _currentRowNum++;
-            return true;
-        } else if (!forward && _iterator.hasPrevious()) {
-            _currentRowDecoded.clear();
-            _currentRow = _iterator.previous();
-            _currentRowNum--;
+        if (prefetch) {
+            _insertingBefore = false;
+            _pendingFetch = getConnection().fetch(this, true);
             return true;
         }
-        // TODO: somehow remember with scrollable cursors if there is more data or not
-        // TODO: enable support for fetching more results backwards. But we need to provide a position for this
-        if (!autofetch || !forward || (!_hasMoreData && !_scrollable)) {
+        if (!canFetch) {
             return false;
         }
 
-        // otherwise fetch more data
-        fetch(forward);
+        // otherwise fetch more data or wait for the prefetched data
+        _insertingBefore = !forward;
+        if (fetchFuture == null) {
+            // TODO: compute and pass the position to fetch from!
+            fetchFuture = getConnection().fetch(this, forward);
+        }
+        awaitFetch(fetchFuture);
         return scrollRow(forward, false);
     }
 
-    private void fetch(boolean forward) throws SqpException {
-        _insertingBefore = !forward;
-        // TODO: compute and pass the position to fetch from!
-        CompletableFuture<CursorImpl> future = getConnection().fetch(this, forward);
+    private boolean moveInBuffer(boolean forward) {
+        List<Object> row = forward ? _data.next() : _data.previous();
+        if (row == null) {
+            return false;
+        }
+        _currentRow = new RowImpl(getConnection(), _columns, _columnIndexLookup, row);
+        return true;
+    }
+
+    private boolean isBelowPrefetchThreshold() {
+        // keep a failed prefetch, so the error is reported once the buffer is exhausted
+        if (!_hasMoreData || _pendingFetch != null && (!_pendingFetch.isDone() || _pendingFetch.isCompletedExceptionally())) {
+            return false;
+        }
+        int threshold = getConnection().getConfig().getCursorPrefetchThreshold();
+        return threshold > 0 && _data.getNumUnread() < threshold;
+    }
+
+    private void awaitFetch(CompletableFuture<CursorImpl> future) throws SqpException {
         Throwable error;
         try {
             future.get();
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.Publisher;
+import io.sqp.client.Row;
+import io.sqp.client.Subscriber;
+import io.sqp.client.Subscription;
+import io.sqp.client.UpdateResult;
+import io.sqp.client.exceptions.UnexpectedMessageException;
+import io.sqp.client.exceptions.UnexpectedResultTypeException;
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.exceptions.DecodingException;
+import io.sqp.core.messages.CursorDescriptionMessage;
+import io.sqp.core.messages.EndOfDataMessage;
+import io.sqp.core.messages.ExecuteCompleteMessage;
+import io.sqp.core.messages.RowDataMessage;
+import io.sqp.core.messages.SqpMessage;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Publishes the rows of a query on demand. The query is sent when the subscriber requests the first rows and
+ * each further request is translated into a fetch of the requested number of rows. In push mode the remaining
+ * rows are streamed by the server instead, and further requests are granted to it as credit. Rows are delivered
+ * from the connection's receiving thread. The publisher supports a single subscriber.
+ * @author Stefan Burnicki
+ */
+public class CursorPublisher implements Publisher<Row>, Subscription {
+    private SqpConnectionImpl _connection;
+    private QueryStarter _starter;
+    private boolean _autoFetch;
+    private boolean _push;
+    private Subscriber<? super Row> _subscriber;
+    private ArrayDeque<Row> _buffer;
+    private long _demand;
+    private String _cursorId;
+    private List<ColumnMetadata> _columns;
+    private Map<String, Integer> _columnIndexLookup;
+    private boolean _started;
+    private boolean _fetching;
+    private boolean _streaming;
+    private boolean _hasMoreData;
+    private boolean _terminated;
+    private boolean _draining;
+    private boolean _drainAgain;
+
+    /**
+     * @param connection The connection to fetch rows with
+     * @param starter Sends the query with the handler for its response
+     * @param autoFetch Whether the query's response already includes the first rows
+     * @param push Whether the rows after the query's response are pushed by the server
+     */
+    public CursorPublisher(SqpConnectionImpl connection, QueryStarter starter, boolean autoFetch, boolean push) {
+        _connection = connection;
+        _starter = starter;
+        _autoFetch = autoFetch;
+        _push = push;
+        _buffer = new ArrayDeque<>();
+        _hasMoreData = true;
+    }
+
+    /**
+     * @param error The error to signal
+     * @return A publisher that signals the error to its subscriber
+     */
+    public static Publisher<Row> failed(Throwable error) {
+        return subscriber -> {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(error);
+        };
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Row> subscriber) {
+        synchronized (this) {
+            if (_subscriber == null) {
+                _subscriber = subscriber;
+                subscriber = null;
+            }
+        }
+        if (subscriber != null) {
+            subscriber.onSubscribe(this);
+            subscriber.onError(new IllegalStateException("The rows of a query can only be published to one subscriber."));
+            return;
+        }
+        _subscriber.onSubscribe(this);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("The number of requested rows must be positive."));
+            return;
+        }
+        String streamedCursorId = null;
+        synchronized (this) {
+            _demand = _demand + n < 0 ? Long.MAX_VALUE : _demand + n;
+            // the server already got credit for the previous demand
+            if (_streaming && !_terminated) {
+                streamedCursorId = _cursorId;
+            }
+        }
+        if (streamedCursorId != null) {
+            _connection.grantStreamCredit(streamedCursorId, (int) Math.min(n, Integer.MAX_VALUE));
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        String cursorId;
+        boolean streaming;
+        synchronized (this) {
+            if (_terminated) {
+                return;
+            }
+            _terminated = true;
+            _buffer.clear();
+            cursorId = _cursorId;
+            streaming = _streaming;
+        }
+        // the server stops pushing rows of this cursor, so it can be released afterwards
+        if (streaming) {
+            _connection.stopStream(cursorId);
+        }
+        // if the cursor isn't described yet, it's released as soon as it is
+        if (cursorId != null) {
+            _connection.releaseCursor(cursorId);
+        }
+    }
+
+    private void drain() {
+        synchronized (this) {
+            if (_draining) {
+                _drainAgain = true;
+                return;
+            }
+            _draining = true;
+        }
+        while (true) {
+            Row row = null;
+            boolean complete = false;
+            boolean start = false;
+            boolean stream = false;
+            int maxFetch = 0;
+            synchronized (this) {
+                if (_terminated) {
+                    _draining = false;
+                    return;
+                }
+                if (_demand > 0 && !_buffer.isEmpty()) {
+                    row = _buffer.poll();
+                    if (_demand != Long.MAX_VALUE) {
+                        _demand--;
+                    }
+                } else if (_buffer.isEmpty() && _cursorId != null && !_hasMoreData && !_fetching) {
+                    _terminated = true;
+                    complete = true;
+                } else if (_demand > 0 && !_fetching && _hasMoreData) {
+                    _fetching = true;
+                    start = !_started;
+                    _started = true;
+                    // the buffer is empty, so the whole demand is granted as credit
+                    stream = !start && _push;
+                    _streaming = stream;
+                    maxFetch = stream ? getCredit() : getMaxFetch();
+                } else if (_drainAgain) {
+                    _drainAgain = false;
+                    continue;
+                } else {
+                    _draining = false;
+                    return;
+                }
+            }
+            if (row != null) {
+                try {
+                    _subscriber.onNext(row);
+                } catch (RuntimeException e) {
+                    cancel();
+                    _subscriber.onError(e);
+                }
+            } else if (complete) {
+                _connection.releaseCursor(_cursorId);
+                _subscriber.onComplete();
+            } else if (start) {
+                _starter.start(maxFetch, new CursorResponseHandler(true));
+            } else if (stream) {
+                _connection.stream(_cursorId, maxFetch, new CursorResponseHandler(false));
+            } else {
+                _connection.fetch(_cursorId, maxFetch, new CursorResponseHandler(false));
+            }
+        }
+    }
+
+    private int getMaxFetch() {
+        int configuredMaxFetch = _connection.getConfig().getCursorMaxFetch();
+        if (_demand == Long.MAX_VALUE) {
+            return configuredMaxFetch;
+        }
+        int maxFetch = (int) Math.min(_demand, Integer.MAX_VALUE);
+        return configuredMaxFetch > 0 ? Math.min(maxFetch, configuredMaxFetch) : maxFetch;
+    }
+
+    private int getCredit() {
+        return _demand == Long.MAX_VALUE ? -1 : (int) Math.min(_demand, Integer.MAX_VALUE);
+    }
+
+    private void described(String cursorId, List<ColumnMetadata> columns) {
+        boolean cancelled;
+        synchronized (this) {
+            _cursorId = cursorId;
+            _columns = columns;
+            _columnIndexLookup = RowImpl.createColumnIndexLookup(columns);
+            cancelled = _terminated;
+        }
+        if (cancelled) {
+            _connection.releaseCursor(cursorId);
+        }
+    }
+
+    private void received(List<Object> values) {
+        synchronized (this) {
+            if (_terminated) {
+                return;
+            }
+            _buffer.add(new RowImpl(_connection, _columns, _columnIndexLookup, values));
+        }
+        drain();
+    }
+
+    private void fetched(boolean hasMoreData) {
+        synchronized (this) {
+            _fetching = false;
+            _streaming = false;
+            _hasMoreData = hasMoreData;
+        }
+        drain();
+    }
+
+    private void fail(Throwable error) {
+        synchronized (this) {
+            if (_terminated) {
+                return;
+            }
+        }
+        cancel();
+        _subscriber.onError(error instanceof CompletionException ? error.getCause() : error);
+    }
+
+    @FunctionalInterface
+    public interface QueryStarter {
+        void start(int maxFetch, ResponseHandler<Void> responseHandler);
+    }
+
+    private class CursorResponseHandler extends ResponseHandler<Void> {
+        private boolean _expectsCursor;
+
+        public CursorResponseHandler(boolean expectsCursor) {
+            super(new CompletableFuture<>());
+            _expectsCursor = expectsCursor;
+            getAffectedFuture().whenComplete((v, error) -> {
+                if (error != null) {
+                    CursorPublisher.this.fail(error);
+                }
+            });
+        }
+
+        @Override
+        public boolean handle(SqpMessage message) throws UnexpectedMessageException, DecodingException {
+            switch (message.getType()) {
+                case ReadyMessage:
+                    return false; // just ignore them
+
+                case CursorDescriptionMessage:
+                    if (!_expectsCursor) {
+                        throw new UnexpectedMessageException("retrieving result data", message);
+                    }
+                    _expectsCursor = false;
+                    CursorDescriptionMessage cursorMsg = message.secureCast();
+                    described(cursorMsg.getCursorId(), cursorMsg.getColumns());
+                    if (_autoFetch) {
+                        return false;
+                    }
+                    succeed(null);
+                    fetched(true);
+                    return true;
+
+                case ExecuteCompleteMessage:
+                    if (!_expectsCursor) {
+                        throw new UnexpectedMessageException("retrieving result data", message);
+                    }
+                    ExecuteCompleteMessage executeCompleteMessage = message.secureCast();
+                    fail(new UnexpectedResultTypeException(
+                            new UpdateResult(executeCompleteMessage.getAffectedRows()), Row.class));
+                    return true;
+
+                case RowDataMessage:
+                    if (_expectsCursor) {
+                        throw new UnexpectedMessageException("waiting for a cursor", message);
+                    }
+                    RowDataMessage dataMsg = message.secureCast();
+                    received(dataMsg.getData());
+                    return false;
+
+                case EndOfDataMessage:
+                    if (_expectsCursor) {
+                        throw new UnexpectedMessageException("waiting for a cursor", message);
+                    }
+                    EndOfDataMessage eodMsg = message.secureCast();
+                    succeed(null);
+                    fetched(eodMsg.hasMore());
+                    return true;
+
+                default:
+                    throw new UnexpectedMessageException("waiting for result data", message);
+            }
+        }
+    }
+}
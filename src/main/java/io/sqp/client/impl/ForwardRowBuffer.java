@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * A queue of rows for forward-only cursors. Rows are stored in fixed-size chunks and released as soon as
+ * they are consumed, so the memory used is bound by the number of unread rows.
+ * @author Stefan Burnicki
+ */
+class ForwardRowBuffer implements RowBuffer {
+    private ArrayDeque<Object[]> _chunks;
+    private int _headIndex;
+    private int _tailIndex;
+    private int _numUnread;
+
+    public ForwardRowBuffer() {
+        _chunks = new ArrayDeque<>();
+    }
+
+    @Override
+    public void append(List<Object> row) {
+        if (_chunks.isEmpty() || _tailIndex == CHUNK_SIZE) {
+            _chunks.addLast(new Object[CHUNK_SIZE]);
+            _tailIndex = 0;
+        }
+        _chunks.peekLast()[_tailIndex++] = row;
+        _numUnread++;
+    }
+
+    @Override
+    public void prepend(List<Object> row) {
+        throw new UnsupportedOperationException("Rows of a forward-only cursor cannot be prepended.");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object> next() {
+        if (_numUnread == 0) {
+            return null;
+        }
+        Object[] head = _chunks.peekFirst();
+        List<Object> row = (List<Object>) head[_headIndex];
+        head[_headIndex++] = null;
+        _numUnread--;
+        if (_headIndex == CHUNK_SIZE || _numUnread == 0) {
+            // the chunk is either consumed or empty, so it's not needed anymore
+            _chunks.pollFirst();
+            _headIndex = 0;
+            if (_numUnread == 0) {
+                _chunks.clear();
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public List<Object> previous() {
+        return null;
+    }
+
+    @Override
+    public int getNumUnread() {
+        return _numUnread;
+    }
+}
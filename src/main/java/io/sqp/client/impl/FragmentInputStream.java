@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.function.IntConsumer;
+
+/**
+ * An input stream of a single message that is fed with its fragments as they arrive. Reading blocks until
+ * the next fragment arrived or the message is complete. Consumed fragments are released immediately.
+ * The number of consumed bytes can be reported, so the sender can be granted credit for them.
+ * @author Stefan Burnicki
+ */
+public class FragmentInputStream extends InputStream {
+    private ArrayDeque<byte[]> _fragments;
+    private byte[] _current;
+    private int _position;
+    private boolean _complete;
+    private boolean _closed;
+    private IOException _error;
+    private IntConsumer _consumedHandler;
+
+    public FragmentInputStream() {
+        this(null);
+    }
+
+    /**
+     * @param consumedHandler Called with the number of bytes that were read or discarded, outside of the lock
+     *                        of this stream. Might be null.
+     */
+    public FragmentInputStream(IntConsumer consumedHandler) {
+        _fragments = new ArrayDeque<>();
+        _consumedHandler = consumedHandler;
+    }
+
+    public void addFragment(byte[] fragment) {
+        synchronized (this) {
+            if (fragment.length == 0) {
+                return;
+            }
+            if (!_closed) {
+                _fragments.add(fragment);
+                notifyAll();
+                return;
+            }
+        }
+        // nobody reads a closed stream anymore, so the fragment is consumed right away
+        consumed(fragment.length);
+    }
+
+    public synchronized void complete() {
+        _complete = true;
+        notifyAll();
+    }
+
+    public synchronized void fail(IOException error) {
+        _error = error;
+        _complete = true;
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value;
+        synchronized (this) {
+            if (!awaitData()) {
+                return -1;
+            }
+            // don't forget to mask, otherwise Java's cast to int will cast it signed
+            value = 0xFF & _current[_position++];
+        }
+        consumed(1);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int num;
+        synchronized (this) {
+            if (!awaitData()) {
+                return -1;
+            }
+            // only return what's there, so the reader can process it before the next fragment arrives
+            num = Math.min(length, _current.length - _position);
+            System.arraycopy(_current, _position, buffer, offset, num);
+            _position += num;
+        }
+        consumed(num);
+        return num;
+    }
+
+    /**
+     * Discards the data that wasn't read yet, and any that still arrives.
+     */
+    @Override
+    public void close() {
+        int discarded;
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            discarded = _current == null ? 0 : _current.length - _position;
+            for (byte[] fragment : _fragments) {
+                discarded += fragment.length;
+            }
+            _fragments.clear();
+            _current = null;
+            notifyAll();
+        }
+        consumed(discarded);
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        int available = _current == null ? 0 : _current.length - _position;
+        for (byte[] fragment : _fragments) {
+            available += fragment.length;
+        }
+        return available;
+    }
+
+    private void consumed(int numBytes) {
+        if (_consumedHandler != null && numBytes > 0) {
+            _consumedHandler.accept(numBytes);
+        }
+    }
+
+    private boolean awaitData() throws IOException {
+        if (_closed) {
+            return false;
+        }
+        while (_current == null || _position >= _current.length) {
+            _current = _fragments.poll();
+            _position = 0;
+            if (_current != null) {
+                return true;
+            }
+            if (_error != null) {
+                throw _error;
+            }
+            if (_complete || _closed) {
+                return false;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for message data.");
+            }
+        }
+        return true;
+    }
+}
@@ -16,73 +16,145 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package io.sqp.client.impl;
 
+import io.sqp.client.ClientConfig;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
 /**
+ * Streams a LOB from the server in ranges. For LOBs of known size, further ranges are requested while the
+ * current one is read, so the download isn't limited by the round trip time. The number of ranges requested
+ * ahead is limited by the configuration, which also bounds the memory of the received data.
  * @author Stefan Burnicki
  */
 public class LobStream extends InputStream {
     private SqpConnectionImpl _connection;
     private String _lobId;
     private long _lobSize;
+    private int _rangeSize;
+    private int _readAhead;
     private long _absolutePosition;
-    private int _bufferPosition;
-    private byte[] _buffer;
+    private long _requestPosition;
+    private ArrayDeque<Range> _pendingRanges;
+    private InputStream _range;
+    private long _numRangeBytesRead;
 
     public LobStream(SqpConnectionImpl connection, String lobId, long lobSize) {
         _lobId = lobId;
         _connection = connection;
         _lobSize = lobSize;
+        ClientConfig config = connection.getConfig();
+        _rangeSize = config.getLobBufferSize();
+        // without a known size, only an empty range tells the end of the LOB. So don't request beyond it
+        _readAhead = lobSize < 0 ? 0 : Math.max(0, config.getLobReadAhead());
+        _pendingRanges = new ArrayDeque<>(Math.max(1, _readAhead));
     }
 
     @Override
     public int read() throws IOException {
-        if (_buffer == null || _bufferPosition >= _buffer.length) {
-            _buffer = getData(_absolutePosition);
-            _bufferPosition = 0;
-        }
-        if (_bufferPosition >= _buffer.length || _absolutePosition > _lobSize) {
+        byte[] buffer = new byte[1];
+        if (read(buffer, 0, 1) < 0) {
             return -1;
         }
-        _bufferPosition++;
-        _absolutePosition++;
         // don't forget to mask, otherwise Java's cast to int will cast it signed
-        return (0xFF & _buffer[_bufferPosition - 1]);
+        return 0xFF & buffer[0];
     }
 
-    private byte[] getData(long absPosition) throws IOException {
-        if (_lobSize >= 0 && absPosition >= _lobSize) {
-            return new byte[0];
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (_lobSize < 0 || _absolutePosition < _lobSize) {
+            if (_range == null) {
+                _range = nextRange();
+                _numRangeBytesRead = 0;
+            }
+            int num = _range.read(buffer, offset, length);
+            if (num > 0) {
+                _numRangeBytesRead += num;
+                _absolutePosition += num;
+                return num;
+            }
+            // the range is consumed. If it was empty, we reached the end of the LOB
+            boolean wasEmpty = _numRangeBytesRead == 0;
+            _range = null;
+            if (wasEmpty) {
+                break;
+            }
         }
+        return -1;
+    }
+
+    private InputStream nextRange() throws IOException {
+        // Ranges requested ahead are only valid if the previous ones were complete and nothing was skipped.
+        // Otherwise they are dropped and the requests restart at the current position
+        Range next = _pendingRanges.poll();
+        if (next == null || next.Position != _absolutePosition) {
+            _pendingRanges.clear();
+            next = new Range(_absolutePosition, _connection.getLob(_lobId, _absolutePosition, _rangeSize));
+            _requestPosition = _absolutePosition + _rangeSize;
+        }
+        requestRanges();
         try {
-            return _connection.getLob(_lobId, absPosition).join();
+            return next.Data.join();
         } catch (CompletionException e) {
+            _pendingRanges.clear();
             throw new IOException("Failed to get new LOB data: " + e.getMessage(), e);
         }
     }
 
+    private void requestRanges() {
+        while (_pendingRanges.size() < _readAhead && _requestPosition < _lobSize) {
+            _pendingRanges.add(new Range(_requestPosition, _connection.getLob(_lobId, _requestPosition, _rangeSize)));
+            _requestPosition += _rangeSize;
+        }
+    }
+
     @Override
     public long skip(long l) throws IOException {
+        if (l <= 0) {
+            return 0;
+        }
         long newPos = _absolutePosition + l;
-        if (newPos > _lobSize) {
+        if (_lobSize >= 0 && newPos > _lobSize) {
             l = _lobSize - _absolutePosition;
         }
+        // skip within the current range if possible, otherwise the next range is requested at the new position
+        long skipped = _range == null ? 0 : _range.skip(l);
+        if (skipped < l) {
+            _range = null;
+        } else {
+            _numRangeBytesRead += skipped;
+        }
         _absolutePosition += l;
-        _bufferPosition += l;
         return l;
     }
 
     @Override
     public void close() throws IOException {
+        // the outstanding ranges are still received, but not read anymore
+        _pendingRanges.clear();
+        _range = null;
         // TODO: one could implement a method to close the actual LOB on the server
     }
 
     public long getLobSize() {
         return _lobSize;
     }
+
+    private class Range {
+        public final long Position;
+        public final CompletableFuture<InputStream> Data;
+
+        public Range(long position, CompletableFuture<InputStream> data) {
+            Position = position;
+            Data = data;
+        }
+    }
 }
@@ -22,6 +22,7 @@ package io.sqp.client.impl;
 import io.sqp.client.exceptions.ConnectionException;
 import io.sqp.client.exceptions.ErrorResponseException;
 import io.sqp.client.exceptions.UnexpectedMessageException;
+import io.sqp.core.ChannelHeader;
 import io.sqp.core.DataFormat;
 import io.sqp.core.jackson.JacksonMessageDecoder;
 import io.sqp.core.messages.ErrorMessage;
@@ -32,16 +33,20 @@ import io.sqp.core.exceptions.SqpException;
 import io.sqp.core.messages.MessageType;
 
 import javax.websocket.Session;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Receives, decodes and handles the messages of a connection. On a multiplexed websocket, the server may send
+ * at most {@link ChannelHeader#INITIAL_CREDIT} bytes more than this handler granted credit for, so the buffered
+ * data of a channel is bounded. Credit is granted as the messages and LOBs are read.
  * @author Stefan Burnicki
  */
 public class MessageHandler {
@@ -49,29 +54,70 @@ public class MessageHandler {
     private MessageDecoder _messageDecoder;
     private ResponseHandlerQueue _responseHandlerQueue;
     private boolean _waitingForLob;
-    private CompletableFuture<byte[]> _lobConsumer;
+    private CompletableFuture<InputStream> _lobConsumer;
     private Logger _logger;
+    private final ExecutorService _decodingService;
+    private final Object _receiveLock;
+    private FragmentInputStream _currentMessage;
+    private String _textRemainder;
+    private final LongConsumer _creditSender;
+    private final Object _creditLock;
+    private long _receivedBytes;
+    private long _consumedBytes;
+    private long _grantedBytes;
 
-    public MessageHandler(SqpConnectionImpl connection, Session session, Logger logger) {
+    public MessageHandler(SqpConnectionImpl connection, Logger logger) {
+        this(connection, logger, null);
+    }
+
+    /**
+     * @param connection The connection to handle the messages for
+     * @param logger The logger
+     * @param creditSender Grants the server credit for the given number of bytes, or null if the server doesn't
+     *                     need credit, as the websocket isn't multiplexed
+     */
+    public MessageHandler(SqpConnectionImpl connection, Logger logger, LongConsumer creditSender) {
         _connection = connection;
+        _creditSender = creditSender;
+        _creditLock = new Object();
         _logger = logger;
         _messageDecoder = new JacksonMessageDecoder();
         _responseHandlerQueue = new ResponseHandlerQueue();
-        session.addMessageHandler(Reader.class, this::receiveStrMessage);
-        session.addMessageHandler(byte[].class, this::receiveBinMessage);
+        _decodingService = Executors.newSingleThreadExecutor(); // a single thread keeps the order of the messages
+        _receiveLock = new Object();
+        _textRemainder = "";
         _waitingForLob = false;
         _lobConsumer = null;
     }
 
-    synchronized void close() {
-        ResponseHandler handler;
-        while ((handler = _responseHandlerQueue.current()) != null) {
-            handler.fail(new ConnectionException("Connection closed."));
-            _responseHandlerQueue.proceed();
+    /**
+     * Receives the messages of a websocket that isn't multiplexed. Otherwise the fragments of the channel's
+     * messages are passed in by the multiplexer.
+     * @param session The websocket session
+     */
+    void listen(Session session) {
+        session.addMessageHandler(String.class, this::receiveTextFragment);
+        session.addMessageHandler(byte[].class, this::receiveBinFragment);
+    }
+
+    void close() {
+        synchronized (_receiveLock) {
+            if (_currentMessage != null) {
+                _currentMessage.fail(new IOException("Connection closed."));
+                _currentMessage = null;
+            }
         }
+        synchronized (this) {
+            ResponseHandler handler;
+            while ((handler = _responseHandlerQueue.current()) != null) {
+                handler.fail(new ConnectionException("Connection closed."));
+                _responseHandlerQueue.proceed();
+            }
+        }
+        _decodingService.shutdown();
     }
 
-    synchronized void setLobConsumer(CompletableFuture<byte[]> lobConsumer) {
+    synchronized void setLobConsumer(CompletableFuture<InputStream> lobConsumer) {
         _lobConsumer = lobConsumer;
     }
 
@@ -79,48 +125,109 @@ public class MessageHandler {
         _responseHandlerQueue.add(responseHandler);
     }
 
-    private synchronized void receiveStrMessage(Reader msgReader) {
-        // we need to synchronize decoding & message handling, otherwise the order of the messages
-        // might mix up. Example: If this method is called with a long message first, and then with a short message
-        // from a different thread (that is probably the case), we might end up with the second message being
-        // decoded and handled before the first.
-        // Synchronizing the whole block should assure that the first message blocks message handling until the first
-        // message is handled properly.
-        try {
-            if (_waitingForLob) {
-                receiveLob(readerToByteArray(msgReader));
-                return;
+    void receiveTextFragment(String fragment, boolean last) {
+        boolean withinCredit;
+        synchronized (_receiveLock) {
+            // a surrogate pair might be split between fragments, so keep the high surrogate for the next one
+            String text = _textRemainder.isEmpty() ? fragment : _textRemainder + fragment;
+            _textRemainder = "";
+            int length = text.length();
+            if (!last && length > 0 && Character.isHighSurrogate(text.charAt(length - 1))) {
+                _textRemainder = text.substring(length - 1);
+                text = text.substring(0, length - 1);
+            }
+            withinCredit = receiveFragment(text.getBytes(StandardCharsets.UTF_8), last, DataFormat.Text);
+        }
+        // don't hold the lock while handling the error, as it closes the connection
+        if (!withinCredit) {
+            handleCreditExceeded();
+        }
+    }
+
+    void receiveBinFragment(byte[] fragment, boolean last) {
+        if (!receiveFragment(fragment, last, DataFormat.Binary)) {
+            handleCreditExceeded();
+        }
+    }
+
+    private boolean receiveFragment(byte[] fragment, boolean last, DataFormat format) {
+        // Messages are decoded while their fragments arrive, so only the fragments that weren't decoded yet
+        // need to be kept in memory. The single decoding thread assures the messages are handled in order.
+        boolean withinCredit = _creditSender == null || takeCredit(fragment.length);
+        synchronized (_receiveLock) {
+            if (_currentMessage == null) {
+                FragmentInputStream message = _creditSender == null ? new FragmentInputStream()
+                                                                    : new FragmentInputStream(this::consumed);
+                _currentMessage = message;
+                _decodingService.execute(() -> handleMessage(message, format));
+            }
+            _currentMessage.addFragment(fragment);
+            if (last) {
+                _currentMessage.complete();
+                _currentMessage = null;
+            }
+        }
+        return withinCredit;
+    }
+
+    private boolean takeCredit(int numBytes) {
+        synchronized (_creditLock) {
+            _receivedBytes += numBytes;
+            return _receivedBytes - _grantedBytes <= ChannelHeader.INITIAL_CREDIT;
+        }
+    }
+
+    private void consumed(int numBytes) {
+        long credit = 0;
+        synchronized (_creditLock) {
+            _consumedBytes += numBytes;
+            // grant in larger steps, so there aren't too many credit messages
+            if (_consumedBytes - _grantedBytes >= ChannelHeader.INITIAL_CREDIT / 2) {
+                credit = _consumedBytes - _grantedBytes;
+                _grantedBytes = _consumedBytes;
             }
-            handleSqpMessage(_messageDecoder.decode(msgReader));
-        } catch (DecodingException e) {
-            _connection.handleError(e);
         }
+        if (credit > 0) {
+            _creditSender.accept(credit);
+        }
+    }
+
+    private void handleCreditExceeded() {
+        _connection.handleError(new ConnectionException(
+                "The server sent more data than the channel granted credit for."));
     }
 
-    private synchronized void receiveBinMessage(byte[] bytes) {
-        // TODO: there seems to be a bug in tyrus InputStream implementation with binary frames which results in
-        // unforeseeable message orders and partial messages. This doesn't happen when we get the whole buffer at once.
-        // So we do this until the bug is fixed. Then we should switch back to the InputStream implementation of
-        // receiveBinMessage
+    private void handleMessage(FragmentInputStream message, DataFormat format) {
+        // don't hold the lock while decoding, as decoding waits for further fragments
         try {
             if (_waitingForLob) {
-                receiveLob(bytes);
+                receiveLob(message);
                 return;
             }
-            InputStream byteStream = new ByteArrayInputStream(bytes);
-            handleSqpMessage(_messageDecoder.decode(DataFormat.Binary, byteStream));
+            SqpMessage msg;
+            try {
+                msg = _messageDecoder.decode(format, message);
+            } finally {
+                // the rest of the message isn't needed, but it's consumed when it arrives
+                message.close();
+            }
+            synchronized (this) {
+                handleSqpMessage(msg);
+            }
         } catch (DecodingException e) {
             _connection.handleError(e);
         }
     }
 
-    private void receiveLob(byte[] bytes) {
+    private synchronized void receiveLob(InputStream data) {
         _waitingForLob = false;
         if (_lobConsumer == null) {
             _logger.log(Level.WARNING, "Got an announced LOB but didn't have a consumer");
             return;
         }
-        _lobConsumer.complete(bytes);
+        // the consumer reads the LOB data while it's still arriving
+        _lobConsumer.complete(data);
+        _lobConsumer = null;
     }
 
     private void handleSqpMessage(SqpMessage msg) {
@@ -178,19 +285,4 @@ public class MessageHandler {
         _responseHandlerQueue.proceed();
         return true;
     }
-
-    public byte[] readerToByteArray(Reader reader) throws DecodingException {
-        char[] charBuffer = new char[100 * 1024];
-        StringBuilder builder = new StringBuilder();
-        int numCharsRead;
-        try {
-            while ((numCharsRead = reader.read(charBuffer, 0, charBuffer.length)) != -1) {
-                builder.append(charBuffer, 0, numCharsRead);
-            }
-            reader.close();
-            return builder.toString().getBytes(StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new DecodingException("Failed to decode string message into byte array", e);
-        }
-    }
 }
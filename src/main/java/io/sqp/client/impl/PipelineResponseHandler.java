@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.exceptions.OperationSkippedException;
+import io.sqp.client.exceptions.UnexpectedMessageException;
+import io.sqp.core.exceptions.DecodingException;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.messages.SqpMessage;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Passes the responses of a pipeline to the handlers of its operations, one after another. If an operation fails,
+ * the remaining ones were skipped by the server, so their handlers fail, too.
+ * @author Stefan Burnicki
+ */
+public class PipelineResponseHandler extends ResponseHandler<Void> {
+    private ArrayDeque<ResponseHandler> _handlers;
+
+    public PipelineResponseHandler(List<ResponseHandler> handlers) {
+        super(new CompletableFuture<>());
+        _handlers = new ArrayDeque<>(handlers);
+    }
+
+    @Override
+    public boolean handle(SqpMessage message) throws UnexpectedMessageException, DecodingException {
+        ResponseHandler current = _handlers.peek();
+        if (current == null) {
+            throw new UnexpectedMessageException("waiting for pipelined results", message);
+        }
+        if (!current.handle(message)) {
+            return false;
+        }
+        _handlers.poll();
+        if (!_handlers.isEmpty()) {
+            return false;
+        }
+        succeed(null);
+        return true;
+    }
+
+    @Override
+    public void fail(SqpException error) {
+        ResponseHandler current = _handlers.poll();
+        if (current != null) {
+            current.fail(error);
+        }
+        SqpException skipped = new OperationSkippedException(error);
+        while ((current = _handlers.poll()) != null) {
+            current.fail(skipped);
+        }
+        super.fail(error);
+    }
+}
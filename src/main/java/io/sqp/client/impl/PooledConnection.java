@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.Cursor;
+import io.sqp.client.PreparedStatement;
+import io.sqp.client.Publisher;
+import io.sqp.client.QueryResult;
+import io.sqp.client.Row;
+import io.sqp.client.SqpConnection;
+import io.sqp.client.exceptions.ConnectionException;
+import io.sqp.core.InformationSubject;
+import io.sqp.core.exceptions.InvalidOperationException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A connection borrowed from a {@link SqpDataSourceImpl}. Closing it returns the underlying connection to the pool,
+ * after which this object cannot be used anymore.
+ * @author Stefan Burnicki
+ */
+public class PooledConnection implements SqpConnection {
+    private SqpDataSourceImpl _dataSource;
+    private SqpConnectionImpl _connection;
+
+    public PooledConnection(SqpDataSourceImpl dataSource, SqpConnectionImpl connection) {
+        _dataSource = dataSource;
+        _connection = connection;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (_connection == null) {
+            return;
+        }
+        _dataSource.giveBack(_connection);
+        _connection = null;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return _connection != null && _connection.isConnected();
+    }
+
+    @Override
+    public <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, boolean scrollable, String query) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.execute(resultClass, scrollable, query);
+    }
+
+    @Override
+    public CompletableFuture<Cursor> executeCachedSelect(String query) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.executeCachedSelect(query);
+    }
+
+    @Override
+    public Publisher<Row> publishSelect(String query) {
+        SqpConnectionImpl connection = getConnection();
+        if (connection == null) {
+            return CursorPublisher.failed(new ConnectionException("The connection was returned to its data source."));
+        }
+        return connection.publishSelect(query);
+    }
+
+    @Override
+    public Publisher<Row> streamSelect(String query) {
+        SqpConnectionImpl connection = getConnection();
+        if (connection == null) {
+            return CursorPublisher.failed(new ConnectionException("The connection was returned to its data source."));
+        }
+        return connection.streamSelect(query);
+    }
+
+    @Override
+    public PreparedStatement prepare(String query) {
+        SqpConnectionImpl connection = getConnection();
+        if (connection == null) {
+            throw new IllegalStateException("The connection was returned to its data source.");
+        }
+        return connection.prepare(query);
+    }
+
+    @Override
+    public PreparedStatement prepareImplicitly(String query) {
+        SqpConnectionImpl connection = getConnection();
+        if (connection == null) {
+            throw new IllegalStateException("The connection was returned to its data source.");
+        }
+        return connection.prepareImplicitly(query);
+    }
+
+    @Override
+    public CompletableFuture<SqpConnection> connect(String host, int port, String path, String database) {
+        CompletableFuture<SqpConnection> future = new CompletableFuture<>();
+        future.completeExceptionally(new InvalidOperationException("Pooled connections are connected by their data source."));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> setAutoCommit(boolean useAutoCommit) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.setAutoCommit(useAutoCommit);
+    }
+
+    @Override
+    public boolean getAutoCommit() {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null || connection.getAutoCommit();
+    }
+
+    @Override
+    public CompletableFuture<Void> pipeline(Consumer<SqpConnection> operations) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.pipeline(operations);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancel() {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.cancel();
+    }
+
+    @Override
+    public CompletableFuture<Void> commit() {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.commit();
+    }
+
+    @Override
+    public CompletableFuture<Void> rollback() {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.rollback();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getInformation(Class<T> infoType, InformationSubject subject) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.getInformation(infoType, subject);
+    }
+
+    @Override
+    public CompletableFuture<String> getTypeSchema(String typeName) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.getTypeSchema(typeName);
+    }
+
+    @Override
+    public CompletableFuture<Void> allowReceiveNativeTypes(String... allowedTypes) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.allowReceiveNativeTypes(allowedTypes);
+    }
+
+    @Override
+    public CompletableFuture<String> registerTypeMapping(String name, String schema, String... keywords) {
+        SqpConnectionImpl connection = getConnection();
+        return connection == null ? returnedFuture() : connection.registerTypeMapping(name, schema, keywords);
+    }
+
+    private synchronized SqpConnectionImpl getConnection() {
+        return _connection;
+    }
+
+    private <T> CompletableFuture<T> returnedFuture() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new ConnectionException("The connection was returned to its data source."));
+        return future;
+    }
+}
@@ -19,9 +19,14 @@
 
 package io.sqp.client.impl;
 
+import io.sqp.client.ColumnBatch;
+import io.sqp.client.UpdateResult;
+import io.sqp.core.exceptions.InvalidOperationException;
 import io.sqp.core.types.*;
 import io.sqp.client.PreparedStatement;
+import io.sqp.client.Publisher;
 import io.sqp.client.QueryResult;
+import io.sqp.client.Row;
 import io.sqp.core.exceptions.SqpException;
 
 import java.io.InputStream;
@@ -48,15 +53,28 @@ public class PreparedStatementImpl extends CloseableServerResource implements Pr
     private List<List<SqpValue>> _parameterBatches;
     private Map<Integer, SqpValue> _currentParameterBatch;
     private LobManager _lobManager;
+    private int _timeout;
+    private String _query; // only set if the server prepares the statement implicitly
 
     public PreparedStatementImpl(SqpConnectionImpl connection, LobManager lobManager, String id, CompletableFuture startFuture) {
+        this(connection, lobManager, id, startFuture, null);
+    }
+
+    public PreparedStatementImpl(SqpConnectionImpl connection, LobManager lobManager, String id, String query) {
+        this(connection, lobManager, id, CompletableFuture.completedFuture(null), query);
+    }
+
+    private PreparedStatementImpl(SqpConnectionImpl connection, LobManager lobManager, String id,
+                                  CompletableFuture startFuture, String query) {
         super(connection, id, "prepared statement");
+        _query = query;
         _startFuture = startFuture;
         _parameterTypes = new HashMap<>();
         _customTypes = new HashMap<>();
         _parameterBatches = new LinkedList<>();
         _currentParameterBatch = new HashMap<>();
         _lobManager = lobManager;
+        _timeout = connection.getConfig().getQueryTimeout();
     }
 
     @Override
@@ -69,6 +87,62 @@ public class PreparedStatementImpl extends CloseableServerResource implements Pr
             return failedFuture;
         }
 
+        BoundParameters parameters = takeParameters();
+
+        // compose with start future in order to throw previous errors first
+        // TODO: this future should be created in thenCompose, but then it's maybe then another message is sent before
+        // the execution messages, which must be avoided. Maybe the connection should depend on other futures to send
+        // new messages
+        CompletableFuture<T> future = execute(resultClass, parameters.Types, parameters.CustomTypes,
+                parameters.Values, scrollable);
+        return _startFuture.thenCompose(v -> future);
+    }
+
+    @Override
+    public Publisher<Row> publishSelect() {
+        return publishSelect(false);
+    }
+
+    @Override
+    public Publisher<Row> streamSelect() {
+        return publishSelect(true);
+    }
+
+    private Publisher<Row> publishSelect(boolean push) {
+        try {
+            validateOpen();
+        } catch (SqpException e) {
+            return CursorPublisher.failed(e);
+        }
+        // the parameters are bound now, although the statement is executed when rows are requested
+        BoundParameters parameters = takeParameters();
+        if (isImplicit()) {
+            return new CursorPublisher(getConnection(), (maxFetch, responseHandler) -> getConnection().prepareExecute(
+                    _query, parameters.Types, parameters.CustomTypes, parameters.Values, false, _timeout, maxFetch,
+                    responseHandler), true, push);
+        }
+        return new CursorPublisher(getConnection(), (maxFetch, responseHandler) -> getConnection().execute(getId(),
+                parameters.Types, parameters.CustomTypes, parameters.Values, false, _timeout, responseHandler),
+                false, push);
+    }
+
+    private <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, List<SqpTypeCode> types,
+                                                                 List<String> customTypes, List<List<Object>> values,
+                                                                 boolean scrollable) {
+        if (isImplicit()) {
+            return getConnection().prepareExecute(resultClass, _query, types, customTypes, values, scrollable, _timeout);
+        }
+        return getConnection().execute(resultClass, getId(), types, customTypes, values, scrollable, _timeout);
+    }
+
+    /**
+     * @return Whether the statement is prepared by the server when it's executed
+     */
+    public boolean isImplicit() {
+        return _query != null;
+    }
+
+    private BoundParameters takeParameters() {
         List<SqpTypeCode> parameterTypes = mapWithPositionsToList(_parameterTypes, SqpTypeCode.Unknown);
 
         if (_currentParameterBatch.size() > 0) {
@@ -84,16 +158,42 @@ public class PreparedStatementImpl extends CloseableServerResource implements Pr
         _parameterBatches.clear();
         _parameterTypes.clear();
         _customTypes.clear();
+        return new BoundParameters(parameterTypes, customTypes, jsonFormatParameters);
+    }
 
-
-        // compose with start future in order to throw previous errors first
-        // TODO: this future should be created in thenCompose, but then it's maybe then another message is sent before
-        // the execution messages, which must be avoided. Maybe the connection should depend on other futures to send
-        // new messages
-        CompletableFuture<T> future = getConnection().execute(resultClass, getId(), parameterTypes, customTypes, jsonFormatParameters, scrollable);
+    @Override
+    public CompletableFuture<UpdateResult> executeBatch(ColumnBatch batch) {
+        try {
+            validateOpen();
+            if (!_currentParameterBatch.isEmpty() || !_parameterBatches.isEmpty()) {
+                throw new InvalidOperationException("A column batch cannot be executed with otherwise bound parameters.");
+            }
+        } catch (SqpException e) {
+            CompletableFuture<UpdateResult> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            return failedFuture;
+        }
+        ColumnBatchImpl columns = (ColumnBatchImpl) batch;
+        if (columns.getNumRows() < 1) {
+            return _startFuture.thenApply(v -> new UpdateResult(0));
+        }
+        // the slices are sent right away, so they are executed in order
+        List<SqpTypeCode> types = columns.getTypes();
+        List<CompletableFuture<UpdateResult>> results = columns.split(getConnection().getConfig().getBatchMessageSize())
+                .stream()
+                .map(slice -> execute(UpdateResult.class, types, Collections.<String>emptyList(), slice, false))
+                .collect(Collectors.toList());
+        CompletableFuture<UpdateResult> future = CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                .thenApply(v -> new UpdateResult(results.stream().mapToInt(r -> r.join().getAffectedRows()).sum()));
         return _startFuture.thenCompose(v -> future);
     }
 
+    @Override
+    public PreparedStatement setTimeout(int millis) {
+        _timeout = millis;
+        return this;
+    }
+
     @Override
     public PreparedStatement addBatch() {
         List<SqpValue> parameterList = mapWithPositionsToList(_currentParameterBatch, new SqpNull(SqpTypeCode.Unknown));
@@ -241,4 +341,16 @@ public class PreparedStatementImpl extends CloseableServerResource implements Pr
                 i -> map.containsKey(i) ? map.get(i) : defaultValue
         ).collect(Collectors.toList());
     }
+
+    private class BoundParameters {
+        public final List<SqpTypeCode> Types;
+        public final List<String> CustomTypes;
+        public final List<List<Object>> Values;
+
+        public BoundParameters(List<SqpTypeCode> types, List<String> customTypes, List<List<Object>> values) {
+            Types = types;
+            CustomTypes = customTypes;
+            Values = values;
+        }
+    }
 }
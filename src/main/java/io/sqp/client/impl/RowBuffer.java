@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import java.util.List;
+
+/**
+ * Buffers the rows a cursor received from the server, but didn't consume, yet.
+ * @author Stefan Burnicki
+ */
+interface RowBuffer {
+    int CHUNK_SIZE = 1024;
+
+    /**
+     * Adds a row behind all buffered rows.
+     * @param row The row to add
+     */
+    void append(List<Object> row);
+
+    /**
+     * Adds a row in front of all buffered rows, i.e. before the current position.
+     * @param row The row to add
+     */
+    void prepend(List<Object> row);
+
+    /**
+     * Moves to the next row.
+     * @return The next row or null if there is no buffered row after the current position
+     */
+    List<Object> next();
+
+    /**
+     * Moves to the previous row.
+     * @return The previous row or null if there is no buffered row before the current position
+     */
+    List<Object> previous();
+
+    /**
+     * @return The number of buffered rows after the current position
+     */
+    int getNumUnread();
+
+    static RowBuffer create(boolean scrollable) {
+        return scrollable ? new ScrollableRowBuffer() : new ForwardRowBuffer();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.Row;
+import io.sqp.client.exceptions.ColumnNotFoundException;
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpAbstractLob;
+import io.sqp.core.types.SqpValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A received row whose values are decoded on access.
+ * @author Stefan Burnicki
+ */
+public class RowImpl implements Row {
+    private SqpConnectionImpl _connection;
+    private List<ColumnMetadata> _columns;
+    private Map<String, Integer> _columnIndexLookup;
+    private List<Object> _values;
+    private SqpValue[] _decodedValues;
+
+    public RowImpl(SqpConnectionImpl connection, List<ColumnMetadata> columns, Map<String, Integer> columnIndexLookup,
+                   List<Object> values) {
+        _connection = connection;
+        _columns = columns;
+        _columnIndexLookup = columnIndexLookup;
+        _values = values;
+    }
+
+    public static Map<String, Integer> createColumnIndexLookup(List<ColumnMetadata> columns) {
+        Map<String, Integer> lookup = new HashMap<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            lookup.put(columns.get(i).getName(), i);
+        }
+        return lookup;
+    }
+
+    @Override
+    public SqpValue at(int i) throws SqpException {
+        if (_decodedValues == null) {
+            _decodedValues = new SqpValue[_columns.size()];
+        }
+        SqpValue sqpValue = _decodedValues[i];
+        if (sqpValue != null) {
+            return sqpValue;
+        }
+        sqpValue = SqpValue.createFromJsonFormat(_columns.get(i).getType().getTypeCode(), _values.get(i));
+        if (sqpValue instanceof SqpAbstractLob) {
+            SqpAbstractLob lob = (SqpAbstractLob) sqpValue;
+            sqpValue = lob.createWithStream(new LobStream(_connection, lob.getId(), lob.getSize()));
+        }
+        _decodedValues[i] = sqpValue;
+        return sqpValue;
+    }
+
+    @Override
+    public SqpValue at(String name) throws SqpException {
+        Integer idx = _columnIndexLookup.get(name);
+        if (idx == null) {
+            throw new ColumnNotFoundException(name);
+        }
+        return at(idx);
+    }
+
+    @Override
+    public List<ColumnMetadata> getColumnMetadata() {
+        return _columns;
+    }
+}
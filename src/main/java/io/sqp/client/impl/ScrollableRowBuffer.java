@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps all received rows of a scrollable cursor in array chunks, so positioning is possible in constant time.
+ * Rows fetched backwards are prepended without moving the other rows.
+ * @author Stefan Burnicki
+ */
+class ScrollableRowBuffer implements RowBuffer {
+    private ChunkList _front; // prepended rows, in reverse order
+    private ChunkList _back;
+    private int _position;
+
+    public ScrollableRowBuffer() {
+        _front = new ChunkList();
+        _back = new ChunkList();
+        _position = -1;
+    }
+
+    @Override
+    public void append(List<Object> row) {
+        _back.add(row);
+    }
+
+    @Override
+    public void prepend(List<Object> row) {
+        _front.add(row);
+        _position++;
+    }
+
+    @Override
+    public List<Object> next() {
+        if (_position + 1 >= size()) {
+            return null;
+        }
+        return get(++_position);
+    }
+
+    @Override
+    public List<Object> previous() {
+        if (_position <= 0) {
+            return null;
+        }
+        return get(--_position);
+    }
+
+    @Override
+    public int getNumUnread() {
+        return size() - _position - 1;
+    }
+
+    private int size() {
+        return _front.size() + _back.size();
+    }
+
+    private List<Object> get(int index) {
+        int numFront = _front.size();
+        return index < numFront ? _front.get(numFront - index - 1) : _back.get(index - numFront);
+    }
+
+    private class ChunkList {
+        private ArrayList<Object[]> _chunks = new ArrayList<>();
+        private int _size;
+
+        public void add(List<Object> row) {
+            int offset = _size % CHUNK_SIZE;
+            if (offset == 0) {
+                _chunks.add(new Object[CHUNK_SIZE]);
+            }
+            _chunks.get(_chunks.size() - 1)[offset] = row;
+            _size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        public List<Object> get(int index) {
+            return (List<Object>) _chunks.get(index / CHUNK_SIZE)[index % CHUNK_SIZE];
+        }
+
+        public int size() {
+            return _size;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.exceptions.ConnectionException;
+import io.sqp.client.exceptions.SqpIOException;
+import io.sqp.core.ChannelHeader;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends the encoded messages of a connection in order. All messages queued while a batch is sent are sent
+ * asynchronously as the next batch and awaited together after the batch was flushed. The number of pending
+ * messages is bounded: If the limit is reached, the caller blocks until pending messages were sent.
+ * Connections that share a multiplexed websocket send through their own {@link Channel}, which prefixes their
+ * messages with the channel header and bounds the pending messages per channel, so a channel that sends a lot
+ * doesn't block the others.
+ * @author Stefan Burnicki
+ */
+public class SendPipeline {
+    private static final int MAX_MSG_BUFFER_SIZE = 32 * 1024;
+
+    private final ExecutorService _executor;
+    private final int _maxPending;
+    private final ArrayDeque<Entry> _queue;
+    private final Channel _defaultChannel;
+    private Session _session;
+    private boolean _batchingAllowed;
+    private int _numPending;
+    private boolean _sending;
+    private boolean _closed;
+
+    public SendPipeline(ExecutorService executor, int maxPending) {
+        _executor = executor;
+        _maxPending = maxPending;
+        _queue = new ArrayDeque<>();
+        _defaultChannel = new Channel(null);
+    }
+
+    public void open(Session session) {
+        _session = session;
+        try {
+            session.getAsyncRemote().setBatchingAllowed(true);
+            _batchingAllowed = true;
+        } catch (IOException | UnsupportedOperationException e) {
+            _batchingAllowed = false; // then each message is written on its own
+        }
+    }
+
+    public synchronized void close() {
+        _closed = true;
+        notifyAll();
+    }
+
+    public synchronized int getNumPending() {
+        return _numPending;
+    }
+
+    /**
+     * Opens a channel of a multiplexed websocket.
+     * @param header The header all messages of the channel are prefixed with
+     * @return The channel to send the messages with
+     */
+    public Channel openChannel(ChannelHeader header) {
+        return new Channel(header);
+    }
+
+    public Channel getDefaultChannel() {
+        return _defaultChannel;
+    }
+
+    public CompletableFuture<Void> send(byte[] message) {
+        return _defaultChannel.send(message);
+    }
+
+    public CompletableFuture<Void> send(String message) {
+        return _defaultChannel.send(message);
+    }
+
+    public CompletableFuture<Void> send(InputStream stream) {
+        return _defaultChannel.send(stream);
+    }
+
+    public CompletableFuture<Void> send(Reader reader) {
+        return _defaultChannel.send(reader);
+    }
+
+    private CompletableFuture<Void> enqueue(Channel channel, Object payload) {
+        Entry entry = new Entry(channel, payload);
+        boolean startSending;
+        synchronized (this) {
+            try {
+                while (!_closed && channel._numPending >= _maxPending) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.Sent.completeExceptionally(new SqpIOException(
+                        new InterruptedIOException("Interrupted while waiting to send a message.")));
+                return entry.Sent;
+            }
+            if (_closed) {
+                entry.Sent.completeExceptionally(new ConnectionException("Connection closed."));
+                return entry.Sent;
+            }
+            _queue.add(entry);
+            _numPending++;
+            channel._numPending++;
+            startSending = !_sending;
+            _sending = true;
+        }
+        if (startSending) {
+            try {
+                _executor.execute(this::sendQueued);
+            } catch (RejectedExecutionException e) {
+                failQueued(new ConnectionException("Connection closed.", e));
+            }
+        }
+        return entry.Sent;
+    }
+
+    private void sendQueued() {
+        List<Entry> batch;
+        while ((batch = takeBatch()) != null) {
+            sendBatch(batch);
+        }
+    }
+
+    private synchronized List<Entry> takeBatch() {
+        if (_queue.isEmpty()) {
+            _sending = false;
+            return null;
+        }
+        List<Entry> batch = new ArrayList<>(_queue);
+        _queue.clear();
+        return batch;
+    }
+
+    private void failQueued(Throwable error) {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(_queue);
+            _queue.clear();
+            _numPending -= entries.size();
+            entries.forEach(e -> e.Channel._numPending--);
+            _sending = false;
+            notifyAll();
+        }
+        entries.forEach(e -> e.Sent.completeExceptionally(error));
+    }
+
+    private void sendBatch(List<Entry> batch) {
+        RemoteEndpoint.Async remote = _session.getAsyncRemote();
+        List<Entry> inFlight = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            ChannelHeader header = entry.Channel.Header;
+            if (entry.Payload instanceof byte[]) {
+                entry.Result = remote.sendBinary(header == null ? ByteBuffer.wrap((byte[]) entry.Payload) :
+                        prefixed(header, (byte[]) entry.Payload));
+                inFlight.add(entry);
+            } else if (entry.Payload instanceof String) {
+                entry.Result = remote.sendText(header == null ? (String) entry.Payload : header + (String) entry.Payload);
+                inFlight.add(entry);
+            } else {
+                // streams are written blocking, but not before the messages in front of them were sent
+                awaitBatch(remote, inFlight);
+                inFlight.clear();
+                sendStream(entry);
+            }
+        }
+        awaitBatch(remote, inFlight);
+    }
+
+    private void awaitBatch(RemoteEndpoint.Async remote, List<Entry> inFlight) {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        IOException flushError = null;
+        if (_batchingAllowed) {
+            try {
+                remote.flushBatch();
+            } catch (IOException e) {
+                flushError = e;
+            }
+        }
+        for (Entry entry : inFlight) {
+            try {
+                entry.Result.get();
+                if (flushError != null) {
+                    throw new ExecutionException(flushError);
+                }
+                finish(entry, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(entry, new SqpIOException(new InterruptedIOException(e.getMessage())));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                finish(entry, cause instanceof IOException ?
+                        new SqpIOException((IOException) cause) : new SqpIOException("Sending a message failed.", cause));
+            }
+        }
+    }
+
+    private ByteBuffer prefixed(ChannelHeader header, byte[] message) {
+        byte[] headerBytes = header.getBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes.length + message.length);
+        buffer.put(headerBytes).put(message);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void sendStream(Entry entry) {
+        RemoteEndpoint.Basic remote = _session.getBasicRemote();
+        ChannelHeader header = entry.Channel.Header;
+        try {
+            if (entry.Payload instanceof InputStream) {
+                byte[] buffer = new byte[Math.min(MAX_MSG_BUFFER_SIZE, _session.getMaxBinaryMessageBufferSize())];
+                int bytesRead;
+                try (OutputStream output = remote.getSendStream()) {
+                    if (header != null) {
+                        output.write(header.getBytes());
+                    }
+                    while ((bytesRead = ((InputStream) entry.Payload).read(buffer)) > 0) {
+                        output.write(buffer, 0, bytesRead);
+                    }
+                }
+            } else {
+                char[] buffer = new char[Math.min(MAX_MSG_BUFFER_SIZE, _session.getMaxTextMessageBufferSize())];
+                int charsRead;
+                try (Writer output = remote.getSendWriter()) {
+                    if (header != null) {
+                        output.write(header.toString());
+                    }
+                    while ((charsRead = ((Reader) entry.Payload).read(buffer)) > 0) {
+                        output.write(buffer, 0, charsRead);
+                    }
+                }
+            }
+            finish(entry, null);
+        } catch (IOException e) {
+            finish(entry, new SqpIOException(e));
+        }
+    }
+
+    private void finish(Entry entry, Throwable error) {
+        synchronized (this) {
+            _numPending--;
+            entry.Channel._numPending--;
+            notifyAll();
+        }
+        if (error == null) {
+            entry.Sent.complete(null);
+        } else {
+            entry.Sent.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Sends the messages of one connection, optionally prefixed by a channel header.
+     */
+    public class Channel {
+        public final ChannelHeader Header;
+        private int _numPending; // guarded by the pipeline
+
+        private Channel(ChannelHeader header) {
+            Header = header;
+        }
+
+        public CompletableFuture<Void> send(byte[] message) {
+            return enqueue(this, message);
+        }
+
+        public CompletableFuture<Void> send(String message) {
+            return enqueue(this, message);
+        }
+
+        public CompletableFuture<Void> send(InputStream stream) {
+            return enqueue(this, stream);
+        }
+
+        public CompletableFuture<Void> send(Reader reader) {
+            return enqueue(this, reader);
+        }
+
+        public int getNumPending() {
+            synchronized (SendPipeline.this) {
+                return _numPending;
+            }
+        }
+    }
+
+    private class Entry {
+        public final Channel Channel;
+        public final Object Payload;
+        public final CompletableFuture<Void> Sent;
+        public Future<Void> Result;
+
+        public Entry(Channel channel, Object payload) {
+            Channel = channel;
+            Payload = payload;
+            Sent = new CompletableFuture<>();
+        }
+    }
+}
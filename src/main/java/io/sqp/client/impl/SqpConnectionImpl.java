@@ -31,7 +31,10 @@ import io.sqp.core.jackson.JacksonObjectMapperFactory;
 import io.sqp.core.messages.*;
 import org.glassfish.tyrus.client.ClientManager;
 import io.sqp.client.ClientConfig;
+import io.sqp.client.Cursor;
 import io.sqp.client.PreparedStatement;
+import io.sqp.client.Publisher;
+import io.sqp.client.Row;
 import io.sqp.client.QueryResult;
 import io.sqp.client.exceptions.UnexpectedMessageException;
 import io.sqp.client.exceptions.UnexpectedResultTypeException;
@@ -45,9 +48,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -56,11 +59,8 @@ import java.util.stream.Collectors;
  * @author Stefan Burnicki
  */
 public class SqpConnectionImpl extends Endpoint implements SqpConnection {
-    private static final int MAX_MSG_BUFFER_SIZE = 32 * 1024;
-
     private ConnectionState _state;
     private Session _session;
-    private RemoteEndpoint.Basic _endpoint;
     private SqpException _pendingError;
     private Logger _logger;
     private MessageEncoder _messageEncoder;
@@ -72,10 +72,25 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
     private long _statementId;
     private boolean _autocommit;
     private LobManager _lobManager;
-    private io.sqp.client.impl.MessageHandler _messageHandler;
+    private volatile io.sqp.client.impl.MessageHandler _messageHandler;
     private final ExecutorService _sendingService;
+    private final SendPipeline _sendPipeline;
+    private final SendPipeline.Channel _sender;
+    private final SqpMultiplexerImpl _multiplexer;
+    private final int _channel;
+    private PipelineCollector _pipelineCollector;
 
     public SqpConnectionImpl(ClientConfig config) {
+        this(config, null, -1);
+    }
+
+    /**
+     * Creates a logical connection that uses a channel of a multiplexed websocket.
+     * @param config The client configuration
+     * @param multiplexer The multiplexer of the websocket
+     * @param channel The id of the connection's channel
+     */
+    SqpConnectionImpl(ClientConfig config, SqpMultiplexerImpl multiplexer, int channel) {
         _logger = Logger.getGlobal();
         _messageEncoder = new JacksonMessageEncoder();
         _state = ConnectionState.Uninitialized;
@@ -85,12 +100,25 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         _openServerResources = new HashMap<>();
         _autocommit = true;
         _lobManager = new LobManager(this);
-        _sendingService = Executors.newSingleThreadExecutor(); // important that this only one thread to assure correct order
+        _multiplexer = multiplexer;
+        _channel = channel;
+        if (multiplexer == null) {
+            _sendingService = Executors.newSingleThreadExecutor();
+            _sendPipeline = new SendPipeline(_sendingService, config.getSendQueueSize());
+            _sender = _sendPipeline.getDefaultChannel();
+        } else {
+            // the websocket and its send pipeline are shared with the other channels
+            _sendingService = null;
+            _sendPipeline = null;
+            _sender = multiplexer.openSender(channel);
+        }
     }
 
     @Override
     protected void finalize() throws Throwable {
-        _sendingService.shutdownNow();
+        if (_sendingService != null) {
+            _sendingService.shutdownNow();
+        }
     }
 
     public synchronized void close() throws IOException {
@@ -110,11 +138,22 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
 
         // close all open server resources (statements & cursors)
         closeServerResources(_openServerResources.values());
+        if (_multiplexer != null) {
+            // only close the session on the server, the websocket is shared with the other channels
+            if (_session != null) {
+                _logger.log(Level.INFO, "Closing multiplexed connection on channel " + _channel + ".");
+                send(new CloseMessage(), null);
+            }
+            _session = null;
+            _multiplexer.removeChannel(_channel);
+            return;
+        }
         if (_session != null) {
             _logger.log(Level.INFO, "Closing connection.");
             _session.close();
         }
         _session = null;
+        _sendPipeline.close();
         _sendingService.shutdown();
     }
 
@@ -123,17 +162,53 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
     }
 
     @Override
-    public synchronized <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, boolean scrollable, String query) {
+    public <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, boolean scrollable, String query) {
+        return execute(resultClass, scrollable, false, query);
+    }
+
+    @Override
+    public CompletableFuture<Cursor> executeCachedSelect(String query) {
+        return execute(Cursor.class, false, true, query);
+    }
+
+    private synchronized <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, boolean scrollable,
+                                                                              boolean cacheable, String query) {
         ExecuteResponseHandler<T> responseHandler = new ExecuteResponseHandler<>(resultClass, this, true);
         CompletableFuture<T> future = responseHandler.getAffectedFuture();
         if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
             return future;
         }
         String cursorId = generateNewCursorId();
-        send(new SimpleQueryMessage(query, scrollable, cursorId, _config.getCursorMaxFetch()), responseHandler);
+        SimpleQueryMessage msg = new SimpleQueryMessage(query, scrollable, cursorId, _config.getCursorMaxFetch());
+        msg.setTimeout(_config.getQueryTimeout());
+        msg.setCacheable(cacheable);
+        send(msg, responseHandler);
         return future;
     }
 
+    @Override
+    public Publisher<Row> publishSelect(String query) {
+        return publishSelect(query, false);
+    }
+
+    @Override
+    public Publisher<Row> streamSelect(String query) {
+        return publishSelect(query, true);
+    }
+
+    private Publisher<Row> publishSelect(String query, boolean push) {
+        return new CursorPublisher(this, (maxFetch, responseHandler) -> {
+            synchronized (this) {
+                if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
+                    return;
+                }
+                SimpleQueryMessage msg = new SimpleQueryMessage(query, false, generateNewCursorId(), maxFetch);
+                msg.setTimeout(_config.getQueryTimeout());
+                send(msg, responseHandler);
+            }
+        }, true, push);
+    }
+
     @Override
     public synchronized PreparedStatement prepare(String query) {
         CompletableFuture<Void> future = new CompletableFuture<>();
@@ -149,8 +224,18 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         return stmt;
     }
 
+    @Override
+    public synchronized PreparedStatement prepareImplicitly(String query) {
+        return new PreparedStatementImpl(this, _lobManager, generateNewStatementId(), query);
+    }
+
     @Override
     public synchronized CompletableFuture<SqpConnection> connect(String host, int port, String path, String database) {
+        if (_multiplexer != null) {
+            CompletableFuture<SqpConnection> future = new CompletableFuture<>();
+            future.completeExceptionally(new InvalidOperationException("Multiplexed connections are opened by their multiplexer."));
+            return future;
+        }
         _state = ConnectionState.Connecting;
         _database = database;
         ClientManager clientManager = ClientManager.createClient();
@@ -192,6 +277,51 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         return _autocommit;
     }
 
+    @Override
+    public synchronized CompletableFuture<Void> pipeline(Consumer<SqpConnection> operations) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!checkOpenAndNoErrors(future)) {
+            return future;
+        }
+        if (_pipelineCollector != null) {
+            future.completeExceptionally(new InvalidOperationException("Pipelines cannot be nested."));
+            return future;
+        }
+        // other threads wait until the operations are collected, as they are synchronized, too
+        PipelineCollector collector = new PipelineCollector();
+        _pipelineCollector = collector;
+        try {
+            operations.accept(this);
+        } catch (RuntimeException e) {
+            collector.Error = new InvalidOperationException("Collecting the operations of a pipeline failed: " +
+                    e.getMessage());
+        } finally {
+            _pipelineCollector = null;
+        }
+
+        if (collector.Error != null) {
+            new PipelineResponseHandler(collector.Handlers).fail(collector.Error);
+            future.completeExceptionally(collector.Error);
+            return future;
+        }
+        if (collector.Messages.isEmpty()) {
+            future.complete(null);
+            return future;
+        }
+        PipelineMessage msg = new PipelineMessage(collector.Messages);
+        if (collector.Handlers.isEmpty()) {
+            return send(msg, null);
+        }
+        PipelineResponseHandler responseHandler = new PipelineResponseHandler(collector.Handlers);
+        send(msg, responseHandler);
+        return responseHandler.getAffectedFuture();
+    }
+
+    @Override
+    public CompletableFuture<Void> cancel() {
+        return sendOutOfBand(new CancelMessage());
+    }
+
     @Override
     public CompletableFuture<Void> commit() {
         return finishTransaction(true);
@@ -241,17 +371,55 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         return future;
     }
 
-    public synchronized <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, String statementId,
+    public <T extends QueryResult> CompletableFuture<T> execute(Class<T> resultClass, String statementId,
                                                                 List<SqpTypeCode> parameterTypes, List<String> customTypes,
-                                                                List<List<Object>> parameters, boolean scrollable) {
+                                                                List<List<Object>> parameters, boolean scrollable,
+                                                                int timeout) {
         ExecuteResponseHandler<T> responseHandler = new ExecuteResponseHandler<>(resultClass, this, false);
-        CompletableFuture<T> future = responseHandler.getAffectedFuture();
-        if (!checkOpenAndNoErrors(future)) {
-            return future;
+        execute(statementId, parameterTypes, customTypes, parameters, scrollable, timeout, responseHandler);
+        return responseHandler.getAffectedFuture();
+    }
+
+    synchronized void execute(String statementId, List<SqpTypeCode> parameterTypes, List<String> customTypes,
+                              List<List<Object>> parameters, boolean scrollable, int timeout,
+                              ResponseHandler<?> responseHandler) {
+        if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
+            return;
         }
         String cursorId = generateNewCursorId();
-        send(new ExecuteQueryMessage(statementId, cursorId, parameterTypes, customTypes, parameters, scrollable), responseHandler);
-        return future;
+        ExecuteQueryMessage msg = new ExecuteQueryMessage(statementId, cursorId, parameterTypes, customTypes,
+                parameters, scrollable);
+        msg.setTimeout(timeout);
+        send(msg, responseHandler);
+    }
+
+    public <T extends QueryResult> CompletableFuture<T> prepareExecute(Class<T> resultClass, String query,
+                                                                       List<SqpTypeCode> parameterTypes, List<String> customTypes,
+                                                                       List<List<Object>> parameters, boolean scrollable,
+                                                                       int timeout) {
+        // the server sends the first rows with the cursor description
+        ExecuteResponseHandler<T> responseHandler = new ExecuteResponseHandler<>(resultClass, this, true);
+        prepareExecute(query, parameterTypes, customTypes, parameters, scrollable, timeout, _config.getCursorMaxFetch(),
+                responseHandler);
+        return responseHandler.getAffectedFuture();
+    }
+
+    synchronized void prepareExecute(String query, List<SqpTypeCode> parameterTypes, List<String> customTypes,
+                                     List<List<Object>> parameters, boolean scrollable, int timeout, int maxFetch,
+                                     ResponseHandler<?> responseHandler) {
+        if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
+            return;
+        }
+        String cursorId = generateNewCursorId();
+        PrepareExecuteMessage msg = new PrepareExecuteMessage(query, cursorId, parameterTypes, customTypes,
+                parameters, scrollable);
+        msg.setMaxFetch(maxFetch);
+        msg.setTimeout(timeout);
+        send(msg, responseHandler);
+    }
+
+    ClientConfig getConfig() {
+        return _config;
     }
 
     public CompletableFuture<CursorImpl> fetch(CursorImpl cursor, boolean forward) {
@@ -265,6 +433,40 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         return future;
     }
 
+    synchronized void fetch(String cursorId, int maxFetch, ResponseHandler<?> responseHandler) {
+        if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
+            return;
+        }
+        send(new FetchDataMessage(cursorId, -1, maxFetch, true), responseHandler);
+    }
+
+    synchronized void stream(String cursorId, int credit, ResponseHandler<?> responseHandler) {
+        if (!checkOpenAndNoErrors(responseHandler.getAffectedFuture())) {
+            return;
+        }
+        send(new StreamDataMessage(cursorId, credit), responseHandler);
+    }
+
+    CompletableFuture<Void> grantStreamCredit(String cursorId, int credit) {
+        return sendOutOfBand(new StreamCreditMessage(cursorId, credit));
+    }
+
+    CompletableFuture<Void> stopStream(String cursorId) {
+        // unlike a cancel message, this is ignored if the stream of this cursor already ended
+        return sendOutOfBand(new StreamCreditMessage(cursorId, 0, true));
+    }
+
+    synchronized CompletableFuture<Void> releaseCursor(String cursorId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!checkOpenAndNoErrors(future)) {
+            return future;
+        }
+        send(new ReleaseMessage(Collections.singletonList(cursorId), Collections.emptyList()),
+                new ConfirmationResponseHandler(future, MessageType.ReleaseCompleteMessage,
+                        "waiting for a cursor release confirmation"));
+        return future;
+    }
+
     private CompletableFuture<Void> finishTransaction(boolean commit) {
         String mode = commit ? "commit" : "rollback";
         CompletableFuture<Void> future = new CompletableFuture<>();
@@ -307,55 +509,59 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
 
     CompletableFuture<Void> send(SqpMessage msg, ResponseHandler responseHandler) {
         // TODO: use a timeout for response handler!
+        if (_pipelineCollector != null) {
+            return _pipelineCollector.add(msg, responseHandler);
+        }
         if (responseHandler != null) {
             _messageHandler.addResponseHandler(responseHandler);
         }
+        return write(msg);
+    }
 
+    private CompletableFuture<Void> write(SqpMessage msg) {
         // TODO: optionally depend on previous future, so consecutive operations aren't executed if one fails?
-        // as we always use the same, single threaded ExecutionService to run this send operation, all operations
-        // are queued. This allows async-operations while assuring their order is kept
-        return CompletableFuture.runAsync(() -> {
-            try {
-                if (_config.getProtocolFormat() == DataFormat.Binary) {
-                    _messageEncoder.encode(_endpoint.getSendStream(), DataFormat.Binary, msg);
-                } else {
-                    _messageEncoder.encode(_endpoint.getSendWriter(), msg);
-                }
-            } catch (IOException e) {
-                throw new CompletionException(new SqpIOException(e));
+        // messages are encoded by the caller and queued in the pipeline, which keeps their order
+        CompletableFuture<Void> sent;
+        try {
+            if (_config.getProtocolFormat() == DataFormat.Binary) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                _messageEncoder.encode(output, DataFormat.Binary, msg);
+                sent = _sender.send(output.toByteArray());
+            } else {
+                StringWriter output = new StringWriter();
+                _messageEncoder.encode(output, msg);
+                sent = _sender.send(output.toString());
             }
-        }, _sendingService).exceptionally(new FailHandler(this));
+        } catch (IOException e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(new SqpIOException(e));
+        }
+        return sent.exceptionally(new FailHandler(this));
+    }
+
+    // not synchronized and without a response handler, as these messages must not wait for the running operation
+    private CompletableFuture<Void> sendOutOfBand(SqpMessage msg) {
+        if (_session == null || !_state.equals(ConnectionState.ReadyToSend)) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new ConnectionException(_state.getDescription()));
+            return future;
+        }
+        return write(msg);
     }
 
     CompletableFuture<Void> send(InputStream stream) {
+        if (_pipelineCollector != null) {
+            return _pipelineCollector.reject();
+        }
         // TODO: optionally depend on previous future, so consecutive operations aren't executed if one fails?
-        int bufSize = Math.min(MAX_MSG_BUFFER_SIZE, _session.getMaxBinaryMessageBufferSize());
-        return CompletableFuture.runAsync(() -> {
-            byte[] buffer = new byte[bufSize];
-            int bytesRead;
-            try (OutputStream output = _endpoint.getSendStream()) {
-                while ((bytesRead = stream.read(buffer)) > 0) {
-                    output.write(buffer, 0, bytesRead);
-                }
-            } catch (IOException e) {
-                throw new CompletionException(new SqpIOException(e));
-            }
-        }, _sendingService).exceptionally(new FailHandler(this));
+        return _sender.send(stream).exceptionally(new FailHandler(this));
     }
 
     CompletableFuture<Void> send(Reader reader) {
-        int bufSize = Math.min(MAX_MSG_BUFFER_SIZE, _session.getMaxTextMessageBufferSize());
-        return CompletableFuture.runAsync(() -> {
-            char[] buffer = new char[bufSize];
-            int bytesRead;
-            try (Writer output = _endpoint.getSendWriter()) {
-                while ((bytesRead = reader.read(buffer)) > 0) {
-                    output.write(buffer, 0, bytesRead);
-                }
-            } catch (IOException e) {
-                throw new CompletionException(new SqpIOException(e));
-            }
-        }, _sendingService).exceptionally(new FailHandler(this));
+        if (_pipelineCollector != null) {
+            return _pipelineCollector.reject();
+        }
+        return _sender.send(reader).exceptionally(new FailHandler(this));
     }
 
 
@@ -364,9 +570,35 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         // TODO: check if we're already connected
         _session = session;
         _logger.log(Level.INFO, "Established connection.");
-        _endpoint = _session.getBasicRemote();
-        _messageHandler = new io.sqp.client.impl.MessageHandler(this, _session, _logger);
+        _sendPipeline.open(_session);
+        _messageHandler = new io.sqp.client.impl.MessageHandler(this, _logger);
+        _messageHandler.listen(_session);
+        sendHello();
+    }
+
+    /**
+     * Opens the session of a multiplexed connection on its channel of the already connected websocket.
+     * @param session The shared websocket session
+     * @param database The database to connect to
+     * @return A future that completes when the session is ready
+     */
+    synchronized CompletableFuture<SqpConnection> openChannel(Session session, String database) {
+        _state = ConnectionState.Connecting;
+        _database = database;
+        _connectionFuture = new CompletableFuture<>();
+        CompletableFuture<SqpConnection> future = _connectionFuture;
+        _session = session;
+        _messageHandler = new io.sqp.client.impl.MessageHandler(this, _logger,
+                credit -> _multiplexer.grantCredit(_channel, credit));
+        sendHello();
+        return future;
+    }
+
+    io.sqp.client.impl.MessageHandler getMessageHandler() {
+        return _messageHandler;
+    }
 
+    private void sendHello() {
         send(new HelloMessage(_database), new ResponseHandler<>(_connectionFuture, m -> {
             if (m.isA(MessageType.ReadyMessage)) {
                 _state = ConnectionState.ReadyToSend;
@@ -411,12 +643,12 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         return future;
     }
 
-    public CompletableFuture<byte[]> getLob(String id, long position) {
-        CompletableFuture<byte[]> future = new CompletableFuture<>();
+    public CompletableFuture<InputStream> getLob(String id, long position, int size) {
+        CompletableFuture<InputStream> future = new CompletableFuture<>();
         if (!checkOpenAndNoErrors(future)) {
             return future;
         }
-        send(new LobRequestMessage(id, position, _config.getLobBufferSize()), new ResponseHandler<>(future, m -> {
+        send(new LobRequestMessage(id, position, size), new ResponseHandler<>(future, m -> {
             if (m.isA(MessageType.ReadyMessage)) {
                 return false; // just ignore them
             } else if (m.isA(MessageType.LobAnnouncementMessage)) {
@@ -454,12 +686,36 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         cursorIds.forEach(_openServerResources::remove);
         statementIds.forEach(_openServerResources::remove);
 
+        // implicitly prepared statements are managed by the server
+        resources.stream()
+                .filter(r -> r instanceof PreparedStatementImpl && ((PreparedStatementImpl) r).isImplicit())
+                .map(CloseableServerResource::getId)
+                .forEach(statementIds::remove);
+        if (cursorIds.isEmpty() && statementIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
         send(new ReleaseMessage(cursorIds, statementIds),
                 new ConfirmationResponseHandler(future, MessageType.ReleaseCompleteMessage,
                         "waiting for a cursor/statement release confirmation"));
         return future;
     }
 
+    /**
+     * Resets the connection to the state after connecting, so it can be reused.
+     * Open cursors and statements are released and autocommit is restored.
+     * @return A future that completes when the connection is reset
+     */
+    synchronized CompletableFuture<Void> reset() {
+        List<CloseableServerResource> resources = new ArrayList<>(_openServerResources.values());
+        resources.forEach(CloseableServerResource::setClosed);
+        CompletableFuture<Void> released = closeServerResources(resources);
+        if (_autocommit) {
+            return released;
+        }
+        return released.thenCompose(v -> rollback()).thenCompose(v -> setAutoCommit(true));
+    }
+
     void setState(ConnectionState state) {
         _state = state;
     }
@@ -505,4 +761,31 @@ public class SqpConnectionImpl extends Endpoint implements SqpConnection {
         }
         return true;
     }
+
+    private class PipelineCollector {
+        public final List<SqpMessage> Messages = new ArrayList<>();
+        public final List<ResponseHandler> Handlers = new ArrayList<>();
+        public SqpException Error;
+
+        public CompletableFuture<Void> add(SqpMessage msg, ResponseHandler responseHandler) {
+            if (msg.isA(MessageType.LobAnnouncementMessage)) {
+                return reject();
+            }
+            Messages.add(msg);
+            if (responseHandler != null) {
+                Handlers.add(responseHandler);
+            }
+            // the operations are sent together, so their futures already tell whether sending failed
+            return CompletableFuture.completedFuture(null);
+        }
+
+        public CompletableFuture<Void> reject() {
+            if (Error == null) {
+                Error = new InvalidOperationException("LOBs cannot be sent as part of a pipeline.");
+            }
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(Error);
+            return future;
+        }
+    }
 }
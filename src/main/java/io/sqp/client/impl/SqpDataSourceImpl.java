@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.ClientConfig;
+import io.sqp.client.SqpConnection;
+import io.sqp.client.SqpDataSource;
+import io.sqp.client.exceptions.ConnectionException;
+import io.sqp.core.InformationSubject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class SqpDataSourceImpl implements SqpDataSource {
+    private final ClientConfig _config;
+    private final String _host;
+    private final int _port;
+    private final String _path;
+    private final String _database;
+    private final ArrayDeque<IdleConnection> _idleConnections; // most recently returned first
+    private final ArrayDeque<CompletableFuture<SqpConnection>> _waiting;
+    private final ScheduledExecutorService _evictionService;
+    private Logger _logger;
+    private int _numConnections; // idle, borrowed and connecting ones
+    private boolean _closed;
+
+    public SqpDataSourceImpl(ClientConfig config, String host, int port, String path, String database) {
+        _config = config;
+        _host = host;
+        _port = port;
+        _path = path;
+        _database = database;
+        _idleConnections = new ArrayDeque<>();
+        _waiting = new ArrayDeque<>();
+        _logger = Logger.getGlobal();
+        _evictionService = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sqp-pool-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(1000, config.getPoolIdleTimeout() / 2);
+        _evictionService.scheduleAtFixedRate(this::evictIdleConnections, evictionPeriod, evictionPeriod,
+                TimeUnit.MILLISECONDS);
+        openMinConnections();
+    }
+
+    @Override
+    public CompletableFuture<SqpConnection> getConnection() {
+        IdleConnection idle;
+        synchronized (this) {
+            if (_closed) {
+                return failedFuture(new ConnectionException("The data source is closed."));
+            }
+            idle = _idleConnections.pollFirst();
+            if (idle == null) {
+                if (_numConnections >= _config.getPoolMaxSize()) {
+                    CompletableFuture<SqpConnection> waiting = new CompletableFuture<>();
+                    _waiting.add(waiting);
+                    return waiting;
+                }
+                _numConnections++;
+            }
+        }
+        if (idle == null) {
+            return openConnection().thenApply(this::lend);
+        }
+        return validate(idle).thenCompose(valid -> {
+            if (valid) {
+                return CompletableFuture.completedFuture(lend(idle.Connection));
+            }
+            discard(idle.Connection);
+            return getConnection();
+        });
+    }
+
+    @Override
+    public synchronized int getNumConnections() {
+        return _numConnections;
+    }
+
+    @Override
+    public synchronized int getNumIdleConnections() {
+        return _idleConnections.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<IdleConnection> idleConnections;
+        List<CompletableFuture<SqpConnection>> waiting;
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            idleConnections = new ArrayList<>(_idleConnections);
+            _idleConnections.clear();
+            _numConnections -= idleConnections.size();
+            waiting = new ArrayList<>(_waiting);
+            _waiting.clear();
+        }
+        _evictionService.shutdownNow();
+        waiting.forEach(w -> w.completeExceptionally(new ConnectionException("The data source is closed.")));
+        for (IdleConnection idle : idleConnections) {
+            idle.Connection.close();
+        }
+    }
+
+    void giveBack(SqpConnectionImpl connection) {
+        connection.reset().whenComplete((v, error) -> {
+            if (error != null || !connection.isConnected()) {
+                discard(connection);
+            } else {
+                offer(connection);
+            }
+        });
+    }
+
+    private SqpConnection lend(SqpConnectionImpl connection) {
+        return new PooledConnection(this, connection);
+    }
+
+    private void offer(SqpConnectionImpl connection) {
+        while (true) {
+            CompletableFuture<SqpConnection> waiting;
+            synchronized (this) {
+                if (_closed) {
+                    _numConnections--;
+                    break;
+                }
+                waiting = _waiting.poll();
+                if (waiting == null) {
+                    _idleConnections.addFirst(new IdleConnection(connection));
+                    return;
+                }
+            }
+            // the waiting one might have been cancelled in the meantime
+            if (waiting.complete(lend(connection))) {
+                return;
+            }
+        }
+        closeQuietly(connection);
+    }
+
+    private void discard(SqpConnectionImpl connection) {
+        closeQuietly(connection);
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        CompletableFuture<SqpConnection> waiting;
+        synchronized (this) {
+            _numConnections--;
+            waiting = _closed ? null : _waiting.poll();
+            if (waiting == null) {
+                return;
+            }
+            _numConnections++;
+        }
+        openConnection().thenApply(this::lend).whenComplete((connection, error) -> {
+            if (error != null) {
+                waiting.completeExceptionally(error);
+            } else if (!waiting.complete(connection)) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    _logger.log(Level.WARNING, "Returning an unused connection failed.", e);
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<SqpConnectionImpl> openConnection() {
+        SqpConnectionImpl connection = new SqpConnectionImpl(_config);
+        return connection.connect(_host, _port, _path, _database).whenComplete((c, error) -> {
+            if (error != null) {
+                releaseSlot();
+            }
+        }).thenApply(c -> connection);
+    }
+
+    private void openMinConnections() {
+        int numToOpen;
+        synchronized (this) {
+            numToOpen = Math.min(_config.getPoolMinSize(), _config.getPoolMaxSize()) - _numConnections;
+            if (_closed || numToOpen <= 0) {
+                return;
+            }
+            _numConnections += numToOpen;
+        }
+        for (int i = 0; i < numToOpen; i++) {
+            openConnection().thenAccept(this::offer);
+        }
+    }
+
+    private CompletableFuture<Boolean> validate(IdleConnection idle) {
+        if (!idle.Connection.isConnected()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (System.currentTimeMillis() - idle.Since < _config.getPoolValidationInterval()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        // a cheap round trip to make sure the connection and the server's backend connection are alive
+        return idle.Connection.getInformation(String.class, InformationSubject.DBMSName)
+                .handle((name, error) -> error == null);
+    }
+
+    private void evictIdleConnections() {
+        List<SqpConnectionImpl> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            IdleConnection oldest;
+            while (_numConnections - evicted.size() > _config.getPoolMinSize()
+                    && (oldest = _idleConnections.peekLast()) != null
+                    && now - oldest.Since >= _config.getPoolIdleTimeout()) {
+                evicted.add(_idleConnections.pollLast().Connection);
+            }
+        }
+        evicted.forEach(this::discard);
+        openMinConnections(); // connections might have been discarded because they failed
+    }
+
+    private void closeQuietly(SqpConnectionImpl connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            _logger.log(Level.WARNING, "Closing a pooled connection failed.", e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private class IdleConnection {
+        public final SqpConnectionImpl Connection;
+        public final long Since;
+
+        public IdleConnection(SqpConnectionImpl connection) {
+            Connection = connection;
+            Since = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.ClientConfig;
+import io.sqp.client.SqpConnection;
+import io.sqp.client.SqpMultiplexer;
+import io.sqp.client.exceptions.ConnectionException;
+import io.sqp.core.ChannelHeader;
+import io.sqp.core.exceptions.DecodingException;
+import org.glassfish.tyrus.client.ClientManager;
+
+import javax.websocket.*;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Multiplexes the sessions of many {@link SqpConnectionImpl}s over a single websocket. Each connection gets its
+ * own channel: The messages of all channels are sent through one {@link SendPipeline}, which bounds the pending
+ * messages per channel. Received messages are routed to the message handler of their channel, which decodes
+ * and handles them on its own thread, so a slow channel doesn't block the others. The server sends long messages
+ * in chunks, so the chunks of the channels are reassembled here by passing them on as fragments of one message.
+ * The server only sends a channel as much data as its message handler granted credit for.
+ * @author Stefan Burnicki
+ */
+public class SqpMultiplexerImpl extends Endpoint implements SqpMultiplexer {
+    private final ClientConfig _config;
+    private final String _host;
+    private final int _port;
+    private final String _path;
+    private final Logger _logger;
+    private final ExecutorService _sendingService;
+    private final SendPipeline _sendPipeline;
+    private final Map<Integer, SqpConnectionImpl> _channels;
+    private final Object _receiveLock;
+    private int _nextChannel;
+    private Session _session;
+    private CompletableFuture<Session> _sessionFuture;
+    private boolean _closed;
+    private MessageHandler _receivingHandler;
+    private boolean _receiving;
+    private boolean _continued;
+
+    public SqpMultiplexerImpl(ClientConfig config, String host, int port, String path) {
+        _config = config;
+        _host = host;
+        _port = port;
+        _path = path;
+        _logger = Logger.getGlobal();
+        _sendingService = Executors.newSingleThreadExecutor();
+        _sendPipeline = new SendPipeline(_sendingService, config.getSendQueueSize());
+        _channels = new HashMap<>();
+        _receiveLock = new Object();
+    }
+
+    @Override
+    public CompletableFuture<SqpConnection> openConnection(String database) {
+        CompletableFuture<Session> sessionFuture;
+        boolean connect = false;
+        synchronized (this) {
+            if (_closed) {
+                CompletableFuture<SqpConnection> future = new CompletableFuture<>();
+                future.completeExceptionally(new ConnectionException("The multiplexer is closed."));
+                return future;
+            }
+            if (_sessionFuture == null) {
+                _sessionFuture = new CompletableFuture<>();
+                connect = true;
+            }
+            sessionFuture = _sessionFuture;
+        }
+        // connecting blocks until the websocket is open, which calls onOpen, so don't hold the lock
+        if (connect) {
+            connectSocket(sessionFuture);
+        }
+        return sessionFuture.thenCompose(session -> openChannel(session, database));
+    }
+
+    @Override
+    public synchronized int getNumConnections() {
+        return _channels.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<SqpConnectionImpl> connections;
+        Session session;
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            connections = new ArrayList<>(_channels.values());
+            session = _session;
+            _session = null;
+            if (_sessionFuture != null) {
+                _sessionFuture.completeExceptionally(new ConnectionException("The multiplexer is closed."));
+            }
+        }
+        for (SqpConnectionImpl connection : connections) {
+            connection.close();
+        }
+        if (session != null) {
+            _logger.log(Level.INFO, "Closing multiplexed connection.");
+            session.close();
+        }
+        _sendPipeline.close();
+        _sendingService.shutdown();
+    }
+
+    private void connectSocket(CompletableFuture<Session> sessionFuture) {
+        ClientManager clientManager = ClientManager.createClient();
+        ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        try {
+            URI uri = new URI("ws", null, _host, _port, _path, ChannelHeader.MULTIPLEX_PARAMETER, null);
+            _logger.log(Level.INFO, "Attempting to connect to '" + uri + "'");
+            clientManager.connectToServer(this, cec, uri);
+        } catch (URISyntaxException | DeploymentException | IOException e) {
+            sessionFuture.completeExceptionally(new ConnectionException("Failed to connect to server: " + e.getMessage(), e));
+        }
+    }
+
+    private synchronized CompletableFuture<SqpConnection> openChannel(Session session, String database) {
+        if (_closed) {
+            CompletableFuture<SqpConnection> future = new CompletableFuture<>();
+            future.completeExceptionally(new ConnectionException("The multiplexer is closed."));
+            return future;
+        }
+        int channel = _nextChannel++;
+        SqpConnectionImpl connection = new SqpConnectionImpl(_config, this, channel);
+        _channels.put(channel, connection);
+        return connection.openChannel(session, database);
+    }
+
+    SendPipeline.Channel openSender(int channel) {
+        return _sendPipeline.openChannel(new ChannelHeader(channel));
+    }
+
+    /**
+     * Grants the server credit to send more data on a channel.
+     * @param channel The channel id
+     * @param credit The number of bytes the server may send additionally
+     */
+    void grantCredit(int channel, long credit) {
+        // credit messages are sent as they are, without a channel header of their own
+        _sendPipeline.send(ChannelHeader.credit(channel).toString() + credit);
+    }
+
+    synchronized void removeChannel(int channel) {
+        _channels.remove(channel);
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        CompletableFuture<Session> sessionFuture;
+        synchronized (this) {
+            _session = session;
+            sessionFuture = _sessionFuture;
+        }
+        _logger.log(Level.INFO, "Established multiplexed connection.");
+        _sendPipeline.open(session);
+        session.addMessageHandler(String.class, this::receiveTextFragment);
+        session.addMessageHandler(byte[].class, this::receiveBinFragment);
+        sessionFuture.complete(session);
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        List<SqpConnectionImpl> connections;
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _logger.log(Level.INFO, "Multiplexed connection closed by server.");
+            _closed = true;
+            _session = null;
+            connections = new ArrayList<>(_channels.values());
+        }
+        connections.forEach(c -> c.onClose(session, closeReason));
+        _sendPipeline.close();
+        _sendingService.shutdown();
+    }
+
+    @Override
+    public void onError(Session session, Throwable thr) {
+        List<SqpConnectionImpl> connections;
+        synchronized (this) {
+            connections = new ArrayList<>(_channels.values());
+        }
+        connections.forEach(c -> c.onError(session, thr));
+    }
+
+    private void receiveTextFragment(String fragment, boolean last) {
+        synchronized (_receiveLock) {
+            if (!_receiving) {
+                ChannelHeader header = decodeHeader(fragment);
+                if (header != null) {
+                    fragment = fragment.substring(header.getLength());
+                }
+            }
+            _receiving = !last;
+            if (_receivingHandler != null) {
+                _receivingHandler.receiveTextFragment(fragment, last && !_continued);
+            }
+        }
+    }
+
+    private void receiveBinFragment(byte[] fragment, boolean last) {
+        synchronized (_receiveLock) {
+            if (!_receiving) {
+                ChannelHeader header = decodeHeader(fragment);
+                if (header != null) {
+                    fragment = Arrays.copyOfRange(fragment, header.getLength(), fragment.length);
+                }
+            }
+            _receiving = !last;
+            if (_receivingHandler != null) {
+                _receivingHandler.receiveBinFragment(fragment, last && !_continued);
+            }
+        }
+    }
+
+    private ChannelHeader decodeHeader(Object fragment) {
+        // the fragments of messages that don't belong to an open channel are discarded
+        _receivingHandler = null;
+        _continued = false;
+        ChannelHeader header;
+        try {
+            header = fragment instanceof String ? ChannelHeader.decode((String) fragment) :
+                    ChannelHeader.decode((byte[]) fragment);
+        } catch (DecodingException e) {
+            _logger.log(Level.WARNING, "Discarding a message without valid channel header: " + e.getMessage());
+            return null;
+        }
+        SqpConnectionImpl connection;
+        synchronized (this) {
+            connection = _channels.get(header.getChannel());
+        }
+        if (connection == null) {
+            _logger.log(Level.INFO, "Discarding a message for channel " + header.getChannel() + " which is not open.");
+        } else {
+            _receivingHandler = connection.getMessageHandler();
+            // the message isn't finished before the last chunk, which is another websocket message
+            _continued = header.isContinued();
+        }
+        return header;
+    }
+}
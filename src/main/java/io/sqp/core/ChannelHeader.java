@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core;
+
+import io.sqp.core.exceptions.DecodingException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The header of a message on a multiplexed connection, i.e. a websocket shared by several logical sessions.
+ * Each message and each LOB starts with the decimal id of its session's channel, followed by a colon, like "12:".
+ * The header must be part of the first frame of a message. Multiplexing is requested by the client with the
+ * {@link #MULTIPLEX_PARAMETER} query parameter of the websocket URI.
+ * <p>
+ * Long messages are split into chunks, so the channels can take turns on the websocket. Every chunk is a websocket
+ * message of its own, and all but the last one end their header with {@link #CONTINUED_SEPARATOR}, like "12+".
+ * A header ending with {@link #CREDIT_SEPARATOR} is followed by the number of bytes the receiver grants the
+ * sender of the channel, like "12!65536". Each side starts with {@link #INITIAL_CREDIT} bytes per channel.
+ * @author Stefan Burnicki
+ */
+public class ChannelHeader {
+    public static final String MULTIPLEX_PARAMETER = "multiplex";
+    public static final char SEPARATOR = ':';
+    public static final char CONTINUED_SEPARATOR = '+';
+    public static final char CREDIT_SEPARATOR = '!';
+    public static final int MAX_LENGTH = 11; // 10 digits and the separator
+    public static final int INITIAL_CREDIT = 1024 * 1024;
+
+    private int _channel;
+    private int _length;
+    private char _separator;
+
+    public ChannelHeader(int channel) {
+        this(channel, SEPARATOR);
+    }
+
+    private ChannelHeader(int channel, char separator) {
+        if (channel < 0) {
+            throw new IllegalArgumentException("The channel id must not be negative.");
+        }
+        _channel = channel;
+        _separator = separator;
+        _length = toString().length();
+    }
+
+    private ChannelHeader(int channel, int length, char separator) {
+        _channel = channel;
+        _length = length;
+        _separator = separator;
+    }
+
+    /**
+     * @param channel The channel id
+     * @return The header of a chunk that is continued by the next chunk of the channel
+     */
+    public static ChannelHeader continued(int channel) {
+        return new ChannelHeader(channel, CONTINUED_SEPARATOR);
+    }
+
+    /**
+     * @param channel The channel id
+     * @return The header of a message that grants credit for the channel
+     */
+    public static ChannelHeader credit(int channel) {
+        return new ChannelHeader(channel, CREDIT_SEPARATOR);
+    }
+
+    public int getChannel() {
+        return _channel;
+    }
+
+    /**
+     * @return Whether the next chunk of the channel continues this message
+     */
+    public boolean isContinued() {
+        return _separator == CONTINUED_SEPARATOR;
+    }
+
+    /**
+     * @return Whether the message grants credit instead of carrying data
+     */
+    public boolean isCredit() {
+        return _separator == CREDIT_SEPARATOR;
+    }
+
+    /**
+     * @return The number of characters or bytes of the encoded header, including the separator
+     */
+    public int getLength() {
+        return _length;
+    }
+
+    public byte[] getBytes() {
+        return toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(_channel) + _separator;
+    }
+
+    /**
+     * Decodes the header at the start of a binary message or its first frame.
+     * @param data The first bytes of the message. Only the first {@link #MAX_LENGTH} bytes are considered.
+     * @return The decoded header
+     * @throws DecodingException If the data doesn't start with a valid header
+     */
+    public static ChannelHeader decode(byte[] data) throws DecodingException {
+        return decode(new String(data, 0, Math.min(data.length, MAX_LENGTH), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes the header at the start of a text message or its first frame.
+     * @param text The start of the message
+     * @return The decoded header
+     * @throws DecodingException If the text doesn't start with a valid header
+     */
+    public static ChannelHeader decode(CharSequence text) throws DecodingException {
+        int maxLength = Math.min(text.length(), MAX_LENGTH);
+        for (int i = 0; i < maxLength; i++) {
+            char c = text.charAt(i);
+            if ((c == SEPARATOR || c == CONTINUED_SEPARATOR || c == CREDIT_SEPARATOR) && i > 0) {
+                long channel = Long.parseLong(text.subSequence(0, i).toString());
+                if (channel > Integer.MAX_VALUE) {
+                    throw new DecodingException("The channel id " + channel + " is too large.");
+                }
+                return new ChannelHeader((int) channel, i + 1, c);
+            }
+            if (c < '0' || c > '9') {
+                throw new DecodingException("Invalid character in the channel header of a multiplexed message.");
+            }
+        }
+        throw new DecodingException("A message on a multiplexed connection must start with a channel header.");
+    }
+
+    /**
+     * Decodes the granted credit of a credit message.
+     * @param text The whole message, including the header
+     * @param header The decoded header of the message
+     * @return The number of granted bytes
+     * @throws DecodingException If the message doesn't contain a valid number
+     */
+    public static long decodeCredit(CharSequence text, ChannelHeader header) throws DecodingException {
+        try {
+            long credit = Long.parseLong(text.subSequence(header.getLength(), text.length()).toString());
+            if (credit < 0) {
+                throw new DecodingException("The granted credit must not be negative.");
+            }
+            return credit;
+        } catch (NumberFormatException e) {
+            throw new DecodingException("Invalid credit message on a multiplexed connection.", e);
+        }
+    }
+
+    /**
+     * Checks if the query of a websocket URI requests multiplexing.
+     * @param query The query string of the URI, might be null
+     * @return True if multiplexing is requested
+     */
+    public static boolean isRequested(String query) {
+        if (query == null) {
+            return false;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.equals(MULTIPLEX_PARAMETER) || parameter.equals(MULTIPLEX_PARAMETER + "=true")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
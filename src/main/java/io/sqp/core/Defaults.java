@@ -21,6 +21,7 @@ package io.sqp.core;
 
 import io.sqp.core.messages.ExecuteQueryMessage;
 import io.sqp.core.messages.FetchDataMessage;
+import io.sqp.core.messages.PrepareExecuteMessage;
 import io.sqp.core.messages.PrepareQueryMessage;
 import io.sqp.core.messages.SimpleQueryMessage;
 
@@ -34,6 +35,7 @@ public class Defaults {
      * @see ExecuteQueryMessage
      * @see FetchDataMessage
      * @see SimpleQueryMessage
+     * @see PrepareExecuteMessage
      */
     public static final String DefaultCursorID = "Default";
 
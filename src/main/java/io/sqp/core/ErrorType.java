@@ -63,5 +63,7 @@ public enum ErrorType {
     TypeMappingNotPossible,
     ValidationFailed,
     LobReadFailed,
-    TypeConversion
+    TypeConversion,
+    Canceled,
+    Skipped
 }
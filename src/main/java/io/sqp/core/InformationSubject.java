@@ -60,5 +60,34 @@ public enum InformationSubject {
      * The JSON schema of a data type. In an {@link InformationRequestMessage}
      * the affected data type needs to be passed as the "detail".
      */
-    TypeSchema
+    TypeSchema,
+
+    /**
+     * The number of queries the proxy answered from its result cache. It's 0 if the cache is disabled.
+     */
+    ResultCacheHits,
+
+    /**
+     * The number of cacheable queries the proxy couldn't answer from its result cache.
+     * It's 0 if the cache is disabled.
+     */
+    ResultCacheMisses,
+
+    /**
+     * The number of LOB requests of the current connection that were answered from the read-ahead cache.
+     * It's 0 if the backend doesn't cache LOB data.
+     */
+    LobCacheHits,
+
+    /**
+     * The number of LOB requests of the current connection that needed to read from the database.
+     * It's 0 if the backend doesn't cache LOB data.
+     */
+    LobCacheMisses,
+
+    /**
+     * The number of LOB bytes sent to the client on the current connection.
+     * It's 0 if the backend doesn't cache LOB data.
+     */
+    LobBytesServed
 }
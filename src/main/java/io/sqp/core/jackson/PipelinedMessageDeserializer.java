@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import io.sqp.core.exceptions.DecodingException;
+import io.sqp.core.messages.MessageType;
+import io.sqp.core.messages.SqpMessage;
+
+import java.io.IOException;
+
+/**
+ * Reads a message that was written by the {@link PipelinedMessageSerializer}.
+ * @author Stefan Burnicki
+ */
+public class PipelinedMessageDeserializer extends JsonDeserializer<SqpMessage> {
+    @Override
+    public SqpMessage deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY || parser.nextToken() != JsonToken.VALUE_STRING ||
+                parser.getText().length() != 1) {
+            throw invalid(parser, "An embedded message must start with its type identifier.");
+        }
+        MessageType type;
+        try {
+            type = MessageType.fromId(parser.getText().charAt(0));
+        } catch (DecodingException e) {
+            throw invalid(parser, e.getMessage());
+        }
+
+        SqpMessage message;
+        if (type.hasContent()) {
+            parser.nextToken();
+            // the binary parser has no codec, so the context needs to read the message
+            message = context.readValue(parser, type.getType());
+        } else {
+            try {
+                message = type.getType().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw invalid(parser, "Couldn't create a message of type " + type.getType());
+            }
+        }
+        if (parser.nextToken() != JsonToken.END_ARRAY) {
+            throw invalid(parser, "An embedded message of type " + type + " has unexpected content.");
+        }
+        return message;
+    }
+
+    private JsonMappingException invalid(JsonParser parser, String message) {
+        return new JsonMappingException(message, parser.getCurrentLocation());
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import io.sqp.core.messages.MessageType;
+import io.sqp.core.messages.SqpMessage;
+
+import java.io.IOException;
+
+/**
+ * Writes a message that is embedded in another one as an array of its type identifier and its content, if any.
+ * @author Stefan Burnicki
+ * @see PipelinedMessageDeserializer
+ */
+public class PipelinedMessageSerializer extends JsonSerializer<SqpMessage> {
+    @Override
+    public void serialize(SqpMessage message, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        MessageType type = message.getType();
+        generator.writeStartArray();
+        generator.writeString(String.valueOf(type.getId()));
+        if (type.hasContent()) {
+            provider.defaultSerializeValue(message, generator);
+        }
+        generator.writeEndArray();
+    }
+}
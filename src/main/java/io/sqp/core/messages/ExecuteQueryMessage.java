@@ -35,6 +35,7 @@ public class ExecuteQueryMessage extends SqpMessage {
     private List<List<Object>> _parameters = Collections.emptyList();
     private List<String> _customTypes = Collections.emptyList();
     private String _cursorId = Defaults.DefaultCursorID;
+    private int _timeout = 0;
 
     // necessary for decoding
     public ExecuteQueryMessage() {}
@@ -73,6 +74,14 @@ public class ExecuteQueryMessage extends SqpMessage {
         _customTypes = customTypes;
     }
 
+    /**
+     * Sets the time the database may take to execute the statement before it's canceled.
+     * @param timeout The timeout in milliseconds, or 0 for no timeout
+     */
+    public void setTimeout(int timeout) {
+        _timeout = timeout;
+    }
+
     public String getStatementId() {
         return _statementId;
     }
@@ -96,4 +105,8 @@ public class ExecuteQueryMessage extends SqpMessage {
     public List<String> getCustomTypes() {
         return _customTypes;
     }
+
+    public int getTimeout() {
+        return _timeout;
+    }
 }
@@ -50,13 +50,18 @@ public enum MessageType {
 
     PrepareQueryMessage('P', PrepareQueryMessage.class, true),
     ExecuteQueryMessage('X', ExecuteQueryMessage.class, true),
+    PrepareExecuteMessage('E', PrepareExecuteMessage.class, true),
     FetchDataMessage('F', FetchDataMessage.class, true),
+    StreamDataMessage('D', StreamDataMessage.class, true),
+    StreamCreditMessage('N', StreamCreditMessage.class, true),
 
     ReleaseMessage('L', ReleaseMessage.class, true),
     InformationRequestMessage('I', InformationRequestMessage.class, true),
     SetFeatureMessage('T', SetFeatureMessage.class, true),
     TypeMappingMessage('M', TypeMappingMessage.class, true),
 
+    PipelineMessage('Q', PipelineMessage.class, true),
+    CancelMessage('C', CancelMessage.class, false),
     CommitTransactionMessage('K', CommitTransactionMessage.class, false),
     RollbackTransactionMessage('B', RollbackTransactionMessage.class, false),
 
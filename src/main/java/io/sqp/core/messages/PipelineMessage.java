@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.messages;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.sqp.core.jackson.PipelinedMessageDeserializer;
+import io.sqp.core.jackson.PipelinedMessageSerializer;
+
+import java.util.List;
+
+/**
+ * Carries several operations that the server executes back to back, without waiting for the client in between.
+ * The responses of the operations are sent as if the messages were sent one by one. If an operation fails, the
+ * remaining ones are skipped, so the error is followed by a ready message.
+ * @author Stefan Burnicki
+ */
+public class PipelineMessage extends SqpMessage {
+    private List<SqpMessage> _operations;
+
+    @JsonCreator
+    public PipelineMessage(@JsonProperty("operations")
+                           @JsonDeserialize(contentUsing = PipelinedMessageDeserializer.class)
+                           List<SqpMessage> operations) {
+        _operations = operations;
+    }
+
+    @JsonProperty("operations")
+    @JsonSerialize(contentUsing = PipelinedMessageSerializer.class)
+    public List<SqpMessage> getOperations() {
+        return _operations;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.messages;
+
+import io.sqp.core.Defaults;
+import io.sqp.core.types.SqpTypeCode;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prepares, binds and executes a query in a single round trip. The server reuses the statement it prepared
+ * for the same query before, so no statement ID needs to be managed by the client. If the query returns a
+ * cursor, the first block of rows is sent right after the cursor description unless auto fetch is disabled.
+ * @author Stefan Burnicki
+ */
+public class PrepareExecuteMessage extends SqpMessage {
+    private String _query;
+    private String _cursorId = Defaults.DefaultCursorID;
+    private boolean _scrollable = false;
+    private List<SqpTypeCode> _parameterTypes = Collections.emptyList();
+    private List<List<Object>> _parameters = Collections.emptyList();
+    private List<String> _customTypes = Collections.emptyList();
+    private boolean _autoFetch = true;
+    private int _maxFetch = -1;
+    private int _timeout = 0;
+
+    // necessary for decoding
+    public PrepareExecuteMessage() {}
+
+    public PrepareExecuteMessage(String query, String cursorId, List<SqpTypeCode> parameterTypes,
+                                 List<String> customTypes, List<List<Object>> parameters, boolean scrollable) {
+        _query = query;
+        _cursorId = cursorId;
+        _parameterTypes = parameterTypes;
+        _customTypes = customTypes;
+        _parameters = parameters;
+        _scrollable = scrollable;
+    }
+
+    public void setQuery(String query) {
+        _query = query;
+    }
+
+    public void setCursorId(String cursorId) {
+        _cursorId = cursorId;
+    }
+
+    public void setScrollable(boolean scrollable) {
+        _scrollable = scrollable;
+    }
+
+    public void setParameterTypes(List<SqpTypeCode> parameterTypes) {
+        _parameterTypes = parameterTypes;
+    }
+
+    public void setParameters(List<List<Object>> parameters) {
+        _parameters = parameters;
+    }
+
+    public void setCustomTypes(List<String> customTypes) {
+        _customTypes = customTypes;
+    }
+
+    /**
+     * Sets whether the first block of rows is sent with the cursor description.
+     * @param autoFetch False if the client fetches the rows on its own
+     */
+    public void setAutoFetch(boolean autoFetch) {
+        _autoFetch = autoFetch;
+    }
+
+    /**
+     * Sets the maximum number of rows of the first block.
+     * @param maxFetch The maximum number of rows, or -1 to let the server decide
+     */
+    public void setMaxFetch(int maxFetch) {
+        _maxFetch = maxFetch;
+    }
+
+    /**
+     * Sets the time the database may take to execute the statement before it's canceled.
+     * @param timeout The timeout in milliseconds, or 0 for no timeout
+     */
+    public void setTimeout(int timeout) {
+        _timeout = timeout;
+    }
+
+    public String getQuery() {
+        return _query;
+    }
+
+    public String getCursorId() {
+        return _cursorId;
+    }
+
+    public boolean isScrollable() {
+        return _scrollable;
+    }
+
+    public List<SqpTypeCode> getParameterTypes() {
+        return _parameterTypes;
+    }
+
+    public List<List<Object>> getParameters() {
+        return _parameters;
+    }
+
+    public List<String> getCustomTypes() {
+        return _customTypes;
+    }
+
+    public boolean isAutoFetch() {
+        return _autoFetch;
+    }
+
+    public int getMaxFetch() {
+        return _maxFetch;
+    }
+
+    public int getTimeout() {
+        return _timeout;
+    }
+}
@@ -29,6 +29,8 @@ public class SimpleQueryMessage extends SqpMessage {
     private int _maxFetch = -1;
     private String _cursorId = Defaults.DefaultCursorID;
     private boolean _scrollable = false;
+    private int _timeout = 0;
+    private boolean _cacheable = false;
 
     // necessary for decoding
     public SimpleQueryMessage() {}
@@ -56,6 +58,23 @@ public class SimpleQueryMessage extends SqpMessage {
         _scrollable = scrollable;
     }
 
+    /**
+     * Sets the time the database may take to execute the query before it's canceled.
+     * @param timeout The timeout in milliseconds, or 0 for no timeout
+     */
+    public void setTimeout(int timeout) {
+        _timeout = timeout;
+    }
+
+    /**
+     * Allows the server to answer the query with a cached result or with the result of an identical query
+     * of another session. The query must not call functions with side effects or volatile results.
+     * @param cacheable Whether the result may be shared
+     */
+    public void setCacheable(boolean cacheable) {
+        _cacheable = cacheable;
+    }
+
     public String getQuery() {
         return _query;
     }
@@ -69,4 +88,12 @@ public class SimpleQueryMessage extends SqpMessage {
     public boolean isScrollable() {
         return _scrollable;
     }
+
+    public int getTimeout() {
+        return _timeout;
+    }
+
+    public boolean isCacheable() {
+        return _cacheable;
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.messages;
+
+import io.sqp.core.Defaults;
+
+/**
+ * Grants the server credit to push more rows of a streamed cursor. It's processed as soon as it arrives and
+ * ignored if the cursor isn't streamed (anymore). With the stop flag set, it asks the server to stop the stream
+ * of this cursor instead. Unlike a cancel message, it can't affect the next operation if the stream already ended.
+ * @author Stefan Burnicki
+ */
+public class StreamCreditMessage extends SqpMessage {
+    private String _cursorId = Defaults.DefaultCursorID;
+    private int _credit;
+    private boolean _stop;
+
+    // necessary for decoding
+
+    public StreamCreditMessage() {}
+
+    public StreamCreditMessage(String cursorId, int credit) {
+        _cursorId = cursorId;
+        _credit = credit;
+    }
+
+    public StreamCreditMessage(String cursorId, int credit, boolean stop) {
+        this(cursorId, credit);
+        _stop = stop;
+    }
+
+    public void setCursorId(String cursorId) {
+        _cursorId = cursorId;
+    }
+
+    public void setCredit(int credit) {
+        _credit = credit;
+    }
+
+    public String getCursorId() {
+        return _cursorId;
+    }
+
+    public int getCredit() {
+        return _credit;
+    }
+
+    public void setStop(boolean stop) {
+        _stop = stop;
+    }
+
+    public boolean isStop() {
+        return _stop;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.messages;
+
+import io.sqp.core.Defaults;
+
+/**
+ * Requests the server to push the remaining rows of a cursor without further fetch requests. The rows are sent
+ * as long as the client has granted credit for them, followed by a single end of data message. More credit
+ * can be granted with {@link StreamCreditMessage}s while the rows are pushed.
+ * @author Stefan Burnicki
+ */
+public class StreamDataMessage extends SqpMessage {
+    private String _cursorId = Defaults.DefaultCursorID;
+    private int _credit = -1;
+
+    // necessary for decoding
+
+    public StreamDataMessage() {}
+
+    /**
+     * @param cursorId The cursor to push the rows of
+     * @param credit The number of rows the server may push, or -1 for all rows
+     */
+    public StreamDataMessage(String cursorId, int credit) {
+        _cursorId = cursorId;
+        _credit = credit;
+    }
+
+    public void setCursorId(String cursorId) {
+        _cursorId = cursorId;
+    }
+
+    public void setCredit(int credit) {
+        _credit = credit;
+    }
+
+    public String getCursorId() {
+        return _cursorId;
+    }
+
+    public int getCredit() {
+        return _credit;
+    }
+}
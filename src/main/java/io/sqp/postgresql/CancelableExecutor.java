@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.backend.AsyncExecutor;
+import io.sqp.backend.ResultHandler;
+import io.sqp.backend.SuccessHandler;
+
+/**
+ * Executes the operations of a connection and keeps track of the running one, so a cancel request only
+ * interrupts the execution that was running when the cancel was requested.
+ * @author Stefan Burnicki
+ */
+class CancelableExecutor implements AsyncExecutor {
+    private AsyncExecutor _executor;
+    private long _numStartedExecutions;
+    private long _runningExecution; // 0 if no execution is running
+
+    public CancelableExecutor(AsyncExecutor executor) {
+        _executor = executor;
+    }
+
+    @Override
+    public <T> void callAsync(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        _executor.callAsync(() -> {
+            beginExecution();
+            try {
+                return callable.invoke();
+            } finally {
+                endExecution();
+            }
+        }, resultHandler);
+    }
+
+    @Override
+    public <T> void callConcurrently(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        _executor.callConcurrently(callable, resultHandler);
+    }
+
+    /**
+     * Cancels the running execution. Nothing happens if no execution is running, or if it has finished before
+     * the cancel request could be sent.
+     * @param cancelRequest Sends the cancel request. It's called concurrently to the running execution
+     * @param successHandler Handles the success of the cancel request
+     */
+    public void cancel(FallibleRunnable cancelRequest, SuccessHandler successHandler) {
+        long target;
+        synchronized (this) {
+            target = _runningExecution;
+        }
+        if (target == 0) {
+            successHandler.succeed();
+            return;
+        }
+        _executor.runConcurrently(() -> {
+            // while the lock is held, the targeted execution can't be followed by another one
+            synchronized (this) {
+                if (_runningExecution == target) {
+                    cancelRequest.run();
+                }
+            }
+        }, successHandler);
+    }
+
+    private synchronized void beginExecution() {
+        _runningExecution = ++_numStartedExecutions;
+    }
+
+    private synchronized void endExecution() {
+        _runningExecution = 0;
+    }
+}
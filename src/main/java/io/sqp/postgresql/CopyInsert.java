@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.backend.exceptions.ExecutionFailedException;
+import io.sqp.core.ErrorAction;
+import io.sqp.core.ErrorType;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpValue;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.core.QueryExecutor;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes a batch of a plain "INSERT INTO table (columns) VALUES (?, ...)" statement as "COPY table (columns)
+ * FROM STDIN". The parameters are encoded and streamed row by row, so the batch is never materialized as
+ * parameter lists. Only statements with an explicit column list are supported, as COPY would otherwise
+ * require values for all columns of the table.
+ * @author Stefan Burnicki
+ */
+public class CopyInsert {
+    private static final String IDENTIFIER = "(?:\"(?:[^\"]|\"\")+\"|[\\p{L}_][\\p{L}\\p{N}_$]*)";
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^\\s*INSERT\\s+INTO\\s+(" + IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")?)" +
+            "\\s*\\(([^()]+)\\)\\s*VALUES\\s*\\(\\s*(\\?(?:\\s*,\\s*\\?)*)\\s*\\)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    private static final int FLUSH_SIZE = 64 * 1024;
+
+    private String _copySql;
+    private int _numColumns;
+
+    private CopyInsert(String table, String columns, int numColumns) {
+        _copySql = "COPY " + table + " (" + columns + ") FROM STDIN";
+        _numColumns = numColumns;
+    }
+
+    /**
+     * Checks if the statement can be executed with COPY.
+     * @param sql The statement to check
+     * @return A CopyInsert for the statement, or null if the statement is not a plain INSERT with parameters only
+     */
+    public static CopyInsert fromInsertStatement(String sql) {
+        Matcher matcher = INSERT_PATTERN.matcher(sql);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String columns = matcher.group(2).trim();
+        int numColumns = columns.split(",").length;
+        int numParameters = matcher.group(3).split(",").length;
+        if (numColumns != numParameters) {
+            return null;
+        }
+        return new CopyInsert(matcher.group(1), columns, numColumns);
+    }
+
+    public String getCopySql() {
+        return _copySql;
+    }
+
+    public int getNumColumns() {
+        return _numColumns;
+    }
+
+    /**
+     * Streams the rows into the table. This is a blocking operation.
+     * @return The number of inserted rows
+     */
+    public int execute(PGConnection connection, List<List<SqpValue>> rows, boolean autocommit) throws SqpException {
+        QueryExecutor queryExecutor = connection.getQueryExecutor();
+        CopyRowEncoder encoder = new CopyRowEncoder(connection);
+        CopyIn copyIn = null;
+        try {
+            // like the regular execution, suppress the implicit BEGIN in autocommit mode
+            copyIn = (CopyIn) queryExecutor.startCopy(_copySql, autocommit);
+            byte[] buffer = new byte[FLUSH_SIZE];
+            int bufferPos = 0;
+            for (List<SqpValue> row : rows) {
+                if (row.size() != _numColumns) {
+                    throw new SqpException(ErrorType.ParameterBindFailed, "Expected " + _numColumns +
+                            " parameters, but got " + row.size(), ErrorAction.Recover);
+                }
+                byte[] encoded = encoder.encodeRow(row);
+                if (bufferPos + encoded.length > buffer.length) {
+                    copyIn.writeToCopy(buffer, 0, bufferPos);
+                    bufferPos = 0;
+                }
+                if (encoded.length > buffer.length) {
+                    copyIn.writeToCopy(encoded, 0, encoded.length);
+                } else {
+                    System.arraycopy(encoded, 0, buffer, bufferPos, encoded.length);
+                    bufferPos += encoded.length;
+                }
+            }
+            if (bufferPos > 0) {
+                copyIn.writeToCopy(buffer, 0, bufferPos);
+            }
+            long numRows = copyIn.endCopy();
+            copyIn = null;
+            return (int) numRows;
+        } catch (SQLException e) {
+            throw new ExecutionFailedException(e);
+        } finally {
+            if (copyIn != null && copyIn.isActive()) {
+                cancelSilently(copyIn);
+            }
+        }
+    }
+
+    private void cancelSilently(CopyIn copyIn) {
+        try {
+            copyIn.cancelCopy();
+        } catch (SQLException e) {
+            // the original error is more interesting
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.exceptions.UnsupportedTypeException;
+import io.sqp.core.types.SqpValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes parameter rows in the text format of "COPY ... FROM STDIN". Values are converted the same way as
+ * for the regular parameter binding, so both ways of executing an INSERT behave identically.
+ * @author Stefan Burnicki
+ */
+public class CopyRowEncoder extends ParameterBinder {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private StringBuilder _row;
+    private int _lastIndex;
+
+    public CopyRowEncoder(PGConnection connection) {
+        super(connection);
+        _row = new StringBuilder(256);
+    }
+
+    public byte[] encodeRow(List<SqpValue> parameters) throws SqpException {
+        _row.setLength(0);
+        _lastIndex = -1;
+        for (int i = 0; i < parameters.size(); i++) {
+            bindParameter(i, parameters.get(i));
+        }
+        _row.append('\n');
+        return _row.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void bindNull(int idx) {
+        appendSeparator(idx);
+        _row.append("\\N");
+    }
+
+    @Override
+    protected void bindLiteral(int idx, String literal, int oid) {
+        appendSeparator(idx);
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            switch (c) {
+                case '\\':
+                    _row.append("\\\\");
+                    break;
+                case '\t':
+                    _row.append("\\t");
+                    break;
+                case '\n':
+                    _row.append("\\n");
+                    break;
+                case '\r':
+                    _row.append("\\r");
+                    break;
+                default:
+                    _row.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void bindBytes(int idx, byte[] bytes) {
+        appendSeparator(idx);
+        // bytea hex format. The backslash needs to be escaped for COPY
+        _row.append("\\\\x");
+        for (byte b : bytes) {
+            _row.append(HEX_DIGITS[(b >> 4) & 0xF]);
+            _row.append(HEX_DIGITS[b & 0xF]);
+        }
+    }
+
+    @Override
+    protected void bindLargeObject(int idx, LargeObjectUpload upload) throws SqpException {
+        // no other query can be executed while the COPY is running
+        throw new UnsupportedTypeException("BLOBs cannot be used with COPY");
+    }
+
+    private void appendSeparator(int idx) {
+        if (idx != _lastIndex + 1) {
+            // the parameter binder processes the parameters strictly in order
+            throw new IllegalStateException("Parameter " + idx + " was encoded out of order");
+        }
+        if (idx > 0) {
+            _row.append('\t');
+        }
+        _lastIndex = idx;
+    }
+}
@@ -28,7 +28,6 @@ import io.sqp.backend.results.RowDataResult;
 import io.sqp.core.ColumnMetadata;
 import io.sqp.core.ErrorAction;
 import io.sqp.core.ErrorType;
-import io.sqp.core.TypeDescription;
 import io.sqp.core.exceptions.CursorProblemException;
 import io.sqp.core.exceptions.SqpException;
 import io.sqp.core.types.SqpValue;
@@ -36,7 +35,6 @@ import io.sqp.core.types.SqpValue;
 import java.io.Closeable;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author Stefan Burnicki
@@ -58,7 +56,7 @@ public class Cursor implements Closeable {
         _connection = connection;
         _scrollable = scrollable;
         _fields = fields;
-        initColumnMetadata(fields);
+        _columnMetadata = connection.getTypeConverter().getColumnMetadata(fields);
         _rowBuffer = new LinkedList<>();
         _currentRow = 0;
     }
@@ -87,6 +85,17 @@ public class Cursor implements Closeable {
         return _columnMetadata;
     }
 
+    Field[] getFields() {
+        return _fields;
+    }
+
+    /**
+     * Derives the column metadata again, e.g. because the type names were reloaded.
+     */
+    void updateColumnMetadata() {
+        _columnMetadata = _connection.getTypeConverter().getColumnMetadata(_fields);
+    }
+
     public synchronized void fetch(int position, int numRows, boolean forward, ResultHandler<QueryResult> resultHandler) {
         if ((!forward || position >= 0) && !_scrollable) {
             resultHandler.fail(new CursorProblemException("", CursorProblemException.Problem.NotScrollable));
@@ -187,15 +196,4 @@ public class Cursor implements Closeable {
         return  _resultCursor != null;
     }
 
-    private void initColumnMetadata(Field[] fields) {
-        _columnMetadata = Arrays.stream(fields).map(this::createColumnMetadataFromField).collect(Collectors.toList());
-    }
-
-    private ColumnMetadata createColumnMetadataFromField(Field field) {
-        String origType = TypeInfo.getTypeName(field.getOID());
-        TypeConverter typeConverter = _connection.getTypeConverter();
-        TypeDescription typeDescription = typeConverter.mapToTypeDescription(field);
-        return new ColumnMetadata(field.getColumnLabel(), typeDescription, origType);
-    }
-
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import org.postgresql.core.Oid;
+import org.postgresql.core.ParameterList;
+import org.postgresql.core.Query;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.util.PGbytea;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+
+/**
+ * Reads a range of a large object in chunks with "lo_get". Only one chunk is held in memory at once, and
+ * a chunk is only requested from the server when the previous one was consumed.
+ * Reading is blocking, so the stream must not be read by an event loop thread.
+ * @author Stefan Burnicki
+ */
+public class LargeObjectInputStream extends InputStream {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final String READ_CHUNK_SQL = "SELECT lo_get(?, ?, ?)";
+
+    private PGConnection _connection;
+    private long _oid;
+    private long _position;
+    private long _bytesLeft;
+    private int _chunkSize;
+    private byte[] _chunk;
+    private int _chunkPos;
+    private boolean _endReached;
+    private Query _readQuery;
+
+    /**
+     * @param connection The connection to read from
+     * @param oid The oid of the large object
+     * @param offset The offset in bytes to start reading at
+     * @param length The maximum number of bytes to read, or -1 to read up to the end
+     * @param chunkSize The number of bytes to request from the server at once
+     */
+    public LargeObjectInputStream(PGConnection connection, long oid, long offset, long length, int chunkSize) {
+        _connection = connection;
+        _oid = oid;
+        _position = offset < 0 ? 0 : offset;
+        _bytesLeft = length < 0 ? Long.MAX_VALUE : length;
+        _chunkSize = chunkSize;
+        _chunk = new byte[0];
+        _chunkPos = 0;
+        _endReached = _bytesLeft == 0;
+    }
+
+    /**
+     * Reads the first chunk, so errors like a non-existing large object show up early.
+     * @throws IOException If reading failed
+     */
+    public void prefetch() throws IOException {
+        ensureChunk();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return _chunk[_chunkPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        int numRead = Math.min(len, _chunk.length - _chunkPos);
+        System.arraycopy(_chunk, _chunkPos, b, off, numRead);
+        _chunkPos += numRead;
+        return numRead;
+    }
+
+    @Override
+    public int available() {
+        return _chunk.length - _chunkPos;
+    }
+
+    @Override
+    public void close() {
+        if (_readQuery != null) {
+            // non-blocking, the statement is actually closed with the next query
+            _readQuery.close();
+            _readQuery = null;
+        }
+        _chunk = new byte[0];
+        _chunkPos = 0;
+        _endReached = true;
+    }
+
+    private boolean ensureChunk() throws IOException {
+        if (_chunkPos < _chunk.length) {
+            return true;
+        }
+        if (_endReached) {
+            return false;
+        }
+        int requested = (int) Math.min(_chunkSize, _bytesLeft);
+        try {
+            _chunk = readChunk(requested);
+        } catch (SQLException e) {
+            throw new IOException("Failed to read large object " + _oid + ": " + e.getMessage(), e);
+        }
+        _chunkPos = 0;
+        _position += _chunk.length;
+        _bytesLeft -= _chunk.length;
+        // the server returns less data than requested only at the end of the object
+        _endReached = _chunk.length < requested || _bytesLeft <= 0;
+        return _chunk.length > 0;
+    }
+
+    private byte[] readChunk(int length) throws SQLException {
+        QueryExecutor queryExecutor = _connection.getQueryExecutor();
+        if (_readQuery == null) {
+            // the query is reused for all chunks of this stream
+            _readQuery = queryExecutor.createParameterizedQuery(READ_CHUNK_SQL);
+        }
+        ParameterList parameters = _readQuery.createParameterList();
+        parameters.setLiteralParameter(1, Long.toString(_oid), Oid.OID);
+        parameters.setLiteralParameter(2, Long.toString(_position), Oid.INT8);
+        parameters.setLiteralParameter(3, Integer.toString(length), Oid.INT4);
+        SingleValueExecutionHook hook = new SingleValueExecutionHook();
+        // runs in the current transaction, if there is one. Reading doesn't need a new one
+        queryExecutor.execute(_readQuery, parameters, hook, 0, 0, QueryExecutor.QUERY_SUPPRESS_BEGIN);
+        return hook.getValue() == null ? new byte[0] : PGbytea.toBytes(hook.getValue());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.backend.exceptions.ExecutionFailedException;
+import io.sqp.backend.exceptions.ParameterBindException;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.exceptions.TypeConversionException;
+import io.sqp.core.types.SqpBlob;
+import io.sqp.core.types.SqpTypeCode;
+import org.postgresql.core.Oid;
+import org.postgresql.core.ParameterList;
+import org.postgresql.core.Query;
+import org.postgresql.core.QueryExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+
+/**
+ * Creates a large object from a BLOB parameter and binds its oid to the parameter. The BLOB is uploaded in
+ * chunks of the configured LOB chunk size: The first one creates the large object with "lo_from_bytea", the
+ * others are appended with "lo_put". So only one chunk is held in memory, and the size isn't limited by bytea.
+ * @author Stefan Burnicki
+ */
+public class LargeObjectUpload {
+    private static final String CREATE_SQL = "SELECT lo_from_bytea(0, ?)";
+    private static final String PUT_SQL = "SELECT lo_put(?, ?, ?)";
+    private static final String UNLINK_SQL = "SELECT lo_unlink(?)";
+
+    private SqpBlob _blob;
+    private ParameterList _target;
+    private int _targetIndex;
+
+    public LargeObjectUpload(SqpBlob blob) {
+        _blob = blob;
+    }
+
+    /**
+     * Sets the parameter that references the large object after it was created.
+     * @param target The parameter list to bind the oid to
+     * @param targetIndex The 1-based index of the parameter
+     */
+    public void setTarget(ParameterList target, int targetIndex) {
+        _target = target;
+        _targetIndex = targetIndex;
+    }
+
+    /**
+     * Uploads the large object. This is a blocking operation.
+     * @param connection The connection to create the large object with
+     * @param autocommit Whether the connection is in autocommit mode. Otherwise the object is created in the
+     *                   current transaction
+     * @return The oid of the new large object
+     * @throws SqpException If the upload or binding the oid failed
+     */
+    public long execute(PGConnection connection, boolean autocommit) throws SqpException {
+        InputStream stream = _blob.getInputStream();
+        if (stream == null) {
+            throw new TypeConversionException("No data associated with the BLOB '" + _blob.getId() + "'");
+        }
+        QueryExecutor queryExecutor = connection.getQueryExecutor();
+        int flags = QueryExecutor.QUERY_ONESHOT | (autocommit ? QueryExecutor.QUERY_SUPPRESS_BEGIN : 0);
+        byte[] chunk = new byte[connection.getConfiguration().getLobChunkSize()];
+        long oid = -1;
+        try {
+            int length = readChunk(stream, chunk);
+            oid = create(queryExecutor, chunk, length, flags);
+            long offset = length;
+            // a chunk that isn't full is the last one
+            while (length == chunk.length) {
+                length = readChunk(stream, chunk);
+                if (length > 0) {
+                    put(queryExecutor, oid, offset, chunk, length, flags);
+                    offset += length;
+                }
+            }
+            if (_target != null) {
+                _target.setLiteralParameter(_targetIndex, Long.toString(oid), Oid.OID);
+            }
+            return oid;
+        } catch (SQLException | IOException | NumberFormatException e) {
+            // in a transaction, the large object is removed when the failed transaction is rolled back
+            if (oid >= 0 && autocommit) {
+                unlinkSilently(connection, oid);
+            }
+            throw new ParameterBindException(SqpTypeCode.Blob, e);
+        }
+    }
+
+    private long create(QueryExecutor queryExecutor, byte[] chunk, int length, int flags)
+            throws SQLException, IOException {
+        Query query = queryExecutor.createParameterizedQuery(CREATE_SQL);
+        try {
+            ParameterList parameters = query.createParameterList();
+            parameters.setBytea(1, chunk, 0, length);
+            SingleValueExecutionHook hook = new SingleValueExecutionHook();
+            queryExecutor.execute(query, parameters, hook, 0, 0, flags);
+            return Long.parseLong(new String(hook.getValue(), "ASCII"));
+        } finally {
+            query.close();
+        }
+    }
+
+    private void put(QueryExecutor queryExecutor, long oid, long offset, byte[] chunk, int length, int flags)
+            throws SQLException {
+        Query query = queryExecutor.createParameterizedQuery(PUT_SQL);
+        try {
+            ParameterList parameters = query.createParameterList();
+            parameters.setLiteralParameter(1, Long.toString(oid), Oid.OID);
+            parameters.setLiteralParameter(2, Long.toString(offset), Oid.INT8);
+            parameters.setBytea(3, chunk, 0, length);
+            queryExecutor.execute(query, parameters, new SingleValueExecutionHook(), 0, 0, flags);
+        } finally {
+            query.close();
+        }
+    }
+
+    private static void unlinkSilently(PGConnection connection, long oid) {
+        try {
+            unlink(connection, oid);
+        } catch (SqpException e) {
+            // the original error is more interesting
+        }
+    }
+
+    /**
+     * Removes a large object in autocommit mode, e.g. if the statement that should reference it failed.
+     * This is a blocking operation.
+     * @param connection The connection to remove the large object with
+     * @param oid The oid of the large object
+     * @throws SqpException If the large object couldn't be removed
+     */
+    public static void unlink(PGConnection connection, long oid) throws SqpException {
+        QueryExecutor queryExecutor = connection.getQueryExecutor();
+        Query query = queryExecutor.createParameterizedQuery(UNLINK_SQL);
+        try {
+            ParameterList parameters = query.createParameterList();
+            parameters.setLiteralParameter(1, Long.toString(oid), Oid.OID);
+            int flags = QueryExecutor.QUERY_ONESHOT | QueryExecutor.QUERY_SUPPRESS_BEGIN;
+            queryExecutor.execute(query, parameters, new SingleValueExecutionHook(), 0, 0, flags);
+        } catch (SQLException e) {
+            throw new ExecutionFailedException(e);
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Fills the chunk, unless the end of the stream is reached.
+     * @return The number of bytes read into the chunk
+     */
+    private static int readChunk(InputStream stream, byte[] chunk) throws IOException {
+        int length = 0;
+        int read;
+        while (length < chunk.length && (read = stream.read(chunk, length, chunk.length - length)) >= 0) {
+            length += read;
+        }
+        return length;
+    }
+}
@@ -35,8 +35,12 @@ public class PGConfiguration {
     private String _password;
     private HostSpec _hostSpec;
     private Locale _serverLocale;
+    private int _copyThreshold;
+    private int _lobChunkSize;
 
-    public PGConfiguration() {}
+    public PGConfiguration() {
+        _lobChunkSize = LargeObjectInputStream.DEFAULT_CHUNK_SIZE;
+    }
 
     public String getUsername() {
         return _username;
@@ -70,6 +74,26 @@ public class PGConfiguration {
         _serverLocale = serverLocale;
     }
 
+    /**
+     * Batches of plain INSERT statements with at least this number of parameter rows are executed with
+     * "COPY ... FROM STDIN". A value of 0 disables this.
+     */
+    public int getCopyThreshold() {
+        return _copyThreshold;
+    }
+
+    public void setCopyThreshold(int copyThreshold) {
+        _copyThreshold = copyThreshold;
+    }
+
+    public int getLobChunkSize() {
+        return _lobChunkSize;
+    }
+
+    public void setLobChunkSize(int lobChunkSize) {
+        _lobChunkSize = lobChunkSize;
+    }
+
     public static PGConfiguration load(Configuration config, Logger logger) throws ConfigurationException {
         PGConfiguration pgConfig = new PGConfiguration();
         pgConfig.setUsername(config.getString("username"));
@@ -83,6 +107,12 @@ public class PGConfiguration {
                 logger.log(Level.WARNING, "serverLanguage and/or serverCountry are not set. Using default locale.");
             }
         }
+        if (config.hasKey("copyThreshold")) {
+            pgConfig.setCopyThreshold(config.getInt("copyThreshold"));
+        }
+        if (config.hasKey("lobChunkSize")) {
+            pgConfig.setLobChunkSize(config.getInt("lobChunkSize"));
+        }
         return pgConfig;
     }
 }
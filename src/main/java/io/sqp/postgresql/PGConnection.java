@@ -24,9 +24,12 @@ import io.sqp.backend.ResultHandler;
 import org.postgresql.core.*;
 import org.postgresql.util.HostSpec;
 import io.sqp.backend.exceptions.DatabaseConnectionException;
+import io.sqp.backend.exceptions.ExecutionFailedException;
+import io.sqp.backend.exceptions.LobReadFailedException;
 import io.sqp.backend.exceptions.TransactionFinishFailedException;
 import io.sqp.backend.results.InformationRequestResult;
 import io.sqp.backend.results.QueryResult;
+import io.sqp.core.DataFormat;
 import io.sqp.core.ErrorAction;
 import io.sqp.core.ErrorType;
 import io.sqp.core.InformationResponseType;
@@ -37,8 +40,10 @@ import io.sqp.core.exceptions.NotImplementedException;
 import io.sqp.core.exceptions.SqpException;
 import io.sqp.core.types.SqpValue;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -46,6 +51,9 @@ import java.util.stream.Collectors;
  * @author Stefan Burnicki
  */
 public class PGConnection implements BackendConnection {
+    private static final String TYPE_NAMES_QUERY = "SELECT t.oid, n.nspname, t.typname FROM pg_catalog.pg_type t " +
+            "JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace";
+    private static final int UNKNOWN_TIMEOUT = -1;
     private static int _connectionIdCounter;
 
     private ProtocolConnection _connection;
@@ -56,15 +64,26 @@ public class PGConnection implements BackendConnection {
     private Query _rollbackQuery;
     private boolean _autocommit;
     private TypeConverter _typeConverter;
-    private AsyncExecutor _asyncExecutor;
+    private CancelableExecutor _asyncExecutor;
     private PGConfiguration _configuration;
+    private PGTypeCache _typeCache;
+    private String _databaseName;
+    private Map<String, Boolean> _serverVersionChecks;
+    private volatile int _queryTimeout;
+    private int _appliedQueryTimeout;
 
     public PGConnection(PGConfiguration config, AsyncExecutor asyncExecutor) {
+        this(config, asyncExecutor, new PGTypeCache());
+    }
+
+    public PGConnection(PGConfiguration config, AsyncExecutor asyncExecutor, PGTypeCache typeCache) {
         _autocommit = true;
+        _typeCache = typeCache;
+        _serverVersionChecks = new ConcurrentHashMap<>();
         _openStatements = new HashMap<>();
         _openCursors = new HashMap<>();
         _connectionId = _connectionIdCounter++;
-        _asyncExecutor = asyncExecutor;
+        _asyncExecutor = new CancelableExecutor(asyncExecutor);
         _configuration = config;
     }
 
@@ -77,7 +96,13 @@ public class PGConnection implements BackendConnection {
                 // TODO: this might be dangerous because of concurrency
                 _connection = ConnectionFactory.openConnection(new HostSpec[]{_configuration.getHostSpec()},
                         _configuration.getUsername(), databaseName, props, new Logger(_connectionId));
+                _databaseName = databaseName;
+                _serverVersionChecks.clear();
+                if (!_typeCache.hasTypeNames(databaseName)) {
+                    loadTypeNames(false);
+                }
                 _typeConverter = new TypeConverter(this, _configuration.getServerLocale());
+                _appliedQueryTimeout = UNKNOWN_TIMEOUT;
                 _commitQuery = _connection.getQueryExecutor().createSimpleQuery("COMMIT");
                 _rollbackQuery = _connection.getQueryExecutor().createSimpleQuery("ROLLBACK");
             } catch (Exception e) {
@@ -194,7 +219,7 @@ public class PGConnection implements BackendConnection {
 
     @Override
     public void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable,
-                        ResultHandler<QueryResult> resultHandler) {
+                        int fetchSize, ResultHandler<QueryResult> resultHandler) {
         Statement affectedStmt = _openStatements.get(statementId);
         if (affectedStmt == null) {
             resultHandler.fail(new SqpException(ErrorType.StatementNotFound,
@@ -209,7 +234,7 @@ public class PGConnection implements BackendConnection {
             return;
         }
 
-        affectedStmt.execute(_autocommit, cursorId, scrollable, resultHandler);
+        affectedStmt.execute(_autocommit, cursorId, scrollable, fetchSize, resultHandler);
     }
 
     @Override
@@ -237,9 +262,71 @@ public class PGConnection implements BackendConnection {
 
     @Override
     public void getLob(String id, long offset, long length, ResultHandler<LobStream> resultHandler) {
-        // TODO: support CLOBs and BLOBs. See the ParameterBinder on ideas of how to do this.
-        // Also check the Transbase backend for a working CLOB/BLOB implementation
-        throw new UnsupportedOperationException("Lob support is not yet implemented");
+        // BLOBs are large objects, their id is the oid. See the TypeConverter
+        long oid;
+        try {
+            oid = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            resultHandler.fail(new LobReadFailedException("LOB with ID '" + id + "' does not exist."));
+            return;
+        }
+        if (!haveMinimumServerVersion("9.4")) {
+            resultHandler.fail(new LobReadFailedException("Reading LOBs requires at least PostgreSQL 9.4"));
+            return;
+        }
+        _asyncExecutor.callAsync(() -> {
+            LargeObjectInputStream stream = new LargeObjectInputStream(this, oid, offset, length,
+                    _configuration.getLobChunkSize());
+            try {
+                stream.prefetch();
+            } catch (IOException e) {
+                throw new LobReadFailedException(e.getMessage(), e);
+            }
+            return new LobStream(stream, DataFormat.Binary);
+        }, resultHandler);
+    }
+
+    @Override
+    public void setQueryTimeout(int millis) {
+        _queryTimeout = millis;
+    }
+
+    @Override
+    public void cancel(SuccessHandler successHandler) {
+        if (_connection == null || _connection.isClosed()) {
+            successHandler.succeed();
+            return;
+        }
+        // The cancel request is sent with a separate connection, so it doesn't need to wait for the running query
+        _asyncExecutor.cancel(() -> {
+            try {
+                _connection.sendQueryCancel();
+            } catch (SQLException e) {
+                throw new ExecutionFailedException(e);
+            }
+        }, successHandler);
+    }
+
+    /**
+     * Sets the statement_timeout of the database session if the query timeout changed since the last execution.
+     * Needs to be called from the worker thread, before the query is executed.
+     */
+    void applyQueryTimeout() throws ExecutionFailedException {
+        int timeout = _queryTimeout;
+        if (timeout == _appliedQueryTimeout) {
+            return;
+        }
+        // reset it to the default value of the database if the client doesn't want a timeout
+        String sql = timeout > 0 ? "SET statement_timeout = " + timeout : "RESET statement_timeout";
+        int flags = QueryExecutor.QUERY_ONESHOT | QueryExecutor.QUERY_NO_METADATA | QueryExecutor.QUERY_NO_RESULTS |
+                QueryExecutor.QUERY_SUPPRESS_BEGIN;
+        try {
+            getQueryExecutor().execute(getQueryExecutor().createSimpleQuery(sql), null,
+                    new TransactionExecutionHook(), 0, 0, flags);
+        } catch (SQLException e) {
+            throw new ExecutionFailedException(e);
+        }
+        _appliedQueryTimeout = timeout;
     }
 
     QueryExecutor getQueryExecutor() {
@@ -258,8 +345,24 @@ public class PGConnection implements BackendConnection {
         return _asyncExecutor;
     }
 
+    PGConfiguration getConfiguration() {
+        return _configuration;
+    }
+
+    PGTypeCache getTypeCache() {
+        return _typeCache;
+    }
+
+    String getDatabaseName() {
+        return _databaseName;
+    }
+
     boolean haveMinimumServerVersion(String ver) {
-        // TODO: maybe buffer this
+        // called for every parameter binder and type converter, so remember the results
+        return _serverVersionChecks.computeIfAbsent(ver, this::checkMinimumServerVersion);
+    }
+
+    private boolean checkMinimumServerVersion(String ver) {
         int requiredver = Utils.parseServerVersionStr(ver);
         if (requiredver == 0) {
             // Failed to parse input version. Fall back on legacy behaviour for BC.
@@ -269,6 +372,45 @@ public class PGConnection implements BackendConnection {
         }
     }
 
+    private void loadTypeNames(boolean update) throws SQLException, IOException {
+        Query query = _connection.getQueryExecutor().createSimpleQuery(TYPE_NAMES_QUERY);
+        TupleCollectingExecutionHook hook = new TupleCollectingExecutionHook();
+        int flags = QueryExecutor.QUERY_ONESHOT | QueryExecutor.QUERY_SUPPRESS_BEGIN;
+        _connection.getQueryExecutor().execute(query, null, hook, 0, 0, flags);
+        Encoding encoding = _connection.getEncoding();
+        Map<Integer, String> typeNames = new HashMap<>();
+        Map<Integer, String> namespaces = new HashMap<>();
+        for (byte[][] tuple : hook.getTuples()) {
+            // oids are unsigned, but type oids are far below 2^31
+            int oid = (int) Long.parseLong(encoding.decode(tuple[0]));
+            namespaces.put(oid, encoding.decode(tuple[1]));
+            typeNames.put(oid, encoding.decode(tuple[2]));
+        }
+        if (update) {
+            _typeCache.updateTypeNames(_databaseName, typeNames, namespaces);
+        } else {
+            _typeCache.setTypeNames(_databaseName, typeNames, namespaces);
+        }
+    }
+
+    /**
+     * Loads the type names again if the cursor has columns of types that were created after they were loaded.
+     * Needs to be called from the worker thread, after the query was executed.
+     */
+    void resolveTypeNames(Cursor cursor) {
+        if (cursor == null || Arrays.stream(cursor.getFields())
+                .allMatch(field -> _typeCache.hasTypeName(_databaseName, field.getOID()))) {
+            return;
+        }
+        try {
+            loadTypeNames(true);
+        } catch (SQLException | IOException e) {
+            // the query itself succeeded, and the types are still described by their oid
+            return;
+        }
+        cursor.updateColumnMetadata();
+    }
+
     private void executeTransactionCommand(Query query, SuccessHandler successHandler) {
         if (!hasActiveTransaction()) {
             // no transaction to roll back or commit. Also when using autocommit
@@ -280,6 +422,10 @@ public class PGConnection implements BackendConnection {
         _asyncExecutor.callAsync(() -> {
             try {
                 getQueryExecutor().execute(query, null, new TransactionExecutionHook(), 0, 0, flags);
+                if (query == _rollbackQuery) {
+                    // a timeout that was set within the transaction is rolled back, too
+                    _appliedQueryTimeout = UNKNOWN_TIMEOUT;
+                }
                 return null;
             } catch (SQLException e) {
                 throw new TransactionFinishFailedException(query == _commitQuery, e);
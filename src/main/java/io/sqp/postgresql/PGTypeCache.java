@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.core.TypeDescription;
+import io.sqp.core.types.SqpTypeCode;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Backend-wide cache of type information that is shared by all connections.
+ * Type names of a database are read from pg_type when the first connection to it is established, and again
+ * when a result contains a type that was created afterwards.
+ * The mappings from oid and type modifier to type descriptions are independent of the database.
+ * @author Stefan Burnicki
+ */
+public class PGTypeCache {
+    private static final String CATALOG_NAMESPACE = "pg_catalog";
+    private Map<String, Map<Integer, String>> _typeNames;
+    private Map<String, Map<String, Integer>> _oids;
+    private Map<Long, TypeDescription> _typeDescriptions;
+
+    public PGTypeCache() {
+        _typeNames = new ConcurrentHashMap<>();
+        _oids = new ConcurrentHashMap<>();
+        _typeDescriptions = new ConcurrentHashMap<>();
+    }
+
+    public boolean hasTypeNames(String database) {
+        return _typeNames.containsKey(database);
+    }
+
+    /**
+     * @param database The database of the type
+     * @param oid The type's oid
+     * @return Whether the type has a name. Types created after the names were loaded don't have one.
+     */
+    public boolean hasTypeName(String database, int oid) {
+        Map<Integer, String> typeNames = _typeNames.get(database);
+        return TypeInfo.isKnownType(oid) || (typeNames != null && typeNames.containsKey(oid));
+    }
+
+    /**
+     * Sets the type names read from the database's pg_type. If they were already set by another connection,
+     * this call has no effect.
+     * @param database The database the type names belong to
+     * @param typeNames Mapping of oids to the type names
+     * @param namespaces Mapping of oids to the names of the types' schemas
+     */
+    public void setTypeNames(String database, Map<Integer, String> typeNames, Map<Integer, String> namespaces) {
+        if (_typeNames.containsKey(database)) {
+            return;
+        }
+        updateTypeNames(database, typeNames, namespaces);
+    }
+
+    /**
+     * Replaces the type names of a database, e.g. because new types were created.
+     * Type names that exist in multiple schemas are qualified by their schema, unless it's pg_catalog. Every type
+     * can also be resolved by its qualified name.
+     * @param database The database the type names belong to
+     * @param typeNames Mapping of oids to the type names
+     * @param namespaces Mapping of oids to the names of the types' schemas
+     */
+    public synchronized void updateTypeNames(String database, Map<Integer, String> typeNames,
+                                             Map<Integer, String> namespaces) {
+        Map<String, Long> numSchemas = typeNames.values().stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Map<Integer, String> uniqueNames = new HashMap<>();
+        Map<String, Integer> oids = new HashMap<>();
+        typeNames.forEach((oid, name) -> {
+            String namespace = namespaces.get(oid);
+            String qualifiedName = namespace + "." + name;
+            boolean unique = numSchemas.get(name) == 1 || CATALOG_NAMESPACE.equals(namespace);
+            uniqueNames.put(oid, unique ? name : qualifiedName);
+            oids.put(qualifiedName, oid);
+            if (unique) {
+                oids.put(name, oid);
+            }
+        });
+        // the oids need to be there first, so a known type name can always be resolved
+        _oids.put(database, Collections.unmodifiableMap(oids));
+        _typeNames.put(database, Collections.unmodifiableMap(uniqueNames));
+    }
+
+    /**
+     * Gets the internal type name, i.e. without the "pg_" prefix.
+     * Known types are resolved by the static {@link TypeInfo}, others by the database's pg_type.
+     * @param database The database of the type
+     * @param oid The type's oid
+     * @return The type name, or ("oid" + oid) if it's unknown
+     */
+    public String getInternalTypeName(String database, int oid) {
+        if (TypeInfo.isKnownType(oid)) {
+            return TypeInfo.getInternalTypeName(oid);
+        }
+        Map<Integer, String> typeNames = _typeNames.get(database);
+        String name = typeNames == null ? null : typeNames.get(oid);
+        return name != null ? name : TypeInfo.getInternalTypeName(oid);
+    }
+
+    /**
+     * The type name with 'pg_' prefix for unique identification
+     * @param database The database of the type
+     * @param oid The type's oid
+     * @return The prefixed type name
+     */
+    public String getTypeName(String database, int oid) {
+        return TypeInfo.TYPE_NAME_PREFIX + getInternalTypeName(database, oid);
+    }
+
+    /**
+     * Resolves a prefixed type name to the type's oid.
+     * @param database The database of the type
+     * @param typeName The type name with 'pg_' prefix
+     * @return The oid or -1 if the type is unknown
+     */
+    public int getOidFromTypeName(String database, String typeName) {
+        typeName = typeName.toLowerCase();
+        Map<String, Integer> oids = _oids.get(database);
+        if (oids != null && typeName.startsWith(TypeInfo.TYPE_NAME_PREFIX)) {
+            Integer oid = oids.get(typeName.substring(TypeInfo.TYPE_NAME_PREFIX.length()));
+            if (oid != null) {
+                return oid;
+            }
+        }
+        return TypeInfo.getOidFromTypeName(typeName);
+    }
+
+    /**
+     * Gets the description of the type as it's mapped by default, i.e. without respecting allowed native types.
+     * @param oid The type's oid
+     * @param typemod The type modifier
+     * @return The type description
+     */
+    public TypeDescription getTypeDescription(int oid, int typemod) {
+        long key = ((long) oid << 32) | (typemod & 0xFFFFFFFFL);
+        return _typeDescriptions.computeIfAbsent(key, k -> {
+            SqpTypeCode typeCode = TypeInfo.getSupportedSqpTypeCode(oid);
+            return typeCode.asDescription(TypeInfo.getPrecision(oid, typemod), TypeInfo.getScale(oid, typemod));
+        });
+    }
+}
@@ -29,6 +29,7 @@ import io.sqp.core.exceptions.SqpException;
 import io.sqp.core.util.TypeUtil;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,9 +40,15 @@ public class ParameterBinder {
     private int _bindStringOid;
     private boolean _serverCanParseOffset;
     private boolean _serverSupportsOffsetSeconds;
+    private List<LargeObjectUpload> _largeObjectUploads;
 
     public ParameterBinder(PGConnection connection, ParameterList parameterList) {
+        this(connection);
         _parameterList = parameterList;
+    }
+
+    protected ParameterBinder(PGConnection connection) {
+        _largeObjectUploads = new ArrayList<>();
         _bindStringOid = connection.haveMinimumServerVersion("8.0") ? Oid.VARCHAR : Oid.UNSPECIFIED;
         _serverCanParseOffset = connection.haveMinimumServerVersion("7.4");
         _serverSupportsOffsetSeconds = connection.haveMinimumServerVersion("8.2");
@@ -60,8 +67,7 @@ public class ParameterBinder {
         SqpTypeCode type = value.getType();
         // care about null values first
         if (value.isNull()) {
-            // if Oid.UNSPECIFIED turns out not to work, introduce a sqp -> pg lookup in TypeInfo
-            _parameterList.setNull(idx + 1, Oid.UNSPECIFIED);
+            bindNull(idx);
             return;
         }
 
@@ -152,39 +158,19 @@ public class ParameterBinder {
         throw new UnsupportedTypeException("Binding intervals is not yet implemented.");
     }
 
-    private void bindBlob(int idx, SqpBlob value) throws UnsupportedTypeException {
-        throw new UnsupportedTypeException("Binding blobs is not yet implemented.");
-        // TODO: support LOBs. Either by just using the normal data types "bytea" and "text" for BLOBs,
-        // respectively CLOBs, or by using the explicit LargeObject API.
-        // For the second approach it would be needed to reimplement the LargeObjectManager of the JDBC driver
-        // or to implement the BaseConnection of the JDBC driver so both Fastpath and LargeObjectManager can be used.
-        // The second approach is probably easier. Then the following code can be used:
-        /*
-        LargeObjectManager lom = connection.getLargeObjectAPI();
-        long oid = lom.createLO();
-        LargeObject lob = lom.open(oid);
-        OutputStream outputStream = lob.getOutputStream();
-        byte[] buf = new byte[4096];
-        try
-        {
-            long remaining;
-            if (length > 0)
-            {
-                remaining = length;
-            }
-            else
-            {
-                remaining = Long.MAX_VALUE;
-            }
-            int numRead = inputStream.read(buf, 0, (length > 0 && remaining < buf.length ? (int)remaining : buf.length));
-            while (numRead != -1 && remaining > 0)
-            {
-                remaining -= numRead;
-                outputStream.write(buf, 0, numRead);
-                numRead = inputStream.read(buf, 0, (length > 0 && remaining < buf.length ? (int)remaining : buf.length));
-            }
-        }
-        */
+    private void bindBlob(int idx, SqpBlob value) throws SQLException, SqpException {
+        // BLOBs are stored as large objects and referenced by their oid. The upload is a blocking operation,
+        // so it's done right before the statement gets executed
+        bindLargeObject(idx, new LargeObjectUpload(value));
+    }
+
+    protected void bindLargeObject(int idx, LargeObjectUpload upload) throws SQLException, SqpException {
+        upload.setTarget(_parameterList, idx + 1);
+        _largeObjectUploads.add(upload);
+    }
+
+    public List<LargeObjectUpload> getLargeObjectUploads() {
+        return _largeObjectUploads;
     }
 
     public void bindCustom(int idx, SqpCustom custom) throws SqpException, SQLException {
@@ -262,12 +248,17 @@ public class ParameterBinder {
         bindLiteral(idx, sb.toString(), Oid.UNSPECIFIED);
     }
 
+    protected void bindNull(int idx) throws SQLException {
+        // if Oid.UNSPECIFIED turns out not to work, introduce a sqp -> pg lookup in TypeInfo
+        _parameterList.setNull(idx + 1, Oid.UNSPECIFIED);
+    }
+
     public void bindBytes(int idx, byte[] bytes) throws SQLException, UnsupportedTypeException {
         // not that the internal parameter list takes a 1-based index
         _parameterList.setBytea(idx + 1, bytes, 0, bytes.length);
     }
 
-    private void bindLiteral(int idx, String literal, int oid) throws SQLException {
+    protected void bindLiteral(int idx, String literal, int oid) throws SQLException {
         // ParameterList indexing starts with 1 here. Probably it's because its from the JDBC driver and some
         // JDBC spec genius wanted to fuck around with conventions
         _parameterList.setLiteralParameter(idx + 1, literal, oid);
@@ -32,6 +32,7 @@ public class PostgreSQLBackend implements Backend {
     private AsyncExecutor _asyncExecutor;
     private Logger _logger;
     private PGTypeRepository _typeRepository;
+    private PGTypeCache _typeCache;
 
     @Override
     public void init(Configuration configuration, AsyncExecutor asyncExecutor) throws ConfigurationException {
@@ -39,11 +40,12 @@ public class PostgreSQLBackend implements Backend {
         _asyncExecutor = asyncExecutor;
         _configuration = PGConfiguration.load(configuration, _logger);
         _typeRepository = new PGTypeRepository(_logger);
+        _typeCache = new PGTypeCache();
     }
 
     @Override
     public BackendConnection createConnection() {
-        return new PGConnection(_configuration, _asyncExecutor);
+        return new PGConnection(_configuration, _asyncExecutor, _typeCache);
     }
 
     @Override
@@ -52,8 +52,10 @@ public class SimpleStatement implements IStatement {
         _asyncExecutor.callAsync(() -> {
             // runs in different thread
             try {
+                _connection.applyQueryTimeout();
                 QueryExecutionHook executionHook = new QueryExecutionHook(_connection, this, scrollable);
-                getQueryExecutor().execute(simpleQuery, null, executionHook, 0, 0, flags);
+                getQueryExecutor().execute(simpleQuery, null, executionHook, 0, Math.max(maxRows, 0), flags);
+                _connection.resolveTypeNames(executionHook.getReceivedCursor());
                 return executionHook;
             } catch (SQLException e) {
                 throw new ExecutionFailedException(e);
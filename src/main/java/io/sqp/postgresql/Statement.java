@@ -31,10 +31,12 @@ import io.sqp.backend.results.CursorDescriptionResult;
 import io.sqp.backend.results.QueryResult;
 import io.sqp.backend.results.UpdateQueryResult;
 import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpTypeCode;
 import io.sqp.core.types.SqpValue;
 
 import java.io.Closeable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,12 +49,19 @@ public class Statement implements Closeable, IStatement {
     private String _sql;
     private Query _preparedQuery;
     private ParameterList[] _parameterLists;
+    private CopyInsert _copyInsert;
+    private List<List<SqpValue>> _copyRows;
+    private List<LargeObjectUpload> _largeObjectUploads;
 
     private Statement(PGConnection connection, String sql) {
         _connection = connection;
         _sql = sql;
         _asyncExecutor = connection.getAsyncExecutor();
         _parameterLists = new ParameterList[0];
+        _largeObjectUploads = new ArrayList<>();
+        if (connection.getConfiguration().getCopyThreshold() > 0) {
+            _copyInsert = CopyInsert.fromInsertStatement(sql);
+        }
     }
 
     private void initialize(SuccessHandler successHandler) {
@@ -72,26 +81,50 @@ public class Statement implements Closeable, IStatement {
     }
 
     public void bind(List<List<SqpValue>> parameters) throws SqpException {
+        _largeObjectUploads = new ArrayList<>();
+        if (_copyInsert != null && parameters.size() >= _connection.getConfiguration().getCopyThreshold() &&
+                parameters.stream().noneMatch(this::containsBlobs)) {
+            // the rows get encoded while streaming them into COPY
+            _copyRows = parameters;
+            _parameterLists = new ParameterList[0];
+            return;
+        }
+        _copyRows = null;
         _parameterLists = new ParameterList[parameters.size()];
         for (int i = 0; i < parameters.size(); i++) {
             _parameterLists[i] = createParameterList(parameters.get(i));
         }
     }
 
-    public void execute(boolean autocommit, String cursorId, boolean scrollable, ResultHandler<QueryResult> resultHandler) {
+    public void execute(boolean autocommit, String cursorId, boolean scrollable, int fetchSize,
+                        ResultHandler<QueryResult> resultHandler) {
         // TODO: modify flags to include cursor type (forward only), and describe
+        if (_copyRows != null) {
+            executeCopy(autocommit, resultHandler);
+            return;
+        }
         final int flags = getFlags(autocommit);
         _asyncExecutor.callAsync(() -> {
             // runs in different thread
+            List<Long> createdOids = new ArrayList<>();
             try {
+                _connection.applyQueryTimeout();
                 QueryExecutionHook executionHook = new QueryExecutionHook(_connection, this, scrollable);
+                for (LargeObjectUpload upload : _largeObjectUploads) {
+                    createdOids.add(upload.execute(_connection, autocommit));
+                }
                 ParameterList[] parameterLists = getParameterListsToExecute();
                 Query[] queries = new Query[parameterLists.length];
                 Collections.nCopies(parameterLists.length, _preparedQuery).toArray(queries);
-                getQueryExecutor().execute(queries, parameterLists, executionHook, 0, 100, flags);
+                getQueryExecutor().execute(queries, parameterLists, executionHook, 0, Math.max(fetchSize, 0), flags);
+                _connection.resolveTypeNames(executionHook.getReceivedCursor());
                 return executionHook;
             } catch (SQLException e) {
+                unlinkSilently(createdOids, autocommit);
                 throw new ExecutionFailedException(e);
+            } catch (SqpException e) {
+                unlinkSilently(createdOids, autocommit);
+                throw e;
             }
         }, new ResultHandler<>(resultHandler::fail, queryResultHandler -> {
             // runs in original thread
@@ -105,6 +138,29 @@ public class Statement implements Closeable, IStatement {
         }));
     }
 
+    private void executeCopy(boolean autocommit, ResultHandler<QueryResult> resultHandler) {
+        // the rows stay bound like regular parameters, so the statement can be executed again
+        List<List<SqpValue>> rows = _copyRows;
+        _asyncExecutor.callAsync(() -> {
+                    _connection.applyQueryTimeout();
+                    return _copyInsert.execute(_connection, rows, autocommit);
+                }, new ResultHandler<>(resultHandler::fail, numRows -> resultHandler.handle(new UpdateQueryResult(numRows))));
+    }
+
+    private void unlinkSilently(List<Long> oids, boolean autocommit) {
+        // in a transaction, the large objects are removed when the failed transaction is rolled back
+        if (!autocommit) {
+            return;
+        }
+        for (long oid : oids) {
+            try {
+                LargeObjectUpload.unlink(_connection, oid);
+            } catch (SqpException e) {
+                // the original error is more interesting
+            }
+        }
+    }
+
     private ParameterList[] getParameterListsToExecute() {
         if (_parameterLists.length < 1) {
             return new ParameterList[] { _preparedQuery.createParameterList() };
@@ -118,9 +174,14 @@ public class Statement implements Closeable, IStatement {
         for (int i = 0; i < parameters.size(); i++) {
             binder.bindParameter(i, parameters.get(i));
         }
+        _largeObjectUploads.addAll(binder.getLargeObjectUploads());
         return parameterList;
     }
 
+    private boolean containsBlobs(List<SqpValue> parameters) {
+        return parameters.stream().anyMatch(value -> value.getType() == SqpTypeCode.Blob);
+    }
+
     private int getFlags(boolean autocommit) {
         // server side cursors only work if we are not in autocommit mode. Otherwise we will just get all
         // data. We emulate the cursor behavior in the backend
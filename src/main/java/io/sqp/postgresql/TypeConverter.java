@@ -24,6 +24,7 @@ import org.postgresql.core.Encoding;
 import org.postgresql.core.Field;
 import org.postgresql.core.Oid;
 import org.postgresql.util.PGbytea;
+import io.sqp.core.ColumnMetadata;
 import io.sqp.core.TypeDescription;
 import io.sqp.core.exceptions.TypeConversionException;
 import io.sqp.core.exceptions.SqpException;
@@ -34,9 +35,7 @@ import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -47,38 +46,79 @@ import java.util.stream.Collectors;
  * used for short values. It won't be able to parse a money field as short.
  */
 public class TypeConverter {
+    private static final int COLUMN_METADATA_CACHE_SIZE = 64;
     private Encoding _encoding;
     private TimeUtils _timeUtils;
     private Locale _serverLocale;
-    private List<Integer> _allowedNativeTypes;
+    private Set<Integer> _allowedNativeTypes;
+    private PGTypeCache _typeCache;
+    private String _databaseName;
+    private Map<String, List<ColumnMetadata>> _columnMetadataCache;
 
 
     public TypeConverter(PGConnection connection, Locale serverLocale) throws SqpException {
         _serverLocale = serverLocale;
         _encoding = connection.getProtocolConnection().getEncoding();
-        _allowedNativeTypes = new ArrayList<>();
+        _allowedNativeTypes = new HashSet<>();
         _timeUtils = new TimeUtils(connection);
+        _typeCache = connection.getTypeCache();
+        _databaseName = connection.getDatabaseName();
+        _columnMetadataCache = Collections.synchronizedMap(new LinkedHashMap<String, List<ColumnMetadata>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ColumnMetadata>> eldest) {
+                return size() > COLUMN_METADATA_CACHE_SIZE;
+            }
+        });
     }
 
     public void addAllowedNativeTypes(List<String> allowedNativeTypes) {
         // TODO: we could send warnings for types we couldn't resolve
         _allowedNativeTypes.addAll(allowedNativeTypes.stream()
-                .mapToInt(TypeInfo::getOidFromTypeName)
+                .mapToInt(typeName -> _typeCache.getOidFromTypeName(_databaseName, typeName))
                 .filter(i -> i >= 0)
                 .boxed().collect(Collectors.toList()));
+        // cached metadata might map some of these types differently
+        _columnMetadataCache.clear();
     }
 
     public TypeDescription mapToTypeDescription(Field field) {
         int oid = field.getOID();
-        int typemod = field.getMod();
-        int precision = TypeInfo.getPrecision(oid, typemod);
-        int scale = TypeInfo.getScale(oid, typemod);
-        SqpTypeCode typeCode = TypeInfo.getSupportedSqpTypeCode(oid);
+        TypeDescription typeDescription = _typeCache.getTypeDescription(oid, field.getMod());
         // TODO: this is still ugly. somehow merge this class with type info and put the decision at the right place
-        if (typeCode == SqpTypeCode.Custom && !_allowedNativeTypes.contains(oid)) {
-            typeCode = SqpTypeCode.VarChar;
+        if (typeDescription.getTypeCode() == SqpTypeCode.Custom && !_allowedNativeTypes.contains(oid)) {
+            return SqpTypeCode.VarChar.asDescription(typeDescription.getPrecision(), typeDescription.getScale());
         }
-        return typeCode.asDescription(precision, scale);
+        return typeDescription;
+    }
+
+    /**
+     * Gets the column metadata of a result. Results with the same shape, i.e. the same column names and types,
+     * share the metadata, so it's only derived once.
+     * @param fields The fields of the result
+     * @return The column metadata
+     */
+    public List<ColumnMetadata> getColumnMetadata(Field[] fields) {
+        StringBuilder keyBuilder = new StringBuilder(fields.length * 16);
+        for (Field field : fields) {
+            keyBuilder.append(field.getOID()).append(':').append(field.getMod()).append(':')
+                    .append(field.getColumnLabel()).append('\0');
+        }
+        String key = keyBuilder.toString();
+        List<ColumnMetadata> columnMetadata = _columnMetadataCache.get(key);
+        if (columnMetadata == null) {
+            columnMetadata = Collections.unmodifiableList(Arrays.stream(fields)
+                    .map(this::createColumnMetadata).collect(Collectors.toList()));
+            // types without a name get one when the type names are reloaded, so don't keep the preliminary one
+            if (Arrays.stream(fields).allMatch(field -> _typeCache.hasTypeName(_databaseName, field.getOID()))) {
+                _columnMetadataCache.put(key, columnMetadata);
+            }
+        }
+        return columnMetadata;
+    }
+
+    private ColumnMetadata createColumnMetadata(Field field) {
+        String origType = _typeCache.getTypeName(_databaseName, field.getOID());
+        return new ColumnMetadata(field.getColumnLabel(), mapToTypeDescription(field), origType);
     }
 
     public SqpValue toSqpType(Field field, byte[] value, TypeDescription typeDescription) throws SqpException {
@@ -32,7 +32,7 @@ import java.util.Map;
  * The class cannot be used directly as it depends on JDBC and blocking database calls
  */
 public class TypeInfo {
-    private static final String TYPE_NAME_PREFIX = "pg_";
+    public static final String TYPE_NAME_PREFIX = "pg_";
     private static final Object _typeInfo[][] = {
             {Oid.INT2, "int2", SqpTypeCode.SmallInt, Oid.INT2_ARRAY},
             {Oid.INT4, "int4", SqpTypeCode.Integer, Oid.INT4_ARRAY},
@@ -92,6 +92,10 @@ public class TypeInfo {
         return typeName != null ? typeName : "oid" + oid;
     }
 
+    public static boolean isKnownType(int oid) {
+        return _typeNameLookup.containsKey(oid);
+    }
+
     /**
      * The type name with 'pg_' prefix for unique identification
      * @param oid The PostgreSQL oid
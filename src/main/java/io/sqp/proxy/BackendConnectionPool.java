@@ -45,6 +45,8 @@ public abstract class BackendConnectionPool {
     private Map<Long, BackendConnection> _activeConnections;
     private long _currentConnectionId = 0;
     private Backend _backend;
+    private ResultCache _resultCache;
+    private QueryCoalescer _queryCoalescer;
 
 
     final protected Logger logger;
@@ -65,6 +67,28 @@ public abstract class BackendConnectionPool {
         return _backend;
     }
 
+    /**
+     * @return The cache shared by the sessions using this pool, or null if results aren't cached
+     */
+    public ResultCache getResultCache() {
+        return _resultCache;
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        _resultCache = resultCache;
+    }
+
+    /**
+     * @return The coalescer of identical queries of the sessions using this pool, or null if they aren't coalesced
+     */
+    public QueryCoalescer getQueryCoalescer() {
+        return _queryCoalescer;
+    }
+
+    public void setQueryCoalescer(QueryCoalescer queryCoalescer) {
+        _queryCoalescer = queryCoalescer;
+    }
+
     /**
      * Asynchronously get a connection from the connection pool
      **/
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.messages.RowDataMessage;
+import io.sqp.core.types.SqpValue;
+import io.sqp.proxy.util.RowSizeEstimator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The complete result of a select query, kept as ready-to-send row messages so it can be sent to any
+ * session without touching the backend.
+ * @author Stefan Burnicki
+ */
+public class CachedResult {
+    private List<ColumnMetadata> _columns;
+    private List<RowDataMessage> _rows;
+    private long _size;
+
+    public CachedResult(List<ColumnMetadata> columns) {
+        _columns = columns;
+        _rows = new ArrayList<>();
+        _size = RowSizeEstimator.estimateRowWidth(columns);
+    }
+
+    /**
+     * @param row The typed row, used to estimate its size
+     * @param message The message the row is sent with
+     */
+    public void addRow(List<SqpValue> row, RowDataMessage message) {
+        _rows.add(message);
+        _size += RowSizeEstimator.estimateRowSize(row);
+    }
+
+    public List<ColumnMetadata> getColumns() {
+        return _columns;
+    }
+
+    public List<RowDataMessage> getRows() {
+        return Collections.unmodifiableList(_rows);
+    }
+
+    public int getNumRows() {
+        return _rows.size();
+    }
+
+    /**
+     * @return The estimated number of bytes the result occupies
+     */
+    public long getSize() {
+        return _size;
+    }
+}
@@ -31,6 +31,7 @@ public interface ClientConnection {
     void reset();
     void sendMessage(SqpMessage message);
     void sendStream(InputStream data, DataFormat format);
+    void whenWritable(Runnable handler);
     void setMessageFormat(DataFormat format);
     void close();
 }
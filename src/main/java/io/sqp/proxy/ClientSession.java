@@ -37,6 +37,7 @@ import io.sqp.core.messages.CloseMessage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -54,22 +55,47 @@ public class ClientSession implements ErrorHandler {
     private TransactionState _transactionState;
     private InformationProvider _informationProvider;
     private CustomTypeMapper _customTypeMapper;
-    private Queue<SqpMessage> _messageQueue;
+    private Deque<SqpMessage> _messageQueue;
     private Map<String, InputStream> _currentLobs;
     private String _awaitedLob;
+    private FetchSizeController _fetchSizeController;
+    private StatementCache _statementCache;
+    private ResultCache _resultCache;
+    private CacheFill _cacheFill;
+    private QueryCoalescer _queryCoalescer;
+    private String _coalescedKey;
+    private Consumer<CachedResult> _coalescedWaiter;
+    private Set<String> _modifyingStatements;
+    private boolean _modifiesData;
+    private String _database;
+    private String _allowedNativeTypes = "";
+    private boolean _cancelRequested;
+    private Stream _stream;
+    private int _pipelineRemaining;
 
     protected Logger logger;
 
     public ClientSession(BackendConnectionPool connectionPool, ClientConnection connection) {
+        this(connectionPool, connection, new FetchSizeController());
+    }
+
+    public ClientSession(BackendConnectionPool connectionPool, ClientConnection connection,
+                         FetchSizeController fetchSizeController) {
+        _fetchSizeController = fetchSizeController;
         _clientConnection = connection;
         _state = ClientSessionState.Uninitialised;
         _backendConnectionPool = connectionPool;
         logger = Logger.getGlobal();
-        _informationProvider = new InformationProvider(logger, _backendConnectionPool.getBackend().getTypeRepository());
+        _resultCache = _backendConnectionPool.getResultCache();
+        _queryCoalescer = _backendConnectionPool.getQueryCoalescer();
+        _informationProvider = new InformationProvider(logger, _backendConnectionPool.getBackend().getTypeRepository(),
+                _resultCache);
         _customTypeMapper = new CustomTypeMapper(logger, _backendConnectionPool.getBackend().getTypeRepository());
         _transactionState = TransactionState.AutoCommit;
         _messageQueue = new LinkedList<>();
         _currentLobs = new HashMap<>();
+        _statementCache = new StatementCache();
+        _modifyingStatements = new HashSet<>();
     }
 
     public void recover() {
@@ -89,6 +115,20 @@ public class ClientSession implements ErrorHandler {
     }
 
     public void processMessage(SqpMessage message) {
+        // a cancel request is about the operation that is currently running, so it must not wait in the queue
+        if (message.isA(MessageType.CancelMessage)) {
+            executeCancel();
+            return;
+        }
+        // credit is needed to continue the current stream, so it must not wait either
+        if (message.isA(MessageType.StreamCreditMessage)) {
+            try {
+                executeStreamCredit(message.secureCast());
+            } catch (SqpException e) {
+                handleError(e);
+            }
+            return;
+        }
         _messageQueue.add(message);
         processMessageQueue();
     }
@@ -125,16 +165,24 @@ public class ClientSession implements ErrorHandler {
 
     @Override
     public void handleError(SqpException error) {
+        if (_cancelRequested && error.getErrorAction() == ErrorAction.Recover) {
+            // the canceled operation failed, but the client should know it was on purpose
+            error = new QueryCanceledException(error);
+        }
+        _cancelRequested = false;
+        leaveCoalescedExecution();
         logger.log(Level.INFO, "Handling an " + error.getErrorType() + " error: " + error.getMessage());
         _clientConnection.sendMessage(error.toErrorMessage());
         switch (error.getErrorAction()) {
             case Recover:
                 // TODO: maybe reset the message queue?
+                skipPipeline();
                 _clientConnection.reset();
                 recover();
                 break;
 
             default: // It's only Abort left (and new error actions that were forgotten to handle)
+                completeCoalescedExecution();
                 _state = ClientSessionState.Dead;
                 logger.log(Level.INFO, "Aborting: Closing connection to client");
                 _clientConnection.close();
@@ -157,7 +205,7 @@ public class ClientSession implements ErrorHandler {
                 }
                 // otherwise discard the message and throw an error
                 _clientConnection.setMessageFormat(message.getMessageFormat()); // answer in same format
-                _messageQueue.poll();
+                pollMessage();
                 // not blocking and cannot process: fail
                 String allowed = _state.getProcessableMessages().stream().map(Object::toString).collect(Collectors.joining(", "));
                 throw new UnexpectedMessageException("Cannot process message of type '" + message.getType() +
@@ -165,7 +213,7 @@ public class ClientSession implements ErrorHandler {
             }
             // make sure we answer in the same format
             _clientConnection.setMessageFormat(message.getMessageFormat());
-            _messageQueue.poll(); // actually remove the msg from queue
+            pollMessage(); // actually remove the msg from queue
             processMessageInternal(message);
         } catch (Throwable e) {
             if (e instanceof SqpException) {
@@ -176,6 +224,23 @@ public class ClientSession implements ErrorHandler {
         }
     }
 
+    private void pollMessage() {
+        _messageQueue.poll();
+        if (_pipelineRemaining > 0) {
+            _pipelineRemaining--;
+        }
+    }
+
+    private void skipPipeline() {
+        if (_pipelineRemaining < 1) {
+            return;
+        }
+        logger.log(Level.INFO, "Skipping the remaining " + _pipelineRemaining + " operations of the pipeline.");
+        for (; _pipelineRemaining > 0; _pipelineRemaining--) {
+            _messageQueue.poll();
+        }
+    }
+
     private void processMessageInternal(SqpMessage message) throws SqpException {
         switch (message.getType()) {
             case HelloMessage:
@@ -194,10 +259,22 @@ public class ClientSession implements ErrorHandler {
                 executeExecuteQuery(message.secureCast());
                 break;
 
+            case PrepareExecuteMessage:
+                executePrepareExecute(message.secureCast());
+                break;
+
             case FetchDataMessage:
                 executeFetchData(message.secureCast());
                 break;
 
+            case PipelineMessage:
+                executePipeline(message.secureCast());
+                break;
+
+            case StreamDataMessage:
+                executeStreamData(message.secureCast());
+                break;
+
             case ReleaseMessage:
                 executeRelease(message.secureCast());
                 break;
@@ -247,6 +324,32 @@ public class ClientSession implements ErrorHandler {
         _state = ClientSessionState.Dead;
     }
 
+    private void executeCancel() {
+        if (_coalescedWaiter != null) {
+            // the query isn't executed by this session, so it just stops waiting for the result
+            handleError(new QueryCanceledException("The query was canceled while waiting for an identical query."));
+            return;
+        }
+        if (_state.equals(ClientSessionState.StreamingData)) {
+            // a stream is stopped between two fetches, so the cursor can still be used afterwards
+            _stream.StopRequested = true;
+            if (!_stream.Continuing) {
+                continueStream(_stream);
+            }
+            return;
+        }
+        if (!_state.isCancelable()) {
+            // the operation might just have finished, so that's not an error
+            logger.log(Level.INFO, "Ignoring a cancel request in state " + _state);
+            return;
+        }
+        _cancelRequested = true;
+        // the running operation fails when it's canceled, so the error handling brings us back to the ready state
+        _backendConnection.cancel(new SuccessHandler(
+                e -> logger.log(Level.WARNING, "Failed to cancel the running operation: " + e.getMessage()),
+                () -> logger.log(Level.INFO, "Sent a cancel request to the database.")));
+    }
+
     private void executeLobRequest(LobRequestMessage lobRequest) {
         _state = ClientSessionState.GettingLob;
         String id = lobRequest.getId();
@@ -338,6 +441,9 @@ public class ClientSession implements ErrorHandler {
         }
         _state = ClientSessionState.FinishingTransaction;
         SuccessHandler handler = new SuccessHandler(this, () -> {
+            if (commit) {
+                invalidateCachedResults();
+            }
             _transactionState = commit ? TransactionState.Committed : TransactionState.Aborted;
            _clientConnection.sendMessage(new TransactionFinishedMessage());
             enterReadyState();
@@ -361,14 +467,23 @@ public class ClientSession implements ErrorHandler {
             return;
         }
         Boolean autocommit = setFeatureMessage.getAutoCommit();
+        String[] nativeTypes = setFeatureMessage.getAllowedNativeTypes();
 
         _backendConnection.setFeatures(featureSettings, new SuccessHandler(this, () -> {
             if (!validateState("process the results", ClientSessionState.SettingFeature)) {
                 return;
             }
+            if (autocommit != null && autocommit && !_transactionState.equals(TransactionState.AutoCommit)) {
+                // enabling autocommit commits the active transaction
+                invalidateCachedResults();
+            }
             if (autocommit != null) {
                 _transactionState = autocommit ? TransactionState.AutoCommit : TransactionState.NoActiveTransaction;
             }
+            if (nativeTypes != null) {
+                // native types change the results, so they must be part of a cached result's key
+                _allowedNativeTypes = String.join(",", nativeTypes);
+            }
             _clientConnection.sendMessage(new SetFeatureCompleteMessage());
             enterReadyState();
         }));
@@ -392,6 +507,8 @@ public class ClientSession implements ErrorHandler {
             return;
         }
         _state = ClientSessionState.ReleasingCursor;
+        releaseMessage.getCursors().forEach(_fetchSizeController::releaseCursor);
+        _modifyingStatements.removeAll(releaseMessage.getStatements());
         _backendConnection.release(releaseMessage.getStatements(), releaseMessage.getCursors(), new SuccessHandler(this, () -> {
             _clientConnection.sendMessage(new ReleaseCompleteMessage());
             enterReadyState();
@@ -404,6 +521,9 @@ public class ClientSession implements ErrorHandler {
         }
         _state = ClientSessionState.PreparingQuery;
         // TODO: validate that prepareQueryMessage.getQuery() is not null or empty. Throw error otherwise
+        if (_resultCache != null && !ResultCache.isCacheable(prepareQueryMessage.getQuery())) {
+            _modifyingStatements.add(prepareQueryMessage.getId());
+        }
         _backendConnection.prepare(prepareQueryMessage.getQuery(), prepareQueryMessage.getId(), new SuccessHandler(this, () -> {
             _clientConnection.sendMessage(new PrepareCompleteMessage());
             enterReadyState();
@@ -415,6 +535,8 @@ public class ClientSession implements ErrorHandler {
             return;
         }
         _state = ClientSessionState.ExecutingQuery;
+        _modifiesData = _modifyingStatements.contains(message.getStatementId());
+        _backendConnection.setQueryTimeout(message.getTimeout());
         // TODO: if early parameter decoding turns out to be too slow or memory consuming, we need to pass
         // parameterTypes, customTypes, and parameters to the backend connection's execute method
         List<List<SqpValue>> parameters;
@@ -425,8 +547,95 @@ public class ClientSession implements ErrorHandler {
             handleError(e);
             return;
         }
+        int fetchSize = _fetchSizeController.getInitialFetchSize(-1);
         _backendConnection.execute(message.getStatementId(), message.getCursorId(), parameters,message.isScrollable(),
-                new ResultHandler<>(this, this::handleExecuteQueryResult));
+                fetchSize, new ResultHandler<>(this, this::handleExecuteQueryResult));
+    }
+
+    private void executePrepareExecute(PrepareExecuteMessage message) {
+        if (!validateState("prepare and execute a query", ClientSessionState.Ready)) {
+            return;
+        }
+        List<List<SqpValue>> parameters;
+        try {
+            ParameterDecoder decoder = new ParameterDecoder(_customTypeMapper, message.getParameterTypes(), message.getCustomTypes(), _currentLobs);
+            parameters = decoder.decodeParameterListBatch(message.getParameters());
+        } catch (SqpException e) {
+            handleError(e);
+            return;
+        }
+        _backendConnection.setQueryTimeout(message.getTimeout());
+        String query = message.getQuery();
+        _modifiesData = _resultCache != null && !ResultCache.isCacheable(query);
+        String statementId = _statementCache.get(query);
+        if (statementId != null) {
+            executeCachedStatement(message, statementId, parameters);
+            return;
+        }
+        _state = ClientSessionState.PreparingQuery;
+        String evictedId = _statementCache.evict();
+        String newId = _statementCache.add(query);
+        Runnable prepare = () -> _backendConnection.prepare(query, newId, new SuccessHandler(e -> {
+            _statementCache.remove(query);
+            handleError(e);
+        }, () -> {
+            if (validateState("execute the prepared query", ClientSessionState.PreparingQuery)) {
+                executeCachedStatement(message, newId, parameters);
+            }
+        }));
+        if (evictedId != null) {
+            releaseCachedStatement(evictedId, prepare);
+        } else {
+            prepare.run();
+        }
+    }
+
+    private void executeCachedStatement(PrepareExecuteMessage message, String statementId, List<List<SqpValue>> parameters) {
+        _state = ClientSessionState.ExecutingQuery;
+        String query = message.getQuery();
+        // the statement might have become invalid, e.g. by a schema change, so it's prepared again next time
+        ErrorHandler errorHandler = e -> {
+            String cachedId = _statementCache.remove(query);
+            if (cachedId != null) {
+                releaseCachedStatement(cachedId, () -> handleError(e));
+            } else {
+                handleError(e);
+            }
+        };
+        int fetchSize = _fetchSizeController.getInitialFetchSize(message.getMaxFetch());
+        _backendConnection.execute(statementId, message.getCursorId(), parameters, message.isScrollable(),
+                fetchSize, new ResultHandler<>(errorHandler, result -> handlePrepareExecuteResult(message, result)));
+    }
+
+    private void releaseCachedStatement(String statementId, Runnable continuation) {
+        _backendConnection.release(Collections.singletonList(statementId), Collections.emptyList(), new SuccessHandler(e -> {
+            logger.log(Level.WARNING, "Failed to release the cached statement " + statementId + ": " + e.getMessage());
+            continuation.run();
+        }, continuation));
+    }
+
+    private void handlePrepareExecuteResult(PrepareExecuteMessage message, QueryResult result) {
+        if (!message.isAutoFetch() || !(result instanceof CursorDescriptionResult)) {
+            handleExecuteQueryResult(result);
+            return;
+        }
+        if (!validateState("process the results", ClientSessionState.ExecutingQuery)) {
+            return;
+        }
+        clearLobs();
+        invalidateCachedResultsIfModified(result);
+        CursorDescriptionResult cursor = (CursorDescriptionResult) result;
+        String cursorId = cursor.getCursorId();
+        _fetchSizeController.registerCursor(cursorId, cursor.getColumns());
+        _clientConnection.sendMessage(new CursorDescriptionMessage(cursorId, cursor.isScrollable(), cursor.getColumns()));
+
+        // send the first rows right away, so the client doesn't need another round trip to fetch them
+        _state = ClientSessionState.FetchingData;
+        int maxFetch = message.getMaxFetch();
+        int num = _fetchSizeController.getFetchSize(cursorId, maxFetch >= 0 ? maxFetch : -1);
+        _fetchSizeController.beginFetch(cursorId);
+        _backendConnection.fetch(cursorId, -1, num, true,
+                new ResultHandler<>(this, this::handleFetchDataResult, _clientConnection::whenWritable));
     }
 
     private void executeFetchData(FetchDataMessage fetchDataMessage) {
@@ -438,10 +647,11 @@ public class ClientSession implements ErrorHandler {
         int pos = fetchDataMessage.getPosition();
         int num = fetchDataMessage.getMaxFetch();
         pos = pos >= 0 ? pos : -1;
-        num = num >= 0 ? num : -1;
+        num = _fetchSizeController.getFetchSize(cursorId, num >= 0 ? num : -1);
 
+        _fetchSizeController.beginFetch(cursorId);
         _backendConnection.fetch(cursorId, pos, num, fetchDataMessage.isForward(),
-                new ResultHandler<>(this, this::handleFetchDataResult));
+                new ResultHandler<>(this, this::handleFetchDataResult, _clientConnection::whenWritable));
     }
 
     private void executeSimpleQuery(SimpleQueryMessage simpleQueryMessage) {
@@ -450,9 +660,208 @@ public class ClientSession implements ErrorHandler {
         }
         _state = ClientSessionState.SimpleExecuting;
         // TODO: validate that simpleQueryMessage.getQuery() is not null or empty. Throw error otherwise
+        if (isResultShareable(simpleQueryMessage)) {
+            String key = ResultCache.createKey(_database, _allowedNativeTypes, simpleQueryMessage.getQuery());
+            CachedResult cached = _resultCache != null ? _resultCache.get(key, simpleQueryMessage.getMaxFetch()) : null;
+            if (cached != null) {
+                sendCachedResult(simpleQueryMessage.getCursorId(), cached);
+                return;
+            }
+            if (_queryCoalescer != null) {
+                Consumer<CachedResult> waiter = result -> handleCoalescedResult(simpleQueryMessage, result);
+                _coalescedKey = key;
+                if (!_queryCoalescer.join(key, waiter)) {
+                    // an identical query is already executed, so wait for its result
+                    _coalescedWaiter = waiter;
+                    return;
+                }
+            }
+            _cacheFill = new CacheFill(key, _resultCache != null ? _resultCache.getGeneration(_database) : 0);
+        }
+        executeSimpleQueryInBackend(simpleQueryMessage);
+    }
+
+    private void executeSimpleQueryInBackend(SimpleQueryMessage simpleQueryMessage) {
+        _modifiesData = _resultCache != null && !ResultCache.isCacheable(simpleQueryMessage.getQuery());
+        int maxFetch = _fetchSizeController.getInitialFetchSize(simpleQueryMessage.getMaxFetch());
+        _backendConnection.setQueryTimeout(simpleQueryMessage.getTimeout());
         _backendConnection.simpleQuery(simpleQueryMessage.getQuery(), simpleQueryMessage.getCursorId(),
-                                       simpleQueryMessage.isScrollable(), simpleQueryMessage.getMaxFetch(),
-                new ResultHandler<>(this, this::handleExecuteQueryResult));
+                                       simpleQueryMessage.isScrollable(), maxFetch,
+                new ResultHandler<>(this, this::handleExecuteQueryResult, _clientConnection::whenWritable));
+    }
+
+    private boolean isResultShareable(SimpleQueryMessage simpleQueryMessage) {
+        // inside a transaction, the results might depend on its uncommitted changes
+        return (_resultCache != null || _queryCoalescer != null) && _transactionState.equals(TransactionState.AutoCommit) &&
+                !simpleQueryMessage.isScrollable() && simpleQueryMessage.isCacheable() &&
+                ResultCache.isCacheable(simpleQueryMessage.getQuery());
+    }
+
+    private void handleCoalescedResult(SimpleQueryMessage simpleQueryMessage, CachedResult result) {
+        _coalescedKey = null;
+        _coalescedWaiter = null;
+        if (!validateState("process the results of an identical query", ClientSessionState.SimpleExecuting)) {
+            return;
+        }
+        int maxFetch = simpleQueryMessage.getMaxFetch();
+        if (result != null && (maxFetch < 0 || result.getNumRows() <= maxFetch)) {
+            sendCachedResult(simpleQueryMessage.getCursorId(), result);
+            return;
+        }
+        // the other execution failed or its result doesn't suit this query, so execute it on our own
+        executeSimpleQueryInBackend(simpleQueryMessage);
+    }
+
+    private void completeCoalescedExecution() {
+        if (_coalescedKey == null || _coalescedWaiter != null) {
+            return; // this session doesn't lead an execution
+        }
+        String key = _coalescedKey;
+        _coalescedKey = null;
+        _queryCoalescer.complete(key, _cacheFill != null && _cacheFill.Complete ? _cacheFill.Result : null);
+    }
+
+    private void leaveCoalescedExecution() {
+        if (_coalescedWaiter == null) {
+            return;
+        }
+        _queryCoalescer.leave(_coalescedKey, _coalescedWaiter);
+        _coalescedKey = null;
+        _coalescedWaiter = null;
+    }
+
+    private void sendCachedResult(String cursorId, CachedResult cached) {
+        _clientConnection.sendMessage(new CursorDescriptionMessage(cursorId, false, cached.getColumns()));
+        cached.getRows().forEach(_clientConnection::sendMessage);
+        _clientConnection.sendMessage(new EndOfDataMessage(false));
+        enterReadyState();
+    }
+
+    private void invalidateCachedResults() {
+        if (_resultCache != null) {
+            _resultCache.invalidate(_database);
+        }
+    }
+
+    private void invalidateCachedResultsIfModified(QueryResult result) {
+        // the statement might have changed data or the schema, even if it returns a cursor
+        if (result instanceof UpdateQueryResult || _modifiesData) {
+            invalidateCachedResults();
+            _modifiesData = false;
+        }
+    }
+
+    private void executePipeline(PipelineMessage pipelineMessage) throws SqpException {
+        if (!validateState("execute a pipeline", ClientSessionState.Ready)) {
+            return;
+        }
+        List<SqpMessage> operations = pipelineMessage.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            throw new UnexpectedMessageException("A pipeline needs to contain at least one operation.",
+                    ErrorAction.Recover);
+        }
+        for (SqpMessage operation : operations) {
+            if (operation.isA(MessageType.PipelineMessage) || operation.isA(MessageType.CancelMessage) ||
+                    operation.isA(MessageType.StreamCreditMessage)) {
+                throw new UnexpectedMessageException("A message of type '" + operation.getType() +
+                        "' cannot be part of a pipeline.", ErrorAction.Recover);
+            }
+        }
+        // the operations are processed before any message that arrived after the pipeline
+        ListIterator<SqpMessage> iterator = operations.listIterator(operations.size());
+        while (iterator.hasPrevious()) {
+            SqpMessage operation = iterator.previous();
+            operation.setMessageFormat(pipelineMessage.getMessageFormat());
+            _messageQueue.addFirst(operation);
+        }
+        _pipelineRemaining = operations.size();
+        processMessageQueue();
+    }
+
+    private void executeStreamData(StreamDataMessage streamDataMessage) {
+        if (!validateState("stream data", ClientSessionState.Ready)) {
+            return;
+        }
+        _state = ClientSessionState.StreamingData;
+        _stream = new Stream(streamDataMessage.getCursorId(), streamDataMessage.getCredit());
+        continueStream(_stream);
+    }
+
+    private void executeStreamCredit(StreamCreditMessage streamCreditMessage) {
+        if (!_state.equals(ClientSessionState.StreamingData) ||
+                !streamCreditMessage.getCursorId().equals(_stream.CursorId)) {
+            // the stream might just have ended, so that's not an error
+            logger.log(Level.INFO, "Ignoring credit for cursor '" + streamCreditMessage.getCursorId() +
+                    "' in state " + _state);
+            return;
+        }
+        if (streamCreditMessage.isStop()) {
+            // the stream is stopped between two fetches, so the cursor can still be used afterwards
+            _stream.StopRequested = true;
+            if (!_stream.Continuing) {
+                continueStream(_stream);
+            }
+            return;
+        }
+        if (_stream.Credit < 0 || streamCreditMessage.getCredit() <= 0) {
+            return;
+        }
+        _stream.Credit = (int) Math.min((long) _stream.Credit + streamCreditMessage.getCredit(), Integer.MAX_VALUE);
+        if (!_stream.Continuing) {
+            continueStream(_stream);
+        }
+    }
+
+    private void continueStream(Stream stream) {
+        if (stream != _stream) {
+            return; // the stream ended or failed in the meantime
+        }
+        stream.Continuing = false;
+        if (stream.StopRequested) {
+            _clientConnection.sendMessage(new EndOfDataMessage(true));
+            enterReadyState();
+            return;
+        }
+        if (stream.Credit == 0) {
+            // pause until the client grants more credit
+            return;
+        }
+        int num = _fetchSizeController.getFetchSize(stream.CursorId, -1);
+        if (stream.Credit > 0) {
+            num = Math.min(num, stream.Credit);
+        }
+        stream.Continuing = true;
+        _fetchSizeController.beginFetch(stream.CursorId);
+        _backendConnection.fetch(stream.CursorId, -1, num, true,
+                new ResultHandler<>(this, this::handleStreamDataResult, _clientConnection::whenWritable));
+    }
+
+    private void handleStreamDataResult(QueryResult result) {
+        if (!validateState("process the streamed results", ClientSessionState.StreamingData)) {
+            return;
+        }
+
+        if (result instanceof RowDataResult) {
+            List<SqpValue> row = ((RowDataResult) result).getData();
+            _fetchSizeController.recordRow(row);
+            _clientConnection.sendMessage(RowDataMessage.fromTypedData(row));
+            if (_stream.Credit > 0) {
+                _stream.Credit--;
+            }
+        } else if (result instanceof EndQueryResult) {
+            _fetchSizeController.endFetch();
+            if (!((EndQueryResult) result).hasMoreData()) {
+                _clientConnection.sendMessage(new EndOfDataMessage(false));
+                enterReadyState();
+                return;
+            }
+            // don't fetch the next block before the client connection can take it
+            Stream stream = _stream;
+            _clientConnection.whenWritable(() -> continueStream(stream));
+        } else {
+            logger.log(Level.SEVERE, "Unknown query result type '" + result.getClass().getName() + "'");
+            handleError(new ServerErrorException("A server internal problem occurred processing the query results"));
+        }
     }
 
     private void handleFetchDataResult(QueryResult result) {
@@ -462,9 +871,24 @@ public class ClientSession implements ErrorHandler {
 
         if (result instanceof RowDataResult) {
             // TODO: somehow we must pass the data format to be converted accordingly
-            _clientConnection.sendMessage(RowDataMessage.fromTypedData(((RowDataResult) result).getData()));
+            List<SqpValue> row = ((RowDataResult) result).getData();
+            _fetchSizeController.recordRow(row);
+            RowDataMessage rowMessage = RowDataMessage.fromTypedData(row);
+            if (_cacheFill != null && _cacheFill.Result != null) {
+                _cacheFill.Result.addRow(row, rowMessage);
+            }
+            _clientConnection.sendMessage(rowMessage);
         } else if (result instanceof EndQueryResult) {
-            _clientConnection.sendMessage(new EndOfDataMessage(((EndQueryResult) result).hasMoreData()));
+            _fetchSizeController.endFetch();
+            boolean hasMoreData = ((EndQueryResult) result).hasMoreData();
+            // only complete results can be answered without an open cursor
+            if (_cacheFill != null && _cacheFill.Result != null && !hasMoreData) {
+                _cacheFill.Complete = true;
+                if (_resultCache != null) {
+                    _resultCache.put(_cacheFill.Key, _database, _cacheFill.Generation, _cacheFill.Result);
+                }
+            }
+            _clientConnection.sendMessage(new EndOfDataMessage(hasMoreData));
             enterReadyState();
         } else {
             logger.log(Level.SEVERE, "Unknown query result type '" + result.getClass().getName() + "'");
@@ -482,11 +906,19 @@ public class ClientSession implements ErrorHandler {
             clearLobs();
         }
         // TODO: make this nicer
+        invalidateCachedResultsIfModified(result);
         if (result instanceof UpdateQueryResult) {
             _clientConnection.sendMessage(new ExecuteCompleteMessage(((UpdateQueryResult) result).getAffectedRows()));
             enterReadyState();
         } else if (result instanceof CursorDescriptionResult) {
             CursorDescriptionResult cursor = (CursorDescriptionResult) result;
+            _fetchSizeController.registerCursor(cursor.getCursorId(), cursor.getColumns());
+            if (isSimpleQuery) {
+                _fetchSizeController.beginFetch(cursor.getCursorId());
+                if (_cacheFill != null) {
+                    _cacheFill.Result = new CachedResult(cursor.getColumns());
+                }
+            }
             _clientConnection.sendMessage(new CursorDescriptionMessage(cursor.getCursorId(), cursor.isScrollable(), cursor.getColumns()));
             if (!isSimpleQuery) {
                 enterReadyState();
@@ -517,6 +949,7 @@ public class ClientSession implements ErrorHandler {
         }
 
         _state = ClientSessionState.Connecting;
+        _database = helloMessage.getDatabase();
         _backendConnectionId =_backendConnectionPool.createConnection(helloMessage.getDatabase(),
                 this::handleBackendDisconnected, new ResultHandler<>(this, this::handleBackendConnected));
         if (_backendConnectionId < 0) {
@@ -551,6 +984,12 @@ public class ClientSession implements ErrorHandler {
 
     private void enterReadyState() {
         _state = ClientSessionState.Ready;
+        _cancelRequested = false;
+        _stream = null;
+        // waiting sessions get the result as soon as it's sent to our client
+        completeCoalescedExecution();
+        _cacheFill = null;
+        _modifiesData = false;
         // important: start to process pending messages!
         processMessageQueue();
     }
@@ -571,4 +1010,28 @@ public class ClientSession implements ErrorHandler {
         handleError(new InvalidStateException(msg, ErrorAction.Abort));
         return false;
     }
+
+    private class CacheFill {
+        public final String Key;
+        public final long Generation;
+        public CachedResult Result; // set as soon as the cursor is described
+        public boolean Complete;
+
+        public CacheFill(String key, long generation) {
+            Key = key;
+            Generation = generation;
+        }
+    }
+
+    private class Stream {
+        public final String CursorId;
+        public int Credit; // -1 if unlimited
+        public boolean Continuing;
+        public boolean StopRequested;
+
+        public Stream(String cursorId, int credit) {
+            CursorId = cursorId;
+            Credit = credit >= 0 ? credit : -1;
+        }
+    }
 }
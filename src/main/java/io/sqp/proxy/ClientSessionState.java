@@ -45,7 +45,10 @@ public enum ClientSessionState {
             MessageType.SimpleQueryMessage,
             MessageType.PrepareQueryMessage,
             MessageType.ExecuteQueryMessage,
+            MessageType.PrepareExecuteMessage,
             MessageType.FetchDataMessage,
+            MessageType.StreamDataMessage,
+            MessageType.PipelineMessage,
             MessageType.ReleaseMessage,
             MessageType.SetFeatureMessage,
             MessageType.RollbackTransactionMessage,
@@ -62,6 +65,7 @@ public enum ClientSessionState {
     ExecutingQuery(true, ErrorAction.Recover),
     ReleasingCursor(true, ErrorAction.Recover),
     FetchingData(true, ErrorAction.Recover),
+    StreamingData(true, ErrorAction.Recover),
     SettingFeature(true, ErrorAction.Recover),
     RequestingInformation(true, ErrorAction.Recover),
     FinishingTransaction(true, ErrorAction.Recover),
@@ -97,4 +101,11 @@ public enum ClientSessionState {
     public boolean canProcess(MessageType type) {
         return _processableMessages.contains(type);
     }
+
+    /**
+     * @return Whether the state waits for a query execution in the database that can be canceled
+     */
+    public boolean isCancelable() {
+        return this == SimpleExecuting || this == ExecutingQuery || this == FetchingData;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.types.SqpValue;
+import io.sqp.proxy.util.RowSizeEstimator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides how many rows are fetched at once if the client doesn't limit it.
+ * The number of rows is chosen so a fetch stays within a byte budget and a latency budget. The row width is
+ * first estimated from the column metadata and then from the rows actually sent, the latency is measured
+ * per fetch. Explicit limits requested by the client are always respected.
+ * @author Stefan Burnicki
+ */
+public class FetchSizeController {
+    public static final int DEFAULT_BYTE_BUDGET = 256 * 1024;
+    public static final int DEFAULT_LATENCY_BUDGET = 250; // milliseconds
+    public static final int MIN_ROWS = 10;
+    public static final int MAX_ROWS = 10000;
+    private static final int DEFAULT_ROW_WIDTH = 128;
+    private static final double SMOOTHING = 0.3; // weight of new observations
+
+    private int _byteBudget;
+    private long _latencyBudgetNanos;
+    private Map<String, CursorStatistics> _cursors;
+    private CursorStatistics _currentFetch;
+    private long _fetchStart;
+    private int _fetchRows;
+    private long _fetchBytes;
+
+    public FetchSizeController() {
+        this(DEFAULT_BYTE_BUDGET, DEFAULT_LATENCY_BUDGET);
+    }
+
+    /**
+     * @param byteBudget The number of bytes that should be sent with a fetch
+     * @param latencyBudget The time in milliseconds a fetch should take at most
+     */
+    public FetchSizeController(int byteBudget, int latencyBudget) {
+        _byteBudget = byteBudget;
+        _latencyBudgetNanos = latencyBudget * 1000000L;
+        _cursors = new HashMap<>();
+    }
+
+    public void registerCursor(String cursorId, List<ColumnMetadata> columns) {
+        _cursors.put(cursorId, new CursorStatistics(RowSizeEstimator.estimateRowWidth(columns)));
+    }
+
+    public void releaseCursor(String cursorId) {
+        _cursors.remove(cursorId);
+    }
+
+    /**
+     * Gets the number of rows to fetch from a cursor.
+     * @param cursorId The cursor to fetch from
+     * @param requested The number of rows the client requested. -1 if unlimited.
+     * @return The requested number if the client limited it, otherwise the number of rows fitting the budgets
+     */
+    public int getFetchSize(String cursorId, int requested) {
+        if (requested >= 0) {
+            return requested;
+        }
+        CursorStatistics statistics = _cursors.get(cursorId);
+        if (statistics == null) {
+            return getInitialFetchSize(requested);
+        }
+        int rows = (int) (_byteBudget / statistics.getRowWidth());
+        if (statistics.getNanosPerRow() > 0) {
+            rows = (int) Math.min(rows, _latencyBudgetNanos / statistics.getNanosPerRow());
+        }
+        return clamp(rows);
+    }
+
+    /**
+     * Gets the number of rows to fetch with a query whose result is not known yet.
+     * @param requested The number of rows the client requested. -1 if unlimited.
+     * @return The requested number if the client limited it, otherwise a number fitting the byte budget
+     */
+    public int getInitialFetchSize(int requested) {
+        if (requested >= 0) {
+            return requested;
+        }
+        return clamp(_byteBudget / DEFAULT_ROW_WIDTH);
+    }
+
+    public void beginFetch(String cursorId) {
+        _currentFetch = _cursors.get(cursorId);
+        _fetchStart = System.nanoTime();
+        _fetchRows = 0;
+        _fetchBytes = 0;
+    }
+
+    public void recordRow(List<SqpValue> row) {
+        if (_currentFetch == null) {
+            return;
+        }
+        _fetchRows++;
+        _fetchBytes += RowSizeEstimator.estimateRowSize(row);
+    }
+
+    public void endFetch() {
+        if (_currentFetch != null && _fetchRows > 0) {
+            _currentFetch.update((double) _fetchBytes / _fetchRows,
+                    (double) (System.nanoTime() - _fetchStart) / _fetchRows);
+        }
+        _currentFetch = null;
+    }
+
+    private int clamp(int rows) {
+        return Math.max(MIN_ROWS, Math.min(MAX_ROWS, rows));
+    }
+
+    private class CursorStatistics {
+        private double _rowWidth;
+        private double _nanosPerRow;
+
+        public CursorStatistics(int estimatedRowWidth) {
+            _rowWidth = estimatedRowWidth;
+            _nanosPerRow = -1;
+        }
+
+        public void update(double rowWidth, double nanosPerRow) {
+            _rowWidth = SMOOTHING * rowWidth + (1 - SMOOTHING) * _rowWidth;
+            _nanosPerRow = _nanosPerRow < 0 ? nanosPerRow : SMOOTHING * nanosPerRow + (1 - SMOOTHING) * _nanosPerRow;
+        }
+
+        public double getRowWidth() {
+            return Math.max(_rowWidth, 1);
+        }
+
+        public double getNanosPerRow() {
+            return _nanosPerRow;
+        }
+    }
+}
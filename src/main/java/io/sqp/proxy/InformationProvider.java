@@ -38,10 +38,16 @@ import java.util.logging.Logger;
 public class InformationProvider {
     Logger _logger;
     TypeRepository _backendTypeRepo;
+    ResultCache _resultCache;
 
     public InformationProvider(Logger logger, TypeRepository backendTypeRepo) {
+        this(logger, backendTypeRepo, null);
+    }
+
+    public InformationProvider(Logger logger, TypeRepository backendTypeRepo, ResultCache resultCache) {
         _logger = logger;
         _backendTypeRepo = backendTypeRepo;
+        _resultCache = resultCache;
     }
 
     public InformationRequestResult get(InformationSubject subject, String detail) throws SqpException {
@@ -56,6 +62,12 @@ public class InformationProvider {
             case SupportedNativeTypes:
                 String[] nativeTypes = _backendTypeRepo.getNativeTypes().stream().toArray(String[]::new);
                 return new InformationRequestResult(InformationResponseType.TextArray, nativeTypes);
+
+            case ResultCacheHits:
+                return getCount(_resultCache == null ? 0 : _resultCache.getHits());
+
+            case ResultCacheMisses:
+                return getCount(_resultCache == null ? 0 : _resultCache.getMisses());
         }
         return InformationRequestResult.DELEGATE;
     }
@@ -78,10 +90,18 @@ public class InformationProvider {
                     break;
                 }
 
+            case LobCacheHits:
+            case LobCacheMisses:
+            case LobBytesServed:
+                return getCount(0);
         }
         return InformationRequestResult.UNKNOWN;
     }
 
+    private InformationRequestResult getCount(long count) {
+        return new InformationRequestResult(InformationResponseType.Integer, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+
     private InformationRequestResult getTypeSchema(String typename) throws SqpException {
         if (typename == null || typename.length() < 1) {
             throw new SqpException(ErrorType.InvalidArgument,
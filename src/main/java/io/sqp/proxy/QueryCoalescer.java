@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lets identical read-only queries that are executed at the same time share a single execution in the backend.
+ * The first session executing a query leads the execution, the sessions issuing the same query in the meantime
+ * wait for its result instead of executing the query themselves.
+ * @author Stefan Burnicki
+ */
+public class QueryCoalescer {
+    private Map<String, List<Consumer<CachedResult>>> _executions;
+    private long _coalescedQueries;
+
+    public QueryCoalescer() {
+        _executions = new HashMap<>();
+    }
+
+    /**
+     * Joins the execution of a query.
+     * @param key The key of the query, see {@link ResultCache#createKey(String, String, String)}
+     * @param waiter Gets the result if another session already executes the query
+     * @return True if the caller needs to execute the query and then to complete it, false if it joined
+     *         the execution of another session
+     */
+    public synchronized boolean join(String key, Consumer<CachedResult> waiter) {
+        List<Consumer<CachedResult>> waiters = _executions.get(key);
+        if (waiters == null) {
+            _executions.put(key, new ArrayList<>());
+            return true;
+        }
+        waiters.add(waiter);
+        _coalescedQueries++;
+        return false;
+    }
+
+    /**
+     * Stops waiting for the result of an execution, e.g. because the waiting query was canceled.
+     * @param key The key of the query
+     * @param waiter The waiter that joined the execution
+     */
+    public synchronized void leave(String key, Consumer<CachedResult> waiter) {
+        List<Consumer<CachedResult>> waiters = _executions.get(key);
+        if (waiters != null) {
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Completes an execution and passes its result to all waiting sessions.
+     * @param key The key of the executed query
+     * @param result The complete result, or null if the execution failed or the result couldn't be shared.
+     *               The waiting sessions need to execute the query themselves then.
+     */
+    public void complete(String key, CachedResult result) {
+        List<Consumer<CachedResult>> waiters;
+        synchronized (this) {
+            waiters = _executions.remove(key);
+        }
+        if (waiters != null) {
+            waiters.forEach(waiter -> waiter.accept(result));
+        }
+    }
+
+    /**
+     * @return The number of queries that joined the execution of another session
+     */
+    public synchronized long getCoalescedQueries() {
+        return _coalescedQueries;
+    }
+}
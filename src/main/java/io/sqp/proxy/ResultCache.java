@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the complete results of read-only queries, so identical queries of different sessions are answered
+ * without touching the backend. Entries expire after a time to live and the least recently used ones are
+ * evicted if the cached results exceed a byte budget. Writes through the proxy invalidate all entries of
+ * the affected database. Changes made by other database clients are only noticed when entries expire.
+ * Clients need to opt in per query, as the query text cannot tell whether it calls volatile functions
+ * like random() or nextval(), whose results would be reused as well.
+ * @author Stefan Burnicki
+ */
+public class ResultCache {
+    public static final int DEFAULT_TTL = 5000; // milliseconds
+    public static final int DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    // selects that create tables or lock rows
+    private static final Pattern WritingClause = Pattern.compile(
+            "\\bINTO\\b|\\bFOR (NO KEY )?UPDATE\\b|\\bFOR (KEY )?SHARE\\b", Pattern.CASE_INSENSITIVE);
+
+    private long _ttlNanos;
+    private long _maxBytes;
+    private LongSupplier _clock;
+    private LinkedHashMap<String, Entry> _entries;
+    private Map<String, Long> _generations;
+    private long _bytes;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+    private long _invalidations;
+
+    /**
+     * @param ttl The time in milliseconds a result is served from the cache
+     * @param maxBytes The maximum number of bytes all cached results may occupy
+     */
+    public ResultCache(long ttl, long maxBytes) {
+        this(ttl, maxBytes, System::nanoTime);
+    }
+
+    ResultCache(long ttl, long maxBytes, LongSupplier clock) {
+        _ttlNanos = ttl * 1000000L;
+        _maxBytes = maxBytes;
+        _clock = clock;
+        _entries = new LinkedHashMap<>(16, 0.75f, true); // access ordered
+        _generations = new HashMap<>();
+    }
+
+    /**
+     * Creates the key of a query. The backend user is the same for all sessions of a connection pool, so
+     * it's not part of the key.
+     * @param database The database the query is executed in
+     * @param settings The session settings that affect the result, like the allowed native types
+     * @param query The query
+     * @return The key identifying the query's result
+     */
+    public static String createKey(String database, String settings, String query) {
+        return database + '\0' + settings + '\0' + normalize(query);
+    }
+
+    /**
+     * Checks whether the query is a plain select, that neither uses INTO nor locks rows. Functions with side
+     * effects cannot be detected, so the client still needs to opt in to caching.
+     * @param query The query
+     * @return Whether the query only reads data, so its result can be cached
+     */
+    public static boolean isCacheable(String query) {
+        String normalized = normalize(query);
+        return normalized.regionMatches(true, 0, "SELECT ", 0, 7) &&
+                !WritingClause.matcher(removeQuoted(normalized)).find();
+    }
+
+    private static String removeQuoted(String query) {
+        StringBuilder unquoted = new StringBuilder(query.length());
+        char quote = 0;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            } else if (quote == 0) {
+                unquoted.append(c);
+            }
+        }
+        return unquoted.toString();
+    }
+
+    /**
+     * Collapses whitespace outside of quotes and removes a trailing semicolon, so queries only differing in
+     * formatting share the same result.
+     * @param query The query
+     * @return The normalized query
+     */
+    public static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        char quote = 0;
+        boolean whitespace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace && normalized.length() > 0) {
+                normalized.append(' ');
+            }
+            whitespace = false;
+            if (c == '\'' || c == '"') {
+                quote = c;
+            }
+            normalized.append(c);
+        }
+        int last = normalized.length() - 1;
+        if (quote == 0 && last >= 0 && normalized.charAt(last) == ';') {
+            // also drop the space that was emitted before the semicolon
+            last = last > 0 && normalized.charAt(last - 1) == ' ' ? last - 1 : last;
+            normalized.setLength(last);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Gets a cached result.
+     * @param key The key of the query
+     * @param maxRows The maximum number of rows the client wants to get at once, or -1 if unlimited
+     * @return The result, or null if it's not cached, expired, or has too many rows
+     */
+    public synchronized CachedResult get(String key, int maxRows) {
+        Entry entry = _entries.get(key);
+        if (entry != null && entry.Expiry - _clock.getAsLong() <= 0) {
+            remove(key);
+            _evictions++;
+            entry = null;
+        }
+        if (entry == null || (maxRows >= 0 && entry.Result.getNumRows() > maxRows)) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return entry.Result;
+    }
+
+    /**
+     * Gets the generation of a database's entries. It's needed to put a result, so a result read before
+     * the database was changed isn't cached.
+     * @param database The database
+     * @return The current generation
+     */
+    public synchronized long getGeneration(String database) {
+        return _generations.getOrDefault(database, 0L);
+    }
+
+    /**
+     * Caches the result of a query, unless the database was changed in the meantime or the result is too large.
+     * @param key The key of the query
+     * @param database The database the query was executed in
+     * @param generation The generation of the database when the query was started
+     * @param result The complete result
+     */
+    public synchronized void put(String key, String database, long generation, CachedResult result) {
+        if (generation != getGeneration(database) || result.getSize() > _maxBytes) {
+            return;
+        }
+        remove(key);
+        _entries.put(key, new Entry(database, result, _clock.getAsLong() + _ttlNanos));
+        _bytes += result.getSize();
+        Iterator<Entry> eldest = _entries.values().iterator();
+        while (_bytes > _maxBytes && eldest.hasNext()) {
+            _bytes -= eldest.next().Result.getSize();
+            eldest.remove();
+            _evictions++;
+        }
+    }
+
+    /**
+     * Removes all results of a database, as it was changed.
+     * @param database The changed database
+     */
+    public synchronized void invalidate(String database) {
+        _generations.merge(database, 1L, Long::sum);
+        Iterator<Entry> entries = _entries.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.Database.equals(database)) {
+                _bytes -= entry.Result.getSize();
+                entries.remove();
+                _invalidations++;
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    public synchronized long getEvictions() {
+        return _evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return _invalidations;
+    }
+
+    public synchronized int getNumEntries() {
+        return _entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return _bytes;
+    }
+
+    private void remove(String key) {
+        Entry entry = _entries.remove(key);
+        if (entry != null) {
+            _bytes -= entry.Result.getSize();
+        }
+    }
+
+    private class Entry {
+        public final String Database;
+        public final CachedResult Result;
+        public final long Expiry; // in nanoseconds, see System.nanoTime()
+
+        public Entry(String database, CachedResult result, long expiry) {
+            Database = database;
+            Result = result;
+            Expiry = expiry;
+        }
+    }
+}
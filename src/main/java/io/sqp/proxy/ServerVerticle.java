@@ -19,6 +19,7 @@
 
 package io.sqp.proxy;
 
+import io.sqp.core.ChannelHeader;
 import io.sqp.proxy.exceptions.ServerErrorException;
 import io.sqp.proxy.vertx.VertxClientConnection;
 import io.vertx.core.AbstractVerticle;
@@ -58,6 +59,10 @@ public class ServerVerticle extends AbstractVerticle {
         String path = config.getString("path", DEFAULT_PATH);
         int port = config.getInteger("port", DEFAULT_PORT);
         int poolSize = config.getInteger("connectionPoolSize", DEFAULT_POOL_SIZE);
+        int fetchByteBudget = config.getInteger("fetchByteBudget", FetchSizeController.DEFAULT_BYTE_BUDGET);
+        int fetchLatencyBudget = config.getInteger("fetchLatencyBudget", FetchSizeController.DEFAULT_LATENCY_BUDGET);
+        JsonObject resultCacheConf = config.getJsonObject("resultCache");
+        boolean coalesceQueries = config.getBoolean("coalesceQueries", false);
         JsonArray backendConfs = config.getJsonArray("backends");
         _executorService = Executors.newFixedThreadPool(10); // TODO: set this reasonably
 
@@ -70,6 +75,14 @@ public class ServerVerticle extends AbstractVerticle {
             _logger.log(Level.SEVERE, "Failed to create the connection pool", e);
             throw new RuntimeException(e.getMessage(), e.getCause());
         }
+        if (resultCacheConf != null) {
+            int ttl = resultCacheConf.getInteger("ttl", ResultCache.DEFAULT_TTL);
+            int maxBytes = resultCacheConf.getInteger("maxBytes", ResultCache.DEFAULT_MAX_BYTES);
+            connectionPool.setResultCache(new ResultCache(ttl, maxBytes));
+        }
+        if (coalesceQueries) {
+            connectionPool.setQueryCoalescer(new QueryCoalescer());
+        }
 
         HttpServerOptions options = new HttpServerOptions();
         int maxFrameSize = options.getMaxWebsocketFrameSize();
@@ -85,7 +98,9 @@ public class ServerVerticle extends AbstractVerticle {
                 return;
             }
             // TODO: check sub protocols
-            new VertxClientConnection(_executorService, socket, connectionPool, maxFrameSize);
+            new VertxClientConnection(_executorService, socket, connectionPool, maxFrameSize,
+                    () -> new FetchSizeController(fetchByteBudget, fetchLatencyBudget),
+                    ChannelHeader.isRequested(socket.query()));
         });
         // start to listen
         server.listen(port, result -> {
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the statements a session prepared implicitly, so the same query doesn't need to be prepared again
+ * on the backend connection. The least recently used statement is evicted if the capacity is exceeded.
+ * @author Stefan Burnicki
+ */
+public class StatementCache {
+    public static final int DEFAULT_CAPACITY = 64;
+    // client chosen statement IDs must not collide with the ones of the cache
+    private static final String ID_PREFIX = "_sqpCached";
+
+    private int _capacity;
+    private int _nextId;
+    private LinkedHashMap<String, String> _statements;
+
+    public StatementCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The maximum number of statements that are kept prepared
+     */
+    public StatementCache(int capacity) {
+        _capacity = capacity;
+        _statements = new LinkedHashMap<>(16, 0.75f, true); // access ordered
+    }
+
+    /**
+     * Gets the statement prepared for a query and marks it as recently used.
+     * @param query The query
+     * @return The ID of the prepared statement, or null if it's not cached
+     */
+    public String get(String query) {
+        return _statements.get(query);
+    }
+
+    /**
+     * Creates a new statement ID for a query that is about to be prepared.
+     * @param query The query
+     * @return The statement ID to prepare the query with
+     */
+    public String add(String query) {
+        String id = ID_PREFIX + (_nextId++);
+        _statements.put(query, id);
+        return id;
+    }
+
+    /**
+     * Removes the least recently used statement if there is no space for another one.
+     * @return The ID of the removed statement that needs to be released, or null if there is space left
+     */
+    public String evict() {
+        if (_statements.size() < _capacity) {
+            return null;
+        }
+        Iterator<Map.Entry<String, String>> eldest = _statements.entrySet().iterator();
+        if (!eldest.hasNext()) {
+            return null;
+        }
+        String id = eldest.next().getValue();
+        eldest.remove();
+        return id;
+    }
+
+    /**
+     * Removes the statement of a query, e.g. because it became invalid.
+     * @param query The query
+     * @return The ID of the removed statement, or null if it wasn't cached
+     */
+    public String remove(String query) {
+        return _statements.remove(query);
+    }
+
+    public int size() {
+        return _statements.size();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.util;
+
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.TypeDescription;
+import io.sqp.core.types.SqpTypeCode;
+import io.sqp.core.types.SqpValue;
+
+import java.util.List;
+
+/**
+ * Estimates the encoded size of rows. The estimates don't need to be exact, they are used to decide how many
+ * rows are fetched at once.
+ * @author Stefan Burnicki
+ */
+public class RowSizeEstimator {
+    private static final int DEFAULT_WIDTH = 32;
+    private static final int MAX_DECLARED_WIDTH = 256;
+    private static final int LOB_REFERENCE_WIDTH = 24;
+
+    private RowSizeEstimator() {
+        // prevent instantiation
+    }
+
+    public static int estimateRowWidth(List<ColumnMetadata> columns) {
+        int width = 0;
+        for (ColumnMetadata column : columns) {
+            width += estimateColumnWidth(column.getType());
+        }
+        return Math.max(width, 1);
+    }
+
+    public static int estimateColumnWidth(TypeDescription type) {
+        return estimateTypeWidth(type.getTypeCode(), type.getPrecision());
+    }
+
+    private static int estimateTypeWidth(SqpTypeCode typeCode, int precision) {
+        switch (typeCode) {
+            case Boolean:
+            case TinyInt:
+                return 2;
+            case SmallInt:
+                return 3;
+            case Integer:
+            case Real:
+                return 5;
+            case BigInt:
+            case Double:
+            case Date:
+                return 9;
+            case Time:
+            case Interval:
+                return 16;
+            case Timestamp:
+                return 24;
+            case Decimal:
+                return precision > 0 ? precision + 2 : DEFAULT_WIDTH;
+            case Char:
+            case VarChar:
+            case Binary:
+            case VarBinary:
+                // declared lengths are only an upper bound, so don't trust huge ones
+                return precision > 0 ? Math.min(precision, MAX_DECLARED_WIDTH) : DEFAULT_WIDTH;
+            case Blob:
+            case Clob:
+                return LOB_REFERENCE_WIDTH;
+            default:
+                return DEFAULT_WIDTH;
+        }
+    }
+
+    public static int estimateRowSize(List<SqpValue> row) {
+        int size = 0;
+        for (SqpValue value : row) {
+            size += estimateValueSize(value);
+        }
+        return Math.max(size, 1);
+    }
+
+    public static int estimateValueSize(SqpValue value) {
+        if (value.isNull()) {
+            return 1;
+        }
+        Object jsonValue = value.getJsonFormatValue();
+        if (jsonValue instanceof String) {
+            return ((String) jsonValue).length() + 2;
+        } else if (jsonValue instanceof byte[]) {
+            return ((byte[]) jsonValue).length + 2;
+        }
+        return estimateTypeWidth(value.getType(), -1);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.vertx;
+
+import io.sqp.core.ChannelHeader;
+import io.sqp.core.DataFormat;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * The send queue of a multiplexed websocket. Each channel has its own queue of streams, and the channels take
+ * turns: Streams are sent in chunks of at most {@link #DEFAULT_CHUNK_SIZE} bytes, each being a websocket message
+ * with its own {@link ChannelHeader}. All but the last chunk of a stream have a continued header, so the client
+ * can reassemble them. This way, a large LOB or result of one channel doesn't hold the socket for the others.
+ * <p>
+ * A channel is only sent as many bytes as the client granted credit for, starting with
+ * {@link ChannelHeader#INITIAL_CREDIT}. So a client that doesn't read a channel only stops this channel.
+ * @author Stefan Burnicki
+ */
+public class MultiplexedSendQueueStream implements ReadStream<Buffer> {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private int _chunkSize;
+    private long _initialCredit;
+    private boolean _isPaused;
+    private boolean _sending;
+    private Map<Integer, ChannelQueue> _channels;
+    private Queue<ChannelQueue> _turns;
+    private Handler<Void> _streamEndHandler;
+    private Handler<DataFormat> _streamStartedHandler;
+    private Handler<Buffer> _dataHandler;
+    private Handler<Throwable> _exceptionHandler;
+    private Handler<Void> _endHandler;
+
+    public MultiplexedSendQueueStream() {
+        this(DEFAULT_CHUNK_SIZE, ChannelHeader.INITIAL_CREDIT);
+    }
+
+    /**
+     * @param chunkSize The maximum number of bytes of a chunk, without the header
+     * @param initialCredit The number of bytes that can be sent on a channel before the client grants credit
+     */
+    public MultiplexedSendQueueStream(int chunkSize, long initialCredit) {
+        if (chunkSize < 4) {
+            throw new IllegalArgumentException("A chunk must be able to hold any UTF-8 character.");
+        }
+        _chunkSize = chunkSize;
+        _initialCredit = initialCredit;
+        _channels = new HashMap<>();
+        _turns = new LinkedList<>();
+    }
+
+    /**
+     * Queues a stream to be sent on a channel, after the streams already queued for this channel.
+     * @param channel The channel id to prefix the chunks of the stream with
+     * @param stream The stream to send
+     * @param format The format of the stream
+     * @param endedHandler Called when the last chunk of this stream was sent. Might be null.
+     * @return This queue stream
+     */
+    public ReadStream<Buffer> addStream(int channel, ReadStream<Buffer> stream, DataFormat format,
+                                        Handler<Void> endedHandler) {
+        stream.pause(); // make sure it's paused while in queue
+        ChannelQueue channelQueue = getOrCreateChannel(channel);
+        channelQueue.Streams.add(new QueuedStream(stream, format, endedHandler));
+        if (channelQueue.Current == null) {
+            startNextStream(channelQueue);
+        }
+        sendChunks();
+        return this;
+    }
+
+    /**
+     * Allows to send more data on a channel.
+     * @param channel The channel id
+     * @param credit The number of bytes granted by the client
+     */
+    public void addCredit(int channel, long credit) {
+        ChannelQueue channelQueue = getOrCreateChannel(channel);
+        channelQueue.Credit = channelQueue.Credit > Long.MAX_VALUE - credit ? Long.MAX_VALUE
+                                                                            : channelQueue.Credit + credit;
+        sendChunks();
+    }
+
+    /**
+     * Forgets a channel after its queued streams were sent. As the client won't grant credit for a closed
+     * channel anymore, they are sent regardless of the credit.
+     * @param channel The channel id
+     */
+    public void removeChannel(int channel) {
+        ChannelQueue channelQueue = _channels.get(channel);
+        if (channelQueue == null) {
+            return;
+        }
+        channelQueue.Removed = true;
+        channelQueue.Credit = Long.MAX_VALUE;
+        if (channelQueue.Current == null) {
+            _channels.remove(channel);
+            _turns.remove(channelQueue);
+        } else {
+            sendChunks();
+        }
+    }
+
+    public int getNumChannels() {
+        return _channels.size();
+    }
+
+    public boolean hasActiveStream() {
+        return _turns.stream().anyMatch(c -> c.Current != null);
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+        _exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+        _dataHandler = handler;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+        _isPaused = true;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+        _isPaused = false;
+        sendChunks();
+        return this;
+    }
+
+    /**
+     * Sets the handler that is called whenever all queued streams were sent, or immediately if there are none.
+     * @param endHandler The handler
+     * @return This queue stream
+     */
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        _endHandler = endHandler;
+        if (_endHandler != null && !hasActiveStream()) {
+            _endHandler.handle(null);
+        }
+        return this;
+    }
+
+    public ReadStream<Buffer> streamEndedHandler(Handler<Void> streamEndHandler) {
+        _streamEndHandler = streamEndHandler;
+        return this;
+    }
+
+    public ReadStream<Buffer> streamStartedHandler(Handler<DataFormat> streamStartedHandler) {
+        _streamStartedHandler = streamStartedHandler;
+        return this;
+    }
+
+    private ChannelQueue getOrCreateChannel(int channel) {
+        ChannelQueue channelQueue = _channels.get(channel);
+        if (channelQueue == null) {
+            channelQueue = new ChannelQueue(channel, _initialCredit);
+            _channels.put(channel, channelQueue);
+            _turns.add(channelQueue);
+        }
+        return channelQueue;
+    }
+
+    private void startNextStream(ChannelQueue channelQueue) {
+        QueuedStream queuedStream = channelQueue.Streams.poll();
+        if (queuedStream == null) {
+            // nothing left to send on this channel. Only its credit needs to be remembered, if it's still open
+            if (channelQueue.Removed) {
+                _channels.remove(channelQueue.Channel);
+                _turns.remove(channelQueue);
+            }
+            return;
+        }
+        channelQueue.Current = queuedStream;
+        channelQueue.Pending = Buffer.buffer();
+        channelQueue.Ended = false;
+        channelQueue.ReadPaused = false;
+
+        ReadStream<Buffer> stream = queuedStream.Stream;
+        stream.exceptionHandler(t -> handleStreamFailed(channelQueue, queuedStream, t));
+        stream.endHandler(v -> handleStreamEnded(channelQueue, queuedStream));
+        stream.handler(data -> handleStreamData(channelQueue, queuedStream, data));
+        // read ahead, independent of the socket. The pending data is bounded by the chunk size
+        stream.resume();
+    }
+
+    private void handleStreamData(ChannelQueue channelQueue, QueuedStream stream, Buffer data) {
+        if (channelQueue.Current != stream) {
+            return;
+        }
+        channelQueue.Pending.appendBuffer(data);
+        if (channelQueue.Pending.length() > _chunkSize && !channelQueue.Ended) {
+            channelQueue.ReadPaused = true;
+            stream.Stream.pause();
+        }
+        sendChunks();
+    }
+
+    private void handleStreamEnded(ChannelQueue channelQueue, QueuedStream stream) {
+        if (channelQueue.Current != stream) {
+            return;
+        }
+        channelQueue.Ended = true;
+        sendChunks();
+    }
+
+    private void handleStreamFailed(ChannelQueue channelQueue, QueuedStream stream, Throwable error) {
+        if (_exceptionHandler != null) {
+            _exceptionHandler.handle(error);
+        }
+        // the stream won't deliver anything anymore. Don't let it block the channel
+        handleStreamEnded(channelQueue, stream);
+    }
+
+    private void sendChunks() {
+        if (_sending) {
+            return; // the handlers might cause another call
+        }
+        _sending = true;
+        boolean wasActive = hasActiveStream();
+        try {
+            while (!_isPaused && sendNextChunk()) {
+                // the loop body is sending the chunk
+            }
+        } finally {
+            _sending = false;
+        }
+        if (_endHandler != null && wasActive && !hasActiveStream()) {
+            _endHandler.handle(null);
+        }
+    }
+
+    private boolean sendNextChunk() {
+        // look for the next channel that has a chunk ready, starting after the last one that sent
+        int numChannels = _turns.size();
+        for (int i = 0; i < numChannels; i++) {
+            ChannelQueue channelQueue = _turns.poll();
+            _turns.add(channelQueue);
+            int chunkLength = getReadyChunkLength(channelQueue);
+            if (chunkLength >= 0) {
+                sendChunk(channelQueue, chunkLength);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getReadyChunkLength(ChannelQueue channelQueue) {
+        if (channelQueue.Current == null) {
+            return -1;
+        }
+        Buffer pending = channelQueue.Pending;
+        int maxLength = (int) Math.min(_chunkSize, channelQueue.Credit);
+        if (pending.length() <= maxLength) {
+            // wait for more data unless this is the last chunk
+            return channelQueue.Ended ? pending.length() : -1;
+        }
+        int length = maxLength;
+        if (channelQueue.Current.DataFormat == DataFormat.Text) {
+            // each chunk is a text message of its own, so it must not end within a UTF-8 sequence
+            while (length > 0 && (pending.getByte(length) & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        // without enough credit, wait until the client granted more
+        return length > 0 ? length : -1;
+    }
+
+    private void sendChunk(ChannelQueue channelQueue, int length) {
+        QueuedStream stream = channelQueue.Current;
+        Buffer pending = channelQueue.Pending;
+        boolean isLast = channelQueue.Ended && length == pending.length();
+        ChannelHeader header = isLast ? new ChannelHeader(channelQueue.Channel)
+                                      : ChannelHeader.continued(channelQueue.Channel);
+        Buffer chunk = Buffer.buffer(header.getLength() + length)
+                .appendBytes(header.getBytes())
+                .appendBuffer(pending, 0, length);
+        channelQueue.Pending = pending.getBuffer(length, pending.length());
+        channelQueue.Credit -= length;
+
+        if (_streamStartedHandler != null) {
+            _streamStartedHandler.handle(stream.DataFormat);
+        }
+        if (_dataHandler != null) {
+            _dataHandler.handle(chunk);
+        }
+        if (_streamEndHandler != null) {
+            _streamEndHandler.handle(null);
+        }
+
+        if (isLast) {
+            channelQueue.Current = null;
+            if (stream.EndedHandler != null) {
+                stream.EndedHandler.handle(null);
+            }
+            startNextStream(channelQueue);
+        } else if (channelQueue.ReadPaused && !channelQueue.Ended && channelQueue.Pending.length() <= _chunkSize) {
+            channelQueue.ReadPaused = false;
+            stream.Stream.resume();
+        }
+    }
+
+    private class ChannelQueue {
+        public final int Channel;
+        public final Queue<QueuedStream> Streams;
+        public QueuedStream Current;
+        public Buffer Pending;
+        public boolean Ended;
+        public boolean ReadPaused;
+        public long Credit;
+        public boolean Removed;
+
+        public ChannelQueue(int channel, long credit) {
+            Channel = channel;
+            Streams = new LinkedList<>();
+            Credit = credit;
+        }
+    }
+
+    private class QueuedStream {
+        public final ReadStream<Buffer> Stream;
+        public final DataFormat DataFormat;
+        public final Handler<Void> EndedHandler;
+
+        public QueuedStream(ReadStream<Buffer> stream, io.sqp.core.DataFormat dataFormat, Handler<Void> endedHandler) {
+            Stream = stream;
+            DataFormat = dataFormat;
+            EndedHandler = endedHandler;
+        }
+    }
+}
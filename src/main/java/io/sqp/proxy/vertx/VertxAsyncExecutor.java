@@ -37,6 +37,16 @@ public class VertxAsyncExecutor implements AsyncExecutor {
 
     @Override
     public <T> void callAsync(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        // ordered, so the operations started from the same context are executed one after another
+        executeBlocking(callable, true, resultHandler);
+    }
+
+    @Override
+    public <T> void callConcurrently(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        executeBlocking(callable, false, resultHandler);
+    }
+
+    private <T> void executeBlocking(FallibleCallable<T> callable, boolean ordered, ResultHandler<T> resultHandler) {
         _vertx.<T>executeBlocking(future -> {
             try {
                 T result = callable.invoke();
@@ -44,7 +54,7 @@ public class VertxAsyncExecutor implements AsyncExecutor {
             } catch (Exception e) {
                 future.fail(e);
             }
-        }, res -> {
+        }, ordered, res -> {
             if (res.failed()) {
                 Throwable cause = res.cause();
                 if (cause instanceof SqpException) {
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.vertx;
+
+import io.sqp.core.ChannelHeader;
+import io.sqp.core.DataFormat;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.jackson.JacksonMessageDecoder;
+import io.sqp.core.jackson.JacksonMessageEncoder;
+import io.sqp.core.messages.SqpMessage;
+import io.sqp.proxy.*;
+import io.sqp.proxy.exceptions.ServerErrorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The connection of a single client session. A websocket carries either a single channel or, if it's multiplexed,
+ * many channels whose messages are prefixed with a {@link ChannelHeader}.
+ * Each channel limits its own number of queued streams, so a channel that produces a lot of data doesn't block
+ * the producers of the other channels. On a multiplexed websocket, the streams of each channel are queued
+ * separately and sent in chunks, taking turns with the other channels.
+ * @author Stefan Burnicki
+ */
+public class VertxChannelConnection implements ClientConnection {
+    private static final int MAX_QUEUED_STREAMS = 64;
+    private VertxClientConnection _connection;
+    private ChannelHeader _header;
+    private ClientSession _session;
+    private MessageReceiver _msgReceiver;
+    private DataFormat _messageFormat;
+    private int _numQueuedStreams;
+    private Queue<Runnable> _writableHandlers;
+    private boolean _closed;
+    private boolean _messageContinued;
+
+    protected Logger logger;
+
+    /**
+     * @param connection The websocket connection this channel belongs to
+     * @param header The header of the channel, or null if the websocket isn't multiplexed
+     * @param connectionPool The pool to create the backend connection of the client session
+     * @param fetchSizeController The fetch size controller of the client session
+     */
+    public VertxChannelConnection(VertxClientConnection connection, ChannelHeader header,
+                                  BackendConnectionPool connectionPool, FetchSizeController fetchSizeController) {
+        _connection = connection;
+        _header = header;
+        _messageFormat = DataFormat.Text;
+        _writableHandlers = new LinkedList<>();
+        _session = new ClientSession(connectionPool, this, fetchSizeController);
+        _msgReceiver = new MessageReceiver(_session, new JacksonMessageDecoder());
+        logger = Logger.getGlobal();
+    }
+
+    public int getChannel() {
+        return _header == null ? 0 : _header.getChannel();
+    }
+
+    public ClientSession getSession() {
+        return _session;
+    }
+
+    @Override
+    public void reset() {
+        _msgReceiver.reset();
+    }
+
+    @Override
+    public void setMessageFormat(DataFormat format) {
+        _messageFormat = format;
+    }
+
+    @Override
+    public void sendMessage(SqpMessage message) {
+        try {
+            sendMessageInternal(message);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to encode message of type '" + message.getType() + "'. Closing connection");
+            // try to write an error message
+            ServerErrorException error = new ServerErrorException("Encoding the server message failed."
+                    + " This is likely to be a server problem.");
+            try {
+                sendMessageInternal(error.toErrorMessage());
+            } catch (IOException e1) {
+                logger.log(Level.SEVERE, "Even sending an error message failed!");
+            }
+            // close that connection
+            close();
+        }
+    }
+
+    private void sendMessageInternal(SqpMessage message) throws IOException {
+        if (_closed || _connection.isClosed()) {
+            logger.log(Level.SEVERE, "Attempt to send message after socket close: " + message);
+            return;
+        }
+        // first encode the message into a buffer
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new JacksonMessageEncoder().encode(outputStream, _messageFormat, message);
+        // than add a reader for this buffer to the sending queue
+        queueStream(new ByteArrayInputStream(outputStream.toByteArray()), _messageFormat);
+    }
+
+    @Override
+    public void sendStream(InputStream inputStream, DataFormat format) {
+        if (_closed || _connection.isClosed()) {
+            logger.log(Level.SEVERE, "Attempt to send " + format + " stream after socket close.");
+            return;
+        }
+        queueStream(inputStream, format);
+    }
+
+    private void queueStream(InputStream inputStream, DataFormat format) {
+        _numQueuedStreams++;
+        // the connection prefixes the data with the channel header, if multiplexed
+        _connection.queueStream(getChannel(), inputStream, format, this::handleStreamEnded);
+    }
+
+    @Override
+    public void whenWritable(Runnable handler) {
+        if (_connection.isSocketClosed() || _numQueuedStreams < MAX_QUEUED_STREAMS) {
+            handler.run();
+        } else {
+            _writableHandlers.add(handler);
+        }
+    }
+
+    private void handleStreamEnded(Void v) {
+        _numQueuedStreams--;
+        // wait until the queue is half empty before we let the producers continue
+        if (_numQueuedStreams <= MAX_QUEUED_STREAMS / 2) {
+            runWritableHandlers();
+        }
+    }
+
+    private void runWritableHandlers() {
+        while (!_writableHandlers.isEmpty()) {
+            _writableHandlers.poll().run();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        if (_header == null) {
+            // the only channel, so the websocket gets closed
+            _connection.close();
+            return;
+        }
+        // only this session is closed, the websocket is still used by others
+        _connection.removeChannel(this);
+        _session.executeCloseConnection(); // releases the backend connection
+    }
+
+    /**
+     * @return Whether the next websocket message of this channel continues a chunked message
+     */
+    boolean isMessageContinued() {
+        return _messageContinued;
+    }
+
+    void setMessageContinued(boolean continued) {
+        _messageContinued = continued;
+    }
+
+    public void newMessage(DataFormat format, ByteBuffer buf, boolean finish) throws SqpException {
+        _msgReceiver.newMessage(format, buf, finish);
+    }
+
+    public void continueMessage(ByteBuffer buf, boolean finish) throws SqpException {
+        _msgReceiver.continueMessage(buf, finish);
+    }
+
+    public void handleError(SqpException error) {
+        _session.handleError(error);
+    }
+
+    public void handleSocketClosed() {
+        // nothing gets sent anymore, so waiting producers need to finish
+        runWritableHandlers();
+        _session.onClientClose();
+    }
+}
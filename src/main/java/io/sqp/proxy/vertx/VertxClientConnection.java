@@ -19,160 +19,249 @@
 
 package io.sqp.proxy.vertx;
 
+import io.sqp.core.ChannelHeader;
 import io.sqp.core.DataFormat;
 import io.sqp.proxy.*;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.http.WebSocketFrame;
 import io.vertx.core.streams.Pump;
+import io.vertx.core.streams.ReadStream;
 import io.sqp.core.exceptions.SqpException;
-import io.sqp.core.jackson.JacksonMessageDecoder;
-import io.sqp.core.jackson.JacksonMessageEncoder;
-import io.sqp.core.messages.SqpMessage;
 import io.sqp.proxy.exceptions.InvalidFrameException;
-import io.sqp.proxy.exceptions.ServerErrorException;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * @author Stefan Burnicki
  */
-public class VertxClientConnection implements ClientConnection {
+public class VertxClientConnection {
+    private static final int SINGLE_CHANNEL = 0;
     private ExecutorService _executorService;
     private int _maxFrameSize;
     private ServerWebSocket _socket;
-    private MessageReceiver _msgReceiver;
-    private ClientSession _session;
-    private DataFormat _messageFormat;
+    private BackendConnectionPool _connectionPool;
+    private Supplier<FetchSizeController> _fetchSizeControllers;
+    private boolean _multiplexed;
+    private Map<Integer, VertxChannelConnection> _channels;
+    private VertxChannelConnection _receivingChannel;
+    private boolean _receivingContinued;
     private WebsocketSendQueueStream _wsSendQueueStream;
+    private MultiplexedSendQueueStream _multiplexedSendQueue;
     private WebsocketWriteStream _wsWriteStream;
     private boolean _closed;
+    private boolean _socketClosed;
     private Pump _wsSendingPump;
 
     protected Logger logger;
 
     public VertxClientConnection(ExecutorService executorService, ServerWebSocket websocket, BackendConnectionPool connectionPool, int maxFrameSize) {
+        this(executorService, websocket, connectionPool, maxFrameSize, FetchSizeController::new, false);
+    }
+
+    /**
+     * @param executorService The executor to read the sent streams
+     * @param websocket The websocket of the connection
+     * @param connectionPool The pool for the backend connections of the client sessions
+     * @param maxFrameSize The maximum size of a sent frame
+     * @param fetchSizeControllers Creates the fetch size controller of each client session
+     * @param multiplexed Whether the websocket carries multiple client sessions in channels
+     */
+    public VertxClientConnection(ExecutorService executorService, ServerWebSocket websocket, BackendConnectionPool connectionPool,
+                                 int maxFrameSize, Supplier<FetchSizeController> fetchSizeControllers, boolean multiplexed) {
         _executorService = executorService;
         _maxFrameSize = maxFrameSize;
-        _messageFormat = DataFormat.Text;
         _socket = websocket;
-        _session = new ClientSession(connectionPool, this);
-        _msgReceiver = new MessageReceiver(_session, new JacksonMessageDecoder());
+        _connectionPool = connectionPool;
+        _fetchSizeControllers = fetchSizeControllers;
+        _multiplexed = multiplexed;
+        _channels = new HashMap<>();
         logger = Logger.getGlobal();
         initSendingPump();
         registerHandlers();
-        logger.log(Level.INFO, "New client connected via websocket.");
+        if (!_multiplexed) {
+            _channels.put(SINGLE_CHANNEL, new VertxChannelConnection(this, null, _connectionPool, _fetchSizeControllers.get()));
+        }
+        logger.log(Level.INFO, "New client connected via " + (_multiplexed ? "multiplexed " : "") + "websocket.");
     }
 
     private void initSendingPump() {
         _wsWriteStream = new WebsocketWriteStream(_socket, _maxFrameSize);
-        _wsSendQueueStream = new WebsocketSendQueueStream();
-        _wsSendQueueStream.streamEndedHandler(v -> _wsWriteStream.finishCurrentMessage());
-        _wsSendQueueStream.streamStartedHandler(_wsWriteStream::setDataFormat);
-        _wsSendingPump = Pump.pump(_wsSendQueueStream, _wsWriteStream);
+        if (_multiplexed) {
+            // the channels take turns, so one channel can't hold the socket
+            _multiplexedSendQueue = new MultiplexedSendQueueStream();
+            _multiplexedSendQueue.streamEndedHandler(this::handleStreamEnded);
+            _multiplexedSendQueue.streamStartedHandler(_wsWriteStream::setDataFormat);
+            _wsSendingPump = Pump.pump(_multiplexedSendQueue, _wsWriteStream);
+        } else {
+            _wsSendQueueStream = new WebsocketSendQueueStream();
+            _wsSendQueueStream.streamEndedHandler(this::handleStreamEnded);
+            _wsSendQueueStream.streamStartedHandler(_wsWriteStream::setDataFormat);
+            _wsSendingPump = Pump.pump(_wsSendQueueStream, _wsWriteStream);
+        }
         _wsSendingPump.start();
     }
 
-    @Override
-    public void reset() {
-        _msgReceiver.reset();
+    public boolean isMultiplexed() {
+        return _multiplexed;
     }
 
-    @Override
-    public void setMessageFormat(DataFormat format) {
-        _messageFormat = format;
+    public int getNumChannels() {
+        return _channels.size();
     }
 
-    @Override
-    public void sendMessage(SqpMessage message) {
-        try {
-            sendMessageInternal(message);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to encode message of type '" + message.getType() + "'. Closing connection");
-            // try to write an error message
-            ServerErrorException error = new ServerErrorException("Encoding the server message failed."
-                    + " This is likely to be a server problem.");
-            try {
-                sendMessageInternal(error.toErrorMessage());
-            } catch (IOException e1) {
-                logger.log(Level.SEVERE, "Even sending an error message failed!");
-            }
-            // close that connection
-            close();
+    VertxChannelConnection getChannelConnection(int channel) {
+        return _channels.get(channel);
+    }
+
+    boolean isClosed() {
+        return _closed;
+    }
+
+    boolean isSocketClosed() {
+        return _socketClosed;
+    }
+
+    void queueStream(int channel, InputStream inputStream, DataFormat format, Handler<Void> endedHandler) {
+        AsyncInputStream stream = new AsyncInputStream(_executorService, inputStream);
+        if (_multiplexed) {
+            _multiplexedSendQueue.addStream(channel, stream, format, endedHandler);
+        } else {
+            _wsSendQueueStream.addStream(stream, format, endedHandler);
         }
     }
 
-    private void sendMessageInternal(SqpMessage message) throws IOException {
-        if (_closed) {
-            logger.log(Level.SEVERE, "Attempt to send message after socket close: " + message);
-            return;
+    void removeChannel(VertxChannelConnection channel) {
+        _channels.remove(channel.getChannel(), channel);
+        if (_receivingChannel == channel) {
+            _receivingChannel = null;
         }
-        // first encode the message into a buffer
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        new JacksonMessageEncoder().encode(outputStream, _messageFormat, message);
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-        // than add a reader for this buffer to the sending queue
-        _wsSendQueueStream.addStream(new AsyncInputStream(_executorService, inputStream), _messageFormat);
-    }
-
-    private boolean checkOpen(SqpMessage message) {
-        if (_closed) {
-            logger.log(Level.SEVERE, "Attempt to send message after socket close: " + message);
-            return false;
+        if (_multiplexed) {
+            _multiplexedSendQueue.removeChannel(channel.getChannel());
         }
-        return true;
     }
 
-    @Override
-    public void close() {
-        _closed = true;
-        _wsSendQueueStream.endHandler(v -> _socket.close());
+    private void handleStreamEnded(Void v) {
+        _wsWriteStream.finishCurrentMessage();
     }
 
-    @Override
-    public void sendStream(InputStream inputStream, DataFormat format) {
-        if (_closed) {
-            logger.log(Level.SEVERE, "Attempt to send " + format + " stream after socket close.");
-            return;
+    public void close() {
+        _closed = true;
+        if (_multiplexed) {
+            _multiplexedSendQueue.endHandler(v -> _socket.close());
+        } else {
+            _wsSendQueueStream.endHandler(v -> _socket.close());
         }
-        // simply add to sending queue
-        _wsSendQueueStream.addStream(new AsyncInputStream(_executorService, inputStream), format);
     }
 
     public void handleFrame(WebSocketFrame frame) {
         ByteBuffer buf = new VertxByteBuffer(frame.binaryData());
         boolean isFinal = frame.isFinal();
         boolean isText = frame.isText();
+        VertxChannelConnection channel = _receivingChannel;
 
         try {
             if (isText || frame.isBinary()) {
                 DataFormat format = isText ? DataFormat.Text : DataFormat.Binary;
-                _msgReceiver.newMessage(format, buf, isFinal);
+                boolean continuesChunk = false;
+                _receivingContinued = false;
+                if (_multiplexed) {
+                    ChannelHeader header = ChannelHeader.decode(
+                            buf.getBuffer(0, Math.min(buf.length(), ChannelHeader.MAX_LENGTH)).getBytes());
+                    if (header.isCredit()) {
+                        handleCredit(header, buf, isFinal);
+                        return;
+                    }
+                    channel = getOrOpenChannel(header.getChannel());
+                    buf = buf.getBuffer(header.getLength());
+                    // a chunked message is continued by the next websocket message of the channel
+                    continuesChunk = channel.isMessageContinued();
+                    _receivingContinued = header.isContinued();
+                } else {
+                    channel = _channels.get(SINGLE_CHANNEL);
+                }
+                _receivingChannel = isFinal ? null : channel;
+                if (isFinal) {
+                    channel.setMessageContinued(_receivingContinued);
+                }
+                if (continuesChunk) {
+                    channel.continueMessage(buf, isFinal && !_receivingContinued);
+                } else {
+                    channel.newMessage(format, buf, isFinal && !_receivingContinued);
+                }
             } else if (frame.isContinuation()) {
-                _msgReceiver.continueMessage(buf, isFinal);
+                if (channel == null) {
+                    throw new InvalidFrameException("There is no existing message to be continued");
+                }
+                if (isFinal) {
+                    _receivingChannel = null;
+                    channel.setMessageContinued(_receivingContinued);
+                }
+                channel.continueMessage(buf, isFinal && !_receivingContinued);
             } else {
                 throw new InvalidFrameException("Invalid frame type");
             }
         } catch (SqpException e) {
-            _session.handleError(e);
+            if (channel == null && !_multiplexed) {
+                channel = _channels.get(SINGLE_CHANNEL);
+            }
+            if (channel == null) {
+                // without a valid channel header, there is no session to report the error to
+                logger.log(Level.SEVERE, "Invalid frame on multiplexed connection: " + e.getMessage() + ". Closing.");
+                close();
+                return;
+            }
+            channel.handleError(e);
+        }
+        // a session that processed a close message doesn't need its channel anymore
+        if (_multiplexed && channel != null && channel.getSession().getState() == ClientSessionState.Dead) {
+            removeChannel(channel);
+        }
+    }
+
+    private void handleCredit(ChannelHeader header, ByteBuffer buf, boolean isFinal) throws SqpException {
+        if (!isFinal) {
+            throw new InvalidFrameException("A credit message must consist of a single frame");
+        }
+        // credit for a channel that was closed in the meantime doesn't matter anymore
+        if (_channels.containsKey(header.getChannel())) {
+            long credit = ChannelHeader.decodeCredit(buf.toString("UTF-8"), header);
+            _multiplexedSendQueue.addCredit(header.getChannel(), credit);
+        }
+    }
+
+    private VertxChannelConnection getOrOpenChannel(int id) {
+        VertxChannelConnection channel = _channels.get(id);
+        if (channel == null) {
+            channel = new VertxChannelConnection(this, new ChannelHeader(id), _connectionPool, _fetchSizeControllers.get());
+            _channels.put(id, channel);
         }
+        return channel;
     }
 
     public void handleClose(Void v) {
         // TODO: make the connectHandler settable
-        _wsSendQueueStream.pause();
+        ReadStream<Buffer> sendQueue = _multiplexed ? _multiplexedSendQueue : _wsSendQueueStream;
+        sendQueue.pause();
+        // nothing gets sent anymore, so waiting producers need to finish
+        _socketClosed = true;
         // TODO: make sure stopping the pump doesn't cause trouble
         // _wsSendingPump.stop();
-        if (_wsSendQueueStream.hasActiveStream()) {
+        boolean hasActiveStream = _multiplexed ? _multiplexedSendQueue.hasActiveStream()
+                                               : _wsSendQueueStream.hasActiveStream();
+        if (hasActiveStream) {
             logger.warning("Output to client was interrupted as the connection was closed."
             + "However, there ist still data to be sent which gets discarded");
         }
-        _session.onClientClose();
+        new ArrayList<>(_channels.values()).forEach(VertxChannelConnection::handleSocketClosed);
     }
 
     private void registerHandlers() {
@@ -34,6 +34,7 @@ public class WebsocketSendQueueStream implements ReadStream<Buffer> {
     private boolean _isPaused;
     private Queue<QueuedStream> _streamQueue;
     private ReadStream<Buffer> _currentStream;
+    private Handler<Void> _currentStreamEndedHandler;
     private Handler<Void> _streamEndHandler;
     private Handler<DataFormat> _streamStartedHandler;
     private Handler<Buffer> _dataHandler;
@@ -45,12 +46,27 @@ public class WebsocketSendQueueStream implements ReadStream<Buffer> {
     }
 
     public ReadStream<Buffer> addStream(ReadStream<Buffer> stream, DataFormat format) {
+        return addStream(stream, format, null);
+    }
+
+    /**
+     * Queues a stream to be sent.
+     * @param stream The stream to send
+     * @param format The format of the stream
+     * @param endedHandler Called when this stream ended, after the general stream ended handler. Might be null.
+     * @return This queue stream
+     */
+    public ReadStream<Buffer> addStream(ReadStream<Buffer> stream, DataFormat format, Handler<Void> endedHandler) {
         stream.pause(); // make sure it's paused while in queue
-        _streamQueue.add(new QueuedStream(stream, format));
+        _streamQueue.add(new QueuedStream(stream, format, endedHandler));
         proceedToNextStream();
         return this;
     }
 
+    public int getNumQueuedStreams() {
+        return _streamQueue.size();
+    }
+
     public boolean hasActiveStream() {
         return _currentStream != null || !_streamQueue.isEmpty();
     }
@@ -119,6 +135,7 @@ public class WebsocketSendQueueStream implements ReadStream<Buffer> {
             _streamStartedHandler.handle(queuedStream.DataFormat);
         }
         _currentStream = queuedStream.Stream;
+        _currentStreamEndedHandler = queuedStream.EndedHandler;
 
         // set handlers
         _currentStream.exceptionHandler(_exceptionHandler);
@@ -133,19 +150,26 @@ public class WebsocketSendQueueStream implements ReadStream<Buffer> {
 
     private void currentStreamEnded(Void v) {
         _currentStream = null;
+        Handler<Void> endedHandler = _currentStreamEndedHandler;
+        _currentStreamEndedHandler = null;
         if (_streamEndHandler != null) {
             _streamEndHandler.handle(null);
         }
+        if (endedHandler != null) {
+            endedHandler.handle(null);
+        }
         proceedToNextStream();
     }
 
     private class QueuedStream {
         public final ReadStream<Buffer> Stream;
         public final DataFormat DataFormat;
+        public final Handler<Void> EndedHandler;
 
-        public QueuedStream(ReadStream<Buffer> stream, io.sqp.core.DataFormat dataFormat) {
+        public QueuedStream(ReadStream<Buffer> stream, io.sqp.core.DataFormat dataFormat, Handler<Void> endedHandler) {
             Stream = stream;
             DataFormat = dataFormat;
+            EndedHandler = endedHandler;
         }
     }
 }
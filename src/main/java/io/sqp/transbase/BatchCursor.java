@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.transbase;
+
+import io.sqp.backend.results.CursorDescriptionResult;
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpValue;
+import transbase.tbx.TBXCursor;
+
+import java.util.List;
+
+/**
+ * Cursor of a select that was executed with multiple parameter lists. The results of all executions are
+ * concatenated and each row starts with the index of the parameter list it belongs to.
+ * The next execution is only started when the previous result was read completely.
+ * @author Stefan Burnicki
+ */
+public class BatchCursor extends Cursor {
+    private Statement _statement;
+    private Transaction _transaction;
+    private List<List<SqpValue>> _batchParameters;
+    private List<ColumnMetadata> _batchColumnMetadata;
+    private int _batchIndex;
+
+    public BatchCursor(Statement origin, TBXCursor tbxCursor, ResultConverter resultConverter, Transaction transaction,
+                       List<List<SqpValue>> batchParameters) throws SqpException {
+        super(origin, tbxCursor, false, resultConverter);
+        _statement = origin;
+        _transaction = transaction;
+        _batchParameters = batchParameters;
+        _batchColumnMetadata = CursorDescriptionResult.withBatchIndexColumn(super.getColumnMetadata());
+        _batchIndex = 0;
+    }
+
+    @Override
+    public List<ColumnMetadata> getColumnMetadata() {
+        return _batchColumnMetadata;
+    }
+
+    @Override
+    protected boolean nextRow(boolean forward) throws SqpException {
+        while (!super.nextRow(forward)) {
+            if (_batchIndex + 1 >= _batchParameters.size()) {
+                return false;
+            }
+            _batchIndex++;
+            replaceTBXCursor(_statement.openBatchCursor(_transaction, _batchParameters.get(_batchIndex)));
+        }
+        return true;
+    }
+
+    @Override
+    protected List<SqpValue> getRow() throws SqpException {
+        List<SqpValue> row = super.getRow();
+        row.add(0, new SqpInteger(_batchIndex));
+        return row;
+    }
+}
@@ -48,6 +48,7 @@ import java.util.stream.Collectors;
  * @author Stefan Burnicki
  */
 public class Connection implements BackendConnection {
+    private static final int STREAMING_CHUNK_SIZE = 32;
     private Logger _logger;
     private AsyncExecutor _asyncExecutor;
     private Transaction _transaction;
@@ -59,6 +60,7 @@ public class Connection implements BackendConnection {
     private CharEncodingFactory _charEncodingFactory;
     private ResultConverter _resultConverter;
     private LobManager _lobManager;
+    private volatile int _queryTimeout;
 
     public Connection(Logger logger, TBConfiguration config, TBNativeSQLFactory nativeSQLFactory, AsyncExecutor asyncExecutor)
     {
@@ -68,7 +70,7 @@ public class Connection implements BackendConnection {
         _openStatements = new HashMap<>();
         _openCursors = new HashMap<>();
         _nativeSQLFactory = nativeSQLFactory;
-        _lobManager = new LobManager();
+        _lobManager = new LobManager(config.getLobReadAhead(), config.getLobCacheBudget(), config.getLobIdleTimeout());
         _resultConverter = new ResultConverter(_lobManager);
     }
 
@@ -188,10 +190,26 @@ public class Connection implements BackendConnection {
             case DBMSName:
                 resultHandler.handle(new InformationRequestResult(InformationResponseType.Text, "Transbase"));
                 return;
+
+            case LobCacheHits:
+                resultHandler.handle(getCount(_lobManager.getCacheHits()));
+                return;
+
+            case LobCacheMisses:
+                resultHandler.handle(getCount(_lobManager.getCacheMisses()));
+                return;
+
+            case LobBytesServed:
+                resultHandler.handle(getCount(_lobManager.getBytesServed()));
+                return;
         }
         resultHandler.handle(InformationRequestResult.UNKNOWN);
     }
 
+    private InformationRequestResult getCount(long count) {
+        return new InformationRequestResult(InformationResponseType.Integer, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+
     @Override
     public void prepare(String sql, String statementId, SuccessHandler successHandler) {
         Statement open = _openStatements.remove(statementId);
@@ -207,7 +225,8 @@ public class Connection implements BackendConnection {
     }
 
     @Override
-    public void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable, ResultHandler<QueryResult> resultHandler) {
+    public void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable,
+                        int fetchSize, ResultHandler<QueryResult> resultHandler) {
         // TODO: implement parameter support
         Statement statement = _openStatements.get(statementId);
         if (statement == null) {
@@ -220,10 +239,11 @@ public class Connection implements BackendConnection {
             if (open != null) {
                 open.close();
             }
+            applyQueryTimeout();
             statement.bind(parameters);
             if (statement.isSelectQuery()) {
                 Cursor cursor = statement.executeSelect(_transaction, scrollable);
-                _openCursors.put(cursorId, cursor);
+                registerCursor(cursorId, cursor);
                 return new CursorDescriptionResult(cursorId, scrollable, cursor.getColumnMetadata());
             } else {
                 return new UpdateQueryResult(statement.executeUpdate(_transaction));
@@ -242,12 +262,7 @@ public class Connection implements BackendConnection {
             resultHandler.fail(new CursorProblemException(cursorId, CursorProblemException.Problem.NotScrollable));
             return;
         }
-        _asyncExecutor.callAsync(() -> {
-            List<List<SqpValue>> rows = cursor.fetch(position, numRows, forward);
-            List<QueryResult> results = rows.stream().map(RowDataResult::new).collect(Collectors.toList());
-            results.add(new EndQueryResult(cursor.hasMore()));
-            return results;
-        }, new ResultHandler<>(resultHandler::fail, list -> list.forEach(resultHandler::handle)));
+        streamRows(cursor, position, numRows < 0 ? Cursor.DEFAULT_NUM_ROWS : numRows, forward, resultHandler);
     }
 
     @Override
@@ -257,19 +272,40 @@ public class Connection implements BackendConnection {
             if (open != null) {
                 open.close();
             }
+            applyQueryTimeout();
             SimpleStatement stmt = new SimpleStatement(this, _nativeSQLFactory, sql);
             if (!stmt.execute(_transaction, scrollable)) {
-                return Collections.singletonList(new UpdateQueryResult(stmt.getAffectedRows()));
+                return new UpdateQueryResult(stmt.getAffectedRows());
             }
             // otherwise it's a cursor
             Cursor cursor = stmt.getAssociatedCursor();
-            _openCursors.put(cursorId, cursor);
-            List<List<SqpValue>> rows = cursor.fetch(-1, maxFetch, true);
-            List<QueryResult> results = rows.stream().map(RowDataResult::new).collect(Collectors.toList());
-            results.add(0, new CursorDescriptionResult(cursorId, scrollable, cursor.getColumnMetadata()));
-            results.add(new EndQueryResult(cursor.hasMore()));
-            return results;
-        }, new ResultHandler<>(resultHandler::fail, list -> list.forEach(resultHandler::handle)));
+            registerCursor(cursorId, cursor);
+            return new CursorDescriptionResult(cursorId, scrollable, cursor.getColumnMetadata());
+        }, new ResultHandler<QueryResult>(resultHandler::fail, result -> {
+            resultHandler.handle(result);
+            Cursor cursor = _openCursors.get(cursorId);
+            if (result instanceof CursorDescriptionResult && cursor != null) {
+                streamRows(cursor, -1, maxFetch < 0 ? Cursor.DEFAULT_NUM_ROWS : maxFetch, true, resultHandler);
+            }
+        }));
+    }
+
+    /**
+     * Reads the rows chunk by chunk in a worker thread and passes each chunk to the result handler as soon
+     * as it's read. The next chunk is only read when the result handler is ready for more results.
+     */
+    private void streamRows(Cursor cursor, int position, int numRows, boolean forward, ResultHandler<QueryResult> resultHandler) {
+        int chunkSize = Math.min(numRows, STREAMING_CHUNK_SIZE);
+        _asyncExecutor.callAsync(() -> cursor.fetch(position, chunkSize, forward), new ResultHandler<>(resultHandler::fail, rows -> {
+            rows.forEach(row -> resultHandler.handle(new RowDataResult(row)));
+            int rowsLeft = numRows - rows.size();
+            if (rowsLeft <= 0 || !cursor.hasMore()) {
+                resultHandler.handle(new EndQueryResult(cursor.hasMore()));
+                return;
+            }
+            // the position only applies to the first chunk
+            resultHandler.whenReady(() -> streamRows(cursor, -1, rowsLeft, forward, resultHandler));
+        }));
     }
 
     @Override
@@ -317,6 +353,26 @@ public class Connection implements BackendConnection {
         }, successHandler);
     }
 
+    @Override
+    public void setQueryTimeout(int millis) {
+        _queryTimeout = millis;
+    }
+
+    @Override
+    public void cancel(SuccessHandler successHandler) {
+        if (_connection == null) {
+            successHandler.succeed();
+            return;
+        }
+        // the running query blocks a worker, so the cancel request must not wait for it
+        _asyncExecutor.runConcurrently(_connection::cancelRequest, successHandler);
+    }
+
+    private void applyQueryTimeout() {
+        // TBX only supports timeouts in seconds, so round up
+        _connection.setQueryTimeout((_queryTimeout + 999) / 1000);
+    }
+
     @Override
     public void getLob(String id, long offset, long length, ResultHandler<LobStream> resultHandler) {
         if (length > Integer.MAX_VALUE) {
@@ -329,33 +385,22 @@ public class Connection implements BackendConnection {
             return;
         }
         DataFormat format = blobStream.getBType() == TBConst.CLOBTYPE ? DataFormat.Text : DataFormat.Binary;
-        // TODO: pass directly the BLOB stream that is restricted to the area from offset to offset+length
-        _asyncExecutor.callAsync(() -> {
-            long normalizedOffset = offset < 0 ? 0 : offset;
-            long dataLeft = 0;
-            try {
-                dataLeft = blobStream.getLength() - normalizedOffset;
-            } catch (SQLException e) {
-                throw new LobReadFailedException("Could not get LOB size: " + e.getMessage(), e);
-            }
-            if (dataLeft <= 0) {
-                return new LobStream(new ByteArrayInputStream(new byte[0]),format);
-            }
-            long fetchLength = length < 0 ? dataLeft : Math.min(length, dataLeft);
-            try {
-                // BlobStream takes a 1-based index
-                byte[] buffer = blobStream.getByteArray(normalizedOffset + 1, (int) fetchLength);
-                return new LobStream(new ByteArrayInputStream(buffer), format);
-            } catch (Exception e) {
-                throw new LobReadFailedException("Failed to read from internal stream: " + e.getMessage(), e);
-            }
-        }, resultHandler);
+        _asyncExecutor.callAsync(() -> new LobStream(new ByteArrayInputStream(_lobManager.read(id, offset, length)), format),
+                resultHandler);
+    }
+
+    public LobManager getLobManager() {
+        return _lobManager;
     }
 
     public ResultConverter getResultConverter() {
         return _resultConverter;
     }
 
+    void registerCursor(String cursorId, Cursor cursor) {
+        _openCursors.put(cursorId, cursor);
+    }
+
     public int getNumOpenCursors() {
         return _openCursors.size();
     }
@@ -44,7 +44,8 @@ import java.util.List;
  */
 public class Cursor {
     private static final int DEFAULT_TIMEOUT = 2000;
-    private static final int DEFAULT_NUM_ROWS = 10; // TODO: make this intelligent by checking what the cursor has buffered
+    // only used if no row limit was given at all, the proxy usually limits the rows of a fetch itself
+    public static final int DEFAULT_NUM_ROWS = 10;
     private List<ColumnMetadata> _columnMetadata;
     private TBXCursor _tbxCursor;
     private boolean _scrollable;
@@ -58,7 +59,7 @@ public class Cursor {
         _origin = origin;
         _resultConverter = resultConverter;
         try {
-            initColumnMetadata();
+            _columnMetadata = createColumnMetadata();
         } catch (SQLException e) {
             // TODO: this type of error is very unspecific
             throw new ExecutionFailedException(e);
@@ -124,6 +125,15 @@ public class Cursor {
         }
     }
 
+    protected void replaceTBXCursor(TBXCursor tbxCursor) throws SqpException {
+        try {
+            _tbxCursor.close(true, false);
+        } catch (SQLException e) {
+            throw new SqpException(ErrorType.CloseFailed, "Close of cursor failed!", ErrorAction.Recover, e);
+        }
+        _tbxCursor = tbxCursor;
+    }
+
     private void setFetchDirection(boolean forward) throws CursorProblemException {
         try {
             _tbxCursor.setFetchDirection(forward ? TBXCursor.FETCH_FORWARD : TBXCursor.FETCH_REVERSE);
@@ -132,19 +142,22 @@ public class Cursor {
         }
     }
 
-    private boolean nextRow(boolean forward) throws FetchFailedException {
+    protected boolean nextRow(boolean forward) throws SqpException {
         try {
-            if (forward) {
-                return _tbxCursor.next(DEFAULT_TIMEOUT);
-            } else {
-                return _tbxCursor.previous(DEFAULT_TIMEOUT);
-            }
+            return moveTBXCursor(forward);
         } catch (SQLException e) {
             throw new FetchFailedException("Failed to get the next/previous row from cursor.", e);
         }
     }
 
-    private List<SqpValue> getRow() throws SqpException {
+    /**
+     * Moves the TBX cursor to the next or previous row. Called once per row, so subclasses can intercept it.
+     */
+    protected boolean moveTBXCursor(boolean forward) throws SQLException {
+        return forward ? _tbxCursor.next(DEFAULT_TIMEOUT) : _tbxCursor.previous(DEFAULT_TIMEOUT);
+    }
+
+    protected List<SqpValue> getRow() throws SqpException {
         int rowSize = _columnMetadata.size();
         ArrayList<SqpValue> row = new ArrayList<>(rowSize);
         for (int i = 0; i < rowSize; i++) {
@@ -153,7 +166,7 @@ public class Cursor {
         return row;
     }
 
-    private TBObject getField(int i) throws FetchFailedException {
+    protected TBObject getField(int i) throws FetchFailedException {
         try {
             return _tbxCursor.getObject(i + 1);
         } catch (SQLException e) {
@@ -161,13 +174,17 @@ public class Cursor {
         }
     }
 
-    private void initColumnMetadata() throws SQLException, SqpException {
+    /**
+     * Called by the constructor to describe the columns of the TBX cursor.
+     */
+    protected List<ColumnMetadata> createColumnMetadata() throws SQLException, SqpException {
         QueryDescriptor qd = _tbxCursor.getQueryDescriptor();
         int numCols = qd.getFieldNo();
-        _columnMetadata = new ArrayList<>(qd.getFieldNo());
+        List<ColumnMetadata> columnMetadata = new ArrayList<>(numCols);
         for (int i = 0; i < numCols; i++) {
-            _columnMetadata.add(createColumnMetadataForField(qd, i));
+            columnMetadata.add(createColumnMetadataForField(qd, i));
         }
+        return columnMetadata;
     }
 
     private ColumnMetadata createColumnMetadataForField(QueryDescriptor qd, int idx) throws SQLException, SqpException {
@@ -16,58 +16,149 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package io.sqp.transbase;
 
+import io.sqp.backend.exceptions.LobReadFailedException;
 import transbase.tbx.types.helpers.BlobStream;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.sql.SQLException;
+import java.util.*;
 
 /**
+ * Keeps track of the LOBs of a connection and serves reads from them.
+ * Sequential reads are served with read-ahead: more data than requested is read from the database and the rest
+ * is kept in a small per-LOB cache for the next request. The cache size of all LOBs is limited by a memory budget.
+ * LOBs that were not accessed for a while are closed, even if their cursor is still open.
+ * The manager may be used from different threads. Reading from the database only locks the affected LOB, while the
+ * manager itself is only locked to maintain the caches and the registered LOBs.
  * @author Stefan Burnicki
  */
 public class LobManager {
+    public static final int DEFAULT_READ_AHEAD = 256 * 1024;
+    public static final int DEFAULT_CACHE_BUDGET = 4 * 1024 * 1024;
+    public static final int DEFAULT_IDLE_TIMEOUT = 10 * 60; // seconds
     private static final String CLOB_ID_PREFIX = "CLOB";
     private static final String BLOB_ID_PREFIX = "BLOB";
+    // some VMs reserve header words in arrays, so the largest safe array is a bit smaller than Integer.MAX_VALUE
+    private static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE - 8;
     private long _lobCounter;
-    private Map<String, BlobStream> _lobStreams;
+    private int _readAhead;
+    private long _cacheBudget;
+    private long _idleTimeoutMillis;
+    private Map<String, RegisteredLob> _lobs; // in access order, so the least recently used comes first
     private Map<Cursor, List<String>> _cursorLobMapping;
+    private long _cachedBytes;
+    private long _bytesServed;
+    private long _cacheHits;
+    private long _cacheMisses;
 
     public LobManager() {
+        this(DEFAULT_READ_AHEAD, DEFAULT_CACHE_BUDGET, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param readAhead Number of bytes read in addition to the requested ones with sequential reads. 0 disables it.
+     * @param cacheBudget Maximum number of bytes cached for all LOBs
+     * @param idleTimeout Number of seconds after which an unused LOB is closed. 0 disables it.
+     */
+    public LobManager(int readAhead, int cacheBudget, int idleTimeout) {
         _lobCounter = 0;
-        _lobStreams = new HashMap<>();
+        _readAhead = readAhead;
+        _cacheBudget = cacheBudget;
+        _idleTimeoutMillis = idleTimeout * 1000L;
+        _lobs = new LinkedHashMap<>(16, 0.75f, true);
         _cursorLobMapping = new HashMap<>();
     }
 
     public String registerLob(BlobStream blobStream, Cursor cursor, boolean isClob) {
-        String id = createCursorId(isClob);
-        _lobStreams.put(id, blobStream);
-        List<String> cursorMapping = _cursorLobMapping.get(cursor);
-        if (cursorMapping == null) {
-            cursorMapping = new LinkedList<>();
-            _cursorLobMapping.put(cursor, cursorMapping);
-        }
-        cursorMapping.add(id);
+        String id;
+        List<RegisteredLob> idleLobs;
+        synchronized (this) {
+            idleLobs = removeIdleLobs();
+            id = createCursorId(isClob);
+            _lobs.put(id, new RegisteredLob(blobStream, cursor));
+            List<String> cursorMapping = _cursorLobMapping.get(cursor);
+            if (cursorMapping == null) {
+                cursorMapping = new LinkedList<>();
+                _cursorLobMapping.put(cursor, cursorMapping);
+            }
+            cursorMapping.add(id);
+        }
+        closeSilently(idleLobs);
         return id;
     }
 
-    public BlobStream getBlobStream(String id) {
-        return _lobStreams.get(id);
+    public synchronized BlobStream getBlobStream(String id) {
+        RegisteredLob lob = _lobs.get(id);
+        return lob == null ? null : lob.Stream;
+    }
+
+    /**
+     * Reads data from a LOB.
+     * @param id The LOB id
+     * @param offset The 0-based offset to start reading at. Negative values are treated as 0.
+     * @param length The number of bytes to read. Negative values read everything up to the end of the LOB.
+     * @return The data, which might be less than requested if the LOB ends
+     * @throws LobReadFailedException If the LOB doesn't exist, reading it failed, or the chunk doesn't fit an array
+     */
+    public byte[] read(String id, long offset, long length) throws LobReadFailedException {
+        RegisteredLob lob;
+        synchronized (this) {
+            lob = _lobs.get(id);
+            if (lob == null) {
+                throw new LobReadFailedException("LOB with ID '" + id + "' does not exist.");
+            }
+            lob.LastAccess = System.currentTimeMillis();
+        }
+        byte[] data;
+        // the stream is only used by one reader at a time, but other LOBs can be read meanwhile
+        synchronized (lob) {
+            long normalizedOffset = offset < 0 ? 0 : offset;
+            long dataLeft = lob.getLength() - normalizedOffset;
+            if (dataLeft <= 0) {
+                return new byte[0];
+            }
+            long requestedLength = length < 0 ? dataLeft : Math.min(length, dataLeft);
+            if (requestedLength > MAX_CHUNK_SIZE) {
+                throw new LobReadFailedException("Requested chunk is too big");
+            }
+            int readLength = (int) requestedLength;
+            data = new byte[readLength];
+            int numCached = copyFromCache(lob, normalizedOffset, data);
+            if (numCached < readLength) {
+                readFromStream(lob, normalizedOffset + numCached, data, numCached, dataLeft - numCached);
+            }
+            lob.NextOffset = normalizedOffset + readLength;
+        }
+        List<RegisteredLob> idleLobs;
+        synchronized (this) {
+            _bytesServed += data.length;
+            idleLobs = removeIdleLobs();
+        }
+        closeSilently(idleLobs);
+        return data;
     }
 
     public void closeAll(Cursor cursor) throws IOException {
-        List<String> cursorMapping = _cursorLobMapping.remove(cursor);
-        if (cursorMapping == null) {
-            return;
+        List<RegisteredLob> lobs = new ArrayList<>();
+        synchronized (this) {
+            List<String> cursorMapping = _cursorLobMapping.remove(cursor);
+            if (cursorMapping == null) {
+                return;
+            }
+            for (String id : cursorMapping) {
+                RegisteredLob lob = _lobs.get(id);
+                if (lob != null) {
+                    remove(id, lob);
+                    lobs.add(lob);
+                }
+            }
         }
         IOException error = null;
-        for (String id : cursorMapping) {
+        for (RegisteredLob lob : lobs) {
             try {
-                closeStream(id);
+                close(lob);
             } catch (IOException e) {
                 error = error == null ? e : new IOException("Failed to close multiple LOBs: " + e.getMessage() +
                                                             "\n and \n" + error.getMessage(), e);
@@ -78,16 +169,173 @@ public class LobManager {
         }
     }
 
-    private void closeStream(String id) throws IOException {
-        BlobStream stream = _lobStreams.remove(id);
-        if (stream == null) {
+    public synchronized int getNumOpenLobs() {
+        return _lobs.size();
+    }
+
+    public synchronized long getCachedBytes() {
+        return _cachedBytes;
+    }
+
+    public synchronized long getBytesServed() {
+        return _bytesServed;
+    }
+
+    public synchronized long getCacheHits() {
+        return _cacheHits;
+    }
+
+    public synchronized long getCacheMisses() {
+        return _cacheMisses;
+    }
+
+    private void readFromStream(RegisteredLob lob, long offset, byte[] target, int targetOffset, long dataLeft)
+            throws LobReadFailedException {
+        int missing = target.length - targetOffset;
+        boolean sequential = offset == lob.NextOffset || targetOffset > 0;
+        int readLength = sequential ? (int) Math.min(dataLeft, (long) missing + _readAhead) : missing;
+        byte[] buffer;
+        try {
+            // BlobStream takes a 1-based index
+            buffer = lob.Stream.getByteArray(offset + 1, readLength);
+        } catch (Exception e) {
+            throw new LobReadFailedException("Failed to read from internal stream: " + e.getMessage(), e);
+        }
+        if (buffer.length < missing) {
+            throw new LobReadFailedException("Got only " + buffer.length + " bytes of LOB data instead of " + missing);
+        }
+        System.arraycopy(buffer, 0, target, targetOffset, missing);
+        byte[] chunk = buffer.length > missing ? Arrays.copyOfRange(buffer, missing, buffer.length) : null;
+        synchronized (this) {
+            dropCache(lob);
+            if (chunk != null) {
+                cacheChunk(lob, offset + missing, chunk);
+            }
+        }
+    }
+
+    private synchronized int copyFromCache(RegisteredLob lob, long offset, byte[] target) {
+        int numCached = lob.copyFromCache(offset, target);
+        if (numCached > 0) {
+            _cacheHits++;
+        } else {
+            _cacheMisses++;
+        }
+        return numCached;
+    }
+
+    private void cacheChunk(RegisteredLob lob, long offset, byte[] data) {
+        if (data.length > _cacheBudget || lob.Removed) {
             return;
         }
-        stream.close();
+        // evict the caches of the least recently used LOBs until the new chunk fits
+        Iterator<RegisteredLob> it = _lobs.values().iterator();
+        while (_cachedBytes + data.length > _cacheBudget && it.hasNext()) {
+            RegisteredLob other = it.next();
+            if (other != lob) {
+                dropCache(other);
+            }
+        }
+        lob.CacheOffset = offset;
+        lob.Cache = data;
+        _cachedBytes += data.length;
+    }
+
+    private void dropCache(RegisteredLob lob) {
+        if (lob.Cache != null) {
+            _cachedBytes -= lob.Cache.length;
+            lob.Cache = null;
+        }
+    }
+
+    private List<RegisteredLob> removeIdleLobs() {
+        if (_idleTimeoutMillis <= 0) {
+            return Collections.emptyList();
+        }
+        long idleSince = System.currentTimeMillis() - _idleTimeoutMillis;
+        List<RegisteredLob> idleLobs = new ArrayList<>();
+        Iterator<Map.Entry<String, RegisteredLob>> it = _lobs.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, RegisteredLob> entry = it.next();
+            RegisteredLob lob = entry.getValue();
+            if (lob.LastAccess > idleSince) {
+                break; // the remaining ones were used more recently
+            }
+            it.remove();
+            lob.Removed = true;
+            dropCache(lob);
+            List<String> cursorMapping = _cursorLobMapping.get(lob.Owner);
+            if (cursorMapping != null) {
+                cursorMapping.remove(entry.getKey());
+            }
+            idleLobs.add(lob);
+        }
+        return idleLobs;
+    }
+
+    private void remove(String id, RegisteredLob lob) {
+        _lobs.remove(id);
+        lob.Removed = true;
+        dropCache(lob);
+    }
+
+    private void closeSilently(List<RegisteredLob> lobs) {
+        for (RegisteredLob lob : lobs) {
+            try {
+                close(lob);
+            } catch (IOException e) {
+                // nobody can use it anymore, so there is nothing we could do about it
+            }
+        }
+    }
+
+    private void close(RegisteredLob lob) throws IOException {
+        // waits for a running read of the LOB, but doesn't block the manager meanwhile
+        synchronized (lob) {
+            lob.Stream.close();
+        }
     }
 
     private String createCursorId(boolean isClob) {
         _lobCounter++;
         return (isClob ? CLOB_ID_PREFIX : BLOB_ID_PREFIX) + _lobCounter;
     }
+
+    private class RegisteredLob {
+        public final BlobStream Stream;
+        public final Cursor Owner;
+        public long LastAccess;
+        public long NextOffset;
+        public long CacheOffset;
+        public byte[] Cache;
+        public boolean Removed;
+        private long _length = -1;
+
+        public RegisteredLob(BlobStream stream, Cursor owner) {
+            Stream = stream;
+            Owner = owner;
+            LastAccess = System.currentTimeMillis();
+        }
+
+        public long getLength() throws LobReadFailedException {
+            if (_length < 0) {
+                try {
+                    _length = Stream.getLength();
+                } catch (SQLException e) {
+                    throw new LobReadFailedException("Could not get LOB size: " + e.getMessage(), e);
+                }
+            }
+            return _length;
+        }
+
+        public int copyFromCache(long offset, byte[] target) {
+            if (Cache == null || offset < CacheOffset || offset >= CacheOffset + Cache.length) {
+                return 0;
+            }
+            int cacheStart = (int) (offset - CacheOffset);
+            int num = Math.min(target.length, Cache.length - cacheStart);
+            System.arraycopy(Cache, cacheStart, target, 0, num);
+            return num;
+        }
+    }
 }
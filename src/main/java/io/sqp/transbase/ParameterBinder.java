@@ -68,7 +68,7 @@ public class ParameterBinder {
         }
     }
 
-    private void bindList(List<SqpValue> parameters) throws SqpException {
+    public void bindList(List<SqpValue> parameters) throws SqpException {
         for (int i = 0; i < parameters.size(); i++) {
             bindParameter(i, parameters.get(i));
         }
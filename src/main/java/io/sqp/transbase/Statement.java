@@ -43,6 +43,7 @@ public class Statement implements IStatement {
     private Cursor _associatedCursor;
     private boolean _autoClose;
     private boolean _useBatchUpdate;
+    private List<List<SqpValue>> _batchParameters;
 
     public Statement(Connection connection, TBNativeSQLFactory nativeSQLFactory, String sql) throws SqpException {
         _connection = connection;
@@ -80,11 +81,19 @@ public class Statement implements IStatement {
             throw new InternalErrorException("The backend internally invoked an update execution, but it was a select");
         }
         transaction.tryAutoCommit(Transaction.CommitType.SELECT_QUERY);
+        if (_batchParameters != null && scrollable) {
+            throw new InvalidOperationException("Batch selects can only be executed with forward-only cursors.");
+        }
         int cursorMode = scrollable ? (TBXCursor.CURSOR_SCROLLABLE | TBXCursor.CURSOR_INSENSITIVE)
                                     : TBXCursor.CURSOR_FORWARD;
         try {
             TBXCursor tbxCursor = _storedQuery.open(transaction.getTBXTransaction(), cursorMode, -1);
-            _associatedCursor = new Cursor(this, tbxCursor, scrollable, _connection.getResultConverter());
+            if (_batchParameters != null) {
+                _associatedCursor = new BatchCursor(this, tbxCursor, _connection.getResultConverter(), transaction,
+                                                    _batchParameters);
+            } else {
+                _associatedCursor = new Cursor(this, tbxCursor, scrollable, _connection.getResultConverter());
+            }
             return _associatedCursor;
         } catch (SQLException error) {
             // I don't know why that's necessary, but
@@ -122,11 +131,28 @@ public class Statement implements IStatement {
     }
 
     public void bind(List<List<SqpValue>> parameters) throws SqpException {
-        _useBatchUpdate = parameters.size() > 1;
-        if (_useBatchUpdate && isSelectQuery()) {
-            throw new InvalidOperationException("Cannot use batch execution for select statements.");
-        }
         ParameterBinder binder = new ParameterBinder(_storedQuery, _connection.getCharEncodingFactory());
+        _batchParameters = null;
+        _useBatchUpdate = false;
+        if (parameters.size() > 1 && isSelectQuery()) {
+            // the other parameter lists are bound when the cursor reached the end of the previous result
+            _batchParameters = parameters;
+            binder.bindList(parameters.get(0));
+            return;
+        }
+        _useBatchUpdate = parameters.size() > 1;
         binder.bindBatch(parameters);
     }
+
+    /**
+     * Opens a new cursor with the given parameters, used by batch selects for all but the first parameter list.
+     */
+    TBXCursor openBatchCursor(Transaction transaction, List<SqpValue> parameters) throws SqpException {
+        new ParameterBinder(_storedQuery, _connection.getCharEncodingFactory()).bindList(parameters);
+        try {
+            return _storedQuery.open(transaction.getTBXTransaction(), TBXCursor.CURSOR_FORWARD, -1);
+        } catch (SQLException e) {
+            throw new ExecutionFailedException(e);
+        }
+    }
 }
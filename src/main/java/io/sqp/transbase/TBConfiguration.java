@@ -31,8 +31,15 @@ public class TBConfiguration {
     private String _username;
     private String _password;
     private String _tbURlStart;
+    private int _lobReadAhead;
+    private int _lobCacheBudget;
+    private int _lobIdleTimeout;
 
-    private TBConfiguration() {}
+    private TBConfiguration() {
+        _lobReadAhead = LobManager.DEFAULT_READ_AHEAD;
+        _lobCacheBudget = LobManager.DEFAULT_CACHE_BUDGET;
+        _lobIdleTimeout = LobManager.DEFAULT_IDLE_TIMEOUT;
+    }
 
     public String getUsername() {
         return _username;
@@ -42,6 +49,18 @@ public class TBConfiguration {
         return _password;
     }
 
+    public int getLobReadAhead() {
+        return _lobReadAhead;
+    }
+
+    public int getLobCacheBudget() {
+        return _lobCacheBudget;
+    }
+
+    public int getLobIdleTimeout() {
+        return _lobIdleTimeout;
+    }
+
     public TBURL getTBUrlForDatabase(String database) {
         return new TBURL(_tbURlStart + database);
     }
@@ -51,6 +70,15 @@ public class TBConfiguration {
         tbconfig.setUsername(config.getString("username"));
         tbconfig.setPassword(config.getString("password", true));
         tbconfig.setTbURlStart(buildTBUrlStart(config));
+        if (config.hasKey("lobReadAhead")) {
+            tbconfig.setLobReadAhead(config.getInt("lobReadAhead"));
+        }
+        if (config.hasKey("lobCacheBudget")) {
+            tbconfig.setLobCacheBudget(config.getInt("lobCacheBudget"));
+        }
+        if (config.hasKey("lobIdleTimeout")) {
+            tbconfig.setLobIdleTimeout(config.getInt("lobIdleTimeout"));
+        }
         return tbconfig;
     }
 
@@ -66,6 +94,18 @@ public class TBConfiguration {
         _tbURlStart = tbURlStart;
     }
 
+    private void setLobReadAhead(int lobReadAhead) {
+        _lobReadAhead = lobReadAhead;
+    }
+
+    private void setLobCacheBudget(int lobCacheBudget) {
+        _lobCacheBudget = lobCacheBudget;
+    }
+
+    private void setLobIdleTimeout(int lobIdleTimeout) {
+        _lobIdleTimeout = lobIdleTimeout;
+    }
+
     private static String buildTBUrlStart(Configuration config) throws ConfigurationException {
         // the jdbc url schema type is even represented in the TBX lower level.
         // We need to specify the URL like this or we won't get a connection
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.backend.jdbc;
+
+import io.sqp.backend.results.CursorDescriptionResult;
+import io.sqp.core.exceptions.InvalidOperationException;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpValue;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class BatchResultSetTest {
+    private static final String SQL = "SELECT a FROM t WHERE b = ?";
+    private PreparedStatement _firstStatement;
+    private PreparedStatement _secondStatement;
+    private StatementPool _statementPool;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        _firstStatement = mock(PreparedStatement.class);
+        _secondStatement = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(_firstStatement, _secondStatement);
+        _statementPool = new StatementPool(connection);
+    }
+
+    @Test
+    public void rowsStartWithIndexOfTheirParameterList() throws Exception {
+        ResultSet first = resultSet(10, 11);
+        ResultSet second = resultSet();
+        ResultSet third = resultSet(12);
+        when(_firstStatement.executeQuery()).thenReturn(first, second, third);
+        SmartStatement statement = new SmartStatement(SQL, _statementPool, new LobManager());
+        statement.bindParameterBatch(parameters(1, 2, 3));
+        SmartResultSet result = statement.executeQuery(false);
+
+        assertThat(result, instanceOf(BatchResultSet.class));
+        assertThat(result.getColumnMetadata(), hasSize(2));
+        assertThat(result.getColumnMetadata().get(0).getName(), is(CursorDescriptionResult.BATCH_INDEX_COLUMN));
+        assertThat(readAll(result), contains(Arrays.asList(0, 10), Arrays.asList(0, 11), Arrays.asList(2, 12)));
+
+        // the next parameter list is only bound when the previous result was read completely
+        InOrder inOrder = inOrder(_firstStatement, first, second);
+        inOrder.verify(_firstStatement).setInt(1, 1);
+        inOrder.verify(_firstStatement).executeQuery();
+        inOrder.verify(_firstStatement).setInt(1, 2);
+        inOrder.verify(_firstStatement).executeQuery();
+        inOrder.verify(first).close();
+        inOrder.verify(_firstStatement).setInt(1, 3);
+        inOrder.verify(_firstStatement).executeQuery();
+        inOrder.verify(second).close();
+    }
+
+    @Test
+    public void singleParameterListIsNoBatch() throws Exception {
+        ResultSet first = resultSet(10);
+        when(_firstStatement.executeQuery()).thenReturn(first);
+        SmartStatement statement = new SmartStatement(SQL, _statementPool, new LobManager());
+        statement.bindParameterBatch(parameters(1));
+        SmartResultSet result = statement.executeQuery(false);
+
+        assertThat(result, not(instanceOf(BatchResultSet.class)));
+        assertThat(result.getColumnMetadata(), hasSize(1));
+    }
+
+    @Test(expectedExceptions = InvalidOperationException.class)
+    public void scrollableBatchIsRejected() throws Exception {
+        SmartStatement statement = new SmartStatement(SQL, _statementPool, new LobManager());
+        statement.bindParameterBatch(parameters(1, 2));
+        statement.executeQuery(true);
+    }
+
+    @Test
+    public void statementInUseIsClonedWithItsParametersAndSettings() throws Exception {
+        ResultSet original = resultSet(10);
+        ResultSet firstOfClone = resultSet(20);
+        ResultSet secondOfClone = resultSet(21);
+        when(_firstStatement.executeQuery()).thenReturn(original);
+        when(_secondStatement.executeQuery()).thenReturn(firstOfClone, secondOfClone);
+        SmartStatement statement = new SmartStatement(SQL, _statementPool, new LobManager());
+        statement.setQueryTimeout(5);
+        statement.setFetchSize(50);
+        statement.bindParameterBatch(parameters(1, 2));
+        statement.executeQuery(false);
+        SmartResultSet cloneResult = statement.executeQuery(false);
+
+        verify(_secondStatement).setQueryTimeout(5);
+        verify(_secondStatement).setFetchSize(50);
+        assertThat(readAll(cloneResult), contains(Arrays.asList(0, 20), Arrays.asList(1, 21)));
+        verify(_secondStatement).setInt(1, 1);
+        verify(_secondStatement).setInt(1, 2);
+        verify(_firstStatement, never()).setInt(1, 2);
+    }
+
+    private List<List<SqpValue>> parameters(int... values) {
+        List<List<SqpValue>> parameters = new ArrayList<>();
+        for (int value : values) {
+            parameters.add(Collections.singletonList(new SqpInteger(value)));
+        }
+        return parameters;
+    }
+
+    private ResultSet resultSet(Integer... values) throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(metaData.getColumnName(1)).thenReturn("a");
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        List<Boolean> hasNext = new ArrayList<>(Collections.nCopies(values.length, true));
+        hasNext.add(false);
+        when(resultSet.next()).thenReturn(hasNext.get(0), hasNext.subList(1, hasNext.size()).toArray(new Boolean[0]));
+        if (values.length > 0) {
+            when(resultSet.getInt(1)).thenReturn(values[0], Arrays.copyOfRange(values, 1, values.length));
+        }
+        return resultSet;
+    }
+
+    private List<List<Integer>> readAll(SmartResultSet result) throws Exception {
+        List<List<Integer>> rows = new ArrayList<>();
+        while (result.next(true)) {
+            List<Integer> row = new ArrayList<>();
+            for (SqpValue value : result.readRow()) {
+                row.add(value.asInt());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
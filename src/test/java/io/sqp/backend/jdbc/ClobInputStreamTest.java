@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.backend.jdbc;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class ClobInputStreamTest {
+
+    @Test
+    public void encodesAsUtf8() throws Exception {
+        String text = "Gr\u00fc\u00dfe aus M\u00fcnchen \ud83d\ude00";
+        ClobInputStream stream = new ClobInputStream(new StringReader(text));
+        byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(readAll(stream), is(expected));
+        assertThat(stream.getPosition(), is((long) expected.length));
+    }
+
+    @Test
+    public void doesNotSplitSurrogatePairsBetweenChunks() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4095; i++) {
+            sb.append('a');
+        }
+        sb.append("\ud83d\ude00"); // the pair crosses the chunk boundary of 4096 chars
+        sb.append("end");
+        String text = sb.toString();
+
+        assertThat(readAll(new ClobInputStream(new StringReader(text))), is(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void skipCountsEncodedBytes() throws Exception {
+        String text = "\u00e4\u00f6\u00fcabc";
+        ClobInputStream stream = new ClobInputStream(new StringReader(text));
+
+        assertThat(stream.skip(6), is(6L));
+        assertThat(stream.getPosition(), is(6L));
+        assertThat(readAll(stream), is("abc".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private byte[] readAll(InputStream stream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int num;
+        while ((num = stream.read(buffer)) >= 0) {
+            out.write(buffer, 0, num);
+        }
+        return out.toByteArray();
+    }
+}
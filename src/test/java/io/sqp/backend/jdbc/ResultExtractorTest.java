@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.backend.jdbc;
+
+import io.sqp.core.exceptions.NotImplementedException;
+import io.sqp.core.types.SqpBlob;
+import io.sqp.core.types.SqpClob;
+import io.sqp.core.types.SqpTypeCode;
+import io.sqp.core.types.SqpValue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class ResultExtractorTest {
+    private ResultSet _resultSet;
+    private LobManager _lobManager;
+
+    @BeforeMethod
+    public void setUp() {
+        _resultSet = mock(ResultSet.class);
+        _lobManager = new LobManager();
+    }
+
+    @Test
+    public void numericValuesAreRead() throws Exception {
+        when(_resultSet.getBoolean(1)).thenReturn(true);
+        when(_resultSet.getByte(1)).thenReturn((byte) 1);
+        when(_resultSet.getShort(1)).thenReturn((short) 2);
+        when(_resultSet.getInt(1)).thenReturn(3);
+        when(_resultSet.getLong(1)).thenReturn(4L);
+        when(_resultSet.getFloat(1)).thenReturn(1.5f);
+        when(_resultSet.getDouble(1)).thenReturn(2.5);
+        when(_resultSet.getBigDecimal(1)).thenReturn(new BigDecimal("1.25"));
+
+        assertThat(read(SqpTypeCode.Boolean).getJsonFormatValue(), is(true));
+        assertThat(read(SqpTypeCode.TinyInt).asByte(), is((byte) 1));
+        assertThat(read(SqpTypeCode.SmallInt).asShort(), is((short) 2));
+        assertThat(read(SqpTypeCode.Integer).asInt(), is(3));
+        assertThat(read(SqpTypeCode.BigInt).asLong(), is(4L));
+        assertThat(read(SqpTypeCode.Real).asFloat(), is(1.5f));
+        assertThat(read(SqpTypeCode.Double).asDouble(), is(2.5));
+        assertThat(read(SqpTypeCode.Decimal).asBigDecimal(), is(new BigDecimal("1.25")));
+    }
+
+    @Test
+    public void characterAndBinaryValuesAreRead() throws Exception {
+        when(_resultSet.getString(1)).thenReturn("f\u00e4\u00df");
+        when(_resultSet.getBytes(1)).thenReturn(new byte[] {1, 2, 3});
+
+        assertThat(read(SqpTypeCode.Char).asString(), is("f\u00e4\u00df"));
+        assertThat(read(SqpTypeCode.VarChar).asString(), is("f\u00e4\u00df"));
+        assertThat(read(SqpTypeCode.Xml).asString(), is("f\u00e4\u00df"));
+        assertThat(read(SqpTypeCode.Binary).asBytes(), is(new byte[] {1, 2, 3}));
+        assertThat(read(SqpTypeCode.VarBinary).asBytes(), is(new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    public void temporalValuesAreRead() throws Exception {
+        when(_resultSet.getTime(1)).thenReturn(Time.valueOf(LocalTime.of(12, 34, 56)));
+        when(_resultSet.getDate(1)).thenReturn(Date.valueOf(LocalDate.of(2015, 6, 1)));
+        when(_resultSet.getTimestamp(1)).thenReturn(Timestamp.valueOf(LocalDateTime.of(2015, 6, 1, 12, 34, 56, 789)));
+
+        assertThat(read(SqpTypeCode.Time).asOffsetTime().toLocalTime(), is(LocalTime.of(12, 34, 56)));
+        assertThat(read(SqpTypeCode.Date).asLocalDate(), is(LocalDate.of(2015, 6, 1)));
+        assertThat(read(SqpTypeCode.Timestamp).asOffsetDateTime().toLocalDateTime(),
+                is(LocalDateTime.of(2015, 6, 1, 12, 34, 56, 789)));
+    }
+
+    @Test
+    public void lobsAreRegistered() throws Exception {
+        Blob blob = mock(Blob.class);
+        when(blob.length()).thenReturn(42L);
+        when(_resultSet.getBlob(1)).thenReturn(blob);
+        when(_resultSet.getClob(1)).thenReturn(mock(Clob.class));
+
+        SqpBlob blobValue = (SqpBlob) read(SqpTypeCode.Blob);
+        SqpClob clobValue = (SqpClob) read(SqpTypeCode.Clob);
+        assertThat(blobValue.getId(), startsWith("BLOB"));
+        assertThat(blobValue.getSize(), is(42L));
+        assertThat(clobValue.getId(), startsWith("CLOB"));
+        assertThat(clobValue.getSize(), is(-1L));
+    }
+
+    @Test
+    public void nullValuesDontFail() throws Exception {
+        // the result set mock returns null for all objects
+        for (SqpTypeCode type : new SqpTypeCode[] {SqpTypeCode.Time, SqpTypeCode.Date, SqpTypeCode.Timestamp,
+                SqpTypeCode.Xml, SqpTypeCode.Blob, SqpTypeCode.Clob}) {
+            SqpValue value = read(type);
+            assertThat(value.isNull(), is(true));
+            assertThat(value.getType(), is(type));
+        }
+    }
+
+    @Test(expectedExceptions = NotImplementedException.class)
+    public void unsupportedTypeFailsWhenValueIsRead() throws Exception {
+        // creating the reader must succeed, so cursors with such a column can be described
+        ResultExtractor.ColumnReader reader = ResultExtractor.createColumnReader(SqpTypeCode.Interval.asDescription(),
+                _lobManager, null);
+        reader.read(_resultSet, 1);
+    }
+
+    @Test
+    public void rowIsReadWithOneBasedColumns() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(3);
+        when(metaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(metaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        when(metaData.getColumnType(3)).thenReturn(Types.TIMESTAMP);
+        when(_resultSet.getMetaData()).thenReturn(metaData);
+        when(_resultSet.getInt(1)).thenReturn(7);
+        when(_resultSet.getString(2)).thenReturn("seven");
+
+        SmartResultSet smartResultSet = new SmartResultSet(_resultSet, false, null, _lobManager);
+        List<SqpValue> row = smartResultSet.readRow();
+
+        assertThat(smartResultSet.getColumnMetadata(), hasSize(3));
+        assertThat(row, hasSize(3));
+        assertThat(row.get(0).asInt(), is(7));
+        assertThat(row.get(1).asString(), is("seven"));
+        assertThat(row.get(2).isNull(), is(true));
+    }
+
+    private SqpValue read(SqpTypeCode type) throws Exception {
+        return ResultExtractor.createColumnReader(type.asDescription(), _lobManager, null).read(_resultSet, 1);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.backend.jdbc;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class StatementPoolTest {
+    private Connection _connection;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        _connection = mock(Connection.class);
+        when(_connection.prepareStatement(anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> mock(PreparedStatement.class));
+    }
+
+    @Test
+    public void releasedStatementIsReused() throws Exception {
+        StatementPool pool = new StatementPool(_connection);
+        PreparedStatement first = pool.acquire("SELECT 1", false);
+        pool.release("SELECT 1", false, first);
+
+        assertThat(pool.acquire("SELECT 1", false), is(sameInstance(first)));
+        verify(_connection, times(1)).prepareStatement("SELECT 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        verify(first).clearParameters();
+    }
+
+    @Test
+    public void statementInUseIsNotShared() throws Exception {
+        StatementPool pool = new StatementPool(_connection);
+        PreparedStatement first = pool.acquire("SELECT 1", false);
+        PreparedStatement second = pool.acquire("SELECT 1", false);
+
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void scrollabilityIsPartOfTheKey() throws Exception {
+        StatementPool pool = new StatementPool(_connection);
+        PreparedStatement forwardOnly = pool.acquire("SELECT 1", false);
+        pool.release("SELECT 1", false, forwardOnly);
+
+        PreparedStatement scrollable = pool.acquire("SELECT 1", true);
+        assertThat(scrollable, is(not(sameInstance(forwardOnly))));
+        verify(_connection).prepareStatement("SELECT 1", ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    @Test
+    public void leastRecentlyReleasedStatementIsEvicted() throws Exception {
+        StatementPool pool = new StatementPool(_connection, 2);
+        PreparedStatement first = pool.acquire("SELECT 1", false);
+        PreparedStatement second = pool.acquire("SELECT 2", false);
+        PreparedStatement third = pool.acquire("SELECT 3", false);
+        pool.release("SELECT 1", false, first);
+        pool.release("SELECT 2", false, second);
+        pool.release("SELECT 3", false, third);
+
+        assertThat(pool.getNumIdleStatements(), is(2));
+        verify(first).close();
+        verify(second, never()).close();
+        assertThat(pool.acquire("SELECT 2", false), is(sameInstance(second)));
+    }
+
+    @Test
+    public void closeClosesIdleStatements() throws Exception {
+        StatementPool pool = new StatementPool(_connection);
+        PreparedStatement statement = pool.acquire("SELECT 1", false);
+        pool.release("SELECT 1", false, statement);
+        pool.close();
+
+        verify(statement).close();
+        assertThat(pool.getNumIdleStatements(), is(0));
+    }
+}
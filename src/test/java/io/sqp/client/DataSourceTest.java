@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.exceptions.ConnectionException;
+import io.sqp.core.exceptions.InvalidOperationException;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class DataSourceTest extends ConnectionTestBase {
+
+    @Test
+    public void ReturnedConnectionsAreReused() throws Exception {
+        try (SqpDataSource dataSource = createDataSource(ClientConfig.create().setPoolMaxSize(2))) {
+            SqpConnection connection = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            assertThat(connection.isConnected(), is(true));
+            assertThat(dataSource.getNumConnections(), is(1));
+            connection.close();
+            assertThat(connection.isConnected(), is(false));
+            awaitIdle(dataSource, 1);
+
+            connection = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            assertThat(dataSource.getNumConnections(), is(1));
+            assertThat(dataSource.getNumIdleConnections(), is(0));
+            connection.close();
+        }
+    }
+
+    @Test
+    public void PoolIsWarmedUp() throws Exception {
+        try (SqpDataSource dataSource = createDataSource(ClientConfig.create().setPoolMinSize(2))) {
+            awaitIdle(dataSource, 2);
+            assertThat(dataSource.getNumConnections(), is(2));
+        }
+    }
+
+    @Test
+    public void BorrowingWaitsIfAllConnectionsAreBorrowed() throws Exception {
+        try (SqpDataSource dataSource = createDataSource(ClientConfig.create().setPoolMaxSize(1))) {
+            SqpConnection first = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            CompletableFuture<SqpConnection> second = dataSource.getConnection();
+            Thread.sleep(100);
+            assertThat(second.isDone(), is(false));
+
+            first.close();
+            second.get(5, TimeUnit.SECONDS).close();
+            assertThat(dataSource.getNumConnections(), is(1));
+        }
+    }
+
+    @Test
+    public void ReturnedConnectionIsReset() throws Exception {
+        try (SqpDataSource dataSource = createDataSource(ClientConfig.create().setPoolMaxSize(1))) {
+            SqpConnection connection = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            connection.setAutoCommit(false).join();
+            Cursor cursor = connection.executeSelect("SELECT * FROM " + TEST_TABLE).join();
+            connection.close();
+
+            try {
+                cursor.nextRow();
+                fail("The cursor wasn't closed when its connection was returned.");
+            } catch (InvalidOperationException e) {
+                // expected
+            }
+            connection = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            assertThat(connection.getAutoCommit(), is(true));
+            connection.close();
+        }
+    }
+
+    @Test
+    public void ReturnedConnectionCannotBeUsed() throws Exception {
+        try (SqpDataSource dataSource = createDataSource(ClientConfig.create())) {
+            SqpConnection connection = dataSource.getConnection().get(5, TimeUnit.SECONDS);
+            connection.close();
+            try {
+                connection.execute("SELECT * FROM " + TEST_TABLE).get(5, TimeUnit.SECONDS);
+                fail("A returned connection could be used.");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(ConnectionException.class));
+            }
+        }
+    }
+
+    private SqpDataSource createDataSource(ClientConfig config) {
+        return SqpDataSource.create(config, "localhost", proxyPort, proxyUrl, TEST_DATABASE);
+    }
+
+    private void awaitIdle(SqpDataSource dataSource, int numIdle) throws InterruptedException {
+        // connections are reset and returned asynchronously
+        for (int i = 0; i < 50 && dataSource.getNumIdleConnections() < numIdle; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(dataSource.getNumIdleConnections(), is(numIdle));
+    }
+}
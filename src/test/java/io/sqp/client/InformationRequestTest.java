@@ -67,6 +67,12 @@ public class InformationRequestTest extends AutoConnectTestBase {
         assertThat(answer, is(either(equalTo("Transbase")).or(equalTo("PostgreSQL"))));
     }
 
+    @Test
+    public void InformationRequestForLobStatistics() {
+        Integer answer = connection.getInformation(Integer.class, InformationSubject.LobBytesServed).join();
+        assertThat(answer, is(0)); // no LOB was read on this connection
+    }
+
     @Test
     public void RequestSqpTypeSchema() throws IOException {
         String origSchema = TestUtils.readResourceAsString("schemas/Date.json");
@@ -46,7 +46,7 @@ public class LobDataTest extends AutoConnectTestBase {
         connection.execute("DELETE FROM media").join();
     }
 
-    @Test(groups = "native-transbase-only") // TODO: add support for native-postgres
+    @Test(groups = {"without-jdbc-postgres"})
     public void CanSendBlob() throws SqpException {
         byte[] data = new byte[50 * 1024 * 1024]; // 50mb
         _random.nextBytes(data);
@@ -68,7 +68,7 @@ public class LobDataTest extends AutoConnectTestBase {
         assertThat(result.getAffectedRows(), is(1));
     }
 
-    @Test(groups = "native-transbase-only") // TODO: add support for native-postgres
+    @Test(groups = {"without-jdbc-postgres"})
     public void CanFetchBlob() throws SqpException {
         byte[] data = new byte[50 * 1024 * 1024]; // 50mb
         _random.nextBytes(data);
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.exceptions.ConnectionException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class MultiplexerTest extends ConnectionTestBase {
+
+    @Test
+    public void ConnectionsShareTheWebsocket() throws Exception {
+        try (SqpMultiplexer multiplexer = createMultiplexer()) {
+            SqpConnection first = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            clearTestTable(first).thenCompose(r -> insertData(first)).get(5, TimeUnit.SECONDS);
+
+            List<CompletableFuture<Cursor>> cursors = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                cursors.add(multiplexer.openConnection(TEST_DATABASE)
+                        .thenCompose(c -> c.executeSelect("SELECT * FROM " + TEST_TABLE)));
+            }
+            for (CompletableFuture<Cursor> cursor : cursors) {
+                assertThat(countRows(cursor.get(5, TimeUnit.SECONDS)), is(4));
+            }
+            assertThat(multiplexer.getNumConnections(), is(5));
+        }
+    }
+
+    @Test
+    public void ClosingAConnectionKeepsTheOthersOpen() throws Exception {
+        try (SqpMultiplexer multiplexer = createMultiplexer()) {
+            SqpConnection first = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            SqpConnection second = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            first.close();
+            assertThat(first.isConnected(), is(false));
+            assertThat(multiplexer.getNumConnections(), is(1));
+
+            second.executeSelect("SELECT * FROM " + TEST_TABLE).get(5, TimeUnit.SECONDS).close();
+            assertThat(second.isConnected(), is(true));
+        }
+    }
+
+    @Test
+    public void OpenCursorDoesntBlockOtherConnections() throws Exception {
+        ClientConfig config = ClientConfig.create().setCursorMaxFetch(1).setCursorPrefetchThreshold(0);
+        try (SqpMultiplexer multiplexer = createMultiplexer(config)) {
+            SqpConnection first = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            SqpConnection second = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            clearTestTable(first).thenCompose(r -> insertData(first)).get(5, TimeUnit.SECONDS);
+
+            // the first cursor is left open with unfetched rows
+            Cursor cursor = first.executeSelect("SELECT * FROM " + TEST_TABLE).get(5, TimeUnit.SECONDS);
+            assertThat(cursor.nextRow(), is(true));
+
+            Cursor other = second.executeSelect("SELECT * FROM " + TEST_TABLE).get(5, TimeUnit.SECONDS);
+            assertThat(countRows(other), is(4));
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void ClosingTheMultiplexerClosesItsConnections() throws Exception {
+        SqpMultiplexer multiplexer = createMultiplexer();
+        SqpConnection connection = multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+        multiplexer.close();
+        assertThat(connection.isConnected(), is(false));
+        try {
+            multiplexer.openConnection(TEST_DATABASE).get(5, TimeUnit.SECONDS);
+            fail("A connection of a closed multiplexer could be opened.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ConnectionException.class));
+        }
+    }
+
+    private SqpMultiplexer createMultiplexer() {
+        return createMultiplexer(ClientConfig.create());
+    }
+
+    private SqpMultiplexer createMultiplexer(ClientConfig config) {
+        return SqpMultiplexer.create(config, "localhost", proxyPort, proxyUrl);
+    }
+
+    private int countRows(Cursor cursor) throws Exception {
+        int numRows = 0;
+        while (cursor.nextRow()) {
+            numRows++;
+        }
+        cursor.close();
+        return numRows;
+    }
+}
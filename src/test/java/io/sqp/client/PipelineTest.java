@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.exceptions.ErrorResponseException;
+import io.sqp.client.exceptions.OperationSkippedException;
+import io.sqp.core.exceptions.SqpException;
+import org.hamcrest.Matcher;
+import org.hamcrest.collection.IsArrayContainingInAnyOrder;
+import org.hamcrest.core.Is;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class PipelineTest extends AutoConnectTestBase {
+    private static final String INSERT = "INSERT INTO weather (city, temp_lo, temp_hi, prob, date) VALUES ";
+
+    @BeforeMethod
+    public void ClearTestTable() {
+        clearTestTable(connection).join();
+    }
+
+    @Test
+    public void PipelineExecutesAllOperations() throws Exception {
+        connection.setAutoCommit(false).join();
+        List<CompletableFuture<UpdateResult>> inserts = new ArrayList<>();
+        connection.pipeline(c -> {
+            inserts.add(c.executeUpdate(INSERT + "('test1', 0, 50, 0.1, '2015-01-01')"));
+            inserts.add(c.executeUpdate(INSERT + "('test2', -10, 3, 9.99999, '1111-11-11')"));
+            c.commit();
+        }).get(5, TimeUnit.SECONDS);
+
+        assertThat(inserts.get(0).join().getAffectedRows(), is(1));
+        assertThat(inserts.get(1).join().getAffectedRows(), is(1));
+        checkHasData("test1", "test2");
+    }
+
+    @Test
+    public void PipelineWithPreparedStatementSucceeds() throws Exception {
+        List<CompletableFuture<UpdateResult>> inserts = new ArrayList<>();
+        connection.pipeline(c -> {
+            PreparedStatement stmt = c.prepare(INSERT + "(?, 0, 50, 0.1, '2015-01-01')");
+            try {
+                stmt.bind(0, "test1");
+            } catch (SqpException e) {
+                throw new IllegalStateException(e);
+            }
+            inserts.add(stmt.executeUpdate());
+        }).get(5, TimeUnit.SECONDS);
+
+        assertThat(inserts.get(0).join().getAffectedRows(), is(1));
+        checkHasData("test1");
+    }
+
+    @Test
+    public void FailingOperationSkipsTheRemainingOnes() throws Exception {
+        List<CompletableFuture<UpdateResult>> inserts = new ArrayList<>();
+        CompletableFuture<Void> pipeline = connection.pipeline(c -> {
+            inserts.add(c.executeUpdate(INSERT + "('test1', 0, 50, 0.1, '2015-01-01')"));
+            inserts.add(c.executeUpdate(INSERT + "()")); // wrong
+            inserts.add(c.executeUpdate(INSERT + "('test3', 0, 50, 0.1, '2015-01-01')"));
+        });
+        try {
+            pipeline.get(5, TimeUnit.SECONDS);
+            fail("The pipeline with a failing operation succeeded.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ErrorResponseException.class));
+        }
+
+        assertThat(inserts.get(0).join().getAffectedRows(), is(1));
+        assertFailsWith(inserts.get(1), ErrorResponseException.class);
+        assertFailsWith(inserts.get(2), OperationSkippedException.class);
+    }
+
+    private void assertFailsWith(CompletableFuture<?> future, Class<?> errorClass) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("The operation didn't fail.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(errorClass));
+        }
+    }
+
+    private void checkHasData(String... expectedCities) throws SqpException {
+        Cursor cursor = connection.execute(Cursor.class, "SELECT city FROM weather").join();
+        Collection<Matcher<String>> cities = new ArrayList<>();
+        while(cursor.nextRow()) {
+            cities.add(Is.is(cursor.at(0).asString()));
+        }
+        assertThat(expectedCities, new IsArrayContainingInAnyOrder(cities));
+    }
+}
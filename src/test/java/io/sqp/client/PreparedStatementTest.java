@@ -121,6 +121,30 @@ public class PreparedStatementTest extends AutoConnectTestBase {
         MatcherAssert.assertThat(cursor.at(0).asInt(), is(1));
     }
 
+    @Test
+    public void CanExecuteColumnBatch() throws Exception {
+        PreparedStatement prep = connection.prepare(
+                "INSERT INTO weather (city, temp_lo, temp_hi, prob, date) " +
+                        "VALUES      (?, ?, 1, 0.000002, '1990-01-03')");
+        ColumnBatch batch = ColumnBatch.create(3)
+                .addColumn(new String[] {"BarCity", "BazCity", "FooCity"})
+                .addColumn(new int[] {-1, -2, -3})
+                .setNull(1, 1);
+        UpdateResult updateRes = prep.executeBatch(batch).join();
+        assertThat(updateRes.getAffectedRows(), is(3));
+
+        Cursor cursor = connection.execute(Cursor.class,
+                "SELECT city, temp_lo FROM weather WHERE city LIKE '%City' ORDER BY city"
+        ).join();
+        assertThat(cursor.nextRow(), is(true));
+        MatcherAssert.assertThat(cursor.at(1).asInt(), is(-1));
+        assertThat(cursor.nextRow(), is(true));
+        MatcherAssert.assertThat(cursor.at(1).isNull(), is(true));
+        assertThat(cursor.nextRow(), is(true));
+        MatcherAssert.assertThat(cursor.at(0).asString(), is("FooCity"));
+        MatcherAssert.assertThat(cursor.at(1).asInt(), is(-3));
+    }
+
     @Test
     public void ConnectionCloseClosesPreparedStmt() throws Exception {
         PreparedStatement prep1 = connection.prepare(
@@ -151,6 +175,50 @@ public class PreparedStatementTest extends AutoConnectTestBase {
         }
     }
 
+    @Test
+    public void ImplicitStatementCanBeExecutedTwice() throws Exception {
+        PreparedStatement prep = connection.prepareImplicitly(
+                "INSERT INTO weather (city, temp_lo, temp_hi, prob, date) " +
+                        "VALUES      (?, -1, 1, 0.000002, '1990-01-03')");
+        prep.bind(0, "BarCity");
+        CompletableFuture<UpdateResult> updateFuture1 = prep.execute(UpdateResult.class, false);
+        prep.bind(0, "BazCity");
+        CompletableFuture<UpdateResult> updateFuture2 = prep.execute(UpdateResult.class, false);
+        assertThat(updateFuture1.get().getAffectedRows(), is(1));
+        assertThat(updateFuture2.get().getAffectedRows(), is(1));
+
+        Cursor cursor = connection.execute(Cursor.class, "SELECT COUNT(*) FROM weather WHERE city LIKE 'Ba%City'").join();
+        cursor.nextRow();
+        MatcherAssert.assertThat(cursor.at(0).asInt(), is(2));
+    }
+
+    @Test
+    public void ImplicitStatementReturnsCursorWithRows() throws Exception {
+        connection.prepareImplicitly(
+                "INSERT INTO weather (city, temp_lo, temp_hi, prob, date) " +
+                        "VALUES      ('BarCity', -1, 1, 0.000002, '1990-01-03')").execute().join();
+        PreparedStatement select = connection.prepareImplicitly("SELECT city FROM weather WHERE temp_lo = ?");
+        Cursor cursor = select.bind(0, -1).execute(Cursor.class, false).join();
+        assertThat(cursor.nextRow(), is(true));
+        MatcherAssert.assertThat(cursor.at(0).asString(), is("BarCity"));
+        assertThat(cursor.nextRow(), is(false));
+    }
+
+    @Test
+    public void ClosingImplicitStatementKeepsOtherStatementUsable() throws Exception {
+        String query = "INSERT INTO weather (city, temp_lo, temp_hi, prob, date) " +
+                       "VALUES      ('BarCity', -1, 1, 0.000002, '1990-01-03')";
+        PreparedStatement prep1 = connection.prepareImplicitly(query);
+        prep1.execute().join();
+        prep1.close();
+        assertThat(prep1.isClosed(), is(true));
+
+        // the server still has the statement prepared for the same query
+        PreparedStatement prep2 = connection.prepareImplicitly(query);
+        UpdateResult updateRes = prep2.execute(UpdateResult.class, false).join();
+        assertThat(updateRes.getAffectedRows(), is(1));
+    }
+
     @Test
     public void SimpleParameterBindWorks() throws Exception {
         PreparedStatement stmt = connection.prepare(
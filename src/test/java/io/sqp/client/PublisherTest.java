@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client;
+
+import io.sqp.client.exceptions.UnexpectedResultTypeException;
+import io.sqp.core.exceptions.SqpException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class PublisherTest extends AutoConnectTestBase {
+
+    @BeforeMethod
+    public void ClearTableInsertData() {
+        clearTestTable(connection).thenCompose(v -> insertData(connection)).join();
+    }
+
+    @Test
+    public void PublishesAllRowsOnUnboundedDemand() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(Long.MAX_VALUE);
+        connection.publishSelect("SELECT city FROM " + TEST_TABLE).subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS),
+                containsInAnyOrder("TestCity", "FooCity", "Stuttgart", "T\u00dcbingen"));
+    }
+
+    @Test
+    public void PublishesRowsAsRequested() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(1); // requests the next row after each one
+        connection.publishSelect("SELECT city FROM " + TEST_TABLE + " ORDER BY temp_lo ASC").subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS),
+                is(Arrays.asList("Stuttgart", "TestCity", "FooCity", "T\u00dcbingen")));
+    }
+
+    @Test
+    public void PublishesNothingWithoutDemand() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(0);
+        connection.publishSelect("SELECT city FROM " + TEST_TABLE).subscribe(subscriber);
+        Thread.sleep(200);
+
+        assertThat(subscriber.getCities().isEmpty(), is(true));
+        subscriber.Link.request(2);
+        Thread.sleep(200);
+        assertThat(subscriber.getCities().size(), is(2));
+        assertThat(subscriber.Completed.isDone(), is(false));
+        subscriber.Link.cancel();
+    }
+
+    @Test
+    public void PreparedStatementPublishesRows() throws Exception {
+        PreparedStatement stmt = connection.prepare("SELECT city FROM " + TEST_TABLE + " WHERE city LIKE ?");
+        stmt.bind(0, "%City");
+        CitySubscriber subscriber = new CitySubscriber(Long.MAX_VALUE);
+        stmt.publishSelect().subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS), containsInAnyOrder("TestCity", "FooCity"));
+    }
+
+    @Test
+    public void PublishingAnUpdateFails() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(Long.MAX_VALUE);
+        connection.publishSelect("DELETE FROM " + TEST_TABLE + " WHERE city = 'FooCity'").subscribe(subscriber);
+        try {
+            subscriber.Completed.get(5, TimeUnit.SECONDS);
+            fail("Publishing the rows of an update didn't fail.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(UnexpectedResultTypeException.class));
+        }
+    }
+
+    @Test
+    public void StreamsAllRowsOnUnboundedDemand() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(Long.MAX_VALUE);
+        connection.streamSelect("SELECT city FROM " + TEST_TABLE).subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS),
+                containsInAnyOrder("TestCity", "FooCity", "Stuttgart", "T\u00dcbingen"));
+    }
+
+    @Test
+    public void StreamsRowsAsRequested() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(1); // grants credit for the next row after each one
+        connection.streamSelect("SELECT city FROM " + TEST_TABLE + " ORDER BY temp_lo ASC").subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS),
+                is(Arrays.asList("Stuttgart", "TestCity", "FooCity", "T\u00dcbingen")));
+    }
+
+    @Test
+    public void StreamPausesWithoutDemand() throws Exception {
+        CitySubscriber subscriber = new CitySubscriber(0);
+        connection.streamSelect("SELECT city FROM " + TEST_TABLE).subscribe(subscriber);
+        subscriber.Link.request(1);
+        Thread.sleep(200);
+        subscriber.Link.request(1);
+        Thread.sleep(200);
+
+        assertThat(subscriber.getCities().size(), is(2));
+        assertThat(subscriber.Completed.isDone(), is(false));
+        subscriber.Link.cancel();
+
+        // the connection is usable after the stream was stopped
+        UpdateResult result = connection.executeUpdate("DELETE FROM " + TEST_TABLE + " WHERE city = 'FooCity'")
+                .get(5, TimeUnit.SECONDS);
+        assertThat(result.getAffectedRows(), is(1));
+    }
+
+    @Test
+    public void PreparedStatementStreamsRows() throws Exception {
+        PreparedStatement stmt = connection.prepare("SELECT city FROM " + TEST_TABLE + " WHERE city LIKE ?");
+        stmt.bind(0, "%City");
+        CitySubscriber subscriber = new CitySubscriber(Long.MAX_VALUE);
+        stmt.streamSelect().subscribe(subscriber);
+
+        assertThat(subscriber.Completed.get(5, TimeUnit.SECONDS), containsInAnyOrder("TestCity", "FooCity"));
+    }
+
+    private class CitySubscriber implements Subscriber<Row> {
+        public final CompletableFuture<List<String>> Completed = new CompletableFuture<>();
+        public Subscription Link;
+        private final List<String> _cities = Collections.synchronizedList(new ArrayList<>());
+        private final long _batchSize;
+
+        public CitySubscriber(long batchSize) {
+            _batchSize = batchSize;
+        }
+
+        public List<String> getCities() {
+            return _cities;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            Link = subscription;
+            if (_batchSize > 0) {
+                subscription.request(_batchSize);
+            }
+        }
+
+        @Override
+        public void onNext(Row row) {
+            try {
+                _cities.add(row.at("city").asString());
+            } catch (SqpException e) {
+                Completed.completeExceptionally(e);
+            }
+            if (_batchSize > 0 && _batchSize != Long.MAX_VALUE) {
+                Link.request(_batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            Completed.complete(_cities);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.sqp.client.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sqp.core.types.SqpTypeCode;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class ColumnBatchImplTest {
+
+    @Test
+    public void BatchIsEncodedLikeBoxedRows() throws Exception {
+        ColumnBatchImpl batch = new ColumnBatchImpl(3);
+        batch.addColumn(new int[] {1, 2, 3})
+             .addColumn(new String[] {"a", null, "c"})
+             .addColumn(new boolean[] {true, false, true})
+             .setNull(2, 1);
+        List<List<Object>> boxed = Arrays.asList(
+                Arrays.asList(1, "a", true),
+                Arrays.asList(2, null, null),
+                Arrays.asList(3, "c", true)
+        );
+        ObjectMapper mapper = new ObjectMapper();
+        assertThat(mapper.writeValueAsString(batch), is(mapper.writeValueAsString(boxed)));
+        assertThat(batch.getTypes(), contains(SqpTypeCode.Integer, SqpTypeCode.VarChar, SqpTypeCode.Boolean));
+    }
+
+    @Test
+    public void BatchIsSplitIntoSlicesOfLimitedSize() throws Exception {
+        int numRows = 1000;
+        long[] values = new long[numRows];
+        for (int i = 0; i < numRows; i++) {
+            values[i] = i;
+        }
+        ColumnBatchImpl batch = new ColumnBatchImpl(numRows);
+        batch.addColumn(values);
+
+        List<ColumnBatchImpl> slices = batch.split(1000);
+        assertThat(slices.size() > 1, is(true));
+        int nextValue = 0;
+        ObjectMapper mapper = new ObjectMapper();
+        for (ColumnBatchImpl slice : slices) {
+            assertThat(mapper.writeValueAsBytes(slice).length <= 1000, is(true));
+            for (List<Object> row : slice) {
+                assertThat(row.get(0), is((Object) (long) nextValue++));
+            }
+        }
+        assertThat(nextValue, is(numRows));
+    }
+
+    @Test
+    public void SmallBatchIsNotSplit() {
+        ColumnBatchImpl batch = new ColumnBatchImpl(2);
+        batch.addColumn(new short[] {1, 2});
+        List<ColumnBatchImpl> slices = batch.split(1000);
+        assertThat(slices.size(), is(1));
+        assertThat(slices.get(0) == batch, is(true));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void ColumnWithWrongNumberOfRowsFails() {
+        new ColumnBatchImpl(2).addColumn(new int[] {1, 2, 3});
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void SettingNullOutsideTheBatchFails() {
+        new ColumnBatchImpl(2).addColumn(new int[] {1, 2}).setNull(0, 2);
+    }
+}
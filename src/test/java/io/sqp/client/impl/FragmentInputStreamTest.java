@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.Is.is;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class FragmentInputStreamTest {
+
+    @Test
+    public void ReadsFragmentsInOrder() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream();
+        stream.addFragment(new byte[]{1, 2});
+        stream.addFragment(new byte[0]);
+        stream.addFragment(new byte[]{3});
+        stream.complete();
+
+        byte[] buffer = new byte[10];
+        assertThat(stream.read(buffer, 0, 10), is(2)); // doesn't wait to fill the buffer
+        assertThat(stream.read(), is(3));
+        assertThat(stream.read(), is(-1));
+        assertThat(stream.read(buffer, 0, 10), is(-1));
+    }
+
+    @Test
+    public void ReadingWaitsForFragments() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream();
+        CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return stream.read();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try {
+            read.get(100, TimeUnit.MILLISECONDS);
+            fail("Reading didn't wait for data.");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        stream.addFragment(new byte[]{(byte) 200});
+        assertThat(read.get(5, TimeUnit.SECONDS), is(200));
+    }
+
+    @Test
+    public void ConsumedBytesAreReported() throws Exception {
+        List<Integer> consumed = new ArrayList<>();
+        FragmentInputStream stream = new FragmentInputStream(consumed::add);
+        stream.addFragment(new byte[]{1, 2, 3});
+        stream.addFragment(new byte[]{4, 5});
+
+        byte[] buffer = new byte[2];
+        assertThat(stream.read(buffer, 0, 2), is(2));
+        assertThat(stream.read(), is(3));
+        assertThat(consumed, contains(2, 1));
+
+        // closing discards the rest and everything that still arrives
+        stream.close();
+        stream.addFragment(new byte[]{6});
+        assertThat(consumed, contains(2, 1, 2, 1));
+        assertThat(stream.read(), is(-1));
+    }
+
+    @Test
+    public void FailureIsReportedAfterReceivedData() throws Exception {
+        FragmentInputStream stream = new FragmentInputStream();
+        stream.addFragment(new byte[]{1});
+        stream.fail(new IOException("Connection closed."));
+
+        assertThat(stream.available(), is(1));
+        assertThat(stream.read(), is(1));
+        try {
+            stream.read();
+            fail("Failure wasn't reported.");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Connection closed."));
+        }
+    }
+}
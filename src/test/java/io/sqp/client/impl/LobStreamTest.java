@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.sqp.client.impl;
+
+import io.sqp.client.ClientConfig;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class LobStreamTest {
+    private static final String LOB_ID = "lob";
+    private static final int RANGE_SIZE = 10;
+
+    private SqpConnectionImpl _connection;
+    private List<Long> _requestedPositions;
+    private List<CompletableFuture<InputStream>> _requests;
+    private byte[] _lobData;
+
+    @BeforeMethod
+    public void SetUp() {
+        _lobData = new byte[95];
+        for (int i = 0; i < _lobData.length; i++) {
+            _lobData[i] = (byte) i;
+        }
+        _requestedPositions = new ArrayList<>();
+        _requests = new ArrayList<>();
+        _connection = mock(SqpConnectionImpl.class);
+        when(_connection.getConfig()).thenReturn(ClientConfig.create().setLobBufferSize(RANGE_SIZE).setLobReadAhead(3));
+        when(_connection.getLob(eq(LOB_ID), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long position = (Long) invocation.getArguments()[1];
+            int size = (Integer) invocation.getArguments()[2];
+            _requestedPositions.add(position);
+            CompletableFuture<InputStream> future = new CompletableFuture<>();
+            _requests.add(future);
+            int from = (int) Math.min(position, _lobData.length);
+            int to = (int) Math.min(position + size, _lobData.length);
+            future.complete(new ByteArrayInputStream(Arrays.copyOfRange(_lobData, from, to)));
+            return future;
+        });
+    }
+
+    @Test
+    public void RangesAreRequestedAhead() throws Exception {
+        LobStream stream = new LobStream(_connection, LOB_ID, _lobData.length);
+        assertThat(stream.read(), is(0));
+        assertThat(_requestedPositions, contains(0L, 10L, 20L, 30L));
+    }
+
+    @Test
+    public void WholeLobIsReadWithoutRequestingBeyondItsEnd() throws Exception {
+        LobStream stream = new LobStream(_connection, LOB_ID, _lobData.length);
+        assertThat(readAll(stream), is(_lobData));
+        assertThat(_requestedPositions, contains(0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L));
+    }
+
+    @Test
+    public void SkippingOutsideTheRangesRestartsTheRequests() throws Exception {
+        LobStream stream = new LobStream(_connection, LOB_ID, _lobData.length);
+        assertThat(stream.read(), is(0));
+        assertThat(stream.skip(44), is(44L));
+        assertThat(stream.read(), is(45));
+        assertThat(_requestedPositions, contains(0L, 10L, 20L, 30L, 45L, 55L, 65L, 75L));
+        assertThat(readAll(stream), is(Arrays.copyOfRange(_lobData, 46, _lobData.length)));
+    }
+
+    @Test
+    public void LobOfUnknownSizeIsReadWithoutReadAhead() throws Exception {
+        LobStream stream = new LobStream(_connection, LOB_ID, -1);
+        assertThat(readAll(stream), is(_lobData));
+        assertThat(_requestedPositions, contains(0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 95L));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void FailedRangeFailsTheRead() throws Exception {
+        LobStream stream = new LobStream(_connection, LOB_ID, _lobData.length);
+        assertThat(stream.read(), is(0));
+        _requests.get(1).obtrudeException(new IllegalStateException("failed"));
+        stream.skip(9);
+        stream.read();
+    }
+
+    private byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int num;
+        while ((num = stream.read(buffer)) >= 0) {
+            out.write(buffer, 0, num);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class RowBufferTest {
+
+    @Test
+    public void ForwardBufferReturnsRowsInOrderAcrossChunks() {
+        RowBuffer buffer = RowBuffer.create(false);
+        int numRows = RowBuffer.CHUNK_SIZE * 2 + 5;
+        for (int i = 0; i < numRows; i++) {
+            buffer.append(row(i));
+        }
+        assertThat(buffer.getNumUnread(), is(numRows));
+        for (int i = 0; i < numRows; i++) {
+            assertThat(buffer.next(), is(row(i)));
+        }
+        assertThat(buffer.getNumUnread(), is(0));
+        assertThat(buffer.next(), is(nullValue()));
+        assertThat(buffer.previous(), is(nullValue()));
+    }
+
+    @Test
+    public void ForwardBufferCanBeRefilledAfterConsumption() {
+        RowBuffer buffer = RowBuffer.create(false);
+        buffer.append(row(1));
+        assertThat(buffer.next(), is(row(1)));
+        assertThat(buffer.next(), is(nullValue()));
+
+        buffer.append(row(2));
+        buffer.append(row(3));
+        assertThat(buffer.next(), is(row(2)));
+        buffer.append(row(4));
+        assertThat(buffer.getNumUnread(), is(2));
+        assertThat(buffer.next(), is(row(3)));
+        assertThat(buffer.next(), is(row(4)));
+    }
+
+    @Test
+    public void ScrollableBufferKeepsRows() {
+        RowBuffer buffer = RowBuffer.create(true);
+        int numRows = RowBuffer.CHUNK_SIZE + 1;
+        for (int i = 0; i < numRows; i++) {
+            buffer.append(row(i));
+        }
+        for (int i = 0; i < numRows; i++) {
+            assertThat(buffer.next(), is(row(i)));
+        }
+        assertThat(buffer.next(), is(nullValue()));
+        assertThat(buffer.previous(), is(row(numRows - 2)));
+        assertThat(buffer.getNumUnread(), is(1));
+        assertThat(buffer.next(), is(row(numRows - 1)));
+    }
+
+    @Test
+    public void ScrollableBufferPrependsBeforeCurrentPosition() {
+        RowBuffer buffer = RowBuffer.create(true);
+        buffer.append(row(2));
+        buffer.append(row(3));
+        assertThat(buffer.next(), is(row(2)));
+
+        buffer.prepend(row(1));
+        buffer.prepend(row(0));
+        assertThat(buffer.getNumUnread(), is(1));
+        assertThat(buffer.previous(), is(row(1)));
+        assertThat(buffer.previous(), is(row(0)));
+        assertThat(buffer.previous(), is(nullValue()));
+        assertThat(buffer.next(), is(row(1)));
+        assertThat(buffer.next(), is(row(2)));
+        assertThat(buffer.next(), is(row(3)));
+    }
+
+    private List<Object> row(int value) {
+        return Collections.singletonList(value);
+    }
+}
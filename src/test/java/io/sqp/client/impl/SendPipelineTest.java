@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.client.impl;
+
+import io.sqp.client.exceptions.SqpIOException;
+import org.mockito.InOrder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.fail;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class SendPipelineTest {
+    private ExecutorService _executor;
+    private RemoteEndpoint.Async _remote;
+    private Session _session;
+
+    @BeforeMethod
+    public void SetUp() {
+        _executor = Executors.newSingleThreadExecutor();
+        _remote = mock(RemoteEndpoint.Async.class);
+        _session = mock(Session.class);
+        when(_session.getAsyncRemote()).thenReturn(_remote);
+        when(_remote.sendBinary(any(ByteBuffer.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(_remote.sendText(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterMethod
+    public void TearDown() {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void SendsMessagesInOrder() throws Exception {
+        SendPipeline pipeline = new SendPipeline(_executor, 10);
+        pipeline.open(_session);
+
+        CompletableFuture<Void> first = pipeline.send(new byte[]{1});
+        CompletableFuture<Void> second = pipeline.send("second");
+        CompletableFuture<Void> third = pipeline.send(new byte[]{3});
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+
+        InOrder inOrder = inOrder(_remote);
+        inOrder.verify(_remote).setBatchingAllowed(true);
+        inOrder.verify(_remote).sendBinary(ByteBuffer.wrap(new byte[]{1}));
+        inOrder.verify(_remote).sendText("second");
+        inOrder.verify(_remote).sendBinary(ByteBuffer.wrap(new byte[]{3}));
+        verify(_remote, atLeastOnce()).flushBatch();
+        assertThat(pipeline.getNumPending(), is(0));
+    }
+
+    @Test
+    public void BlocksIfTooManyMessagesArePending() throws Exception {
+        CompletableFuture<Void> firstWritten = new CompletableFuture<>();
+        when(_remote.sendBinary(ByteBuffer.wrap(new byte[]{1}))).thenReturn(firstWritten);
+        SendPipeline pipeline = new SendPipeline(_executor, 1);
+        pipeline.open(_session);
+
+        CompletableFuture<Void> first = pipeline.send(new byte[]{1});
+        CompletableFuture<CompletableFuture<Void>> second = CompletableFuture.supplyAsync(() -> pipeline.send(new byte[]{2}));
+        try {
+            second.get(200, TimeUnit.MILLISECONDS);
+            fail("Sending didn't block although the queue is full.");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertThat(pipeline.getNumPending(), is(1));
+
+        firstWritten.complete(null);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        verify(_remote).sendBinary(ByteBuffer.wrap(new byte[]{2}));
+    }
+
+    @Test
+    public void FailedSendFailsOnlyItsMessage() throws Exception {
+        CompletableFuture<Void> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new IOException("broken"));
+        when(_remote.sendBinary(ByteBuffer.wrap(new byte[]{1}))).thenReturn(failedWrite);
+        SendPipeline pipeline = new SendPipeline(_executor, 10);
+        pipeline.open(_session);
+
+        CompletableFuture<Void> first = pipeline.send(new byte[]{1});
+        CompletableFuture<Void> second = pipeline.send(new byte[]{2});
+        second.get(5, TimeUnit.SECONDS);
+        try {
+            first.get(5, TimeUnit.SECONDS);
+            fail("Failed write wasn't reported.");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SqpIOException.class));
+        }
+    }
+
+    @Test
+    public void ClosedPipelineRejectsMessages() throws Exception {
+        SendPipeline pipeline = new SendPipeline(_executor, 10);
+        pipeline.open(_session);
+        pipeline.close();
+
+        assertThat(pipeline.send(new byte[]{1}).isCompletedExceptionally(), is(true));
+        verify(_remote, never()).sendBinary(any(ByteBuffer.class));
+    }
+}
@@ -91,8 +91,23 @@ public class SqpConnectionImplTest extends ConnectionTestBase {
         verify(_connection, times(1)).fetch(anyObject(), eq(false)); // another fetch happened
     }
 
+    @Test
+    public void CursorPrefetchesBelowThreshold() throws Exception {
+        _connection.getConfig().setCursorPrefetchThreshold(1);
+        Cursor cursor = _connection.execute(Cursor.class, false,
+                "SELECT * FROM " + TEST_TABLE + " WHERE city LIKE '%City'"
+        ).join();
+        verify(_connection, never()).fetch(anyObject(), anyBoolean());
+        assertThat(cursor.nextRow(), is(true)); // came directly from server, no more unread rows
+        verify(_connection, times(1)).fetch(anyObject(), eq(true)); // so the next one is prefetched
+        assertThat(cursor.nextRow(), is(true)); // the prefetched row
+        assertThat(cursor.nextRow(), is(false)); // no more rows
+    }
+
     @Test
     public void SameCursorIdIsSameServerCursor() throws Exception {
+        // prefetching would move the server cursor before the second client cursor gets its data
+        _connection.getConfig().setCursorPrefetchThreshold(0);
         CursorImpl cursor = (CursorImpl) _connection.execute(Cursor.class, true,
                 "SELECT * FROM " + TEST_TABLE + " ORDER BY city ASC"
         ).join();
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core;
+
+import io.sqp.core.exceptions.DecodingException;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class ChannelHeaderTest {
+
+    @Test
+    public void encodedHeaderCanBeDecoded() throws Exception {
+        ChannelHeader header = new ChannelHeader(42);
+        assertThat(header.toString(), is("42:"));
+        assertThat(header.getLength(), is(3));
+
+        ChannelHeader decoded = ChannelHeader.decode(header.toString() + "S{}");
+        assertThat(decoded.getChannel(), is(42));
+        assertThat(decoded.getLength(), is(3));
+    }
+
+    @Test
+    public void binaryHeaderCanBeDecoded() throws Exception {
+        byte[] message = "7:\u0001\u00ff".getBytes(StandardCharsets.ISO_8859_1);
+        ChannelHeader decoded = ChannelHeader.decode(message);
+        assertThat(decoded.getChannel(), is(7));
+        assertThat(decoded.getLength(), is(2));
+    }
+
+    @Test
+    public void leadingZerosAreCountedInLength() throws Exception {
+        ChannelHeader decoded = ChannelHeader.decode("007:X");
+        assertThat(decoded.getChannel(), is(7));
+        assertThat(decoded.getLength(), is(4));
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void missingHeaderFails() throws Exception {
+        ChannelHeader.decode("S{\"query\": \"SELECT 1\"}");
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void emptyChannelIdFails() throws Exception {
+        ChannelHeader.decode(":S{}");
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void tooLongChannelIdFails() throws Exception {
+        ChannelHeader.decode("99999999999:S{}");
+    }
+
+    @Test
+    public void continuedHeaderCanBeDecoded() throws Exception {
+        ChannelHeader header = ChannelHeader.continued(5);
+        assertThat(header.toString(), is("5+"));
+
+        ChannelHeader decoded = ChannelHeader.decode("5+S{}");
+        assertThat(decoded.getChannel(), is(5));
+        assertThat(decoded.getLength(), is(2));
+        assertThat(decoded.isContinued(), is(true));
+        assertThat(ChannelHeader.decode("5:S{}").isContinued(), is(false));
+    }
+
+    @Test
+    public void creditMessageCanBeDecoded() throws Exception {
+        String message = ChannelHeader.credit(3).toString() + 65536;
+        assertThat(message, is("3!65536"));
+
+        ChannelHeader decoded = ChannelHeader.decode(message);
+        assertThat(decoded.getChannel(), is(3));
+        assertThat(decoded.isCredit(), is(true));
+        assertThat(ChannelHeader.decodeCredit(message, decoded), is(65536L));
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void invalidCreditFails() throws Exception {
+        ChannelHeader.decodeCredit("3!lots", ChannelHeader.decode("3!lots"));
+    }
+
+    @Test
+    public void multiplexingIsRequestedByQuery() {
+        assertThat(ChannelHeader.isRequested(null), is(false));
+        assertThat(ChannelHeader.isRequested("foo=bar"), is(false));
+        assertThat(ChannelHeader.isRequested("multiplex"), is(true));
+        assertThat(ChannelHeader.isRequested("foo=bar&multiplex=true"), is(true));
+    }
+}
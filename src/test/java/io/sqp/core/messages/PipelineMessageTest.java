@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.core.messages;
+
+import io.sqp.core.DataFormat;
+import io.sqp.core.jackson.JacksonMessageDecoder;
+import io.sqp.core.jackson.JacksonMessageEncoder;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class PipelineMessageTest {
+
+    @DataProvider(name = "formats")
+    public Object[][] formats() {
+        return new Object[][] {{DataFormat.Text}, {DataFormat.Binary}};
+    }
+
+    @Test(dataProvider = "formats")
+    public void operationsAreEncodedAndDecodedInOrder(DataFormat format) throws Exception {
+        PipelineMessage msg = new PipelineMessage(Arrays.asList(
+                new SimpleQueryMessage("SELECT 1", true, "cursor", 10),
+                new CommitTransactionMessage(),
+                new FetchDataMessage("cursor", -1, 5, true)));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JacksonMessageEncoder().encode(output, format, msg);
+        SqpMessage decoded = new JacksonMessageDecoder().decode(format, new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(decoded.getType(), is(MessageType.PipelineMessage));
+        List<SqpMessage> operations = ((PipelineMessage) decoded).getOperations();
+        assertThat(operations.size(), is(3));
+        assertThat(operations.get(0).getType(), is(MessageType.SimpleQueryMessage));
+        assertThat(operations.get(1).getType(), is(MessageType.CommitTransactionMessage));
+        assertThat(operations.get(2).getType(), is(MessageType.FetchDataMessage));
+        SimpleQueryMessage query = (SimpleQueryMessage) operations.get(0);
+        assertThat(query.getQuery(), is("SELECT 1"));
+        assertThat(query.isScrollable(), is(true));
+        assertThat(((FetchDataMessage) operations.get(2)).getMaxFetch(), is(5));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.backend.AsyncExecutor;
+import io.sqp.backend.ResultHandler;
+import io.sqp.backend.SuccessHandler;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.testhelpers.SynchronousExecutor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class CancelableExecutorTest {
+    private int _numCancelRequests;
+    private int _numSucceeded;
+    private SuccessHandler _successHandler;
+
+    @BeforeMethod
+    public void setUp() {
+        _numCancelRequests = 0;
+        _numSucceeded = 0;
+        _successHandler = new SuccessHandler(this::fail, () -> _numSucceeded++);
+    }
+
+    @Test
+    public void cancelWithoutRunningExecutionIsSkipped() {
+        CancelableExecutor executor = new CancelableExecutor(new SynchronousExecutor());
+        executor.callAsync(() -> 1, new ResultHandler<>(this::fail, v -> {}));
+        executor.cancel(() -> _numCancelRequests++, _successHandler);
+
+        assertThat(_numCancelRequests, is(0));
+        assertThat(_numSucceeded, is(1));
+    }
+
+    @Test
+    public void cancelInterruptsRunningExecution() {
+        CancelableExecutor executor = new CancelableExecutor(new SynchronousExecutor());
+        executor.callAsync(() -> {
+            executor.cancel(() -> _numCancelRequests++, _successHandler);
+            return 1;
+        }, new ResultHandler<>(this::fail, v -> {}));
+
+        assertThat(_numCancelRequests, is(1));
+        assertThat(_numSucceeded, is(1));
+    }
+
+    @Test
+    public void cancelOfFinishedExecutionDoesntAffectTheNextOne() {
+        DelayingExecutor delayingExecutor = new DelayingExecutor();
+        CancelableExecutor executor = new CancelableExecutor(delayingExecutor);
+        executor.callAsync(() -> {
+            executor.cancel(() -> _numCancelRequests++, _successHandler);
+            return 1;
+        }, new ResultHandler<>(this::fail, v -> {}));
+        // the cancel request is sent while the next execution is running
+        executor.callAsync(() -> {
+            delayingExecutor.runDelayed();
+            return 2;
+        }, new ResultHandler<>(this::fail, v -> {}));
+
+        assertThat(_numCancelRequests, is(0));
+        assertThat(_numSucceeded, is(1));
+    }
+
+    private void fail(SqpException error) {
+        throw new AssertionError(error);
+    }
+
+    /**
+     * Executes ordered calls immediately, but concurrent calls only when told to
+     */
+    private class DelayingExecutor extends SynchronousExecutor {
+        public List<Runnable> Delayed = new ArrayList<>();
+
+        @Override
+        public <T> void callConcurrently(AsyncExecutor.FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+            Delayed.add(() -> callAsync(callable, resultHandler));
+        }
+
+        public void runDelayed() {
+            Delayed.forEach(Runnable::run);
+            Delayed.clear();
+        }
+    }
+}
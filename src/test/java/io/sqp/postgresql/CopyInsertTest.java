@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class CopyInsertTest {
+    @Test
+    public void PlainInsertIsConvertedToCopy() {
+        CopyInsert copyInsert = CopyInsert.fromInsertStatement(
+                "INSERT INTO weather (city, temp_lo, temp_hi, prob, date)\n VALUES (?, ?, ?, ?, ?)");
+        assertThat(copyInsert.getCopySql(), is("COPY weather (city, temp_lo, temp_hi, prob, date) FROM STDIN"));
+        assertThat(copyInsert.getNumColumns(), is(5));
+    }
+
+    @Test
+    public void QualifiedAndQuotedNamesAreKept() {
+        CopyInsert copyInsert = CopyInsert.fromInsertStatement(
+                "insert into public.\"Weather\" (\"City\") values (?);");
+        assertThat(copyInsert.getCopySql(), is("COPY public.\"Weather\" (\"City\") FROM STDIN"));
+        assertThat(copyInsert.getNumColumns(), is(1));
+    }
+
+    @Test(dataProvider = "unsupportedStatements")
+    public void UnsupportedStatementsAreNotConverted(String sql) {
+        assertThat(CopyInsert.fromInsertStatement(sql), is(nullValue()));
+    }
+
+    @DataProvider(name = "unsupportedStatements")
+    public Object[][] unsupportedStatements() {
+        return new Object[][] {
+            {"SELECT * FROM weather"},
+            {"INSERT INTO weather VALUES (?, ?)"},
+            {"INSERT INTO weather (city, temp_lo) VALUES (?, 5)"},
+            {"INSERT INTO weather (city, temp_lo) VALUES (?)"},
+            {"INSERT INTO weather (city) VALUES (?), (?)"},
+            {"INSERT INTO weather (city) VALUES (?) RETURNING city"},
+            {"INSERT INTO weather (city) SELECT ?"}
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.core.TypeDescription;
+import io.sqp.core.types.SqpTypeCode;
+import org.postgresql.core.Oid;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class PGTypeCacheTest {
+    private static final int UUID_OID = 2950;
+    private PGTypeCache _typeCache;
+
+    @BeforeMethod
+    public void SetUp() {
+        _typeCache = new PGTypeCache();
+        Map<Integer, String> typeNames = new HashMap<>();
+        typeNames.put(Oid.INT4, "int4");
+        typeNames.put(UUID_OID, "uuid");
+        _typeCache.setTypeNames("proxytest", typeNames, catalogNamespaces(typeNames));
+    }
+
+    @Test
+    public void TypeNamesAreResolvedFromDatabase() {
+        assertThat(_typeCache.getTypeName("proxytest", Oid.INT4), is("pg_int4"));
+        assertThat(_typeCache.getTypeName("proxytest", UUID_OID), is("pg_uuid"));
+        assertThat(_typeCache.getOidFromTypeName("proxytest", "pg_uuid"), is(UUID_OID));
+        assertThat(_typeCache.getOidFromTypeName("proxytest", "PG_POINT"), is(Oid.POINT));
+    }
+
+    @Test
+    public void UnknownTypesFallBackToOidNames() {
+        assertThat(_typeCache.getTypeName("otherdb", UUID_OID), is("pg_oid" + UUID_OID));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_uuid"), is(-1));
+    }
+
+    @Test
+    public void TypeNamesAreOnlySetOnce() {
+        Map<Integer, String> typeNames = new HashMap<>();
+        typeNames.put(UUID_OID, "something_else");
+        _typeCache.setTypeNames("proxytest", typeNames, catalogNamespaces(typeNames));
+        assertThat(_typeCache.getTypeName("proxytest", UUID_OID), is("pg_uuid"));
+    }
+
+    @Test
+    public void AmbiguousTypeNamesAreQualified() {
+        Map<Integer, String> typeNames = new HashMap<>();
+        Map<Integer, String> namespaces = new HashMap<>();
+        typeNames.put(UUID_OID, "uuid");
+        namespaces.put(UUID_OID, "pg_catalog");
+        typeNames.put(50000, "uuid");
+        namespaces.put(50000, "public");
+        typeNames.put(50001, "address");
+        namespaces.put(50001, "public");
+        typeNames.put(50002, "address");
+        namespaces.put(50002, "billing");
+        _typeCache.setTypeNames("otherdb", typeNames, namespaces);
+
+        assertThat(_typeCache.getTypeName("otherdb", UUID_OID), is("pg_uuid"));
+        assertThat(_typeCache.getTypeName("otherdb", 50000), is("pg_public.uuid"));
+        assertThat(_typeCache.getTypeName("otherdb", 50001), is("pg_public.address"));
+        assertThat(_typeCache.getTypeName("otherdb", 50002), is("pg_billing.address"));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_uuid"), is(UUID_OID));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_pg_catalog.uuid"), is(UUID_OID));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_public.uuid"), is(50000));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_billing.address"), is(50002));
+        assertThat(_typeCache.getOidFromTypeName("otherdb", "pg_address"), is(-1));
+    }
+
+    @Test
+    public void UpdatedTypeNamesIncludeNewTypes() {
+        assertThat(_typeCache.hasTypeName("proxytest", 50000), is(false));
+        assertThat(_typeCache.hasTypeName("proxytest", Oid.INT4), is(true));
+
+        Map<Integer, String> typeNames = new HashMap<>();
+        typeNames.put(UUID_OID, "uuid");
+        typeNames.put(50000, "mood");
+        _typeCache.updateTypeNames("proxytest", typeNames, catalogNamespaces(typeNames));
+        assertThat(_typeCache.hasTypeName("proxytest", 50000), is(true));
+        assertThat(_typeCache.getTypeName("proxytest", 50000), is("pg_mood"));
+        assertThat(_typeCache.getOidFromTypeName("proxytest", "pg_mood"), is(50000));
+    }
+
+    @Test
+    public void TypeDescriptionsAreCached() {
+        int numericMod = ((10 << 16) | 2) + 4; // numeric(10, 2)
+        TypeDescription description = _typeCache.getTypeDescription(Oid.NUMERIC, numericMod);
+        assertThat(description.getTypeCode(), is(SqpTypeCode.Decimal));
+        assertThat(description.getPrecision(), is(10));
+        assertThat(description.getScale(), is(2));
+        assertThat(_typeCache.getTypeDescription(Oid.NUMERIC, numericMod), is(sameInstance(description)));
+    }
+
+    private Map<Integer, String> catalogNamespaces(Map<Integer, String> typeNames) {
+        Map<Integer, String> namespaces = new HashMap<>();
+        typeNames.keySet().forEach(oid -> namespaces.put(oid, "pg_catalog"));
+        return namespaces;
+    }
+}
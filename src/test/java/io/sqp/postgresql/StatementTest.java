@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.postgresql;
+
+import io.sqp.backend.ResultHandler;
+import io.sqp.backend.SuccessHandler;
+import io.sqp.backend.results.QueryResult;
+import io.sqp.backend.results.UpdateQueryResult;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpBlob;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpValue;
+import io.sqp.testhelpers.SynchronousExecutor;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.core.Oid;
+import org.postgresql.core.ParameterList;
+import org.postgresql.core.Query;
+import org.postgresql.core.QueryExecutor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class StatementTest {
+    private PGConnection connection;
+    private QueryExecutor queryExecutor;
+    private CopyIn copyIn;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        PGConfiguration configuration = new PGConfiguration();
+        configuration.setCopyThreshold(2);
+        queryExecutor = mock(QueryExecutor.class);
+        Query query = mock(Query.class);
+        when(query.createParameterList()).thenReturn(mock(ParameterList.class));
+        when(queryExecutor.createParameterizedQuery(anyString())).thenReturn(query);
+        copyIn = mock(CopyIn.class);
+        when(copyIn.endCopy()).thenReturn(2L);
+        when(queryExecutor.startCopy(anyString(), anyBoolean())).thenReturn(copyIn);
+        connection = mock(PGConnection.class);
+        when(connection.getConfiguration()).thenReturn(configuration);
+        when(connection.getQueryExecutor()).thenReturn(queryExecutor);
+        when(connection.getAsyncExecutor()).thenReturn(new SynchronousExecutor());
+    }
+
+    @Test
+    public void copyCanBeExecutedTwiceAfterOneBind() throws Exception {
+        Statement statement = Statement.create(connection, "INSERT INTO t (a) VALUES (?)",
+                new SuccessHandler(this::fail, () -> {}));
+        statement.bind(Arrays.asList(row(1), row(2)));
+        List<QueryResult> results = new ArrayList<>();
+        ResultHandler<QueryResult> resultHandler = new ResultHandler<>(this::fail, results::add);
+        statement.execute(true, "cursor", false, 100, resultHandler);
+        statement.execute(true, "cursor", false, 100, resultHandler);
+
+        verify(queryExecutor, times(2)).startCopy(eq("COPY t (a) FROM STDIN"), eq(true));
+        verify(copyIn, times(2)).writeToCopy(any(byte[].class), eq(0), eq(4)); // both rows
+        assertThat(results, contains(instanceOf(UpdateQueryResult.class), instanceOf(UpdateQueryResult.class)));
+    }
+
+    @Test
+    public void failedInsertUnlinksUploadedLargeObject() throws Exception {
+        Query unlinkQuery = mock(Query.class);
+        ParameterList unlinkParameters = mock(ParameterList.class);
+        when(unlinkQuery.createParameterList()).thenReturn(unlinkParameters);
+        when(queryExecutor.createParameterizedQuery("SELECT lo_unlink(?)")).thenReturn(unlinkQuery);
+        doAnswer(invocation -> {
+            // lo_from_bytea returns the oid of the new large object
+            ((org.postgresql.core.ResultHandler) invocation.getArguments()[2]).handleResultRows(null, null,
+                    Collections.singletonList(new byte[][] {"42".getBytes()}), null);
+            return null;
+        }).when(queryExecutor).execute(any(Query.class), any(ParameterList.class),
+                any(org.postgresql.core.ResultHandler.class), anyInt(), anyInt(), anyInt());
+        doThrow(new SQLException("insert failed")).when(queryExecutor).execute(any(Query[].class),
+                any(ParameterList[].class), any(org.postgresql.core.ResultHandler.class), anyInt(), anyInt(), anyInt());
+
+        Statement statement = Statement.create(connection, "INSERT INTO t (a) VALUES (?)",
+                new SuccessHandler(this::fail, () -> {}));
+        SqpValue blob = new SqpBlob("blob", 4).createWithStream(new ByteArrayInputStream(new byte[4]));
+        statement.bind(Collections.singletonList(Collections.singletonList(blob)));
+        List<SqpException> errors = new ArrayList<>();
+        statement.execute(true, "cursor", false, 100, new ResultHandler<>(errors::add, result -> {
+            throw new AssertionError("The statement should fail");
+        }));
+
+        assertThat(errors, hasSize(1));
+        verify(unlinkParameters).setLiteralParameter(1, "42", Oid.OID);
+        verify(queryExecutor).execute(eq(unlinkQuery), eq(unlinkParameters), any(org.postgresql.core.ResultHandler.class),
+                anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void largeObjectIsUploadedInChunks() throws Exception {
+        connection.getConfiguration().setLobChunkSize(3);
+        Query createQuery = mock(Query.class);
+        ParameterList createParameters = mock(ParameterList.class);
+        when(createQuery.createParameterList()).thenReturn(createParameters);
+        when(queryExecutor.createParameterizedQuery("SELECT lo_from_bytea(0, ?)")).thenReturn(createQuery);
+        Query putQuery = mock(Query.class);
+        ParameterList putParameters = mock(ParameterList.class);
+        when(putQuery.createParameterList()).thenReturn(putParameters);
+        when(queryExecutor.createParameterizedQuery("SELECT lo_put(?, ?, ?)")).thenReturn(putQuery);
+        doAnswer(invocation -> {
+            ((org.postgresql.core.ResultHandler) invocation.getArguments()[2]).handleResultRows(null, null,
+                    Collections.singletonList(new byte[][] {"42".getBytes()}), null);
+            return null;
+        }).when(queryExecutor).execute(eq(createQuery), any(ParameterList.class),
+                any(org.postgresql.core.ResultHandler.class), anyInt(), anyInt(), anyInt());
+
+        Statement statement = Statement.create(connection, "INSERT INTO t (a) VALUES (?)",
+                new SuccessHandler(this::fail, () -> {}));
+        SqpValue blob = new SqpBlob("blob", 7).createWithStream(new ByteArrayInputStream(new byte[7]));
+        statement.bind(Collections.singletonList(Collections.singletonList(blob)));
+        statement.execute(true, "cursor", false, 100, new ResultHandler<>(this::fail, result -> {}));
+
+        verify(createParameters).setBytea(eq(1), any(byte[].class), eq(0), eq(3));
+        verify(putParameters, times(2)).setLiteralParameter(1, "42", Oid.OID);
+        verify(putParameters).setLiteralParameter(2, "3", Oid.INT8);
+        verify(putParameters).setBytea(eq(3), any(byte[].class), eq(0), eq(3));
+        verify(putParameters).setLiteralParameter(2, "6", Oid.INT8);
+        verify(putParameters).setBytea(eq(3), any(byte[].class), eq(0), eq(1));
+    }
+
+    @Test
+    public void executionUsesRequestedFetchSize() throws Exception {
+        Statement statement = Statement.create(connection, "SELECT a FROM t", new SuccessHandler(this::fail, () -> {}));
+        statement.bind(Collections.emptyList());
+        statement.execute(false, "cursor", false, 42, new ResultHandler<>(this::fail, result -> {}));
+
+        verify(queryExecutor).execute(any(Query[].class), any(ParameterList[].class),
+                any(org.postgresql.core.ResultHandler.class), eq(0), eq(42), anyInt());
+    }
+
+    private void fail(SqpException error) {
+        throw new AssertionError(error);
+    }
+
+    private List<SqpValue> row(int value) {
+        return Collections.singletonList(new SqpInteger(value));
+    }
+}
@@ -24,21 +24,33 @@ import io.sqp.backend.BackendConnection;
 import io.sqp.core.DataFormat;
 import io.sqp.core.ErrorType;
 import io.sqp.core.messages.*;
+import io.sqp.core.types.SqpInteger;
 import io.sqp.proxy.testhelpers.DummyBackend;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import io.sqp.backend.results.CursorDescriptionResult;
+import io.sqp.backend.results.EndQueryResult;
+import io.sqp.backend.results.QueryResult;
+import io.sqp.backend.results.RowDataResult;
+import io.sqp.backend.results.UpdateQueryResult;
 import io.sqp.backend.ResultHandler;
+import io.sqp.backend.SuccessHandler;
 import io.sqp.core.ErrorAction;
 import io.sqp.core.exceptions.SqpException;
 import io.sqp.proxy.exceptions.ServerErrorException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.*;
@@ -53,6 +65,9 @@ public class ClientSessionTest {
     @Mock
     ClientConnection connection;
 
+    @Mock
+    BackendConnection backendConnection;
+
     ClientSession session;
 
     @BeforeMethod
@@ -171,12 +186,411 @@ public class ClientSessionTest {
         verify(connection).reset();
     }
 
+    @Test
+    public void cancelMessageCancelsRunningQuery() throws Exception {
+        ArgumentCaptor<ResultHandler> handlerCap = ArgumentCaptor.forClass(ResultHandler.class);
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+
+        sendHelloMessage(session);
+        session.processMessage(new SimpleQueryMessage("SELECT 1", false, "cursor", -1));
+        verify(backendConnection).simpleQuery(eq("SELECT 1"), eq("cursor"), eq(false), anyInt(), handlerCap.capture());
+        assertThat(session.getState(), is(ClientSessionState.SimpleExecuting));
+
+        session.processMessage(new CancelMessage());
+        verify(backendConnection).cancel(anyObject());
+
+        ((ResultHandler<QueryResult>) handlerCap.getValue()).fail(
+                new SqpException(ErrorType.ExecutionFailed, "canceled by user", ErrorAction.Recover));
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(connection, times(3)).sendMessage(argCap.capture()); // ready, error, ready
+        ErrorMessage error = (ErrorMessage) argCap.getAllValues().get(1);
+        assertThat(error.getErrorType(), is(ErrorType.Canceled));
+    }
+
+    @Test
+    public void cancelMessageIsIgnoredWhenReady() throws Exception {
+        sendHelloMessage(session);
+        session.processMessage(new CancelMessage());
+
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(backendConnection, never()).cancel(anyObject());
+        verify(connection, times(1)).sendMessage(any(SqpMessage.class)); // ready
+    }
+
+    @Test
+    public void simpleQueryPassesTimeoutToBackend() throws Exception {
+        sendHelloMessage(session);
+        SimpleQueryMessage msg = new SimpleQueryMessage("SELECT 1", false, "cursor", -1);
+        msg.setTimeout(1500);
+        session.processMessage(msg);
+
+        verify(backendConnection).setQueryTimeout(1500);
+    }
+
+    @Test
+    public void streamPausesWithoutCreditAndContinuesWithMoreCredit() throws Exception {
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        session.processMessage(new StreamDataMessage("cursor", 3));
+
+        verify(backendConnection).fetch(eq("cursor"), eq(-1), eq(3), eq(true), anyObject());
+        verify(connection, times(4)).sendMessage(any(SqpMessage.class)); // ready, 3 rows
+        assertThat(session.getState(), is(ClientSessionState.StreamingData));
+
+        session.processMessage(new StreamCreditMessage("cursor", 2));
+        verify(backendConnection).fetch(eq("cursor"), eq(-1), eq(2), eq(true), anyObject());
+        verify(connection, times(6)).sendMessage(any(SqpMessage.class)); // ready, 5 rows
+        assertThat(session.getState(), is(ClientSessionState.StreamingData));
+    }
+
+    @Test
+    public void fetchedRowsWaitUntilConnectionIsWritable() throws Exception {
+        List<Runnable> writableHandlers = new ArrayList<>();
+        doAnswer(invocation -> {
+            ResultHandler<QueryResult> handler = (ResultHandler<QueryResult>) invocation.getArguments()[4];
+            handler.handle(new RowDataResult(Collections.singletonList(new SqpInteger(1))));
+            handler.whenReady(() -> {
+                handler.handle(new RowDataResult(Collections.singletonList(new SqpInteger(2))));
+                handler.handle(new EndQueryResult(false));
+            });
+            return null;
+        }).when(backendConnection).fetch(anyString(), anyInt(), anyInt(), anyBoolean(), anyObject());
+        doAnswer(invocation -> writableHandlers.add((Runnable) invocation.getArguments()[0]))
+                .when(connection).whenWritable(anyObject());
+        sendHelloMessage(session);
+        session.processMessage(new FetchDataMessage("cursor", -1, 2, true));
+
+        verify(connection, times(2)).sendMessage(any(SqpMessage.class)); // ready, first row
+        assertThat(session.getState(), is(ClientSessionState.FetchingData));
+        assertThat(writableHandlers, hasSize(1));
+
+        writableHandlers.get(0).run();
+        verify(connection, times(4)).sendMessage(any(SqpMessage.class)); // ready, 2 rows, end of data
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+    }
+
+    @Test
+    public void cancelMessageStopsStream() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        session.processMessage(new StreamDataMessage("cursor", 1));
+        session.processMessage(new CancelMessage());
+
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(backendConnection, never()).cancel(anyObject());
+        verify(connection, times(3)).sendMessage(argCap.capture()); // ready, row, end of data
+        EndOfDataMessage endOfData = (EndOfDataMessage) argCap.getAllValues().get(2);
+        assertThat(endOfData.hasMore(), is(true));
+    }
+
+    @Test
+    public void stopRequestStopsStreamOfCursor() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        session.processMessage(new StreamDataMessage("cursor", 1));
+        session.processMessage(new StreamCreditMessage("cursor", 0, true));
+
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(backendConnection, never()).cancel(anyObject());
+        verify(connection, times(3)).sendMessage(argCap.capture()); // ready, row, end of data
+        EndOfDataMessage endOfData = (EndOfDataMessage) argCap.getAllValues().get(2);
+        assertThat(endOfData.hasMore(), is(true));
+    }
+
+    @Test
+    public void stopRequestForEndedStreamDoesntAffectNextQuery() throws Exception {
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        session.processMessage(new StreamDataMessage("cursor", 1));
+        session.processMessage(new StreamCreditMessage("cursor", 0, true));
+        session.processMessage(new SimpleQueryMessage("SELECT 1", false, "other", -1));
+        assertThat(session.getState(), is(ClientSessionState.SimpleExecuting));
+
+        // a late stop request of the client must not cancel the query that runs now
+        session.processMessage(new StreamCreditMessage("cursor", 0, true));
+        assertThat(session.getState(), is(ClientSessionState.SimpleExecuting));
+        verify(backendConnection, never()).cancel(anyObject());
+    }
+
+    @Test
+    public void streamCreditForOtherCursorIsIgnored() throws Exception {
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        session.processMessage(new StreamDataMessage("cursor", 0));
+        session.processMessage(new StreamCreditMessage("other", 5));
+
+        assertThat(session.getState(), is(ClientSessionState.StreamingData));
+        verify(backendConnection, never()).fetch(anyString(), anyInt(), anyInt(), anyBoolean(), anyObject());
+    }
+
+    @Test
+    public void pipelineExecutesOperationsInOrder() throws Exception {
+        doAnswer(invocation -> {
+            ((ResultHandler<QueryResult>) invocation.getArguments()[4]).handle(new UpdateQueryResult(1));
+            return null;
+        }).when(backendConnection).simpleQuery(anyString(), anyString(), anyBoolean(), anyInt(), anyObject());
+        sendHelloMessage(session);
+        session.processMessage(new PipelineMessage(Arrays.asList(
+                new SimpleQueryMessage("first", false, "cursor1", -1),
+                new SimpleQueryMessage("second", false, "cursor2", -1))));
+
+        InOrder inOrder = inOrder(backendConnection);
+        inOrder.verify(backendConnection).simpleQuery(eq("first"), anyString(), anyBoolean(), anyInt(), anyObject());
+        inOrder.verify(backendConnection).simpleQuery(eq("second"), anyString(), anyBoolean(), anyInt(), anyObject());
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(connection, times(3)).sendMessage(any(SqpMessage.class)); // ready, 2 execute completes
+    }
+
+    @Test
+    public void emptyPipelineCausesRecoverableError() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        sendHelloMessage(session);
+        session.processMessage(new PipelineMessage(Collections.emptyList()));
+
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        verify(connection, times(3)).sendMessage(argCap.capture()); // ready, error, ready
+        assertThat(argCap.getAllValues().get(1).getType(), is(MessageType.ErrorMessage));
+    }
+
+    @Test
+    public void failedPipelineOperationSkipsRemainingOperations() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        doAnswer(invocation -> {
+            ((ResultHandler<QueryResult>) invocation.getArguments()[5]).fail(
+                    new SqpException(ErrorType.ExecutionFailed, "test error", ErrorAction.Recover));
+            return null;
+        }).when(backendConnection).simpleQuery(eq("first"), anyString(), anyBoolean(), anyInt(), anyObject());
+        sendHelloMessage(session);
+        session.processMessage(new PipelineMessage(Arrays.asList(
+                new SimpleQueryMessage("first", false, "cursor1", -1),
+                new SimpleQueryMessage("second", false, "cursor2", -1))));
+        session.processMessage(new SimpleQueryMessage("third", false, "cursor3", -1));
+
+        verify(backendConnection, never()).simpleQuery(eq("second"), anyString(), anyBoolean(), anyInt(), anyObject());
+        verify(backendConnection).simpleQuery(eq("third"), anyString(), anyBoolean(), anyInt(), anyObject());
+        verify(connection, times(3)).sendMessage(argCap.capture()); // ready, error, ready
+        assertThat(argCap.getAllValues().get(1).getType(), is(MessageType.ErrorMessage));
+    }
+
+    @Test
+    public void prepareExecuteReusesPreparedStatement() throws Exception {
+        ArgumentCaptor<String> idCap = ArgumentCaptor.forClass(String.class);
+        mockPrepareExecute(new UpdateQueryResult(1));
+        sendHelloMessage(session);
+        session.processMessage(new PrepareExecuteMessage("INSERT", "cursor1", Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false));
+        session.processMessage(new PrepareExecuteMessage("INSERT", "cursor2", Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false));
+
+        verify(backendConnection, times(1)).prepare(eq("INSERT"), idCap.capture(), anyObject());
+        verify(backendConnection).execute(eq(idCap.getValue()), eq("cursor1"), anyObject(), anyBoolean(), anyInt(), anyObject());
+        verify(backendConnection).execute(eq(idCap.getValue()), eq("cursor2"), anyObject(), anyBoolean(), anyInt(), anyObject());
+        verify(connection, times(3)).sendMessage(any(SqpMessage.class)); // ready, 2 execute completes
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+    }
+
+    @Test
+    public void prepareExecuteSendsFirstRowsWithCursorDescription() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        mockPrepareExecute(new CursorDescriptionResult("cursor", false, Collections.emptyList()));
+        mockEndlessCursor();
+        sendHelloMessage(session);
+        PrepareExecuteMessage msg = new PrepareExecuteMessage("SELECT", "cursor", Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false);
+        msg.setMaxFetch(2);
+        session.processMessage(msg);
+
+        verify(backendConnection).execute(anyString(), eq("cursor"), anyObject(), anyBoolean(), eq(2), anyObject());
+        verify(backendConnection).fetch(eq("cursor"), eq(-1), eq(2), eq(true), anyObject());
+        verify(connection, times(5)).sendMessage(argCap.capture()); // ready, cursor description, 2 rows, end of data
+        assertThat(argCap.getAllValues().get(1).getType(), is(MessageType.CursorDescriptionMessage));
+        assertThat(argCap.getAllValues().get(4).getType(), is(MessageType.EndOfDataMessage));
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+    }
+
+    @Test
+    public void failedPrepareExecuteReleasesCachedStatement() throws Exception {
+        ArgumentCaptor<String> idCap = ArgumentCaptor.forClass(String.class);
+        mockPrepareExecute(new UpdateQueryResult(1));
+        doAnswer(invocation -> {
+            ((ResultHandler<QueryResult>) invocation.getArguments()[5]).fail(
+                    new SqpException(ErrorType.ExecutionFailed, "test error", ErrorAction.Recover));
+            return null;
+        }).when(backendConnection).execute(anyString(), eq("cursor1"), anyObject(), anyBoolean(), anyInt(), anyObject());
+        doAnswer(invocation -> {
+            ((SuccessHandler) invocation.getArguments()[2]).succeed();
+            return null;
+        }).when(backendConnection).release(anyObject(), anyObject(), anyObject());
+        sendHelloMessage(session);
+        session.processMessage(new PrepareExecuteMessage("INSERT", "cursor1", Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false));
+        session.processMessage(new PrepareExecuteMessage("INSERT", "cursor2", Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false));
+
+        verify(backendConnection, times(2)).prepare(eq("INSERT"), idCap.capture(), anyObject());
+        verify(backendConnection).release(eq(Collections.singletonList(idCap.getAllValues().get(0))), anyObject(), anyObject());
+        verify(backendConnection).execute(eq(idCap.getAllValues().get(1)), eq("cursor2"), anyObject(), anyBoolean(), anyInt(), anyObject());
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+    }
+
+    @Test
+    public void cachedResultIsServedWithoutBackend() throws Exception {
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        when(backendPool.getResultCache()).thenReturn(new ResultCache(60000, 1024 * 1024));
+        session = new ClientSession(backendPool, connection);
+        mockSimpleSelect();
+        sendHelloMessage(session);
+        session.processMessage(cacheableQuery("SELECT 1", "cursor1"));
+        session.processMessage(cacheableQuery("SELECT  1;", "cursor2"));
+
+        verify(backendConnection, times(1)).simpleQuery(anyString(), anyString(), anyBoolean(), anyInt(), anyObject());
+        verify(connection, times(7)).sendMessage(argCap.capture()); // ready, 2 * (description, row, end of data)
+        CursorDescriptionMessage description = (CursorDescriptionMessage) argCap.getAllValues().get(4);
+        assertThat(description.getCursorId(), is("cursor2"));
+        assertThat(argCap.getAllValues().get(5).getType(), is(MessageType.RowDataMessage));
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+    }
+
+    @Test
+    public void updateInvalidatesCachedResults() throws Exception {
+        when(backendPool.getResultCache()).thenReturn(new ResultCache(60000, 1024 * 1024));
+        session = new ClientSession(backendPool, connection);
+        mockSimpleSelect();
+        doAnswer(invocation -> {
+            ((ResultHandler<QueryResult>) invocation.getArguments()[4]).handle(new UpdateQueryResult(1));
+            return null;
+        }).when(backendConnection).simpleQuery(eq("DELETE FROM t"), anyString(), anyBoolean(), anyInt(), anyObject());
+        sendHelloMessage(session);
+        session.processMessage(cacheableQuery("SELECT 1", "cursor1"));
+        session.processMessage(new SimpleQueryMessage("DELETE FROM t", false, "cursor2", -1));
+        session.processMessage(cacheableQuery("SELECT 1", "cursor3"));
+
+        verify(backendConnection, times(2)).simpleQuery(eq("SELECT 1"), anyString(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    @Test
+    public void queryWithoutOptInIsNotCached() throws Exception {
+        when(backendPool.getResultCache()).thenReturn(new ResultCache(60000, 1024 * 1024));
+        session = new ClientSession(backendPool, connection);
+        mockSimpleSelect();
+        sendHelloMessage(session);
+        session.processMessage(new SimpleQueryMessage("SELECT 1", false, "cursor1", -1));
+        session.processMessage(cacheableQuery("SELECT 1", "cursor2"));
+        session.processMessage(new SimpleQueryMessage("SELECT 1", false, "cursor3", -1));
+
+        verify(backendConnection, times(3)).simpleQuery(eq("SELECT 1"), anyString(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    @Test
+    public void selectIntoInvalidatesCachedResults() throws Exception {
+        when(backendPool.getResultCache()).thenReturn(new ResultCache(60000, 1024 * 1024));
+        session = new ClientSession(backendPool, connection);
+        mockSimpleSelect();
+        sendHelloMessage(session);
+        session.processMessage(cacheableQuery("SELECT 1", "cursor1"));
+        session.processMessage(cacheableQuery("SELECT * INTO t2 FROM t", "cursor2"));
+        session.processMessage(cacheableQuery("SELECT 1", "cursor3"));
+
+        verify(backendConnection, times(2)).simpleQuery(eq("SELECT 1"), anyString(), anyBoolean(), anyInt(), anyObject());
+        verify(backendConnection).simpleQuery(eq("SELECT * INTO t2 FROM t"), anyString(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    @Test
+    public void identicalConcurrentQueriesShareExecution() throws Exception {
+        ArgumentCaptor<ResultHandler> handlerCap = ArgumentCaptor.forClass(ResultHandler.class);
+        ClientConnection otherConnection = mock(ClientConnection.class);
+        when(backendPool.getQueryCoalescer()).thenReturn(new QueryCoalescer());
+        session = new ClientSession(backendPool, connection);
+        ClientSession otherSession = new ClientSession(backendPool, otherConnection);
+        sendHelloMessage(session);
+        sendHelloMessage(otherSession);
+        session.processMessage(cacheableQuery("SELECT 1", "cursor1"));
+        otherSession.processMessage(cacheableQuery("SELECT 1", "cursor2"));
+        verify(backendConnection, times(1)).simpleQuery(anyString(), anyString(), anyBoolean(), anyInt(), handlerCap.capture());
+        assertThat(otherSession.getState(), is(ClientSessionState.SimpleExecuting));
+
+        ResultHandler<QueryResult> handler = (ResultHandler<QueryResult>) handlerCap.getValue();
+        handler.handle(new CursorDescriptionResult("cursor1", false, Collections.emptyList()));
+        handler.handle(new RowDataResult(Collections.singletonList(new SqpInteger(1))));
+        handler.handle(new EndQueryResult(false));
+
+        ArgumentCaptor<SqpMessage> argCap = ArgumentCaptor.forClass(SqpMessage.class);
+        verify(otherConnection, times(4)).sendMessage(argCap.capture()); // ready, description, row, end of data
+        CursorDescriptionMessage description = (CursorDescriptionMessage) argCap.getAllValues().get(1);
+        assertThat(description.getCursorId(), is("cursor2"));
+        assertThat(otherSession.getState(), is(ClientSessionState.Ready));
+        verify(backendConnection, times(1)).simpleQuery(anyString(), anyString(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    @Test
+    public void failedSharedExecutionLetsWaitingSessionExecuteQuery() throws Exception {
+        ArgumentCaptor<ResultHandler> handlerCap = ArgumentCaptor.forClass(ResultHandler.class);
+        when(backendPool.getQueryCoalescer()).thenReturn(new QueryCoalescer());
+        session = new ClientSession(backendPool, connection);
+        ClientSession otherSession = new ClientSession(backendPool, mock(ClientConnection.class));
+        sendHelloMessage(session);
+        sendHelloMessage(otherSession);
+        session.processMessage(cacheableQuery("SELECT 1", "cursor1"));
+        otherSession.processMessage(cacheableQuery("SELECT 1", "cursor2"));
+        verify(backendConnection).simpleQuery(anyString(), eq("cursor1"), anyBoolean(), anyInt(), handlerCap.capture());
+
+        ((ResultHandler<QueryResult>) handlerCap.getValue()).fail(
+                new SqpException(ErrorType.ExecutionFailed, "test error", ErrorAction.Recover));
+        verify(backendConnection).simpleQuery(anyString(), eq("cursor2"), anyBoolean(), anyInt(), anyObject());
+        assertThat(session.getState(), is(ClientSessionState.Ready));
+        assertThat(otherSession.getState(), is(ClientSessionState.SimpleExecuting));
+    }
+
+    private SimpleQueryMessage cacheableQuery(String query, String cursorId) {
+        SimpleQueryMessage message = new SimpleQueryMessage(query, false, cursorId, -1);
+        message.setCacheable(true);
+        return message;
+    }
+
+    private void mockSimpleSelect() {
+        doAnswer(invocation -> {
+            ResultHandler<QueryResult> handler = (ResultHandler<QueryResult>) invocation.getArguments()[4];
+            handler.handle(new CursorDescriptionResult((String) invocation.getArguments()[1], false, Collections.emptyList()));
+            handler.handle(new RowDataResult(Collections.singletonList(new SqpInteger(1))));
+            handler.handle(new EndQueryResult(false));
+            return null;
+        }).when(backendConnection).simpleQuery(startsWith("SELECT"), anyString(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    private void mockPrepareExecute(QueryResult result) {
+        doAnswer(invocation -> {
+            ((SuccessHandler) invocation.getArguments()[2]).succeed();
+            return null;
+        }).when(backendConnection).prepare(anyString(), anyString(), anyObject());
+        doAnswer(invocation -> {
+            ((ResultHandler<QueryResult>) invocation.getArguments()[5]).handle(result);
+            return null;
+        }).when(backendConnection).execute(anyString(), anyString(), anyObject(), anyBoolean(), anyInt(), anyObject());
+    }
+
+    private void mockEndlessCursor() {
+        doAnswer(invocation -> {
+            int numRows = (Integer) invocation.getArguments()[2];
+            ResultHandler<QueryResult> handler = (ResultHandler<QueryResult>) invocation.getArguments()[4];
+            for (int i = 0; i < numRows; i++) {
+                handler.handle(new RowDataResult(Collections.singletonList(new SqpInteger(i))));
+            }
+            handler.handle(new EndQueryResult(true));
+            return null;
+        }).when(backendConnection).fetch(anyString(), anyInt(), anyInt(), anyBoolean(), anyObject());
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(connection).whenWritable(anyObject());
+    }
+
     private void sendHelloMessage(ClientSession session) {
         sendHelloMessage(session, DataFormat.Text);
     }
 
     private void sendHelloMessage(ClientSession session, DataFormat format) {
-        BackendConnection backendConnection = mock(BackendConnection.class);
         when(backendPool.createConnection(eq("test"), anyObject(), anyObject())).then(invocation -> {
             ((ResultHandler<BackendConnection>) invocation.getArguments()[2]).handle(backendConnection);
             return 0l;
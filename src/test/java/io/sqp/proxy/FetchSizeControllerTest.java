@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.TypeDescription;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpTypeCode;
+import io.sqp.core.types.SqpValue;
+import io.sqp.core.types.SqpVarChar;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class FetchSizeControllerTest {
+
+    @Test
+    public void explicitLimitIsKept() {
+        FetchSizeController controller = new FetchSizeController();
+        controller.registerCursor("cursor", columns(SqpTypeCode.Integer, 0));
+        assertThat(controller.getFetchSize("cursor", 3), is(3));
+        assertThat(controller.getFetchSize("cursor", 0), is(0));
+        assertThat(controller.getInitialFetchSize(42), is(42));
+    }
+
+    @Test
+    public void initialFetchSizeFitsByteBudget() {
+        FetchSizeController controller = new FetchSizeController(128 * 100, 1000);
+        assertThat(controller.getInitialFetchSize(-1), is(100));
+    }
+
+    @Test
+    public void unknownCursorUsesInitialFetchSize() {
+        FetchSizeController controller = new FetchSizeController(128 * 100, 1000);
+        assertThat(controller.getFetchSize("unknown", -1), is(100));
+    }
+
+    @Test
+    public void fetchSizeDependsOnColumnMetadata() {
+        FetchSizeController controller = new FetchSizeController(10000, 1000);
+        controller.registerCursor("narrow", columns(SqpTypeCode.VarChar, 10));
+        controller.registerCursor("wide", columns(SqpTypeCode.VarChar, 100));
+        assertThat(controller.getFetchSize("narrow", -1), is(1000));
+        assertThat(controller.getFetchSize("wide", -1), is(100));
+    }
+
+    @Test
+    public void fetchSizeIsClamped() {
+        FetchSizeController controller = new FetchSizeController(1, 1000);
+        controller.registerCursor("cursor", columns(SqpTypeCode.Integer, 0));
+        assertThat(controller.getFetchSize("cursor", -1), is(FetchSizeController.MIN_ROWS));
+
+        controller = new FetchSizeController(Integer.MAX_VALUE, 1000);
+        controller.registerCursor("cursor", columns(SqpTypeCode.Integer, 0));
+        assertThat(controller.getFetchSize("cursor", -1), is(FetchSizeController.MAX_ROWS));
+    }
+
+    @Test
+    public void observedRowsAdjustFetchSize() {
+        FetchSizeController controller = new FetchSizeController(100000, 100000);
+        controller.registerCursor("cursor", columns(SqpTypeCode.VarChar, 10));
+        int initialSize = controller.getFetchSize("cursor", -1);
+
+        char[] longText = new char[5000];
+        Arrays.fill(longText, 'a');
+        List<SqpValue> row = Collections.singletonList(new SqpVarChar(new String(longText)));
+        controller.beginFetch("cursor");
+        for (int i = 0; i < 10; i++) {
+            controller.recordRow(row);
+        }
+        controller.endFetch();
+        assertThat(controller.getFetchSize("cursor", -1), lessThan(initialSize));
+    }
+
+    @Test
+    public void latencyBudgetLimitsFetchSize() {
+        FetchSizeController controller = new FetchSizeController(Integer.MAX_VALUE, 0);
+        controller.registerCursor("cursor", columns(SqpTypeCode.Integer, 0));
+        controller.beginFetch("cursor");
+        controller.recordRow(Collections.singletonList(new SqpInteger(5)));
+        controller.endFetch();
+        assertThat(controller.getFetchSize("cursor", -1), is(FetchSizeController.MIN_ROWS));
+    }
+
+    @Test
+    public void releasedCursorIsForgotten() {
+        FetchSizeController controller = new FetchSizeController(128 * 100, 1000);
+        controller.registerCursor("cursor", columns(SqpTypeCode.VarChar, 10));
+        controller.releaseCursor("cursor");
+        assertThat(controller.getFetchSize("cursor", -1), is(100));
+    }
+
+    private List<ColumnMetadata> columns(SqpTypeCode typeCode, int precision) {
+        return Collections.singletonList(new ColumnMetadata("col", new TypeDescription(typeCode, precision, 0), "native"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class QueryCoalescerTest {
+
+    @Test
+    public void firstSessionLeadsExecution() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        assertThat(coalescer.join("key", r -> {}), is(true));
+        assertThat(coalescer.join("other", r -> {}), is(true));
+        assertThat(coalescer.getCoalescedQueries(), is(0L));
+    }
+
+    @Test
+    public void waitingSessionsGetResultOfExecution() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        List<CachedResult> received = new ArrayList<>();
+        CachedResult result = new CachedResult(Collections.emptyList());
+        coalescer.join("key", received::add);
+        assertThat(coalescer.join("key", received::add), is(false));
+        assertThat(coalescer.join("key", received::add), is(false));
+        coalescer.complete("key", result);
+
+        assertThat(received, contains(result, result));
+        assertThat(coalescer.getCoalescedQueries(), is(2L));
+        // the next query is executed again
+        assertThat(coalescer.join("key", received::add), is(true));
+    }
+
+    @Test
+    public void sessionThatLeftDoesNotGetResult() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        List<CachedResult> received = new ArrayList<>();
+        Consumer<CachedResult> waiter = received::add;
+        coalescer.join("key", r -> {});
+        coalescer.join("key", waiter);
+        coalescer.leave("key", waiter);
+        coalescer.complete("key", new CachedResult(Collections.emptyList()));
+
+        assertThat(received, is(empty()));
+    }
+}
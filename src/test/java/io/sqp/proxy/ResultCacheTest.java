@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import io.sqp.core.messages.RowDataMessage;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpValue;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class ResultCacheTest {
+    private long _now;
+
+    @Test
+    public void normalizeCollapsesWhitespaceOutsideOfQuotes() {
+        assertThat(ResultCache.normalize("  SELECT  a,\n\tb FROM t WHERE c = 'x  y' ; "),
+                is("SELECT a, b FROM t WHERE c = 'x  y'"));
+    }
+
+    @Test
+    public void onlySelectsAreCacheable() {
+        assertThat(ResultCache.isCacheable(" select * from t"), is(true));
+        assertThat(ResultCache.isCacheable("INSERT INTO t VALUES (1)"), is(false));
+        assertThat(ResultCache.isCacheable("SELECTED"), is(false));
+    }
+
+    @Test
+    public void selectsWritingDataOrLockingRowsAreNotCacheable() {
+        assertThat(ResultCache.isCacheable("SELECT * INTO t2 FROM t"), is(false));
+        assertThat(ResultCache.isCacheable("SELECT * FROM t FOR UPDATE"), is(false));
+        assertThat(ResultCache.isCacheable("select * from t for  no key update"), is(false));
+        assertThat(ResultCache.isCacheable("SELECT * FROM t FOR SHARE"), is(false));
+        assertThat(ResultCache.isCacheable("SELECT 'into' FROM t WHERE c = 'for update'"), is(true));
+        assertThat(ResultCache.isCacheable("SELECT intotal FROM t"), is(true));
+    }
+
+    @Test
+    public void cachedResultIsServedUntilItExpires() {
+        ResultCache cache = new ResultCache(100, 1024, () -> _now);
+        String key = ResultCache.createKey("db", "", "SELECT 1");
+        CachedResult result = result(1);
+        cache.put(key, "db", cache.getGeneration("db"), result);
+
+        _now += 99 * 1000000L;
+        assertThat(cache.get(key, -1), is(result));
+        _now += 1000000L;
+        assertThat(cache.get(key, -1), is(nullValue()));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getBytes(), is(0L));
+    }
+
+    @Test
+    public void resultWithTooManyRowsIsMiss() {
+        ResultCache cache = new ResultCache(100, 1024, () -> _now);
+        cache.put("key", "db", 0, result(3));
+        assertThat(cache.get("key", 2), is(nullValue()));
+        assertThat(cache.get("key", 3).getNumRows(), is(3));
+    }
+
+    @Test
+    public void leastRecentlyUsedResultIsEvictedIfBytesExceeded() {
+        CachedResult first = result(1);
+        ResultCache cache = new ResultCache(100, first.getSize() * 2, () -> _now);
+        cache.put("first", "db", 0, first);
+        cache.put("second", "db", 0, result(1));
+        cache.get("first", -1);
+        cache.put("third", "db", 0, result(1));
+
+        assertThat(cache.get("first", -1), is(first));
+        assertThat(cache.get("second", -1), is(nullValue()));
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.getNumEntries(), is(2));
+    }
+
+    @Test
+    public void invalidateRemovesResultsOfDatabase() {
+        ResultCache cache = new ResultCache(100, 1024, () -> _now);
+        cache.put("first", "db", 0, result(1));
+        cache.put("second", "other", 0, result(1));
+        cache.invalidate("db");
+
+        assertThat(cache.get("first", -1), is(nullValue()));
+        assertThat(cache.get("second", -1).getNumRows(), is(1));
+        assertThat(cache.getInvalidations(), is(1L));
+    }
+
+    @Test
+    public void resultOfOldGenerationIsNotCached() {
+        ResultCache cache = new ResultCache(100, 1024, () -> _now);
+        long generation = cache.getGeneration("db");
+        cache.invalidate("db");
+        cache.put("key", "db", generation, result(1));
+
+        assertThat(cache.get("key", -1), is(nullValue()));
+    }
+
+    private CachedResult result(int numRows) {
+        CachedResult result = new CachedResult(Collections.emptyList());
+        for (int i = 0; i < numRows; i++) {
+            List<SqpValue> row = Collections.singletonList(new SqpInteger(i));
+            result.addRow(row, RowDataMessage.fromTypedData(row));
+        }
+        return result;
+    }
+}
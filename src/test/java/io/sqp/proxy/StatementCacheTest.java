@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class StatementCacheTest {
+
+    @Test
+    public void addedStatementIsFound() {
+        StatementCache cache = new StatementCache(2);
+        String id = cache.add("SELECT 1");
+        assertThat(cache.get("SELECT 1"), is(id));
+        assertThat(cache.get("SELECT 2"), is(nullValue()));
+    }
+
+    @Test
+    public void statementIdsAreUnique() {
+        StatementCache cache = new StatementCache(2);
+        String first = cache.add("SELECT 1");
+        cache.remove("SELECT 1");
+        assertThat(cache.add("SELECT 1"), is(not(first)));
+    }
+
+    @Test
+    public void evictsNothingIfThereIsSpace() {
+        StatementCache cache = new StatementCache(2);
+        cache.add("SELECT 1");
+        assertThat(cache.evict(), is(nullValue()));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedStatement() {
+        StatementCache cache = new StatementCache(2);
+        String first = cache.add("SELECT 1");
+        String second = cache.add("SELECT 2");
+        cache.get("SELECT 1");
+
+        assertThat(cache.evict(), is(second));
+        assertThat(cache.size(), is(1));
+        assertThat(cache.get("SELECT 1"), is(first));
+    }
+
+    @Test
+    public void removeReturnsStatementId() {
+        StatementCache cache = new StatementCache(2);
+        String id = cache.add("SELECT 1");
+        assertThat(cache.remove("SELECT 1"), is(id));
+        assertThat(cache.remove("SELECT 1"), is(nullValue()));
+    }
+}
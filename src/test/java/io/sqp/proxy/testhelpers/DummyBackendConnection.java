@@ -86,7 +86,7 @@ public class DummyBackendConnection implements BackendConnection {
     }
 
     @Override
-    public void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable, ResultHandler<QueryResult> resultHandler) {
+    public void execute(String statementId, String cursorId, List<List<SqpValue>> parameters, boolean scrollable, int fetchSize, ResultHandler<QueryResult> resultHandler) {
 
     }
 
@@ -105,6 +105,16 @@ public class DummyBackendConnection implements BackendConnection {
 
     }
 
+    @Override
+    public void setQueryTimeout(int millis) {
+
+    }
+
+    @Override
+    public void cancel(SuccessHandler successHandler) {
+
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.vertx;
+
+import io.sqp.core.DataFormat;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class MultiplexedSendQueueStreamTest {
+    private MultiplexedSendQueueStream _queueStream;
+    private List<DataFormat> _formats;
+    private List<String> _sentChunks;
+    private int _numEndCalled;
+
+    @BeforeMethod
+    public void initStream() {
+        _numEndCalled = 0;
+        _formats = new ArrayList<>();
+        _sentChunks = new ArrayList<>();
+        _queueStream = new MultiplexedSendQueueStream(4, 1000);
+        _queueStream.streamEndedHandler(v -> _numEndCalled++);
+        _queueStream.streamStartedHandler(_formats::add);
+        _queueStream.handler(buf -> _sentChunks.add(buf.toString("UTF-8")));
+    }
+
+    @Test
+    public void shortStreamIsSentAsOneMessage() {
+        _queueStream.addStream(3, new ChunkedReadStream("foo"), DataFormat.Binary, null);
+
+        assertThat(_sentChunks, contains("3:foo"));
+        assertThat(_formats, contains(DataFormat.Binary));
+        assertThat(_numEndCalled, is(1));
+        assertThat(_queueStream.hasActiveStream(), is(false));
+    }
+
+    @Test
+    public void longStreamIsSentInContinuedChunks() {
+        _queueStream.addStream(1, new ChunkedReadStream("abcdefghij"), DataFormat.Text, null);
+
+        assertThat(_sentChunks, contains("1+abcd", "1+efgh", "1:ij"));
+        assertThat(_numEndCalled, is(3));
+    }
+
+    @Test
+    public void channelsTakeTurnsWhileTheirStreamsAreSent() {
+        ChunkedReadStream large = new ChunkedReadStream("aaaabbbbcccc", "dddd");
+        ChunkedReadStream small = new ChunkedReadStream("xy");
+        _queueStream.pause();
+        _queueStream.addStream(1, large, DataFormat.Text, null);
+        _queueStream.addStream(2, small, DataFormat.Text, null);
+        _queueStream.resume();
+
+        assertThat(_sentChunks, contains("1+aaaa", "2:xy", "1+bbbb", "1+cccc", "1:dddd"));
+    }
+
+    @Test
+    public void streamsOfOneChannelAreSentInOrder() {
+        List<String> ended = new ArrayList<>();
+        _queueStream.pause();
+        _queueStream.addStream(1, new ChunkedReadStream("first"), DataFormat.Text, v -> ended.add("first"));
+        _queueStream.addStream(1, new ChunkedReadStream("second"), DataFormat.Text, v -> ended.add("second"));
+        _queueStream.addStream(2, new ChunkedReadStream("other"), DataFormat.Text, v -> ended.add("other"));
+        _queueStream.resume();
+
+        assertThat(_sentChunks, contains("1+firs", "2+othe", "1:t", "2:r", "1+seco", "1:nd"));
+        assertThat(ended, contains("first", "other", "second"));
+    }
+
+    @Test
+    public void textChunksDontSplitCharacters() {
+        // the umlaut takes two bytes, which must not end up in different chunks
+        _queueStream.addStream(1, new ChunkedReadStream("abc\u00e4de"), DataFormat.Text, null);
+
+        assertThat(_sentChunks, contains("1+abc", "1:\u00e4de"));
+    }
+
+    @Test
+    public void readingAheadIsBoundedByTheChunkSize() {
+        ChunkedReadStream stream = new ChunkedReadStream("aa", "bb", "cc", "dd", "ee");
+        _queueStream.pause();
+        _queueStream.addStream(1, stream, DataFormat.Binary, null);
+
+        assertThat(stream.isPaused(), is(true));
+        assertThat(stream.getNumLeft(), is(2));
+
+        _queueStream.resume();
+        assertThat(_sentChunks, contains("1+aabb", "1+ccdd", "1:ee"));
+    }
+
+    @Test
+    public void endHandlerIsCalledWhenAllChannelsAreIdle() {
+        List<String> ended = new ArrayList<>();
+        _queueStream.pause();
+        _queueStream.addStream(1, new ChunkedReadStream("foo"), DataFormat.Text, null);
+        _queueStream.endHandler(v -> ended.add("all"));
+        assertThat(ended.isEmpty(), is(true));
+
+        _queueStream.resume();
+        assertThat(ended, contains("all"));
+    }
+
+    @Test
+    public void channelWithoutCreditWaitsForGrantedCredit() {
+        _queueStream = new MultiplexedSendQueueStream(4, 6);
+        _queueStream.handler(buf -> _sentChunks.add(buf.toString("UTF-8")));
+        _queueStream.addStream(1, new ChunkedReadStream("aaaabbbbcc"), DataFormat.Text, null);
+        _queueStream.addStream(2, new ChunkedReadStream("xy"), DataFormat.Text, null);
+
+        assertThat(_sentChunks, contains("1+aaaa", "1+bb", "2:xy"));
+        assertThat(_queueStream.hasActiveStream(), is(true));
+
+        _queueStream.addCredit(1, 3);
+        assertThat(_sentChunks, contains("1+aaaa", "1+bb", "2:xy", "1+bbc"));
+
+        _queueStream.addCredit(1, 100);
+        assertThat(_sentChunks, contains("1+aaaa", "1+bb", "2:xy", "1+bbc", "1:c"));
+        assertThat(_queueStream.hasActiveStream(), is(false));
+    }
+
+    @Test
+    public void removedChannelIsSentWithoutCredit() {
+        _queueStream = new MultiplexedSendQueueStream(4, 2);
+        _queueStream.handler(buf -> _sentChunks.add(buf.toString("UTF-8")));
+        _queueStream.addStream(1, new ChunkedReadStream("abcdef"), DataFormat.Binary, null);
+        assertThat(_sentChunks, contains("1+ab"));
+
+        _queueStream.removeChannel(1);
+        assertThat(_sentChunks, contains("1+ab", "1:cdef"));
+        assertThat(_queueStream.getNumChannels(), is(0));
+    }
+
+    /**
+     * Delivers its data synchronously as long as it's not paused.
+     */
+    class ChunkedReadStream implements ReadStream<Buffer> {
+        private Handler<Buffer> _handler;
+        private Handler<Void> _endHandler;
+        private Queue<String> _data;
+        private boolean _paused;
+        private boolean _delivering;
+
+        public ChunkedReadStream(String... data) {
+            _data = new LinkedList<>();
+            for (String d : data) {
+                _data.add(d);
+            }
+        }
+
+        public boolean isPaused() {
+            return _paused;
+        }
+
+        public int getNumLeft() {
+            return _data.size();
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+            _handler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            _paused = true;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            _paused = false;
+            if (_delivering) {
+                return this;
+            }
+            _delivering = true;
+            while (!_paused && !_data.isEmpty()) {
+                _handler.handle(Buffer.buffer(_data.poll(), "UTF-8"));
+            }
+            _delivering = false;
+            if (!_paused && _data.isEmpty() && _endHandler != null) {
+                Handler<Void> endHandler = _endHandler;
+                _endHandler = null;
+                endHandler.handle(null);
+            }
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            _endHandler = endHandler;
+            return this;
+        }
+    }
+}
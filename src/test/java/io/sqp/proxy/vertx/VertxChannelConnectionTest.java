@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.vertx;
+
+import io.sqp.core.DataFormat;
+import io.sqp.proxy.BackendConnectionPool;
+import io.sqp.proxy.FetchSizeController;
+import io.sqp.proxy.testhelpers.DummyBackend;
+import io.vertx.core.Handler;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class VertxChannelConnectionTest {
+    private static final int MAX_QUEUED_STREAMS = 64;
+    private VertxClientConnection _clientConnection;
+    private VertxChannelConnection _channelConnection;
+    private List<Handler<Void>> _endedHandlers;
+    private int _numWritableCalls;
+
+    @BeforeMethod
+    public void setUp() {
+        _endedHandlers = new ArrayList<>();
+        _numWritableCalls = 0;
+        _clientConnection = mock(VertxClientConnection.class);
+        doAnswer(invocation -> {
+            _endedHandlers.add((Handler<Void>) invocation.getArguments()[3]);
+            return null;
+        }).when(_clientConnection).queueStream(anyInt(), any(InputStream.class), any(DataFormat.class), any());
+        BackendConnectionPool connectionPool = mock(BackendConnectionPool.class);
+        when(connectionPool.getBackend()).thenReturn(new DummyBackend());
+        _channelConnection = new VertxChannelConnection(_clientConnection, null, connectionPool, new FetchSizeController());
+    }
+
+    @Test
+    public void writableHandlerRunsImmediatelyIfQueueIsNotFull() {
+        queueStreams(MAX_QUEUED_STREAMS - 1);
+        _channelConnection.whenWritable(() -> _numWritableCalls++);
+
+        assertThat(_numWritableCalls, is(1));
+    }
+
+    @Test
+    public void writableHandlersWaitUntilQueueIsHalfEmpty() {
+        queueStreams(MAX_QUEUED_STREAMS);
+        _channelConnection.whenWritable(() -> _numWritableCalls++);
+        _channelConnection.whenWritable(() -> _numWritableCalls++);
+        assertThat(_numWritableCalls, is(0));
+
+        endStreams(MAX_QUEUED_STREAMS / 2 - 1);
+        assertThat(_numWritableCalls, is(0));
+
+        endStreams(1);
+        assertThat(_numWritableCalls, is(2));
+
+        // the handlers only run once
+        endStreams(1);
+        assertThat(_numWritableCalls, is(2));
+    }
+
+    @Test
+    public void writableHandlersRunWhenSocketIsClosed() {
+        queueStreams(MAX_QUEUED_STREAMS);
+        _channelConnection.whenWritable(() -> _numWritableCalls++);
+        assertThat(_numWritableCalls, is(0));
+
+        when(_clientConnection.isSocketClosed()).thenReturn(true);
+        _channelConnection.handleSocketClosed();
+        assertThat(_numWritableCalls, is(1));
+
+        // nothing gets sent anymore, so new handlers don't need to wait
+        _channelConnection.whenWritable(() -> _numWritableCalls++);
+        assertThat(_numWritableCalls, is(2));
+    }
+
+    private void queueStreams(int num) {
+        for (int i = 0; i < num; i++) {
+            _channelConnection.sendStream(new ByteArrayInputStream(new byte[1]), DataFormat.Binary);
+        }
+    }
+
+    private void endStreams(int num) {
+        for (int i = 0; i < num; i++) {
+            _endedHandlers.remove(0).handle(null);
+        }
+    }
+}
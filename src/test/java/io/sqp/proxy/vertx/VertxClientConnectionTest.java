@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.proxy.vertx;
+
+import io.sqp.core.DataFormat;
+import io.sqp.proxy.BackendConnectionPool;
+import io.sqp.proxy.testhelpers.DummyBackend;
+import io.vertx.core.Handler;
+import io.vertx.core.http.ServerWebSocket;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class VertxClientConnectionTest {
+    private ServerWebSocket _socket;
+    private VertxClientConnection _connection;
+    private int _numWritableCalls;
+
+    @BeforeMethod
+    public void setUp() {
+        _numWritableCalls = 0;
+        _socket = mock(ServerWebSocket.class);
+        BackendConnectionPool connectionPool = mock(BackendConnectionPool.class);
+        when(connectionPool.getBackend()).thenReturn(new DummyBackend());
+        // the streams are never read, so they stay queued
+        _connection = new VertxClientConnection(mock(ExecutorService.class), _socket, connectionPool, 1024);
+    }
+
+    @Test
+    public void closedSocketResumesWaitingProducers() {
+        VertxChannelConnection channel = _connection.getChannelConnection(0);
+        for (int i = 0; i < 64; i++) {
+            channel.sendStream(new ByteArrayInputStream(new byte[1]), DataFormat.Binary);
+        }
+        channel.whenWritable(() -> _numWritableCalls++);
+        assertThat(_numWritableCalls, is(0));
+
+        closeSocket();
+        assertThat(_numWritableCalls, is(1));
+        assertThat(_connection.isSocketClosed(), is(true));
+
+        channel.whenWritable(() -> _numWritableCalls++);
+        assertThat(_numWritableCalls, is(2));
+    }
+
+    private void closeSocket() {
+        ArgumentCaptor<Handler> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(_socket).closeHandler(closeHandler.capture());
+        closeHandler.getValue().handle(null);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.testhelpers;
+
+import io.sqp.backend.AsyncExecutor;
+import io.sqp.backend.ResultHandler;
+import io.sqp.core.exceptions.SqpException;
+
+/**
+ * Executes everything in the calling thread, so tests of backends don't need to wait.
+ * @author Stefan Burnicki
+ */
+public class SynchronousExecutor implements AsyncExecutor {
+    @Override
+    public <T> void callAsync(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        T result;
+        try {
+            result = callable.invoke();
+        } catch (SqpException e) {
+            resultHandler.fail(e);
+            return;
+        }
+        resultHandler.handle(result);
+    }
+
+    @Override
+    public <T> void callConcurrently(FallibleCallable<T> callable, ResultHandler<T> resultHandler) {
+        callAsync(callable, resultHandler);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.transbase;
+
+import io.sqp.backend.results.CursorDescriptionResult;
+import io.sqp.core.ColumnMetadata;
+import io.sqp.core.TypeDescription;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpTypeCode;
+import io.sqp.core.types.SqpValue;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import transbase.tbx.TBXCursor;
+import transbase.tbx.types.helpers.TBObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class BatchCursorTest {
+    private Statement _statement;
+    private Transaction _transaction;
+    private ResultConverter _resultConverter;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        _statement = mock(Statement.class);
+        _transaction = mock(Transaction.class);
+        _resultConverter = mock(ResultConverter.class);
+        when(_resultConverter.valueToSqpValue(any(TBObject.class), any(TypeDescription.class), any(Cursor.class)))
+                .then(invocation -> ((ScriptedBatchCursor) invocation.getArguments()[2]).getCurrentValue());
+    }
+
+    @Test
+    public void batchIndexColumnComesFirst() throws Exception {
+        ScriptedBatchCursor cursor = new ScriptedBatchCursor(parameters(1, 2), Arrays.asList(10), Arrays.asList(20));
+
+        List<ColumnMetadata> columns = cursor.getColumnMetadata();
+        assertThat(columns, hasSize(2));
+        assertThat(columns.get(0).getName(), is(CursorDescriptionResult.BATCH_INDEX_COLUMN));
+        assertThat(columns.get(0).getType().getTypeCode(), is(SqpTypeCode.Integer));
+        assertThat(columns.get(1).getName(), is("a"));
+    }
+
+    @Test
+    public void rowsOfAllParameterListsAreConcatenated() throws Exception {
+        List<List<SqpValue>> parameters = parameters(1, 2, 3);
+        ScriptedBatchCursor cursor = new ScriptedBatchCursor(parameters, Arrays.asList(10, 11),
+                Collections.emptyList(), Arrays.asList(12));
+
+        assertThat(readAll(cursor), contains(Arrays.asList(0, 10), Arrays.asList(0, 11), Arrays.asList(2, 12)));
+        InOrder inOrder = inOrder(_statement);
+        inOrder.verify(_statement).openBatchCursor(_transaction, parameters.get(1));
+        inOrder.verify(_statement).openBatchCursor(_transaction, parameters.get(2));
+    }
+
+    @Test
+    public void nextParameterListIsOnlyExecutedAtTheEnd() throws Exception {
+        List<List<SqpValue>> parameters = parameters(1, 2);
+        ScriptedBatchCursor cursor = new ScriptedBatchCursor(parameters, Arrays.asList(10, 11), Arrays.asList(20));
+
+        assertThat(cursor.nextRow(true), is(true));
+        assertThat(cursor.nextRow(true), is(true));
+        verify(_statement, never()).openBatchCursor(anyObject(), anyObject());
+
+        assertThat(cursor.nextRow(true), is(true));
+        verify(_statement).openBatchCursor(eq(_transaction), eq(parameters.get(1)));
+        assertThat(cursor.nextRow(true), is(false));
+    }
+
+    private List<List<SqpValue>> parameters(int... values) {
+        List<List<SqpValue>> parameters = new ArrayList<>();
+        for (int value : values) {
+            parameters.add(Collections.singletonList(new SqpInteger(value)));
+        }
+        return parameters;
+    }
+
+    private List<List<Integer>> readAll(Cursor cursor) throws Exception {
+        List<List<Integer>> rows = new ArrayList<>();
+        while (cursor.nextRow(true)) {
+            List<Integer> row = new ArrayList<>();
+            for (SqpValue value : cursor.getRow()) {
+                row.add(value.asInt());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Batch cursor whose TBX cursors return the given rows, one list of values per parameter list.
+     */
+    private class ScriptedBatchCursor extends BatchCursor {
+        public List<List<Integer>> Results;
+        public int CurrentResult;
+        public int CurrentRow;
+
+        @SafeVarargs
+        public ScriptedBatchCursor(List<List<SqpValue>> parameters, List<Integer>... results) throws Exception {
+            super(_statement, null, _resultConverter, _transaction, parameters);
+            Results = Arrays.asList(results);
+            CurrentResult = 0;
+            CurrentRow = -1;
+        }
+
+        public SqpValue getCurrentValue() {
+            return new SqpInteger(Results.get(CurrentResult).get(CurrentRow));
+        }
+
+        @Override
+        protected List<ColumnMetadata> createColumnMetadata() {
+            return Collections.singletonList(new ColumnMetadata("a", SqpTypeCode.Integer.asDescription(), "INTEGER"));
+        }
+
+        @Override
+        protected boolean moveTBXCursor(boolean forward) {
+            CurrentRow++;
+            return CurrentRow < Results.get(CurrentResult).size();
+        }
+
+        @Override
+        protected TBObject getField(int i) {
+            return null;
+        }
+
+        @Override
+        protected void replaceTBXCursor(TBXCursor tbxCursor) {
+            CurrentResult++;
+            CurrentRow = -1;
+        }
+    }
+}
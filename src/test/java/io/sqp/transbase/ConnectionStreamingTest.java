@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.transbase;
+
+import io.sqp.backend.Configuration;
+import io.sqp.backend.ResultHandler;
+import io.sqp.backend.results.EndQueryResult;
+import io.sqp.backend.results.QueryResult;
+import io.sqp.backend.results.RowDataResult;
+import io.sqp.core.exceptions.SqpException;
+import io.sqp.core.types.SqpInteger;
+import io.sqp.core.types.SqpValue;
+import io.sqp.testhelpers.SynchronousExecutor;
+import org.mockito.InOrder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the streaming of fetched rows with a mocked cursor, so no database is needed.
+ * @author Stefan Burnicki
+ */
+public class ConnectionStreamingTest {
+    private Connection _connection;
+    private Cursor _cursor;
+    private int _rowsLeft;
+    private List<QueryResult> _results;
+    private List<Runnable> _continuations;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Configuration config = new Configuration(new HashMap<>())
+                .set("username", "tbadmin")
+                .set("password", "")
+                .set("host", "localhost")
+                .set("kernelPort", 2024);
+        _connection = new Connection(Logger.getGlobal(), TBConfiguration.load(config), new TBNativeSQLFactory(),
+                new SynchronousExecutor());
+        _cursor = mock(Cursor.class);
+        when(_cursor.fetch(anyInt(), anyInt(), anyBoolean())).then(invocation -> {
+            int numRows = Math.min((Integer) invocation.getArguments()[1], _rowsLeft);
+            List<List<SqpValue>> rows = new ArrayList<>();
+            for (int i = 0; i < numRows; i++) {
+                rows.add(Collections.singletonList(new SqpInteger(i)));
+            }
+            _rowsLeft -= numRows;
+            return rows;
+        });
+        when(_cursor.hasMore()).then(invocation -> _rowsLeft > 0);
+        _connection.registerCursor("cursor", _cursor);
+        _results = new ArrayList<>();
+        _continuations = new ArrayList<>();
+    }
+
+    @Test
+    public void rowsAreFetchedInChunks() throws Exception {
+        _rowsLeft = 100;
+        _connection.fetch("cursor", -1, 70, true, new ResultHandler<>(this::fail, _results::add));
+
+        InOrder inOrder = inOrder(_cursor);
+        inOrder.verify(_cursor).fetch(-1, 32, true);
+        inOrder.verify(_cursor).fetch(-1, 32, true);
+        inOrder.verify(_cursor).fetch(-1, 6, true);
+        assertThat(_results, hasSize(71));
+        assertThat(_results.get(69), instanceOf(RowDataResult.class));
+        assertThat(((EndQueryResult) _results.get(70)).hasMoreData(), is(true));
+    }
+
+    @Test
+    public void positionOnlyAppliesToFirstChunk() throws Exception {
+        _rowsLeft = 100;
+        when(_cursor.isScrollable()).thenReturn(true);
+        _connection.fetch("cursor", 10, 40, true, new ResultHandler<>(this::fail, _results::add));
+
+        verify(_cursor).fetch(10, 32, true);
+        verify(_cursor).fetch(-1, 8, true);
+    }
+
+    @Test
+    public void streamingEndsWithCursor() throws Exception {
+        _rowsLeft = 40;
+        _connection.fetch("cursor", -1, 100, true, new ResultHandler<>(this::fail, _results::add));
+
+        verify(_cursor, times(2)).fetch(eq(-1), anyInt(), eq(true));
+        assertThat(_results, hasSize(41));
+        assertThat(((EndQueryResult) _results.get(40)).hasMoreData(), is(false));
+    }
+
+    @Test
+    public void nextChunkWaitsUntilHandlerIsReady() throws Exception {
+        _rowsLeft = 100;
+        _connection.fetch("cursor", -1, 50, true, new ResultHandler<>(this::fail, _results::add, _continuations::add));
+
+        // nothing is read while the continuation is withheld
+        verify(_cursor, times(1)).fetch(anyInt(), anyInt(), anyBoolean());
+        assertThat(_results, hasSize(32));
+        assertThat(_continuations, hasSize(1));
+
+        _continuations.remove(0).run();
+        verify(_cursor).fetch(-1, 18, true);
+        assertThat(_results, hasSize(51));
+        assertThat(_results.get(50), instanceOf(EndQueryResult.class));
+        assertThat(_continuations.isEmpty(), is(true));
+    }
+
+    @Test
+    public void fetchOfUnknownCursorFails() throws Exception {
+        List<SqpException> errors = new ArrayList<>();
+        _connection.fetch("unknown", -1, 10, true, new ResultHandler<>(errors::add, _results::add));
+
+        assertThat(errors, hasSize(1));
+        assertThat(_results.isEmpty(), is(true));
+    }
+
+    private void fail(SqpException error) {
+        throw new AssertionError(error);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 by Rothmeyer Consulting (http://www.rothmeyer.com/)
+ * Author: Stefan Burnicki <stefan.burnicki@burnicki.net>
+ *
+ * This file is part of SQP.
+ *
+ * SQP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License.
+ *
+ * SQP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with SQP.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.sqp.transbase;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import io.sqp.backend.exceptions.LobReadFailedException;
+import transbase.tbx.TBConst;
+import transbase.tbx.types.helpers.BlobStream;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Stefan Burnicki
+ */
+public class LobManagerTest {
+    private byte[] _data;
+    private Cursor _cursor;
+
+    @BeforeMethod
+    public void setUp() {
+        _data = new byte[1000];
+        for (int i = 0; i < _data.length; i++) {
+            _data[i] = (byte) i;
+        }
+        _cursor = mock(Cursor.class);
+    }
+
+    @Test
+    public void sequentialReadsAreServedFromCache() throws Exception {
+        LobManager lobManager = new LobManager(300, 10000, 0);
+        String id = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+
+        assertThat(lobManager.read(id, 0, 100), is(range(0, 100)));
+        assertThat(lobManager.read(id, 100, 100), is(range(100, 200)));
+        assertThat(lobManager.read(id, 200, 100), is(range(200, 300)));
+        assertThat(lobManager.getCacheMisses(), is(1L));
+        assertThat(lobManager.getCacheHits(), is(2L));
+        assertThat(lobManager.getBytesServed(), is(300L));
+    }
+
+    @Test
+    public void readsPartlyCachedData() throws Exception {
+        LobManager lobManager = new LobManager(150, 10000, 0);
+        String id = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+
+        assertThat(lobManager.read(id, 0, 100), is(range(0, 100)));
+        assertThat(lobManager.read(id, 100, 500), is(range(100, 600)));
+        assertThat(lobManager.read(id, 600, -1), is(range(600, 1000)));
+    }
+
+    @Test
+    public void randomReadsDontReadAhead() throws Exception {
+        LobManager lobManager = new LobManager(300, 10000, 0);
+        String id = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+
+        assertThat(lobManager.read(id, 500, 100), is(range(500, 600)));
+        assertThat(lobManager.getCachedBytes(), is(0L));
+        assertThat(lobManager.read(id, 990, 100), is(range(990, 1000)));
+        assertThat(lobManager.read(id, 1000, 100).length, is(0));
+    }
+
+    @Test
+    public void cacheStaysWithinBudget() throws Exception {
+        LobManager lobManager = new LobManager(300, 400, 0);
+        String first = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+        String second = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+
+        lobManager.read(first, 0, 10);
+        assertThat(lobManager.getCachedBytes(), is(300L));
+        lobManager.read(second, 0, 10);
+        assertThat(lobManager.getCachedBytes(), is(300L));
+        assertThat(lobManager.read(first, 10, 10), is(range(10, 20)));
+        assertThat(lobManager.getCacheMisses(), is(3L));
+    }
+
+    @Test
+    public void closeAllClosesLobsOfCursor() throws Exception {
+        LobManager lobManager = new LobManager();
+        String id = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+        lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), mock(Cursor.class), true);
+
+        lobManager.closeAll(_cursor);
+        assertThat(lobManager.getNumOpenLobs(), is(1));
+        assertThat(lobManager.getBlobStream(id), is((BlobStream) null));
+    }
+
+    @Test(expectedExceptions = LobReadFailedException.class)
+    public void idleLobsAreReaped() throws Exception {
+        LobManager lobManager = new LobManager(0, 0, 1);
+        String id = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+        Thread.sleep(1100);
+        lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+        assertThat(lobManager.getNumOpenLobs(), is(1));
+        lobManager.read(id, 0, 10);
+    }
+
+    @Test(timeOut = 5000)
+    public void blockingReadDoesntBlockOtherLobs() throws Exception {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch readReleased = new CountDownLatch(1);
+        BlobStream slowStream = mock(BlobStream.class);
+        when(slowStream.getLength()).thenReturn(_data.length);
+        when(slowStream.getByteArray(anyLong(), anyInt())).thenAnswer(invocation -> {
+            readStarted.countDown();
+            readReleased.await();
+            return range(0, 10);
+        });
+        LobManager lobManager = new LobManager(0, 10000, 0);
+        String slow = lobManager.registerLob(slowStream, _cursor, false);
+        String fast = lobManager.registerLob(new BlobStream(_data, TBConst.BLOBTYPE), _cursor, false);
+        CompletableFuture<byte[]> slowRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lobManager.read(slow, 0, 10);
+            } catch (LobReadFailedException e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        readStarted.await();
+        assertThat(lobManager.read(fast, 0, 10), is(range(0, 10)));
+        assertThat(lobManager.getNumOpenLobs(), is(2));
+        readReleased.countDown();
+        assertThat(slowRead.get(), is(range(0, 10)));
+    }
+
+    @Test(expectedExceptions = LobReadFailedException.class)
+    public void readingChunkBeyondArraySizeFails() throws Exception {
+        BlobStream hugeStream = mock(BlobStream.class);
+        when(hugeStream.getLength()).thenReturn(Integer.MAX_VALUE);
+        LobManager lobManager = new LobManager(0, 10000, 0);
+        String id = lobManager.registerLob(hugeStream, _cursor, false);
+
+        lobManager.read(id, 0, -1);
+    }
+
+    @Test
+    public void readingTailOfHugeLobWorks() throws Exception {
+        BlobStream hugeStream = mock(BlobStream.class);
+        when(hugeStream.getLength()).thenReturn(Integer.MAX_VALUE);
+        when(hugeStream.getByteArray(anyLong(), anyInt())).thenReturn(range(0, 10));
+        LobManager lobManager = new LobManager(0, 10000, 0);
+        String id = lobManager.registerLob(hugeStream, _cursor, false);
+
+        assertThat(lobManager.read(id, Integer.MAX_VALUE - 10L, -1), is(range(0, 10)));
+    }
+
+    private byte[] range(int from, int to) {
+        return Arrays.copyOfRange(_data, from, to);
+    }
+}